@@ -7,13 +7,15 @@ import co.paralleluniverse.actors.MailboxConfig;
 import co.paralleluniverse.fibers.Fiber;
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.strands.channels.Channels;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 public class RingBenchmark {
     static final int N = 1000;
     static final int M = 1000;
-    static final MailboxConfig mailboxConfig = new MailboxConfig(10, Channels.OverflowPolicy.THROW);
+    static final int TOKENS = 8; // messages circling the ring at once; no more than the mailbox size
     //static ForkJoinPool fjPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
 
     public static void main(String args[]) throws Exception {
@@ -23,8 +25,22 @@ public class RingBenchmark {
         System.out.println("PROCESSORS: " + Runtime.getRuntime().availableProcessors());
         System.out.println();
 
-        for (int i = 0; i < 10; i++)
-            new RingBenchmark().run();
+        for (int i = 0; i < 10; i++) {
+            for (boolean handOff : new boolean[]{false, true}) {
+                new RingBenchmark(false, handOff).run();
+                new RingBenchmark(true, handOff).run();
+            }
+        }
+    }
+
+    private final boolean batch; // receive messages in batches
+    private final boolean handOff; // senders hand off to the receiving actors
+    private final MailboxConfig mailboxConfig;
+
+    RingBenchmark(boolean batch, boolean handOff) {
+        this.batch = batch;
+        this.handOff = handOff;
+        this.mailboxConfig = new MailboxConfig(10, Channels.OverflowPolicy.THROW, false, handOff);
     }
 
     private static <Message, V> Actor<Message, V> spawnActor(Actor<Message, V> actor) {
@@ -42,32 +58,47 @@ public class RingBenchmark {
                 for (int i = 0; i < N - 1; i++)
                     a = createRelayActor(a);
 
-                a.send(1); // start things off
+                for (int k = 0; k < TOKENS; k++)
+                    a.send(1); // start things off
 
-                Integer msg = null;
-                for (int i = 0; i < M; i++) {
-                    msg = receive();
-                    a.send(msg + 1);
+                final List<Integer> msgs = new ArrayList<>(TOKENS);
+                int count = 0;
+                while (count < M * TOKENS) {
+                    receiveSome(this, msgs);
+                    for (Integer msg : msgs)
+                        a.send(msg + 1);
+                    count += msgs.size();
+                    msgs.clear();
                 }
 
-                return msg;
+                return count * N;
             }
         });
 
         int totalCount = manager.get();
         final long time = TimeUnit.MILLISECONDS.convert(System.nanoTime() - start, TimeUnit.NANOSECONDS);
-        System.out.println("messages: " + totalCount + " time (ms): " + time);
+        System.out.println((batch ? "batch  " : "single ") + (handOff ? "hand-off " : "         ") + "messages: " + totalCount + " time (ms): " + time);
     }
 
     private ActorRef<Integer> createRelayActor(final ActorRef<Integer> prev) {
         return spawnActor(new BasicActor<Integer, Void>(mailboxConfig) {
             @Override
             protected Void doRun() throws InterruptedException, SuspendExecution {
+                final List<Integer> msgs = new ArrayList<>(TOKENS);
                 for (;;) {
-                    Integer m = receive();
-                    prev.send(m + 1);
+                    receiveSome(this, msgs);
+                    for (Integer m : msgs)
+                        prev.send(m + 1);
+                    msgs.clear();
                 }
             }
         }).ref();
     }
-}
\ No newline at end of file
+
+    private void receiveSome(Actor<Integer, ?> actor, List<Integer> msgs) throws InterruptedException, SuspendExecution {
+        if (batch)
+            actor.receive(msgs, TOKENS);
+        else
+            msgs.add(actor.receive());
+    }
+}
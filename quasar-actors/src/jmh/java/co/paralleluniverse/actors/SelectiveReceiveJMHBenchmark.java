@@ -0,0 +1,102 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.actors;
+
+import co.paralleluniverse.actors.behaviors.IdMessage;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.channels.Channels;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Selective receive of a reply, by type and by id, while many other messages wait in the mailbox.
+ * The benchmark thread owns the actor's mailbox, so no strands are involved.
+ *
+ * @author pron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SelectiveReceiveJMHBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int DEPTH;
+
+    @Param({"false", "true"})
+    public boolean INDEXED;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SelectiveReceiveJMHBenchmark.class.getName() + ".*")
+                .forks(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private BasicActor<Object, Void> actor;
+    private long id;
+
+    @Setup
+    public void prepare() {
+        actor = new BasicActor<Object, Void>(new MailboxConfig(-1, Channels.OverflowPolicy.THROW, INDEXED)) {
+            @Override
+            protected Void doRun() {
+                throw new UnsupportedOperationException();
+            }
+        };
+        actor.setStrand(Strand.currentStrand()); // this thread owns the mailbox
+        for (int i = 0; i < DEPTH; i++)
+            actor.internalSendNonSuspendable(new Pending(i));
+        actor.tryReceive(Reply.class); // with an indexed mailbox, the pending messages are now indexed
+    }
+
+    @Benchmark
+    public Object receiveByType() {
+        actor.internalSendNonSuspendable(new Reply(id++));
+        return actor.tryReceive(Reply.class);
+    }
+
+    @Benchmark
+    public Object receiveById() {
+        final Long i = id++;
+        actor.internalSendNonSuspendable(new Reply(i));
+        return actor.tryReceive(SelectiveReceiveHelper.ofType(Reply.class, i));
+    }
+
+    static class Pending {
+        final int num;
+
+        Pending(int num) {
+            this.num = num;
+        }
+    }
+
+    static class Reply implements IdMessage {
+        private final Object id;
+
+        Reply(Object id) {
+            this.id = id;
+        }
+
+        @Override
+        public Object getId() {
+            return id;
+        }
+    }
+}
@@ -36,7 +36,9 @@ import co.paralleluniverse.strands.SuspendableCallable;
 import co.paralleluniverse.strands.Timeout;
 import co.paralleluniverse.strands.channels.ReceivePort;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -576,6 +578,94 @@ public abstract class Actor<Message, V> extends ActorImpl<Message> implements Su
         }
     }
 
+    /**
+     * Retrieves up to {@code max} messages from the mailbox, and adds them to the given collection. If no message is currently available,
+     * this method blocks until a message arrives.
+     * The messages are taken from the mailbox as one batch, and the checks and monitoring done for each message by {@link #receive() receive}
+     * are done once per batch.
+     * <p>
+     * Messages are passed to {@link #filterMessage(Object) filterMessage} one at a time. If it throws an exception, the rest of the batch is
+     * still filtered and added to {@code into} before the exception is rethrown, so no message taken from the mailbox is lost.</p>
+     *
+     * @param into the collection to which the messages are added.
+     * @param max  the maximum number of messages to retrieve; must be positive.
+     * @return the number of messages added to {@code into}.
+     * @throws InterruptedException
+     */
+    @Override
+    public final int receive(Collection<? super Message> into, int max) throws SuspendExecution, InterruptedException {
+        if (max <= 0)
+            throw new IllegalArgumentException("max must be positive: " + max);
+        final List<Object> batch = new ArrayList<>(Math.min(max, 64));
+        try {
+            for (;;) {
+                checkThrownIn0();
+                record(1, "Actor", "receive", "%s waiting for a message", this);
+                if (mailbox().receive(batch, max) == 0)
+                    return 0;
+                record(1, "Actor", "receive", "%s received %s messages", this, batch.size());
+                final int n = filterMessages(batch, into);
+                if (n > 0)
+                    return n + drainTo0(batch, into, max - n);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            checkThrownIn0();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves up to {@code max} of the messages available in the mailbox, and adds them to the given collection. This method never blocks.
+     * The messages are taken from the mailbox as one batch, and the checks and monitoring done for each message by {@link #tryReceive() tryReceive}
+     * are done once per batch.
+     *
+     * @param into the collection to which the messages are added.
+     * @param max  the maximum number of messages to retrieve.
+     * @return the number of messages added to {@code into}.
+     * @see #receive(Collection, int)
+     */
+    @Override
+    public final int drainTo(Collection<? super Message> into, int max) {
+        checkThrownIn0();
+        return drainTo0(new ArrayList<>(Math.min(Math.max(max, 0), 64)), into, max);
+    }
+
+    private int drainTo0(List<Object> batch, Collection<? super Message> into, int max) {
+        int n = 0;
+        while (n < max) { // filtered messages don't count towards max
+            batch.clear();
+            if (mailbox().drainTo(batch, max - n) == 0)
+                break;
+            record(1, "Actor", "drainTo", "%s received %s messages", this, batch.size());
+            n += filterMessages(batch, into);
+        }
+        return n;
+    }
+
+    private int filterMessages(List<Object> batch, Collection<? super Message> into) {
+        monitorAddMessages(batch.size());
+        int n = 0;
+        RuntimeException ex = null;
+        for (Object m : batch) {
+            try {
+                final Message msg = filterMessage(m);
+                if (msg != null) {
+                    into.add(msg);
+                    n++;
+                }
+            } catch (RuntimeException e) {
+                if (ex == null)
+                    ex = e;
+                else
+                    ex.addSuppressed(e);
+            }
+        }
+        if (ex != null)
+            throw ex;
+        return n;
+    }
+
     /**
      * All messages received from the mailbox are passed to this method. If this method returns a non-null value, this value will be returned
      * from the {@code receive} methods. If it returns {@code null}, then {@code receive} will keep waiting.
@@ -1280,6 +1370,11 @@ public abstract class Actor<Message, V> extends ActorImpl<Message> implements Su
             monitor.addMessage();
     }
 
+    protected final void monitorAddMessages(int n) {
+        if (monitor != null && n > 0)
+            monitor.addMessages(n);
+    }
+
     protected final void monitorSkippedMessage() {
         if (monitor != null)
             monitor.skippedMessage();
@@ -22,6 +22,11 @@ public interface ActorMonitor {
     void addDeath(Object reason);
     void addRestart();
     void addMessage();
+
+    default void addMessages(int n) {
+        for (int i = 0; i < n; i++)
+            addMessage();
+    }
     void skippedMessage();
     void resetSkippedMessages();
     void shutdown();
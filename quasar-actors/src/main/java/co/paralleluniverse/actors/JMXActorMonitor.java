@@ -194,6 +194,11 @@ public class JMXActorMonitor extends StandardEmitterMBean implements ActorMonito
         messageCounter++;
     }
 
+    @Override
+    public void addMessages(int n) {
+        messageCounter += n;
+    }
+
     @Override
     public void skippedMessage() {
         skippedMessageCounter++;
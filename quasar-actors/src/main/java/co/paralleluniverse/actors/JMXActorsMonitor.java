@@ -298,6 +298,11 @@ class JMXActorsMonitor implements NotificationListener, ActorsMXBean {
             messageCounter++;
         }
 
+        @Override
+        public void addMessages(int n) {
+            messageCounter += n;
+        }
+
         @Override
         public void skippedMessage() {
             skippedMessageCounter++;
@@ -20,6 +20,7 @@ import co.paralleluniverse.strands.channels.SingleConsumerQueueChannel;
 import co.paralleluniverse.strands.queues.SingleConsumerArrayObjectQueue;
 import co.paralleluniverse.strands.queues.SingleConsumerLinkedArrayObjectQueue;
 import co.paralleluniverse.strands.queues.SingleConsumerQueue;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -33,6 +34,7 @@ public final class Mailbox<Message> extends SingleConsumerQueueChannel<Message>
     private transient Actor<?, ?> actor;
     private Object registrationToken;
     private final MailboxConfig config;
+    private final MailboxIndex index;
 
     Mailbox(MailboxConfig config) {
         super(mailboxSize(config) > 0
@@ -40,6 +42,9 @@ public final class Mailbox<Message> extends SingleConsumerQueueChannel<Message>
                 : new SingleConsumerLinkedArrayObjectQueue<Message>(),
                 overflowPolicy(config));
         this.config = config;
+        this.index = config != null && config.isIndexed() ? new MailboxIndex() : null;
+        if (config != null && config.isHandOff())
+            setHandOff(true);
     }
 
     private static int mailboxSize(MailboxConfig config) {
@@ -68,6 +73,56 @@ public final class Mailbox<Message> extends SingleConsumerQueueChannel<Message>
         return super.queue();
     }
 
+    /**
+     * The messages taken off the queue by selective receive but not yet received, or {@code null} if this mailbox isn't indexed.
+     */
+    MailboxIndex index() {
+        return index;
+    }
+
+    @Override
+    public Message tryReceive() {
+        if (index != null && !index.isEmpty())
+            return (Message) index.poll();
+        return super.tryReceive();
+    }
+
+    @Override
+    public Message receive() throws SuspendExecution, InterruptedException {
+        if (index != null && !index.isEmpty())
+            return (Message) index.poll();
+        return super.receive();
+    }
+
+    @Override
+    public Message receive(long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
+        if (index != null && !index.isEmpty())
+            return (Message) index.poll();
+        return super.receive(timeout, unit);
+    }
+
+    @Override
+    public int drainTo(Collection<? super Message> into, int max) {
+        int n = 0;
+        if (index != null) {
+            for (; n < max && !index.isEmpty(); n++)
+                into.add((Message) index.poll());
+        }
+        return n + super.drainTo(into, max - n);
+    }
+
+    @Override
+    public int receive(Collection<? super Message> into, int max) throws SuspendExecution, InterruptedException {
+        if (index != null && !index.isEmpty() && max > 0)
+            return drainTo(into, max);
+        return super.receive(into, max);
+    }
+
+    @Override
+    public int getQueueLength() {
+        return super.getQueueLength() + (index != null ? index.size() : 0);
+    }
+
     @Override
     protected void sendSync(Message message) throws SuspendExecution {
         super.sendSync(message);
@@ -105,6 +160,11 @@ public final class Mailbox<Message> extends SingleConsumerQueueChannel<Message>
     }
 
     List<Message> getSnapshot() {
+        if (index != null && !index.isEmpty()) {
+            final List<Message> snapshot = (List<Message>) (List) index.snapshot();
+            snapshot.addAll(queue().snapshot());
+            return snapshot;
+        }
         return queue().snapshot();
     }
 
@@ -23,6 +23,8 @@ import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
 public class MailboxConfig implements java.io.Serializable {
     private final int mailboxSize;
     private final OverflowPolicy policy;
+    private final boolean indexed;
+    private final boolean handOff;
 
     /**
      * Specifies a mailbox configuration with a given size and overflow policy.
@@ -34,8 +36,47 @@ public class MailboxConfig implements java.io.Serializable {
      * @param policy      Specifies what to do when the mailbox is full and a new message is added.
      */
     public MailboxConfig(int mailboxSize, OverflowPolicy policy) {
+        this(mailboxSize, policy, false);
+    }
+
+    /**
+     * Specifies a mailbox configuration with a given size and overflow policy, and whether the mailbox is indexed.
+     * <p>
+     * An indexed mailbox keeps the messages skipped by a selective receive indexed by class and by
+     * {@link co.paralleluniverse.actors.behaviors.IdMessage#getId() id}, so that a selective receive of a message of a given type
+     * (like {@link BasicActor#receive(Class) receive(Class)}) or with a given id (like
+     * {@link co.paralleluniverse.actors.behaviors.RequestReplyHelper#call(ActorRef, co.paralleluniverse.actors.behaviors.RequestMessage) RequestReplyHelper.call})
+     * doesn't examine the other messages waiting in the mailbox. This is worthwhile when many messages may be waiting in the
+     * mailbox while the actor awaits a particular one. Only an unbounded mailbox can be indexed.</p>
+     *
+     * @param mailboxSize The number of messages that can wait in the mailbox channel, with {@code -1} specifying an unbounded mailbox.
+     * @param policy      Specifies what to do when the mailbox is full and a new message is added.
+     * @param indexed     Whether skipped messages are indexed for selective receive.
+     */
+    public MailboxConfig(int mailboxSize, OverflowPolicy policy, boolean indexed) {
+        this(mailboxSize, policy, indexed, false);
+    }
+
+    /**
+     * Specifies a mailbox configuration with a given size and overflow policy, whether the mailbox is indexed, and whether it is in
+     * hand-off mode.
+     * <p>
+     * When a fiber sends a message to an actor whose mailbox is in hand-off mode, and the actor is waiting for a message, the actor
+     * runs on the sender's thread as soon as the sender parks or yields, rather than behind all other fibers waiting to run
+     * (see {@link co.paralleluniverse.strands.channels.QueueChannel#setHandOff(boolean) QueueChannel.setHandOff}).</p>
+     *
+     * @param mailboxSize The number of messages that can wait in the mailbox channel, with {@code -1} specifying an unbounded mailbox.
+     * @param policy      Specifies what to do when the mailbox is full and a new message is added.
+     * @param indexed     Whether skipped messages are indexed for selective receive.
+     * @param handOff     Whether a sending fiber hands off to the actor.
+     */
+    public MailboxConfig(int mailboxSize, OverflowPolicy policy, boolean indexed, boolean handOff) {
+        if (indexed && mailboxSize > 0)
+            throw new IllegalArgumentException("Only an unbounded mailbox can be indexed");
         this.mailboxSize = mailboxSize;
         this.policy = policy;
+        this.indexed = indexed;
+        this.handOff = handOff;
     }
 
     /**
@@ -53,8 +94,16 @@ public class MailboxConfig implements java.io.Serializable {
         return policy;
     }
 
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public boolean isHandOff() {
+        return handOff;
+    }
+
     @Override
     public String toString() {
-        return "MailboxConfig{" + "mailboxSize: " + mailboxSize + ", policy: " + policy + '}';
+        return "MailboxConfig{" + "mailboxSize: " + mailboxSize + ", policy: " + policy + ", indexed: " + indexed + ", handOff: " + handOff + '}';
     }
 }
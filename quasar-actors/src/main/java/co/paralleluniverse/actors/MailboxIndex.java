@@ -0,0 +1,262 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.actors;
+
+import co.paralleluniverse.actors.behaviors.IdMessage;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The messages an {@link MailboxConfig#isIndexed() indexed} mailbox has taken off its queue during a selective receive but which
+ * have not yet been received, in arrival order, and indexed by class and by {@link IdMessage#getId() id} so that a selective receive
+ * of a given type or id doesn't need to examine the others.
+ * <p>
+ * Link death signals (an {@link ExitMessage} with no watch) are kept in a chain of their own, as a selective receive handles them
+ * as soon as they're reached; other {@link ExitMessage}s, which a selective receive never selects, are not indexed.</p>
+ * <p>
+ * Used only by the mailbox's owning strand. An index is serialized as its messages, in arrival order, and rebuilt when
+ * deserialized.</p>
+ *
+ * @author pron
+ */
+final class MailboxIndex implements Serializable {
+    private final Map<Class<?>, Chain> byClass = new HashMap<>();
+    private final Map<Object, Chain> byId = new HashMap<>();
+    private final Chain signals = new Chain();
+    private Entry head;
+    private Entry tail;
+    private int size;
+    private long seq;
+
+    static final class Entry {
+        final Object message;
+        final long seq;
+        Entry prev, next;   // arrival order
+        Entry prevInChain, nextInChain;   // class or signal chain
+        Entry prevWithId, nextWithId;
+        boolean removed;
+        boolean processing; // passed to a MessageProcessor up the stack
+
+        Entry(Object message, long seq) {
+            this.message = message;
+            this.seq = seq;
+        }
+    }
+
+    private static final class Chain {
+        Entry head;
+        Entry tail;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void add(Object message) {
+        final Entry e = new Entry(message, seq++);
+        e.prev = tail;
+        if (tail != null)
+            tail.next = e;
+        else
+            head = e;
+        tail = e;
+        size++;
+
+        final Chain chain = chainOf(message, true);
+        if (chain != null) {
+            e.prevInChain = chain.tail;
+            if (chain.tail != null)
+                chain.tail.nextInChain = e;
+            else
+                chain.head = e;
+            chain.tail = e;
+        }
+
+        if (message instanceof IdMessage && !(message instanceof ExitMessage)) {
+            final Object id = ((IdMessage) message).getId();
+            if (id != null) {
+                Chain c = byId.get(id);
+                if (c == null) {
+                    c = new Chain();
+                    byId.put(id, c);
+                }
+                e.prevWithId = c.tail;
+                if (c.tail != null)
+                    c.tail.nextWithId = e;
+                else
+                    c.head = e;
+                c.tail = e;
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the oldest message.
+     */
+    Object poll() {
+        final Entry e = head;
+        if (e == null)
+            return null;
+        remove(e);
+        return e.message;
+    }
+
+    void remove(Entry e) {
+        assert !e.removed;
+        e.removed = true;
+        size--;
+
+        // e.next is kept, so that a scan positioned at e can go on (see next)
+        if (e.prev != null)
+            e.prev.next = e.next;
+        else
+            head = e.next;
+        if (e.next != null)
+            e.next.prev = e.prev;
+        else
+            tail = e.prev;
+
+        final Chain chain = chainOf(e.message, false);
+        if (chain != null) {
+            if (e.prevInChain != null)
+                e.prevInChain.nextInChain = e.nextInChain;
+            else
+                chain.head = e.nextInChain;
+            if (e.nextInChain != null)
+                e.nextInChain.prevInChain = e.prevInChain;
+            else
+                chain.tail = e.prevInChain;
+            if (chain.head == null && chain != signals)
+                byClass.remove(e.message.getClass());
+        }
+
+        if (e.message instanceof IdMessage && !(e.message instanceof ExitMessage)) {
+            final Object id = ((IdMessage) e.message).getId();
+            final Chain c = id != null ? byId.get(id) : null;
+            if (c != null) {
+                if (e.prevWithId != null)
+                    e.prevWithId.nextWithId = e.nextWithId;
+                else
+                    c.head = e.nextWithId;
+                if (e.nextWithId != null)
+                    e.nextWithId.prevWithId = e.prevWithId;
+                else
+                    c.tail = e.prevWithId;
+                if (c.head == null)
+                    byId.remove(id);
+            }
+        }
+    }
+
+    Entry first() {
+        return head;
+    }
+
+    /**
+     * Returns the entry following the given one in arrival order, even if the given entry has been removed since it was reached.
+     */
+    Entry next(Entry e) {
+        if (!e.removed)
+            return e.next;
+        // e's successor might have been removed, too, or e might have been the tail when removed
+        Entry x = tail;
+        Entry r = null;
+        while (x != null && x.seq > e.seq) {
+            r = x;
+            x = x.prev;
+        }
+        return r;
+    }
+
+    /**
+     * Returns the oldest link death signal.
+     */
+    Entry firstSignal() {
+        return signals.head;
+    }
+
+    /**
+     * Returns the oldest message of the given type that isn't being processed, or {@code null} if none.
+     */
+    Entry firstOfType(Class<?> type) {
+        Entry first = null;
+        for (Map.Entry<Class<?>, Chain> c : byClass.entrySet()) {
+            if (type.isAssignableFrom(c.getKey())) {
+                Entry e = c.getValue().head;
+                while (e != null && e.processing)
+                    e = e.nextInChain;
+                if (e != null && (first == null || e.seq < first.seq))
+                    first = e;
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Returns the oldest {@link IdMessage} of the given type and id that isn't being processed, or {@code null} if none.
+     */
+    Entry firstWithId(Object id, Class<?> type) {
+        final Chain c = byId.get(id);
+        for (Entry e = c != null ? c.head : null; e != null; e = e.nextWithId) {
+            if (!e.processing && type.isInstance(e.message))
+                return e;
+        }
+        return null;
+    }
+
+    List<Object> snapshot() {
+        final List<Object> list = new ArrayList<>(size);
+        for (Entry e = head; e != null; e = e.next)
+            list.add(e.message);
+        return list;
+    }
+
+    private Object writeReplace() {
+        return new SerializedIndex(snapshot().toArray());
+    }
+
+    private static final class SerializedIndex implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final Object[] messages;
+
+        SerializedIndex(Object[] messages) {
+            this.messages = messages;
+        }
+
+        private Object readResolve() {
+            final MailboxIndex index = new MailboxIndex();
+            for (Object m : messages)
+                index.add(m);
+            return index;
+        }
+    }
+
+    private Chain chainOf(Object message, boolean create) {
+        if (message instanceof ExitMessage)
+            return ((ExitMessage) message).getWatch() == null ? signals : null;
+        Chain c = byClass.get(message.getClass());
+        if (c == null && create) {
+            c = new Chain();
+            byClass.put(message.getClass(), c);
+        }
+        return c;
+    }
+}
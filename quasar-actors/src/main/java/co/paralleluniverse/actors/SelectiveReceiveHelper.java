@@ -12,6 +12,7 @@
  */
 package co.paralleluniverse.actors;
 
+import co.paralleluniverse.actors.behaviors.IdMessage;
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.strands.Timeout;
 import co.paralleluniverse.strands.queues.QueueIterator;
@@ -95,6 +96,9 @@ public class SelectiveReceiveHelper<Message> implements java.io.Serializable {
         final long deadline = start + left;
 
         actor.monitorResetSkippedMessages();
+        if (mailbox.index() != null)
+            return receiveIndexed(mailbox.index(), timeout, unit, left, deadline, proc);
+
         QueueIterator<Object> it = mailbox.queue().iterator();
         for (int i = 0;; i++) {
             if (actor.flightRecorder != null)
@@ -169,6 +173,87 @@ public class SelectiveReceiveHelper<Message> implements java.io.Serializable {
         }
     }
 
+    /**
+     * Selective receive with an {@link MailboxConfig#isIndexed() indexed} mailbox. New messages are moved from the mailbox's queue
+     * to the index, where a {@link #ofType(Class) type} or {@link #ofType(Class, Object) id} selector looks them up directly.
+     * Other processors examine the indexed messages in order, as they would the queue.
+     */
+    private <T> T receiveIndexed(MailboxIndex index, long timeout, TimeUnit unit, long left, long deadline, MessageProcessor<? super Message, T> proc) throws TimeoutException, SuspendExecution, InterruptedException {
+        final Mailbox<Object> mailbox = actor.mailbox();
+        MailboxIndex.Entry last = null; // the last entry examined by a general processor
+        for (int i = 0;; i++) {
+            if (actor.flightRecorder != null)
+                actor.record(1, "SelctiveReceiveHelper", "receive", "%s waiting for a message. %s", this, timeout > 0 ? "millis left: " + TimeUnit.MILLISECONDS.convert(left, TimeUnit.NANOSECONDS) : "");
+
+            for (Object m; (m = mailbox.queue().poll()) != null;)
+                index.add(m);
+
+            final MailboxIndex.Entry e;
+            if (proc instanceof TypeSelector || proc instanceof IdSelector) {
+                final MailboxIndex.Entry found = proc instanceof IdSelector
+                        ? index.firstWithId(((IdSelector) proc).id, ((IdSelector) proc).type)
+                        : index.firstOfType(((TypeSelector) proc).type);
+                final MailboxIndex.Entry signal = index.firstSignal();
+                e = signal != null && (found == null || signal.seq < found.seq) ? signal : found;
+            } else {
+                MailboxIndex.Entry x = last != null ? index.next(last) : index.first();
+                while (x != null && (x.processing || (x.message instanceof ExitMessage && ((ExitMessage) x.message).getWatch() != null)))
+                    x = index.next(x); // skip messages being processed up the stack, and delayed lifecycle messages
+                e = x;
+            }
+
+            if (e != null) {
+                final Object m = e.message;
+                actor.record(1, "SelctiveReceiveHelper", "receive", "Received %s <- %s", this, m);
+                actor.monitorAddMessage();
+                if (m instanceof ExitMessage) { // a link death signal
+                    index.remove(e);
+                    handleLifecycleMessage((LifecycleMessage) m);
+                    continue;
+                }
+                last = e;
+                e.processing = true;
+                try {
+                    T res = proc.process((Message) m);
+                    if (res != null) {
+                        if (!e.removed) // another call to receive from within the processor may have deleted msg
+                            index.remove(e);
+                        return res;
+                    }
+                } catch (Exception ex) {
+                    if (!e.removed)
+                        index.remove(e);
+                    throw ex;
+                } finally {
+                    e.processing = false;
+                }
+                actor.record(1, "SelctiveReceiveHelper", "receive", "%s skipped %s", this, m);
+                actor.monitorSkippedMessage();
+            } else {
+                mailbox.lock();
+                try {
+                    if (!mailbox.queue().isEmpty())
+                        continue;
+                    if (unit == null)
+                        mailbox.await(i);
+                    else if (timeout > 0) {
+                        mailbox.await(i, left, TimeUnit.NANOSECONDS);
+
+                        left = deadline - System.nanoTime();
+                        if (left <= 0) {
+                            actor.record(1, "Actor", "receive", "%s timed out.", this);
+                            throw new TimeoutException();
+                        }
+                    } else {
+                        return null;
+                    }
+                } finally {
+                    mailbox.unlock();
+                }
+            }
+        }
+    }
+
     /**
      * Performs a selective receive. This method blocks (but for no longer than the given timeout) until a message that is
      * {@link MessageProcessor#process(java.lang.Object) selected} by the given {@link MessageProcessor} is available in the mailbox,
@@ -219,12 +304,49 @@ public class SelectiveReceiveHelper<Message> implements java.io.Serializable {
      * @return a new {@link MessageProcessor} that selects messages of the given class.
      */
     public static <Message, M extends Message> MessageProcessor<Message, M> ofType(final Class<M> type) {
-        return new MessageProcessor<Message, M>() {
-            @Override
-            public M process(Message m) {
-                return type.isInstance(m) ? type.cast(m) : null;
-            }
-        };
+        return new TypeSelector<>(type);
+    }
+
+    /**
+     * Creates a {@link MessageProcessor} that selects {@link IdMessage}s of the given class with the given id.
+     *
+     * @param <M>
+     * @param <Message>
+     * @param type      The class of the messages to select.
+     * @param id        The {@link IdMessage#getId() id} of the messages to select.
+     * @return a new {@link MessageProcessor} that selects messages of the given class and id.
+     */
+    public static <Message, M extends Message> MessageProcessor<Message, M> ofType(final Class<M> type, final Object id) {
+        return new IdSelector<>(type, id);
+    }
+
+    // an indexed mailbox finds the messages selected by these without examining others
+    private static class TypeSelector<Message, M extends Message> implements MessageProcessor<Message, M> {
+        final Class<M> type;
+
+        TypeSelector(Class<M> type) {
+            this.type = type;
+        }
+
+        @Override
+        public M process(Message m) {
+            return type.isInstance(m) ? type.cast(m) : null;
+        }
+    }
+
+    private static class IdSelector<Message, M extends Message> implements MessageProcessor<Message, M> {
+        final Class<M> type;
+        final Object id;
+
+        IdSelector(Class<M> type, Object id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public M process(Message m) {
+            return type.isInstance(m) && m instanceof IdMessage && id.equals(((IdMessage) m).getId()) ? type.cast(m) : null;
+        }
     }
 
     /**
@@ -22,7 +22,6 @@ import co.paralleluniverse.actors.ExitMessage;
 import co.paralleluniverse.actors.LifecycleMessage;
 import co.paralleluniverse.actors.LocalActor;
 import co.paralleluniverse.actors.MailboxConfig;
-import co.paralleluniverse.actors.MessageProcessor;
 import co.paralleluniverse.actors.SelectiveReceiveHelper;
 import co.paralleluniverse.common.util.Exceptions;
 import co.paralleluniverse.fibers.SuspendExecution;
@@ -171,12 +170,7 @@ public final class RequestReplyHelper {
         };
         try {
             actor.sendSync(m);
-            final ResponseMessage response = (ResponseMessage) helper.receive(timeout, unit, new MessageProcessor<Object, Object>() {
-                @Override
-                public Object process(Object m) throws SuspendExecution, InterruptedException {
-                    return (m instanceof ResponseMessage && id.equals(((ResponseMessage) m).getId())) ? m : null;
-                }
-            });
+            final ResponseMessage response = helper.receive(timeout, unit, SelectiveReceiveHelper.ofType(ResponseMessage.class, id));
             currentActor.unlink(actor); // no need to unlink in case of receiver death, so not done in finally block
 
             if (response instanceof ErrorResponseMessage)
@@ -223,6 +223,61 @@ public class ActorTest {
     private class TypedReceiveB {
     };
 
+    @Test
+    public void testBatchReceive() throws Exception {
+        ActorRef<Message> actor = new BasicActor<Message, List<Integer>>(mailboxConfig) {
+            @Override
+            protected List<Integer> doRun() throws SuspendExecution, InterruptedException {
+                Strand.sleep(100);
+                List<Message> batch = new ArrayList<>();
+                int n1 = receive(batch, 3);
+                int n2 = receive(batch, 10);
+                List<Integer> res = new ArrayList<>(Arrays.asList(n1, n2));
+                for (Message m : batch)
+                    res.add(m.num);
+                return res;
+            }
+        }.spawn();
+
+        for (int i = 1; i <= 5; i++)
+            actor.send(new Message(i));
+
+        assertThat(LocalActor.<List<Integer>>get(actor), equalTo(Arrays.asList(3, 2, 1, 2, 3, 4, 5)));
+    }
+
+    @Test
+    public void testBatchReceiveWhenFilterThrows() throws Exception {
+        ActorRef<Message> actor = new BasicActor<Message, List<Integer>>(mailboxConfig) {
+            @Override
+            protected Message filterMessage(Object m) {
+                if (((Message) m).num == 2)
+                    throw new IllegalStateException();
+                return super.filterMessage(m);
+            }
+
+            @Override
+            protected List<Integer> doRun() throws SuspendExecution, InterruptedException {
+                Strand.sleep(100);
+                List<Message> batch = new ArrayList<>();
+                try {
+                    receive(batch, 3);
+                    fail();
+                } catch (IllegalStateException e) {
+                }
+                int n = receive(batch, 10);
+                List<Integer> res = new ArrayList<>(Arrays.asList(n));
+                for (Message m : batch)
+                    res.add(m.num);
+                return res;
+            }
+        }.spawn();
+
+        for (int i = 1; i <= 5; i++)
+            actor.send(new Message(i));
+
+        assertThat(LocalActor.<List<Integer>>get(actor), equalTo(Arrays.asList(2, 1, 3, 4, 5)));
+    }
+
     @Test
     public void testTypedReceive() throws Exception {
         Actor<Object, List<Object>> actor = spawnActor(new BasicActor<Object, List<Object>>(mailboxConfig) {
@@ -330,6 +385,34 @@ public class ActorTest {
         assertThat(actor.get(), equalTo("aa"));
     }
 
+    @Test
+    public void testIndexedMailbox() throws Exception {
+        Actor<Object, List<Object>> actor = spawnActor(new BasicActor<Object, List<Object>>(new MailboxConfig(-1, Channels.OverflowPolicy.THROW, true)) {
+            @Override
+            protected List<Object> doRun() throws SuspendExecution, InterruptedException {
+                final List<Object> list = new ArrayList<>();
+                list.add(receive(String.class));
+                list.add(receive(new MessageProcessor<Object, Integer>() {
+                    public Integer process(Object m) throws SuspendExecution, InterruptedException {
+                        return m instanceof Message && ((Message) m).num == 5 ? Integer.valueOf(((Message) m).num) : null;
+                    }
+                }));
+                list.add(receive(String.class));
+                for (int i = 0; i < 9; i++)
+                    list.add(((Message) receive()).num);
+                return list;
+            }
+        });
+
+        for (int i = 0; i < 10; i++)
+            actor.ref().send(new Message(i));
+        actor.ref().send("hello");
+        Thread.sleep(50);
+        actor.ref().send("world");
+
+        assertThat(actor.get(), equalTo(Arrays.<Object>asList("hello", 5, "world", 0, 1, 2, 3, 4, 6, 7, 8, 9)));
+    }
+
     @Test
     public void whenLinkedActorDiesDuringSelectiveReceiveThenReceiverDies() throws Exception {
         final Actor<Message, Void> a = spawnActor(new BasicActor<Message, Void>(mailboxConfig) {
@@ -510,6 +593,44 @@ public class ActorTest {
         actor2.join();
     }
 
+    @Test
+    public void testHandOffMailbox() throws Exception {
+        final MailboxConfig handOffConfig = new MailboxConfig(10, Channels.OverflowPolicy.THROW, false, true);
+        final AtomicReference<ActorRef<Message>> pinger = new AtomicReference<>();
+        final AtomicReference<ActorRef<Message>> ponger = new AtomicReference<>();
+
+        final Actor<Message, Integer> actor1 = spawnActor(new BasicActor<Message, Integer>(handOffConfig) {
+            @Override
+            protected Integer doRun() throws SuspendExecution, InterruptedException {
+                return relay(this, pinger);
+            }
+        });
+        ponger.set(actor1.ref());
+        final Actor<Message, Integer> actor2 = spawnActor(new BasicActor<Message, Integer>(handOffConfig) {
+            @Override
+            protected Integer doRun() throws SuspendExecution, InterruptedException {
+                pinger.set(ref());
+                ponger.get().send(new Message(1000));
+                return relay(this, ponger);
+            }
+        });
+
+        assertThat(actor1.get() + actor2.get(), is(1001));
+    }
+
+    private static int relay(Actor<Message, ?> self, AtomicReference<ActorRef<Message>> other) throws SuspendExecution, InterruptedException {
+        int received = 0;
+        for (;;) {
+            final Message m = self.receive();
+            received++;
+            if (m.num == 0)
+                return received;
+            other.get().send(new Message(m.num - 1));
+            if (m.num == 1)
+                return received;
+        }
+    }
+
     @Test
     public void testLink() throws Exception {
         Actor<Message, Void> actor1 = spawnActor(new BasicActor<Message, Void>(mailboxConfig) {
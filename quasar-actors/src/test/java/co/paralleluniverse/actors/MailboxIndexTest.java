@@ -0,0 +1,84 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.actors;
+
+import co.paralleluniverse.actors.behaviors.IdMessage;
+import co.paralleluniverse.io.serialization.ByteArraySerializer;
+import co.paralleluniverse.io.serialization.JDKSerializer;
+import co.paralleluniverse.io.serialization.kryo.KryoSerializer;
+import java.io.Serializable;
+import java.util.Arrays;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author pron
+ */
+public class MailboxIndexTest {
+    @Test
+    public void testJDKSerialization() {
+        testSerialization(new JDKSerializer());
+    }
+
+    @Test
+    public void testKryoSerialization() {
+        testSerialization(new KryoSerializer());
+    }
+
+    private void testSerialization(ByteArraySerializer ser) {
+        final MailboxIndex index = new MailboxIndex();
+        index.add("a");
+        index.add(new Request(1));
+        index.add(2);
+        index.add(new Request(3));
+        index.add("b");
+        index.remove(index.firstOfType(Integer.class));
+
+        final MailboxIndex copy = (MailboxIndex) ser.read(ser.write(index));
+        assertThat(copy.size(), is(4));
+        assertThat(copy.snapshot(), equalTo(Arrays.<Object>asList("a", new Request(1), new Request(3), "b")));
+        assertThat(copy.firstOfType(Request.class).message, equalTo((Object) new Request(1)));
+        assertThat(copy.firstWithId(3, Request.class).message, equalTo((Object) new Request(3)));
+        assertThat(copy.firstOfType(Integer.class), is(nullValue()));
+
+        assertThat(copy.poll(), equalTo((Object) "a"));
+        copy.add("c");
+        assertThat(copy.snapshot(), equalTo(Arrays.<Object>asList(new Request(1), new Request(3), "b", "c")));
+    }
+
+    static class Request implements IdMessage, Serializable {
+        final int id;
+
+        Request(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public Object getId() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Request && ((Request) obj).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+}
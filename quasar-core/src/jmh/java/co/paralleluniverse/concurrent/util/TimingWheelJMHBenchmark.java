@@ -0,0 +1,172 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.concurrent.util;
+
+import java.util.Queue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Control;
+
+/**
+ * Compares {@link TimingWheelDelayQueue} with the heap-based delay queues used by the fiber timer.
+ * <p>
+ * The {@code cancel} benchmarks model the common case of timeouts that never fire: with {@code PENDING} timers already
+ * queued, each operation schedules a timer and then cancels it. The {@code delayQueue*} groups measure a producer/consumer
+ * workload of short delays, like {@link DelayQueueJMHBenchmark}.</p>
+ *
+ * @author pron
+ */
+public class TimingWheelJMHBenchmark {
+    private static final String BENCHMARK = TimingWheelJMHBenchmark.class.getName() + ".*";
+
+    public static void main(String[] args) throws Exception {
+        Main.main(new String[]{BENCHMARK,
+            "-f", "1",
+            "-i", "5",
+            "-r", "5000ms",
+            "-tg", "1,2",
+            "-w", "5000ms",
+            "-wi", "3",
+            "-prof", "gc"
+        });
+    }
+
+    public static class Timer extends TimingWheelDelayQueue.Entry {
+        private final long time;
+
+        public Timer(long delayMillis) {
+            this.time = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(time, ((Timer) o).time);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Pending {
+        @Param({"100", "10000"})
+        public int PENDING;
+        Queue<Timer> delayQueue;
+        Queue<Timer> singleConsumerNonblockingProducerDelayQueue;
+        Queue<Timer> timingWheel;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            delayQueue = fill(new java.util.concurrent.DelayQueue<Timer>());
+            singleConsumerNonblockingProducerDelayQueue = fill(new SingleConsumerNonblockingProducerDelayQueue<Timer>());
+            timingWheel = fill(new TimingWheelDelayQueue<Timer>());
+        }
+
+        private Queue<Timer> fill(Queue<Timer> q) {
+            for (int i = 0; i < PENDING; i++)
+                q.offer(new Timer(TimeUnit.HOURS.toMillis(1) + i));
+            return q;
+        }
+    }
+
+    @State(Scope.Group)
+    public static class Q {
+        Queue<Timer> delayQueue = new java.util.concurrent.DelayQueue<Timer>();
+        Queue<Timer> singleConsumerNonblockingProducerDelayQueue = new SingleConsumerNonblockingProducerDelayQueue<Timer>();
+        Queue<Timer> timingWheel = new TimingWheelDelayQueue<Timer>();
+    }
+
+    private static boolean scheduleAndCancel(Queue<Timer> queue) {
+        final Timer t = new Timer(ThreadLocalRandom.current().nextInt(10, 1000));
+        queue.offer(t);
+        final boolean removed = queue.remove(t);
+        queue.poll(); // nothing expires; lets the timing wheel process the pending removal as the timer thread would
+        return removed;
+    }
+
+    @Benchmark
+    public boolean cancel_DelayQueue(Pending p) {
+        return scheduleAndCancel(p.delayQueue);
+    }
+
+    @Benchmark
+    public boolean cancel_SingleConsumerNonblockingProducerDelayQueue(Pending p) {
+        return scheduleAndCancel(p.singleConsumerNonblockingProducerDelayQueue);
+    }
+
+    @Benchmark
+    public boolean cancel_TimingWheel(Pending p) {
+        return scheduleAndCancel(p.timingWheel);
+    }
+
+    private static void write(Control cnt, Queue<Timer> queue) {
+        while (!cnt.stopMeasurement && !queue.offer(new Timer(ThreadLocalRandom.current().nextInt(0, 11))))
+            Thread.yield();
+    }
+
+    private static Timer read(Control cnt, Queue<Timer> queue) {
+        Timer result = null;
+        while (!cnt.stopMeasurement && null == (result = queue.poll()))
+            Thread.yield();
+        return result;
+    }
+
+    // it is important that "read" is lexicographically lower than "write", as this is the order specified in the -tg flag
+    @Benchmark
+    @Group("delayQueue")
+    public Object read_DelayQueue(Control cnt, Q q) {
+        return read(cnt, q.delayQueue);
+    }
+
+    @Benchmark
+    @Group("delayQueue")
+    public void write_DelayQueue(Control cnt, Q q) {
+        write(cnt, q.delayQueue);
+    }
+
+    @Benchmark
+    @Group("delayQueueSingleConsumer")
+    public Object read_SingleConsumerNonblockingProducerDelayQueue(Control cnt, Q q) {
+        return read(cnt, q.singleConsumerNonblockingProducerDelayQueue);
+    }
+
+    @Benchmark
+    @Group("delayQueueSingleConsumer")
+    public void write_SingleConsumerNonblockingProducerDelayQueue(Control cnt, Q q) {
+        write(cnt, q.singleConsumerNonblockingProducerDelayQueue);
+    }
+
+    @Benchmark
+    @Group("delayQueueTimingWheel")
+    public Object read_TimingWheel(Control cnt, Q q) {
+        return read(cnt, q.timingWheel);
+    }
+
+    @Benchmark
+    @Group("delayQueueTimingWheel")
+    public void write_TimingWheel(Control cnt, Q q) {
+        write(cnt, q.timingWheel);
+    }
+}
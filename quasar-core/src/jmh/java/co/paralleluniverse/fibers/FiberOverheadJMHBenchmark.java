@@ -13,6 +13,7 @@
  */
 package co.paralleluniverse.fibers;
 
+import co.paralleluniverse.strands.SuspendableCallable;
 import co.paralleluniverse.strands.SuspendableRunnable;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
@@ -72,14 +73,57 @@ public class FiberOverheadJMHBenchmark {
         return res;
     }
 
+    /**
+     * A fiber switch on a scheduler's worker thread, which includes switching the thread-local maps and the context class loader;
+     * neither the fiber nor the worker has used any {@code ThreadLocal}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(YIELDS)
+    public Object fiberSwitch() throws Exception {
+        return yielder(false).start().get();
+    }
+
+    /**
+     * Like {@link #fiberSwitch()}, but with a fiber that doesn't switch the thread's locals. The difference is the cost of the switch.
+     */
+    @Benchmark
+    @OperationsPerInvocation(YIELDS)
+    public Object fiberSwitchNoLocals() throws Exception {
+        return yielder(true).start().get();
+    }
+
+    private Fiber<Integer> yielder(boolean noLocals) {
+        final Fiber<Integer> f = new Fiber<>(scheduler, new SuspendableCallable<Integer>() {
+            @Override
+            public Integer run() throws SuspendExecution, InterruptedException {
+                int i;
+                for (i = 0; i < YIELDS; i++)
+                    Fiber.yield();
+                return i;
+            }
+        });
+        if (noLocals)
+            f.setNoLocals(true);
+        return f;
+    }
+
+    private static final int YIELDS = 1000;
     private long res;
     private long rands[];
     private Runnable runnable;
     private Fiber fiber;
     private Fiber fiber2;
+    private FiberScheduler scheduler;
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+    }
 
     @Setup
     public void preapre() {
+        scheduler = new FiberForkJoinScheduler("overhead", 1);
+
         rands = new long[(DEPTH + 1) * 4];
         Random rnd = ThreadLocalRandom.current();
         for (int i = 0; i < rands.length; i++)
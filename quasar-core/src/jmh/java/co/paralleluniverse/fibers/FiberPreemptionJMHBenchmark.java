@@ -0,0 +1,96 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.strands.SuspendableCallable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * The latency of short fibers competing with CPU-bound fibers (two per worker) for the scheduler's workers, with and without time-slice
+ * preemption. Look at the high percentiles.
+ * Must be run with the Quasar agent; {@link #main(String[]) main} turns on its preemption mode.
+ *
+ * @author pron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FiberPreemptionJMHBenchmark {
+    @Param({"0", "1000"})
+    public long TIME_SLICE_MICROS;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(FiberPreemptionJMHBenchmark.class.getName() + ".*")
+                .forks(1)
+                .jvmArgsAppend("-Dco.paralleluniverse.fibers.instrument.preemption=true")
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private FiberScheduler scheduler;
+    private Fiber<?>[] batch;
+    private volatile boolean stop;
+
+    @Setup
+    public void prepare() {
+        final int workers = Runtime.getRuntime().availableProcessors();
+        scheduler = new FiberForkJoinScheduler("preemption-benchmark", workers);
+        scheduler.setTimeSlice(TIME_SLICE_MICROS, TimeUnit.MICROSECONDS);
+        stop = false;
+        batch = new Fiber<?>[2 * workers];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = new Fiber<Long>(scheduler, new SuspendableCallable<Long>() {
+                @Override
+                public Long run() throws SuspendExecution, InterruptedException {
+                    long x = 0;
+                    while (!stop)
+                        x = work(x, 10_000);
+                    return x;
+                }
+            }).start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        stop = true;
+        for (Fiber<?> f : batch)
+            f.join();
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public Object request() throws Exception {
+        return new Fiber<Long>(scheduler, new SuspendableCallable<Long>() {
+            @Override
+            public Long run() throws SuspendExecution, InterruptedException {
+                return work(1, 100);
+            }
+        }).start().get();
+    }
+
+    static long work(long x, int n) throws SuspendExecution {
+        for (int i = 0; i < n; i++)
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        return x;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.SuspendableCallable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * The latency of short high-priority fibers on a pool kept busy by low-priority bulk-processing fibers (eight per worker), which yield
+ * every few microseconds. {@link FiberForkJoinScheduler} ignores the priorities, so a request waits behind the bulk fibers queued ahead of it;
+ * {@link FiberPriorityScheduler} runs it next. Look at the high percentiles.
+ *
+ * @author pron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FiberPriorityJMHBenchmark {
+    private static final int BULK_PER_WORKER = 8;
+
+    @Param({"forkjoin", "priority"})
+    public String SCHEDULER;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(FiberPriorityJMHBenchmark.class.getName() + ".*")
+                .forks(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private FiberScheduler scheduler;
+    private Fiber<?>[] bulk;
+    private volatile boolean stop;
+
+    @Setup
+    public void prepare() {
+        final int workers = Runtime.getRuntime().availableProcessors();
+        switch (SCHEDULER) {
+            case "forkjoin":
+                scheduler = new FiberForkJoinScheduler("priority-benchmark", workers);
+                break;
+            case "priority":
+                scheduler = new FiberPriorityScheduler("priority-benchmark", workers);
+                break;
+            default:
+                throw new IllegalArgumentException(SCHEDULER);
+        }
+        stop = false;
+        bulk = new Fiber<?>[BULK_PER_WORKER * workers];
+        for (int i = 0; i < bulk.length; i++) {
+            bulk[i] = new Fiber<Long>(scheduler, new SuspendableCallable<Long>() {
+                @Override
+                public Long run() throws SuspendExecution, InterruptedException {
+                    long x = 0;
+                    while (!stop) {
+                        x = work(x, 10_000);
+                        Fiber.yield();
+                    }
+                    return x;
+                }
+            }).setPriority(Strand.MIN_PRIORITY).start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        stop = true;
+        for (Fiber<?> f : bulk)
+            f.join();
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public Object request() throws Exception {
+        final Fiber<Long> fiber = new Fiber<Long>(scheduler, new SuspendableCallable<Long>() {
+            @Override
+            public Long run() throws SuspendExecution, InterruptedException {
+                return work(1, 100);
+            }
+        });
+        fiber.setPriority(Strand.MAX_PRIORITY);
+        return fiber.start().get();
+    }
+
+    static long work(long x, int n) {
+        for (int i = 0; i < n; i++)
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        return x;
+    }
+}
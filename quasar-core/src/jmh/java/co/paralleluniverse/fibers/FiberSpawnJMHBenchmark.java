@@ -0,0 +1,101 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.strands.SuspendableRunnable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Measures the cost -- and, with the GC profiler, the allocation ({@code gc.alloc.rate.norm}) -- of spawning and joining
+ * short-lived fibers from within a fiber, with and without stack pooling.
+ *
+ * @author pron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FiberSpawnJMHBenchmark {
+    private static final int FIBERS_PER_OP = 1000;
+
+    @Param({"3", "20"})
+    public int DEPTH;
+
+    public static void main(String[] args) throws Exception {
+        for (String pool : new String[]{"false", "true"}) {
+            new Runner(new OptionsBuilder()
+                    .include(FiberSpawnJMHBenchmark.class.getName() + ".*")
+                    .forks(1)
+                    .jvmArgsAppend("-Dco.paralleluniverse.fibers.stackPool=" + pool)
+                    .warmupTime(TimeValue.seconds(5))
+                    .warmupIterations(3)
+                    .measurementTime(TimeValue.seconds(5))
+                    .measurementIterations(5)
+                    .addProfiler(GCProfiler.class) // report allocation per op
+                    .build()).run();
+        }
+    }
+
+    private FiberScheduler scheduler;
+
+    @Setup
+    public void prepare() {
+        scheduler = new FiberForkJoinScheduler("spawn-benchmark", Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Each op spawns {@value #FIBERS_PER_OP} fibers from a parent fiber and joins them, so children are created on, and
+     * terminate on, the scheduler's worker threads.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FIBERS_PER_OP)
+    public Object spawnAndJoin() throws Exception {
+        return new Fiber<Void>(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                final Fiber[] children = new Fiber[FIBERS_PER_OP];
+                for (int i = 0; i < children.length; i++)
+                    children[i] = new Fiber<Void>(scheduler, new SuspendableRunnable() {
+                        @Override
+                        public void run() throws SuspendExecution, InterruptedException {
+                            recursive(DEPTH);
+                        }
+                    }).start();
+                try {
+                    for (Fiber child : children)
+                        child.join();
+                } catch (ExecutionException e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }).start().get();
+    }
+
+    private static int recursive(int r) throws SuspendExecution {
+        if (r > 0)
+            return 1 + recursive(r - 1);
+        Fiber.yield();
+        return 0;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers.instrument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput of class transformation -- as done by the agent -- when many threads load classes at once.
+ * All threads share a single {@link QuasarInstrumentor} and class loader, and so a single {@link MethodDatabase}; with no contention
+ * on the database, throughput should scale with the number of threads.
+ *
+ * @author pron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ConcurrentInstrumentationJMHBenchmark {
+    private static final String JAR = "quasar-core"; // instrument the classes in jars whose name contains this string
+
+    public static void main(String[] args) throws Exception {
+        final int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            new Runner(new OptionsBuilder()
+                    .include(ConcurrentInstrumentationJMHBenchmark.class.getName() + ".*")
+                    .threads(threads)
+                    .build()).run();
+        }
+    }
+
+    private QuasarInstrumentor instrumentor;
+    private URLClassLoader classLoader;
+    private final List<String> classNames = new ArrayList<>();
+    private final List<byte[]> classBytes = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final List<URL> urls = new ArrayList<>();
+        for (String element : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (!element.endsWith(".jar"))
+                continue;
+            urls.add(new File(element).toURI().toURL());
+            if (!new File(element).getName().contains(JAR))
+                continue;
+            try (JarFile jar = new JarFile(element)) {
+                for (Enumeration<JarEntry> es = jar.entries(); es.hasMoreElements();) {
+                    final JarEntry e = es.nextElement();
+                    final String name = e.getName();
+                    if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class")) {
+                        classNames.add(name.substring(0, name.length() - ".class".length()));
+                        classBytes.add(read(jar.getInputStream(e)));
+                    }
+                }
+            }
+        }
+        if (classNames.isEmpty())
+            throw new IllegalStateException("No classes found in a jar named *" + JAR + "* on the class path");
+        classLoader = new URLClassLoader(urls.toArray(new URL[0]), null);
+        instrumentor = new QuasarInstrumentor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        classLoader.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = (int) (Thread.currentThread().getId() * 7919);
+    }
+
+    /**
+     * Transforms one class. Each thread goes over all classes, starting at a different position.
+     */
+    @Benchmark
+    public byte[] transform(Cursor cursor) throws IOException {
+        final int i = (cursor.next++ & Integer.MAX_VALUE) % classNames.size();
+        try {
+            return instrumentor.instrumentClass(classLoader, classNames.get(i), classBytes.get(i));
+        } catch (UnableToInstrumentException e) {
+            return null;
+        }
+    }
+
+    private static byte[] read(InputStream is) throws IOException {
+        try (InputStream in = is) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[8192];
+            for (int n; (n = in.read(buf)) > 0;)
+                out.write(buf, 0, n);
+            return out.toByteArray();
+        }
+    }
+}
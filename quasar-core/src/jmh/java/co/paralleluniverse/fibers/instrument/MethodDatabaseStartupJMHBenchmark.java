@@ -0,0 +1,113 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers.instrument;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Simulates the {@link MethodDatabase} work done at agent startup: a fresh database, as in a new JVM, collects the class entries of
+ * every class on the benchmark's class path, with and without a warm {@link MethodDatabaseCache} on disk.
+ *
+ * @author pron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MethodDatabaseStartupJMHBenchmark {
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(MethodDatabaseStartupJMHBenchmark.class.getName() + ".*")
+                .build()).run();
+    }
+
+    @Param({"false", "true"})
+    public boolean CACHE;
+
+    private URL[] classpath;
+    private List<String> classNames;
+    private File cacheDir;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        final List<URL> urls = new ArrayList<>();
+        classNames = new ArrayList<>();
+        for (String element : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (!element.endsWith(".jar"))
+                continue;
+            urls.add(new File(element).toURI().toURL());
+            try (JarFile jar = new JarFile(element)) {
+                for (Enumeration<JarEntry> es = jar.entries(); es.hasMoreElements();) {
+                    final String name = es.nextElement().getName();
+                    if (name.endsWith(".class") && !name.startsWith("META-INF/") && !name.endsWith("module-info.class"))
+                        classNames.add(name.substring(0, name.length() - ".class".length()));
+                }
+            }
+        }
+        classpath = urls.toArray(new URL[0]);
+
+        cacheDir = Files.createTempDirectory("quasar-mdb-cache").toFile();
+        if (CACHE) {
+            final MethodDatabaseCache cache = new MethodDatabaseCache(cacheDir);
+            loadAll(cache);
+            cache.flush();
+        }
+        System.out.println("Classes: " + classNames.size() + " jars: " + classpath.length);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        final File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File f : files)
+                f.delete();
+        }
+        cacheDir.delete();
+    }
+
+    @Benchmark
+    public int loadClassEntries() throws IOException {
+        return loadAll(CACHE ? new MethodDatabaseCache(cacheDir) : null);
+    }
+
+    private int loadAll(MethodDatabaseCache cache) throws IOException {
+        try (URLClassLoader cl = new URLClassLoader(classpath, null)) {
+            final MethodDatabase db = new MethodDatabase(new QuasarInstrumentor(), cl, new DefaultSuspendableClassifier(cl), cache);
+            int n = 0;
+            for (String className : classNames) {
+                try {
+                    if (db.getOrLoadClassEntry(className) != null)
+                        n++;
+                } catch (UnableToInstrumentException e) {
+                }
+            }
+            return n;
+        }
+    }
+}
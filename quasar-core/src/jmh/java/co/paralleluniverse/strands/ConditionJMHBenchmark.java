@@ -0,0 +1,117 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Control;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Producer and consumer threads contending over a small bounded counter guarded by two conditions, "not empty" and "not full".
+ * Each operation is a single put or take.
+ *
+ * @author pron
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConditionJMHBenchmark {
+    private static final int CAPACITY = 16;
+    private static final long TIMEOUT = TimeUnit.MILLISECONDS.toNanos(1); // so that blocked threads notice when an iteration ends
+
+    @Param({"simple", "fifo"})
+    public String SYNC;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ConditionJMHBenchmark.class.getName() + ".*")
+                .forks(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private AtomicInteger items;
+    private ConditionSynchronizer notEmpty;
+    private ConditionSynchronizer notFull;
+
+    @Setup
+    public void prepare() {
+        items = new AtomicInteger();
+        notEmpty = newCondition();
+        notFull = newCondition();
+    }
+
+    private ConditionSynchronizer newCondition() {
+        switch (SYNC) {
+            case "simple":
+                return new SimpleConditionSynchronizer(this);
+            case "fifo":
+                return new FifoConditionSynchronizer(this);
+            default:
+                throw new IllegalArgumentException(SYNC);
+        }
+    }
+
+    @Benchmark
+    @Group("producerConsumer")
+    @GroupThreads(4)
+    public boolean put(Control control) throws Exception {
+        return transfer(control, 1, notFull, notEmpty);
+    }
+
+    @Benchmark
+    @Group("producerConsumer")
+    @GroupThreads(4)
+    public boolean take(Control control) throws Exception {
+        return transfer(control, -1, notEmpty, notFull);
+    }
+
+    private boolean transfer(Control control, int delta, ConditionSynchronizer waitOn, ConditionSynchronizer signal) throws Exception {
+        if (!tryTransfer(delta)) {
+            final Object token = waitOn.register();
+            try {
+                for (int i = 0; !tryTransfer(delta); i++) {
+                    if (control.stopMeasurement)
+                        return false;
+                    if (waitOn instanceof FifoConditionSynchronizer)
+                        ((FifoConditionSynchronizer) waitOn).awaitNanos(token, i, TIMEOUT);
+                    else
+                        waitOn.awaitNanos(i, TIMEOUT);
+                }
+            } finally {
+                waitOn.unregister(token);
+            }
+        }
+        signal.signal();
+        return true;
+    }
+
+    private boolean tryTransfer(int delta) {
+        for (;;) {
+            final int n = items.get();
+            final int m = n + delta;
+            if (m < 0 || m > CAPACITY)
+                return false;
+            if (items.compareAndSet(n, m))
+                return true;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Publishes a batch of messages to a {@link Topic} and to a {@link BroadcastTopic}, and then has every subscriber receive them.
+ * The benchmark thread both publishes and receives, so no strands are involved.
+ *
+ * @author pron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BroadcastTopicJMHBenchmark {
+    private static final int BATCH = 64;
+
+    @Param({"10", "100", "1000"})
+    public int SUBSCRIBERS;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(BroadcastTopicJMHBenchmark.class.getName() + ".*")
+                .forks(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private final Integer message = 1;
+    private Topic<Integer> topic;
+    private Channel<Integer>[] channels;
+    private BroadcastTopic<Integer> broadcast;
+    private BroadcastTopic.Subscriber<Integer>[] subscribers;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void prepare() {
+        topic = new Topic<>();
+        channels = new Channel[SUBSCRIBERS];
+        for (int i = 0; i < SUBSCRIBERS; i++)
+            channels[i] = topic.subscribe(Channels.<Integer>newChannel(BATCH, OverflowPolicy.THROW, true, true));
+
+        broadcast = new BroadcastTopic<>(BATCH, OverflowPolicy.BLOCK);
+        subscribers = new BroadcastTopic.Subscriber[SUBSCRIBERS];
+        for (int i = 0; i < SUBSCRIBERS; i++)
+            subscribers[i] = broadcast.newSubscriber();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int topic() throws Exception {
+        for (int i = 0; i < BATCH; i++)
+            topic.send(message);
+        int n = 0;
+        for (Channel<Integer> ch : channels) {
+            while (ch.tryReceive() != null)
+                n++;
+        }
+        return n;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int broadcast() throws Exception {
+        for (int i = 0; i < BATCH; i++)
+            broadcast.send(message);
+        int n = 0;
+        for (BroadcastTopic.Subscriber<Integer> s : subscribers) {
+            while (s.tryReceive() != null)
+                n++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.SuspendableCallable;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Two fibers exchanging a message back and forth over a pair of channels, with and without hand-off, on an otherwise idle pool
+ * ({@code BULK_PER_WORKER = 0}) and on one kept busy by bulk-processing fibers that yield every few microseconds.
+ * Each operation is a round trip. Without hand-off, a woken fiber waits behind the bulk fibers queued ahead of it.
+ *
+ * @author pron
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ChannelPingPongJMHBenchmark {
+    private static final int ROUNDS = 1000;
+
+    @Param({"false", "true"})
+    public boolean HAND_OFF;
+
+    @Param({"0", "4"})
+    public int BULK_PER_WORKER;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ChannelPingPongJMHBenchmark.class.getName() + ".*")
+                .forks(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private FiberScheduler scheduler;
+    private LongChannel ping;
+    private LongChannel pong;
+    private Fiber<?> ponger;
+    private Fiber<?>[] bulk;
+    private volatile boolean stop;
+
+    @Setup
+    public void prepare() {
+        final int workers = Runtime.getRuntime().availableProcessors();
+        scheduler = new FiberForkJoinScheduler("ping-pong-benchmark", workers);
+        ping = Channels.newLongChannel(1);
+        pong = Channels.newLongChannel(1);
+        ((QueueChannel<Long>) ping).setHandOff(HAND_OFF);
+        ((QueueChannel<Long>) pong).setHandOff(HAND_OFF);
+
+        ponger = new Fiber<Void>(scheduler, new SuspendableCallable<Void>() {
+            @Override
+            public Void run() throws SuspendExecution, InterruptedException {
+                for (Long x; (x = ping.receive()) != null;)
+                    pong.send(x + 1);
+                return null;
+            }
+        }).start();
+
+        stop = false;
+        bulk = new Fiber<?>[BULK_PER_WORKER * workers];
+        for (int i = 0; i < bulk.length; i++) {
+            bulk[i] = new Fiber<Long>(scheduler, new SuspendableCallable<Long>() {
+                @Override
+                public Long run() throws SuspendExecution, InterruptedException {
+                    long x = 0;
+                    while (!stop) {
+                        x = work(x, 10_000);
+                        Fiber.yield();
+                    }
+                    return x;
+                }
+            }).start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        stop = true;
+        for (Fiber<?> f : bulk)
+            f.join();
+        ping.close();
+        ponger.join();
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUNDS)
+    public Object pingPong() throws Exception {
+        return new Fiber<Long>(scheduler, new SuspendableCallable<Long>() {
+            @Override
+            public Long run() throws SuspendExecution, InterruptedException {
+                long x = 0;
+                for (int i = 0; i < ROUNDS; i++) {
+                    ping.send(x);
+                    x = pong.receive();
+                }
+                return x;
+            }
+        }).start().get();
+    }
+
+    static long work(long x, int n) {
+        for (int i = 0; i < n; i++)
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        return x;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * A five-stage map/filter pipeline over a channel, built either by nesting {@link Channels} combinators, or with
+ * {@link TransformingReceivePort}, which fuses the stages. Messages are received either one at a time, or in batches.
+ *
+ * @author pron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FusedPipelineJMHBenchmark {
+    private static final int BATCH = 64;
+
+    @Param({"nested", "fused"})
+    public String PIPELINE;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(FusedPipelineJMHBenchmark.class.getName() + ".*")
+                .forks(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private static final Function<Integer, Integer> INC = new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer x) {
+            return x + 1;
+        }
+    };
+    private static final Function<Integer, Integer> DOUBLE = new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer x) {
+            return x * 2;
+        }
+    };
+    private static final Function<Integer, Integer> DEC = new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer x) {
+            return x - 1;
+        }
+    };
+    private static final Predicate<Integer> POSITIVE = new Predicate<Integer>() {
+        @Override
+        public boolean apply(Integer x) {
+            return x > 0;
+        }
+    };
+    private static final Predicate<Integer> EVEN = new Predicate<Integer>() {
+        @Override
+        public boolean apply(Integer x) {
+            return (x & 1) == 0;
+        }
+    };
+
+    private final Integer[] messages = new Integer[BATCH];
+    private final ArrayList<Integer> batch = new ArrayList<>(BATCH);
+    private Channel<Integer> channel;
+    private ReceivePort<Integer> pipeline;
+
+    @Setup
+    public void prepare() {
+        for (int i = 0; i < BATCH; i++)
+            messages[i] = 1000 + i; // outside the Integer cache, as real messages would be
+        channel = Channels.newChannel(BATCH, Channels.OverflowPolicy.BLOCK, true, true);
+        switch (PIPELINE) {
+            case "nested":
+                pipeline = Channels.map(Channels.filter(Channels.map(Channels.filter(Channels.map(channel, INC), POSITIVE), DOUBLE), EVEN), DEC);
+                break;
+            case "fused":
+                pipeline = Channels.transform(channel).map(INC).filter(POSITIVE).map(DOUBLE).filter(EVEN).map(DEC);
+                break;
+            default:
+                throw new IllegalArgumentException(PIPELINE);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long receive() throws Exception {
+        for (Integer m : messages)
+            channel.send(m);
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++)
+            sum += pipeline.receive();
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long receiveBatch() throws Exception {
+        for (Integer m : messages)
+            channel.send(m);
+        batch.clear();
+        for (int n = 0; n < BATCH;)
+            n += pipeline.receive(batch, BATCH - n);
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++)
+            sum += batch.get(i);
+        return sum;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
+import com.google.common.base.Function;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * A CPU-heavy mapping stage run by a growing number of worker fibers, with and without preserving the order of the messages.
+ * Throughput should grow with the number of workers up to the number of processors (compare with {@code WORKERS = 1}, which is what
+ * {@link Channels#fiberTransform(ReceivePort, SendPort, co.paralleluniverse.strands.SuspendableAction2) fiberTransform} gives), and
+ * stay flat beyond it.
+ *
+ * @author pron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelMapJMHBenchmark {
+    private static final int BATCH = 256;
+    private static final long TOKENS = 1000; // CPU work per message
+
+    @Param({"1", "2", "4", "8", "16", "32", "64"})
+    public int WORKERS;
+
+    @Param({"false", "true"})
+    public boolean ORDERED;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ParallelMapJMHBenchmark.class.getName() + ".*")
+                .forks(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private FiberScheduler scheduler;
+    private Channel<Integer> in;
+    private Channel<Integer> out;
+
+    @Setup
+    public void prepare() {
+        scheduler = new FiberForkJoinScheduler("workers", Runtime.getRuntime().availableProcessors(), null, false);
+        in = Channels.newChannel(64, OverflowPolicy.BLOCK, true, false);
+        out = Channels.newChannel(BATCH, OverflowPolicy.BLOCK, false, true);
+        Channels.parallelMap(scheduler, in, out, WORKERS, ORDERED, new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer x) {
+                Blackhole.consumeCPU(TOKENS);
+                return x;
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        in.close();
+        while (out.receive() != null)
+            ;
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long parallelMap() throws Exception {
+        for (int i = 0; i < BATCH; i++)
+            in.send(i);
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++)
+            sum += out.receive();
+        return sum;
+    }
+}
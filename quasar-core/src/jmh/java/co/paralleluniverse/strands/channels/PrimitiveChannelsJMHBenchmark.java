@@ -0,0 +1,91 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * A topic publishing longs to two subscribers, whose channels are grouped into a single port that is then mapped and filtered, all on
+ * one thread.
+ * Run with the GC profiler: {@code gc.alloc.rate.norm} should be 0 for {@code primitive}, while {@code boxed} allocates a {@code Long}
+ * per element, and more in the group's selector.
+ *
+ * @author pron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PrimitiveChannelsJMHBenchmark {
+    private static final int BATCH = 32;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PrimitiveChannelsJMHBenchmark.class.getName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private long counter = 1000; // outside the Long cache
+
+    private Topic<Long> topic;
+    private ReceivePort<Long> boxedPort;
+
+    private LongTopic longTopic;
+    private LongReceivePort longPort;
+
+    @Setup
+    public void prepare() {
+        topic = new Topic<>();
+        final Channel<Long> ch1 = topic.subscribe(Channels.<Long>newChannel(2 * BATCH));
+        final Channel<Long> ch2 = topic.subscribe(Channels.<Long>newChannel(2 * BATCH));
+        boxedPort = Channels.filter(Channels.map(Channels.group(ch1, ch2), x -> x + 1), x -> x > 0);
+
+        longTopic = new LongTopic();
+        final LongChannel lch1 = longTopic.subscribe(Channels.newLongChannel(2 * BATCH));
+        final LongChannel lch2 = longTopic.subscribe(Channels.newLongChannel(2 * BATCH));
+        longPort = Channels.filterLong(Channels.mapLong(Channels.groupLong(lch1, lch2), x -> x + 1), x -> x > 0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long boxed() throws Exception {
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++)
+            topic.send(counter++);
+        for (int i = 0; i < 2 * BATCH; i++)
+            sum += boxedPort.receive();
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long primitive() throws Exception {
+        long sum = 0;
+        for (int i = 0; i < BATCH; i++)
+            longTopic.send(counter++);
+        for (int i = 0; i < 2 * BATCH; i++)
+            sum += longPort.receiveLong();
+        return sum;
+    }
+}
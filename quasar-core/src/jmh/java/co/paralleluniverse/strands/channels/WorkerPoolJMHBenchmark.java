@@ -0,0 +1,92 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * A pool of worker fibers taking tasks from a bounded, multi-consumer channel.
+ * Each operation sends a batch of tasks and waits for the workers to complete them.
+ *
+ * @author pron
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WorkerPoolJMHBenchmark {
+    private static final int BATCH = 1000;
+
+    @Param({"32", "128"})
+    public int WORKERS;
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(WorkerPoolJMHBenchmark.class.getName() + ".*")
+                .forks(1)
+                .warmupTime(TimeValue.seconds(5))
+                .warmupIterations(3)
+                .measurementTime(TimeValue.seconds(5))
+                .measurementIterations(5)
+                .build()).run();
+    }
+
+    private FiberScheduler scheduler;
+    private Channel<CountDownLatch> tasks;
+    private Fiber<?>[] workers;
+
+    @Setup
+    public void prepare() {
+        scheduler = new FiberForkJoinScheduler("workers", Runtime.getRuntime().availableProcessors(), null, false);
+        tasks = Channels.newChannel(64, OverflowPolicy.BLOCK, false, false);
+        workers = new Fiber<?>[WORKERS];
+        for (int i = 0; i < WORKERS; i++) {
+            workers[i] = new Fiber<Void>(scheduler, new SuspendableRunnable() {
+                @Override
+                public void run() throws SuspendExecution, InterruptedException {
+                    CountDownLatch task;
+                    while ((task = tasks.receive()) != null)
+                        task.countDown();
+                }
+            }).start();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        tasks.close();
+        for (Fiber<?> f : workers)
+            f.join();
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void workerPool() throws Exception {
+        final CountDownLatch done = new CountDownLatch(BATCH);
+        for (int i = 0; i < BATCH; i++)
+            tasks.send(done);
+        done.await();
+    }
+}
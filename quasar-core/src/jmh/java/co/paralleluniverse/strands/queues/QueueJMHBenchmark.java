@@ -40,7 +40,9 @@ public class QueueJMHBenchmark {
 
     public static void main(String[] args) throws Exception {
         // Main.main(new String[]{"-usage"});
-        Main.main(buildArguments(BENCHMARK, 5, 5000, 3));
+        // pass a number of producers larger than the number of cores to compare the queues with oversubscribed producers
+        final int nProducers = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        Main.main(buildArguments(BENCHMARK, 5, 5000, nProducers));
     }
 
     private static String[] buildArguments(String className, int nRuns, int runForMilliseconds, int nProducers) {
@@ -58,6 +60,7 @@ public class QueueJMHBenchmark {
     @State(Scope.Group)
     public static class Q {
         Queue<Integer> singleConsumerArrayObjectQueue = new SingleConsumerArrayObjectQueue<Integer>(QUEUE_CAPACITY);
+        Queue<Integer> singleConsumerStripedArrayObjectQueue = new SingleConsumerStripedArrayObjectQueue<Integer>(QUEUE_CAPACITY);
         Queue<Integer> singleConsumerArrayIntQueue = new SingleConsumerArrayIntQueue(QUEUE_CAPACITY);
         Queue<Integer> singleConsumerLinkedObjectQueue = new SingleConsumerLinkedObjectQueue<Integer>();
         Queue<Integer> singleConsumerLinkedIntQueue = new SingleConsumerLinkedIntQueue();
@@ -94,6 +97,18 @@ public class QueueJMHBenchmark {
         write(cnt, q.singleConsumerArrayObjectQueue);
     }
 
+    @Benchmark
+    @Group("singleConsumerStripedArrayObjectQueue")
+    public Object read_SingleConsumerStripedArrayObjectQueue(Control cnt, Q q) {
+        return read(cnt, q.singleConsumerStripedArrayObjectQueue);
+    }
+
+    @Benchmark
+    @Group("singleConsumerStripedArrayObjectQueue")
+    public void write_SingleConsumerStripedArrayObjectQueue(Control cnt, Q q) {
+        write(cnt, q.singleConsumerStripedArrayObjectQueue);
+    }
+
     @Benchmark
     @Group("singleConsumerLinkedObjectQueue")
     public Object read_SingleConsumerLinkedObjectQueue(Control cnt, Q q) {
@@ -0,0 +1,527 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.concurrent.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A single-consumer, non-blocking-producer delay queue implemented as a hierarchical timing wheel.
+ * <p>
+ * Unlike {@link DelayQueue} and {@link SingleConsumerNonblockingProducerDelayQueue}, both {@link #offer(Delayed) offer} and
+ * {@link #remove(Object) remove} take constant time: producers push elements onto a lock-free stack, which the consumer drains into
+ * the wheel, and removed elements are unlinked from their wheel slot by the consumer in constant time. This makes the queue suitable
+ * for timeouts, which are mostly cancelled before they expire.</p>
+ * <p>
+ * Time is divided into ticks, and elements expire at the first tick boundary following their deadline, so an element may be returned
+ * up to one tick late, but never early. Elements must extend {@link Entry}, and may be offered only once.</p>
+ * <p>
+ * Only a single consumer thread may call the {@code poll}, {@code take}, {@code peek}, {@code drainTo} and {@code iterator}
+ * methods, as well as the methods inherited from {@link AbstractQueue} that iterate over the queue, like {@code contains}.</p>
+ *
+ * @author pron
+ */
+public class TimingWheelDelayQueue<E extends TimingWheelDelayQueue.Entry> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private static final int LEVEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << LEVEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 7; // 42 bits of ticks
+    private static final long MAX_TICKS = (1L << (LEVEL_BITS * LEVELS)) - 1;
+    private static final long MAX_DELAY = Long.MAX_VALUE >> 2; // keeps deadline comparisons free of overflow
+    //
+    private final long tickNanos;
+    private final long maxDelay;
+    private final long startTime;
+    private final AtomicReference<Entry> pendingInserts = new AtomicReference<>();
+    private final AtomicReference<Entry> pendingRemovals = new AtomicReference<>();
+    private final LongAdder size = new LongAdder();
+    private final OwnedSynchronizer sync = new OwnedSynchronizer2();
+    private volatile long wakeupTime;
+    // owned by the consumer
+    private final Entry[][] wheel = new Entry[LEVELS][WHEEL_SIZE];
+    private final Entry overflow = new Sentinel();
+    private final Entry expired = new Sentinel();
+    private long currentTick;
+    private int count; // number of entries in the wheel and overflow list
+
+    /**
+     * Creates a new timing wheel.
+     *
+     * @param tick the duration of a single tick, which is the resolution of the queue.
+     * @param unit the time unit of {@code tick}
+     */
+    public TimingWheelDelayQueue(long tick, TimeUnit unit) {
+        this.tickNanos = unit.toNanos(tick);
+        if (tickNanos <= 0)
+            throw new IllegalArgumentException("tick must be positive: " + tick + " " + unit);
+        this.maxDelay = tickNanos > MAX_DELAY / MAX_TICKS ? MAX_DELAY : MAX_TICKS * tickNanos;
+        this.startTime = System.nanoTime();
+        for (Entry[] level : wheel) {
+            for (int i = 0; i < level.length; i++)
+                level[i] = new Sentinel();
+        }
+    }
+
+    /**
+     * Creates a new timing wheel with a one millisecond tick.
+     */
+    public TimingWheelDelayQueue() {
+        this(1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * An element of a {@link TimingWheelDelayQueue}. The links are maintained by the queue.
+     */
+    public abstract static class Entry implements Delayed {
+        private static final int NEW = 0;
+        private static final int QUEUED = 1;
+        private static final int REMOVED = 2;
+        private static final int EXPIRED = 3;
+        volatile int state;
+        long deadline;
+        long tick;
+        Entry pendingNext;  // link in the pending inserts stack
+        Entry removedNext;  // link in the pending removals stack
+        Entry prev;         // links in a wheel slot or the expired list
+        Entry next;
+        boolean inWheel;
+
+        boolean casState(int expected, int update) {
+            return STATE.compareAndSet(this, expected, update);
+        }
+
+        private static final VarHandle STATE;
+
+        static {
+            try {
+                STATE = MethodHandles.lookup().findVarHandle(Entry.class, "state", int.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+    }
+
+    private static final class Sentinel extends Entry {
+        Sentinel() {
+            this.prev = this;
+            this.next = this;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        if (!e.casState(Entry.NEW, Entry.QUEUED))
+            throw new IllegalStateException("Element " + e + " has already been queued");
+        long delay = e.getDelay(TimeUnit.NANOSECONDS);
+        if (delay < 0)
+            delay = 0;
+        else if (delay > maxDelay)
+            delay = maxDelay;
+        e.deadline = System.nanoTime() + delay;
+        size.increment();
+
+        Entry head;
+        do {
+            head = pendingInserts.get();
+            e.pendingNext = head;
+        } while (!pendingInserts.compareAndSet(head, e));
+
+        if (sync.shouldSignal() && e.deadline - wakeupTime < 0)
+            sync.signal();
+        return true;
+    }
+
+    /**
+     * Removes an element from the queue in constant time. May be called by any thread.
+     *
+     * @return {@code true} if the element was in the queue and will not be returned by {@code poll}.
+     */
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Entry))
+            return false;
+        final Entry e = (Entry) o;
+        if (!e.casState(Entry.QUEUED, Entry.REMOVED))
+            return false;
+        size.decrement();
+
+        Entry head;
+        do {
+            head = pendingRemovals.get();
+            e.removedNext = head;
+        } while (!pendingRemovals.compareAndSet(head, e));
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        processPending();
+        advance(nowTick());
+        return pollExpired();
+    }
+
+    @Override
+    public E peek() {
+        processPending();
+        advance(nowTick());
+        for (Entry e = expired.next; e != expired; e = e.next) {
+            if (e.state == Entry.QUEUED)
+                return (E) e;
+        }
+        return null;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e = poll();
+        if (e == null) {
+            sync.register();
+            try {
+                e = poll();
+                while (e == null) {
+                    final long wait = nanosToNextEvent();
+                    this.wakeupTime = System.nanoTime() + wait;
+                    e = poll();
+                    if (e != null)
+                        break;
+                    sync.awaitNanos(wait);
+                    e = poll();
+                }
+            } finally {
+                sync.unregister();
+            }
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = poll();
+        if (e == null) {
+            long left = unit.toNanos(timeout);
+            sync.register();
+            try {
+                e = poll();
+                while (e == null) {
+                    if (left <= 0)
+                        return null;
+                    final long start = System.nanoTime();
+                    final long wait = Math.min(left, nanosToNextEvent());
+                    this.wakeupTime = start + wait;
+                    e = poll();
+                    if (e != null)
+                        break;
+                    sync.awaitNanos(wait);
+                    left -= System.nanoTime() - start;
+                    e = poll();
+                }
+            } finally {
+                sync.unregister();
+            }
+        }
+        return e;
+    }
+
+    @Override
+    public int size() {
+        return (int) size.sum();
+    }
+
+    /**
+     * Returns an upper bound on the time remaining until the next element expires, or zero if an element has already expired.
+     * A consumer polling several queues may use this to decide how long to sleep. Only the consumer may call this method.
+     *
+     * @param unit the time unit of the returned value
+     */
+    public long getDelayToNextExpiration(TimeUnit unit) {
+        processPending();
+        advance(nowTick());
+        return unit.convert(nanosToNextEvent(), TimeUnit.NANOSECONDS);
+    }
+
+    ///////////////////////////////////////////////////////////////
+    private long nowTick() {
+        return (System.nanoTime() - startTime) / tickNanos;
+    }
+
+    private long tickOf(long deadline) {
+        final long d = deadline - startTime;
+        return (d + tickNanos - 1) / tickNanos;
+    }
+
+    private void processPending() {
+        Entry ins = pendingInserts.getAndSet(null);
+        if (ins != null) {
+            // the stack is LIFO; reverse it so that elements with equal deadlines expire in FIFO order
+            Entry rev = null;
+            while (ins != null) {
+                final Entry next = ins.pendingNext;
+                ins.pendingNext = rev;
+                rev = ins;
+                ins = next;
+            }
+            for (Entry e = rev; e != null;) {
+                final Entry next = e.pendingNext;
+                e.pendingNext = null;
+                if (e.state == Entry.QUEUED) {
+                    e.tick = tickOf(e.deadline);
+                    place(e);
+                }
+                e = next;
+            }
+        }
+
+        for (Entry e = pendingRemovals.getAndSet(null); e != null;) {
+            final Entry next = e.removedNext;
+            e.removedNext = null;
+            if (e.next != null)
+                unlink(e);
+            e = next;
+        }
+    }
+
+    private void place(Entry e) {
+        final long t = e.tick;
+        if (t <= currentTick) {
+            append(expired, e, false);
+            return;
+        }
+        final int level = (63 - Long.numberOfLeadingZeros(t ^ currentTick)) / LEVEL_BITS;
+        if (level >= LEVELS)
+            append(overflow, e, true);
+        else
+            append(wheel[level][(int) (t >>> (level * LEVEL_BITS)) & WHEEL_MASK], e, true);
+    }
+
+    private void advance(long nowTick) {
+        while (currentTick < nowTick) {
+            if (count == 0) {
+                currentTick = nowTick;
+                return;
+            }
+            final long c = ++currentTick;
+            final int crossed = Long.numberOfTrailingZeros(c) / LEVEL_BITS; // the levels whose slot has just changed
+            if (crossed >= LEVELS)
+                cascade(overflow);
+            for (int level = Math.min(crossed, LEVELS - 1); level > 0; level--)
+                cascade(wheel[level][(int) (c >>> (level * LEVEL_BITS)) & WHEEL_MASK]);
+            cascade(wheel[0][(int) c & WHEEL_MASK]); // all entries in the current level-0 slot expire on this tick
+        }
+    }
+
+    /**
+     * Re-places all entries in the given list relative to the current tick.
+     */
+    private void cascade(Entry list) {
+        Entry e = list.next;
+        if (e == list)
+            return;
+        list.prev.next = null;
+        list.next = list;
+        list.prev = list;
+        while (e != null) {
+            final Entry next = e.next;
+            e.prev = null;
+            e.next = null;
+            e.inWheel = false;
+            count--;
+            if (e.state == Entry.QUEUED)
+                place(e);
+            e = next;
+        }
+    }
+
+    private E pollExpired() {
+        for (Entry e = expired.next; e != expired; e = expired.next) {
+            unlink(e);
+            if (e.getDelay(TimeUnit.NANOSECONDS) > 0) { // only for deadlines beyond the range of the wheel
+                e.deadline = System.nanoTime() + Math.min(e.getDelay(TimeUnit.NANOSECONDS), maxDelay);
+                e.tick = tickOf(e.deadline);
+                place(e);
+                continue;
+            }
+            if (e.casState(Entry.QUEUED, Entry.EXPIRED)) {
+                size.decrement();
+                return (E) e;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The time the consumer may sleep before an element might expire.
+     */
+    private long nanosToNextEvent() {
+        if (expired.next != expired)
+            return 0;
+        if (count == 0)
+            return MAX_DELAY;
+        final long tick = nextEventTick();
+        if (tick - currentTick > maxDelay / tickNanos)
+            return maxDelay;
+        return Math.max(0, startTime + tick * tickNanos - System.nanoTime());
+    }
+
+    /**
+     * The tick at which the first non-empty slot expires (in level 0) or is cascaded (in the higher levels).
+     * The non-empty slots of a level all come after the current tick's slot in that level, and before any non-empty slot of a higher level.
+     */
+    private long nextEventTick() {
+        for (int level = 0; level < LEVELS; level++) {
+            final int shift = level * LEVEL_BITS;
+            final long base = (currentTick >>> (shift + LEVEL_BITS)) << (shift + LEVEL_BITS);
+            for (int i = ((int) (currentTick >>> shift) & WHEEL_MASK) + 1; i < WHEEL_SIZE; i++) {
+                final Entry slot = wheel[level][i];
+                if (slot.next != slot)
+                    return base | ((long) i << shift);
+            }
+        }
+        return ((currentTick >>> (LEVELS * LEVEL_BITS)) + 1) << (LEVELS * LEVEL_BITS); // overflow cascade
+    }
+
+    private void append(Entry list, Entry e, boolean inWheel) {
+        final Entry last = list.prev;
+        e.prev = last;
+        e.next = list;
+        last.next = e;
+        list.prev = e;
+        e.inWheel = inWheel;
+        if (inWheel)
+            count++;
+    }
+
+    private void unlink(Entry e) {
+        e.prev.next = e.next;
+        e.next.prev = e.prev;
+        e.prev = null;
+        e.next = null;
+        if (e.inWheel)
+            count--;
+        e.inWheel = false;
+    }
+
+    //////////// Boring //////////////////////////
+    @Override
+    public void put(E e) {
+        offer(e);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) {
+        return offer(e);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the elements in the queue, in no particular order.
+     * The iterator's {@code remove} method removes the element from the queue. Only the consumer may call this method.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        processPending();
+        final List<E> snapshot = new ArrayList<>();
+        collect(expired, snapshot);
+        for (Entry[] level : wheel) {
+            for (Entry slot : level)
+                collect(slot, snapshot);
+        }
+        collect(overflow, snapshot);
+
+        final Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+            private E last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return last = it.next();
+            }
+
+            @Override
+            public void remove() {
+                if (last == null)
+                    throw new IllegalStateException();
+                TimingWheelDelayQueue.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    private void collect(Entry list, List<E> snapshot) {
+        for (Entry e = list.next; e != list; e = e.next) {
+            if (e.state == Entry.QUEUED)
+                snapshot.add((E) e);
+        }
+    }
+
+    /**
+     * Removes all elements from the queue. Only the consumer may call this method.
+     */
+    @Override
+    public void clear() {
+        for (Iterator<E> it = iterator(); it.hasNext();) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TimingWheelDelayQueue{" + "size: " + size() + " tick: " + tickNanos + "ns}";
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.common.monitoring.SimpleMBean;
+import co.paralleluniverse.common.util.SystemProperties;
+import co.paralleluniverse.strands.SuspendableCallable;
+import co.paralleluniverse.strands.SuspendableUtils.VoidSuspendableCallable;
+import com.google.common.collect.MapMaker;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Learns the initial stack size of fibers from the stack high-water mark of terminated fibers with the same target class.
+ * <p>
+ * The learned size of a class is raised immediately when a fiber needs a deeper stack, and is lowered to the maximum
+ * observed in the last window of {@value #WINDOW} samples, so that fibers that are usually shallow stop over-allocating.</p>
+ * <p>
+ * Adaptive sizing is turned on with the {@code co.paralleluniverse.fibers.adaptiveStackSize} system property, and only applies
+ * to fibers that are created without an explicit stack size.</p>
+ *
+ * @author pron
+ */
+final class AdaptiveStackSizes extends SimpleMBean implements FiberStackSizesMXBean {
+    static final boolean ENABLED = SystemProperties.isEmptyOrTrue("co.paralleluniverse.fibers.adaptiveStackSize");
+    private static final int WINDOW = 256;
+    static final int MIN_STACK_SIZE = 16; // together with the frame records, still within the stack pool's 32-slot size class
+    private static final AdaptiveStackSizes instance = ENABLED ? newRegistered() : null;
+    private final ConcurrentMap<Class<?>, Entry> sizes = new MapMaker().weakKeys().makeMap();
+    private final AtomicLong samples = new AtomicLong();
+
+    AdaptiveStackSizes() {
+        super(null, "FiberStackSizes", null, null);
+    }
+
+    private static AdaptiveStackSizes newRegistered() {
+        final AdaptiveStackSizes sizes = new AdaptiveStackSizes();
+        sizes.registerMBean();
+        return sizes;
+    }
+
+    static AdaptiveStackSizes getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the learned stack size for fibers of the given target, or {@code -1} if nothing has been learned yet.
+     * A learned size is never below {@value #MIN_STACK_SIZE}.
+     *
+     * @param fiberClass the fiber's class, used when {@code target} is {@code null}.
+     */
+    int getStackSize(Class<?> fiberClass, SuspendableCallable<?> target) {
+        final Entry e = sizes.get(keyOf(fiberClass, target));
+        return e != null ? e.size : -1;
+    }
+
+    /**
+     * Records the stack high-water mark of a terminated fiber.
+     *
+     * @param stackSize the number of data slots the fiber has needed.
+     */
+    void record(Class<?> fiberClass, SuspendableCallable<?> target, int stackSize) {
+        if (stackSize <= 0)
+            return;
+        stackSize = Math.max(stackSize, MIN_STACK_SIZE);
+        final Class<?> key = keyOf(fiberClass, target);
+        Entry e = sizes.get(key);
+        if (e == null) {
+            final Entry e1 = sizes.putIfAbsent(key, e = new Entry(stackSize));
+            if (e1 != null)
+                e = e1;
+        }
+        e.record(stackSize);
+        samples.incrementAndGet();
+    }
+
+    private static Class<?> keyOf(Class<?> fiberClass, SuspendableCallable<?> target) {
+        if (target == null)
+            return fiberClass;
+        if (target instanceof VoidSuspendableCallable)
+            return ((VoidSuspendableCallable) target).getRunnable().getClass();
+        return target.getClass();
+    }
+
+    @Override
+    public Map<String, Integer> getLearnedStackSizes() {
+        final Map<String, Integer> map = new HashMap<>();
+        for (Map.Entry<Class<?>, Entry> e : sizes.entrySet())
+            map.put(e.getKey().getName(), e.getValue().size);
+        return map;
+    }
+
+    @Override
+    public long getSamples() {
+        return samples.get();
+    }
+
+    @Override
+    public void reset() {
+        sizes.clear();
+        samples.set(0);
+    }
+
+    /*
+     * Updates are racy, but a lost update only delays learning by a sample.
+     */
+    private static final class Entry {
+        volatile int size;
+        private int windowMax;
+        private int count;
+
+        Entry(int size) {
+            this.size = size;
+        }
+
+        void record(int stackSize) {
+            if (stackSize > size)
+                size = stackSize;
+            if (stackSize > windowMax)
+                windowMax = stackSize;
+            if (++count >= WINDOW) {
+                size = windowMax;
+                windowMax = 0;
+                count = 0;
+            }
+        }
+    }
+}
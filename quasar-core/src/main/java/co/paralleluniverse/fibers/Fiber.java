@@ -29,6 +29,7 @@ import co.paralleluniverse.concurrent.util.ThreadAccess;
 import co.paralleluniverse.concurrent.util.ThreadUtil;
 import co.paralleluniverse.fibers.FiberForkJoinScheduler.FiberForkJoinTask;
 import co.paralleluniverse.fibers.instrument.SuspendableHelper;
+import co.paralleluniverse.fibers.instrument.SuspensionProfile;
 import co.paralleluniverse.io.serialization.ByteArraySerializer;
 import co.paralleluniverse.io.serialization.kryo.KryoSerializer;
 import co.paralleluniverse.strands.Strand;
@@ -86,8 +87,7 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
     public static final int DEFAULT_STACK_SIZE = 32;
     private static final Object SERIALIZER_BLOCKER = new Object();
     private static final boolean MAINTAIN_ACCESS_CONTROL_CONTEXT = (System.getSecurityManager() != null);
-//    private static final boolean PREEMPTION = SystemProperties.isEmptyOrTrue("co.paralleluniverse.fibers.enablePreemption");
-//    private static final int PREEMPTION_CREDITS = 3000;
+    private static final int PREEMPTION_CREDITS = 1000; // preemption points between clock reads
     private static final long serialVersionUID = 2783452871536981L;
     protected static final FlightRecorder flightRecorder = Debug.isDebug() ? Debug.getGlobalFlightRecorder() : null;
 
@@ -140,7 +140,10 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
     private volatile boolean interrupted;
     private long run;
     private transient boolean noPreempt;
-    // private int preemptionCredits;
+    private transient long timeSlice; // nanos; 0 if preemption is off
+    private transient long runStart;
+    private transient int preemptionCredits;
+    transient boolean preempted; // whether the current run ends in preemption rather than an explicit yield
     private transient Thread runningThread;
     private final SuspendableCallable<V> target;
     private byte priority;
@@ -181,7 +184,7 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
         this.target = target;
         this.task = scheduler != null ? scheduler.newFiberTask(this) : new FiberForkJoinTask(this);
         this.initialStackSize = stackSize;
-        this.stack = new Stack(this, stackSize > 0 ? stackSize : DEFAULT_STACK_SIZE);
+        this.stack = new Stack(this, stackSize > 0 ? stackSize : defaultStackSize(target), StackPool.ENABLED ? getStackPool() : null);
         this.priority = (byte)NORM_PRIORITY;
 
         if (Debug.isDebug())
@@ -236,6 +239,15 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
         this(name, defaultScheduler(), stackSize, target);
     }
 
+    private int defaultStackSize(SuspendableCallable<V> target) {
+        if (AdaptiveStackSizes.ENABLED) {
+            final int size = AdaptiveStackSizes.getInstance().getStackSize(getClass(), target);
+            if (size > 0)
+                return size;
+        }
+        return DEFAULT_STACK_SIZE;
+    }
+
     private static FiberScheduler defaultScheduler() {
         final Fiber parent = currentFiber();
         if (parent == null)
@@ -302,7 +314,7 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
      *
      * The fiber priority's semantics - or even if it is ignored completely -
      * is entirely up to the fiber's scheduler.
-     * The default fiber scheduler completely ignores fiber priority.
+     * The default fiber scheduler completely ignores fiber priority; {@link FiberPriorityScheduler} honors it.
      *
      * @param newPriority priority to set this fiber to
      *
@@ -683,6 +695,29 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
         yieldAndUnpark(other, null);
     }
 
+    /**
+     * Runs the given {@code unparker}, and if it unparks a fiber that the current fiber's scheduler can run on the current thread
+     * (only {@link FiberForkJoinScheduler} can), hands that fiber off to the thread: it runs as soon as the current fiber parks or
+     * yields, rather than behind the other fibers waiting for the scheduler's threads, and while the data the two share is still in
+     * the thread's cache. This is like Go's {@code runnext}. The handed-off fiber can't be stolen by other threads, so the current
+     * fiber should be about to block (say, waiting for the handed-off fiber's reply). If not called from a fiber, this just runs
+     * {@code unparker}.
+     *
+     * @param unparker unparks the fiber to hand off to; if it unparks more than one, only the first of them is handed off.
+     */
+    public static void handOff(Runnable unparker) {
+        final Fiber<?> current = currentFiber();
+        if (current == null || !current.scheduler.startHandOff()) {
+            unparker.run();
+            return;
+        }
+        try {
+            unparker.run();
+        } finally {
+            current.scheduler.endHandOff();
+        }
+    }
+
     public static void sleep(long millis) throws InterruptedException, SuspendExecution {
         sleep(millis, TimeUnit.MILLISECONDS);
     }
@@ -721,6 +756,8 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
         record(1, "Fiber", "park", "Parking %s blocker: %s", this, blocker);
         if (isRecordingLevel(2) && !getStackTrace)
             record(2, "Fiber", "park", "Parking %s at %s", this, Arrays.toString(getStackTrace()));
+        if (SuspensionProfile.RECORDING)
+            SuspensionProfile.recordSuspension(new Throwable().getStackTrace());
         if (prePark != null)
             prePark.run(this);
         this.postPark = postParkAction;
@@ -733,6 +770,8 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
     private void yield1() throws SuspendExecution {
         if (isRecordingLevel(2))
             record(2, "Fiber", "yield", "Yielding %s at %s", this, Arrays.toString(getStackTrace()));
+        if (SuspensionProfile.RECORDING)
+            SuspensionProfile.recordSuspension(new Throwable().getStackTrace());
         if (prePark != null)
             prePark.run(this);
 
@@ -757,6 +796,7 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
     void preempt() throws SuspendExecution {
         if (isRecordingLevel(2))
             record(2, "Fiber", "preempt", "Preempting %s at %s", this, Arrays.toString(getStackTrace()));
+        preempted = true;
         task.yield();
     }
 
@@ -780,7 +820,11 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
         // as of now we're no longer running in the enclosing thread, but in the fiber itself.
 
         run++;
-        // preemptionCredits = PREEMPTION_CREDITS;
+        preempted = false;
+        if ((timeSlice = scheduler != null ? scheduler.getTimeSliceNanos() : 0) > 0) {
+            runStart = System.nanoTime();
+            preemptionCredits = PREEMPTION_CREDITS;
+        }
         runningThread = currentThread;
         state = State.RUNNING; // TODO: ??? orderedSetState(State.RUNNING);
 
@@ -793,6 +837,7 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
                 state = State.TERMINATED;
                 record(1, "Fiber", "exec", "finished %s %s res: %s", state, this, this.result);
                 monitorFiberTerminated(monitor);
+                terminateStack();
 
                 onCompletion();
                 setResult(res);
@@ -858,14 +903,18 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
                 state = State.TERMINATED;
                 task.setState(0); // Some error conditions -- when the fiber isn't instrumented well -- may leave it in an inconsistent state (PARKING)
                 monitorFiberTerminated(monitor);
+                terminateStack();
                 setException(t);
             }
         } finally {
             if (!restored)
                 restoreThreadData(currentThread, old);
 
-            if (scheduler instanceof FiberForkJoinScheduler)
-                ((FiberForkJoinScheduler) scheduler).tryOnIdle();
+            if (scheduler instanceof FiberForkJoinScheduler) {
+                final FiberForkJoinScheduler fjScheduler = (FiberForkJoinScheduler) scheduler;
+                fjScheduler.expireTimers(currentThread);
+                fjScheduler.tryOnIdle();
+            }
         }
     }
 
@@ -957,6 +1006,25 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
             monitor.fiberTerminated(this);
     }
 
+    /**
+     * Returns the stack pool of the current thread if it is a worker of this fiber's scheduler; {@code null} otherwise.
+     */
+    StackPool getStackPool() {
+        if (scheduler == null) // in tests
+            return null;
+        return scheduler.getStackPool(Thread.currentThread());
+    }
+
+    private void terminateStack() {
+        if (AdaptiveStackSizes.ENABLED && initialStackSize <= 0)
+            AdaptiveStackSizes.getInstance().record(getClass(), target, stack.getRequiredStackSize());
+        if (StackPool.ENABLED) {
+            final StackPool pool = getStackPool();
+            if (pool != null)
+                stack.release(pool);
+        }
+    }
+
     private void cancelTimeoutTask() {
         if (timeoutTask != null) {
             timeoutTask.cancel(false);
@@ -1016,35 +1084,49 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
             record(2, "Fiber", "switchFiberAndThreadLocals", "inheritableFiberLocals: %s", ThreadUtil.getThreadLocalsString(install ? this.inheritableFiberLocals : tmpInheritableThreadLocals));
         }
 
-        ThreadAccess.setThreadLocals(currentThread, this.fiberLocals);
-        ThreadAccess.setInheritableThreadLocals(currentThread, this.inheritableFiberLocals);
-
-        this.fiberLocals = tmpThreadLocals;
-        this.inheritableFiberLocals = tmpInheritableThreadLocals;
+        // A thread's map is only created when a ThreadLocal is first used on it, so a fiber that hasn't used any ThreadLocal running on a
+        // thread that hasn't either finds both maps null, and there's nothing to switch until the fiber does use a ThreadLocal.
+        if (tmpThreadLocals != this.fiberLocals) {
+            ThreadAccess.setThreadLocals(currentThread, this.fiberLocals);
+            this.fiberLocals = tmpThreadLocals;
+        }
+        if (tmpInheritableThreadLocals != this.inheritableFiberLocals) {
+            ThreadAccess.setInheritableThreadLocals(currentThread, this.inheritableFiberLocals);
+            this.inheritableFiberLocals = tmpInheritableThreadLocals;
+        }
     }
 
+    // The switches below are skipped when the fiber's value is the thread's, which is the common case unless the fiber changes it.
     private void installFiberContextClassLoader(Thread currentThread) {
         final ClassLoader origContextClassLoader = ThreadAccess.getContextClassLoader(currentThread);
-        ThreadAccess.setContextClassLoader(currentThread, contextClassLoader);
-        this.contextClassLoader = origContextClassLoader;
+        if (origContextClassLoader != contextClassLoader) {
+            ThreadAccess.setContextClassLoader(currentThread, contextClassLoader);
+            this.contextClassLoader = origContextClassLoader;
+        }
     }
 
     private void restoreThreadContextClassLoader(Thread currentThread) {
-        final ClassLoader origContextClassLoader = contextClassLoader;
-        this.contextClassLoader = ThreadAccess.getContextClassLoader(currentThread);
-        ThreadAccess.setContextClassLoader(currentThread, origContextClassLoader);
+        final ClassLoader fiberContextClassLoader = ThreadAccess.getContextClassLoader(currentThread);
+        if (fiberContextClassLoader != contextClassLoader) {
+            ThreadAccess.setContextClassLoader(currentThread, contextClassLoader);
+            this.contextClassLoader = fiberContextClassLoader;
+        }
     }
 
     private void installFiberInheritedAccessControlContext(Thread currentThread) {
         final AccessControlContext origAcc = ThreadAccess.getInheritedAccessControlContext(currentThread);
-        ThreadAccess.setInheritedAccessControlContext(currentThread, inheritedAccessControlContext);
-        this.inheritedAccessControlContext = origAcc;
+        if (origAcc != inheritedAccessControlContext) {
+            ThreadAccess.setInheritedAccessControlContext(currentThread, inheritedAccessControlContext);
+            this.inheritedAccessControlContext = origAcc;
+        }
     }
 
     private void restoreThreadInheritedAccessControlContext(Thread currentThread) {
-        final AccessControlContext origAcc = inheritedAccessControlContext;
-        this.inheritedAccessControlContext = ThreadAccess.getInheritedAccessControlContext(currentThread);
-        ThreadAccess.setInheritedAccessControlContext(currentThread, origAcc);
+        final AccessControlContext fiberAcc = ThreadAccess.getInheritedAccessControlContext(currentThread);
+        if (fiberAcc != inheritedAccessControlContext) {
+            ThreadAccess.setInheritedAccessControlContext(currentThread, inheritedAccessControlContext);
+            this.inheritedAccessControlContext = fiberAcc;
+        }
     }
 
     private void setCurrentFiber(Fiber fiber, Thread currentThread) {
@@ -1152,28 +1234,26 @@ public class Fiber<V> extends Strand implements Joinable<V>, Serializable, Futur
     }
 
     final void preemptionPoint(int type) throws SuspendExecution {
-        if (noPreempt)
-            return;
-        if (shouldPreempt(type))
+        if (checkPreemption(type))
             preempt();
     }
 
+    final boolean checkPreemption(int type) {
+        return !noPreempt && shouldPreempt(type);
+    }
+
+    /**
+     * Called at instrumented preemption points (when the agent's preemption mode is on) to decide whether this fiber should yield.
+     * The default implementation yields once the fiber has been running longer than its scheduler's {@link FiberScheduler#setTimeSlice(long, TimeUnit) time slice}
+     * since it was last scheduled; the clock is only read every so many calls.
+     *
+     * @param type 0 for a loop back-branch; 1 for a call
+     */
     protected boolean shouldPreempt(int type) {
-        // 0 - backbranch
-        // 1 - call
-//        if (PREEMPTION) {
-//            assert type == 1;
-//            preemptionCredits -= 3;
-//            if (preemptionCredits < 0) {
-//                final long now = System.nanoTime();
-//                if (runStart == 0)
-//                    runStart = now;
-//                else if (TimeUnit.NANOSECONDS.toMicros(now - runStart) > TIME_SLICE_MICRO)
-//                    return true;
-//                preemptionCredits = 1000;
-//            }
-//        }
-        return false;
+        if (timeSlice == 0 || --preemptionCredits > 0)
+            return false;
+        preemptionCredits = PREEMPTION_CREDITS;
+        return System.nanoTime() - runStart > timeSlice;
     }
 
     protected void onCompletion() {
@@ -35,6 +35,8 @@ import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A {@code ForkJoinPool} based scheduler for fibers.
@@ -42,9 +44,19 @@ import java.util.concurrent.TimeUnit;
  * @author pron
  */
 public class FiberForkJoinScheduler extends FiberScheduler {
+    private static final int DEFAULT_MAX_SPARE_WORKERS = Integer.getInteger("co.paralleluniverse.fibers.maxSpareWorkers", 0);
+    private static final long SPARE_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int MAX_HAND_OFFS = 64; // in a row, before the worker gets back to its queue
     private final ForkJoinPool fjPool;
     private final FiberTimedScheduler timer;
+    private final FiberTimerShards timerShards;
     private final Set<FiberWorkerThread> activeThreads = Collections.newSetFromMap(new ConcurrentHashMap<FiberWorkerThread, Boolean>());
+    private final Set<SpareWorkerThread> spareThreads = Collections.newSetFromMap(new ConcurrentHashMap<SpareWorkerThread, Boolean>());
+    private final AtomicInteger numSpares = new AtomicInteger();
+    private final AtomicInteger spareSequence = new AtomicInteger();
+    private volatile int targetSpares;
+    private volatile int maxSpareWorkers = DEFAULT_MAX_SPARE_WORKERS;
+    private volatile boolean shutdown;
 
     /**
      * Creates a new fiber scheduler.
@@ -57,6 +69,9 @@ public class FiberForkJoinScheduler extends FiberScheduler {
      */
     public FiberForkJoinScheduler(String name, int parallelism, UncaughtExceptionHandler exceptionHandler, MonitorType monitorType, boolean detailedInfo) {
         super(name, monitorType, detailedInfo);
+        this.timerShards = FiberTimerShards.ENABLED
+                ? new FiberTimerShards(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("FiberTimerShards-" + name).build(), getMonitor())
+                : null;
         this.fjPool = createForkJoinPool(name, parallelism, exceptionHandler, monitorType);
         this.timer = createTimer(fjPool, getMonitor());
     }
@@ -90,15 +105,83 @@ public class FiberForkJoinScheduler extends FiberScheduler {
         if (!fjPool.getAsyncMode())
             throw new IllegalArgumentException("ForkJoinPool is not async");
         this.fjPool = fjPool;
+        this.timerShards = null; // the pool's threads aren't ours
 
         this.timer = timeService != null ? timeService : createTimer(fjPool, getMonitor());
     }
 
     public void shutdown() {
+        this.shutdown = true;
         this.timer.shutdown();
+        if (timerShards != null)
+            timerShards.shutdown();
+        signalSpares();
         super.shutdown();
     }
 
+    /**
+     * Sets the maximum number of spare threads the scheduler may add to make up for worker threads blocked inside fibers.
+     * <p>
+     * A fiber that calls blocking code that isn't fiber-aware (say, a JDBC driver or a contended {@code synchronized} block) blocks the
+     * worker thread it runs on. Once a worker has been blocked (i.e., in the {@code BLOCKED}, {@code WAITING} or {@code TIMED_WAITING} state)
+     * inside the same fiber run for longer than the threshold given by the {@code co.paralleluniverse.fibers.blockedCarrierThresholdMillis}
+     * system property (default: 50), the scheduler starts a spare thread, that runs fibers (taking them from the pool's queues) alongside
+     * the workers, up to one spare per blocked worker and no more than {@code maxSpareWorkers}. Spare threads retire once the blocked
+     * workers are released.</p>
+     * <p>
+     * The default is taken from the {@code co.paralleluniverse.fibers.maxSpareWorkers} system property, and is 0 if it isn't set.</p>
+     *
+     * @param maxSpareWorkers the maximum number of spare threads; 0 turns compensation off
+     */
+    public void setMaxSpareWorkers(int maxSpareWorkers) {
+        if (maxSpareWorkers < 0)
+            throw new IllegalArgumentException("maxSpareWorkers must be non-negative: " + maxSpareWorkers);
+        this.maxSpareWorkers = maxSpareWorkers;
+    }
+
+    /**
+     * Returns the maximum number of spare threads the scheduler may add to make up for blocked worker threads.
+     *
+     * @see #setMaxSpareWorkers(int)
+     */
+    public int getMaxSpareWorkers() {
+        return maxSpareWorkers;
+    }
+
+    @Override
+    boolean isCompensating() {
+        return maxSpareWorkers > 0;
+    }
+
+    @Override
+    int getNumSpareWorkers() {
+        return numSpares.get();
+    }
+
+    @Override
+    void setBlockedCarriers(int blocked) {
+        super.setBlockedCarriers(blocked);
+        final int target = shutdown ? 0 : Math.min(blocked, maxSpareWorkers);
+        final boolean retire = target < targetSpares;
+        this.targetSpares = target;
+        for (int n; (n = numSpares.get()) < target;) {
+            if (numSpares.compareAndSet(n, n + 1))
+                new SpareWorkerThread().start();
+        }
+        if (retire)
+            signalSpares();
+    }
+
+    /**
+     * Wakes up the spare threads, if there are any, so that they look for work or retire.
+     */
+    void signalSpares() {
+        if (numSpares.get() > 0) {
+            for (SpareWorkerThread t : spareThreads)
+                LockSupport.unpark(t);
+        }
+    }
+
     private ForkJoinPool createForkJoinPool(String name, int parallelism, UncaughtExceptionHandler exceptionHandler, MonitorType monitorType) {
         final MonitoredForkJoinPool pool = new MonitoredForkJoinPool(name, parallelism, new ExtendedForkJoinWorkerFactory(name) {
             @Override
@@ -145,9 +228,43 @@ public class FiberForkJoinScheduler extends FiberScheduler {
 
     @Override
     Future<Void> schedule(Fiber<?> fiber, Object blocker, long delay, TimeUnit unit) {
+        if (timerShards != null)
+            return timerShards.schedule(getTimerShard(Thread.currentThread()), fiber, blocker, delay, unit);
         return timer.schedule(fiber, blocker, delay, unit);
     }
 
+    private FiberTimerShards.Shard getTimerShard(Thread currentThread) {
+        if (currentThread instanceof FiberWorkerThread && ((FiberWorkerThread) currentThread).getPool() == fjPool)
+            return ((FiberWorkerThread) currentThread).timerShard;
+        return null;
+    }
+
+    /**
+     * Resumes fibers whose timeouts have expired in the current worker's timer shard. Called in between running fibers.
+     */
+    void expireTimers(Thread currentThread) {
+        if (timerShards != null) {
+            final FiberTimerShards.Shard shard = getTimerShard(currentThread);
+            if (shard != null)
+                timerShards.expire(shard);
+        }
+    }
+
+    @Override
+    boolean startHandOff() {
+        final Thread currentThread = Thread.currentThread();
+        if (currentThread instanceof FiberWorkerThread && ((FiberWorkerThread) currentThread).getPool() == fjPool) {
+            ((FiberWorkerThread) currentThread).handingOff = true;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    void endHandOff() {
+        ((FiberWorkerThread) Thread.currentThread()).handingOff = false;
+    }
+
     @Override
     <V> FiberTask<V> newFiberTask(Fiber<V> fiber) {
         return new FiberForkJoinTask<V>(fiber, fjPool);
@@ -155,9 +272,11 @@ public class FiberForkJoinScheduler extends FiberScheduler {
 
     @Override
     Map<Thread, Fiber> getRunningFibers() {
-        Map<Thread, Fiber> fibers = new HashMap<>(activeThreads.size() + 2);
+        Map<Thread, Fiber> fibers = new HashMap<>(activeThreads.size() + spareThreads.size() + 2);
         for (FiberWorkerThread t : activeThreads)
             fibers.put(t, getTargetFiber(t));
+        for (SpareWorkerThread t : spareThreads)
+            fibers.put(t, t.fiber);
         return fibers;
     }
 
@@ -168,7 +287,7 @@ public class FiberForkJoinScheduler extends FiberScheduler {
 
     @Override
     int getTimedQueueLength() {
-        return timer.getQueueLength();
+        return timer.getQueueLength() + (timerShards != null ? timerShards.getQueueLength() : 0);
     }
 
     @Override
@@ -191,16 +310,22 @@ public class FiberForkJoinScheduler extends FiberScheduler {
     void setCurrentFiber(Fiber target, Thread currentThread) {
         if (isFiberThread(currentThread))
             ParkableForkJoinTask.setTarget(currentThread, target.fiberRef);
-        else
+        else {
             Fiber.setCurrentStrand(target);
+            if (currentThread instanceof SpareWorkerThread)
+                ((SpareWorkerThread) currentThread).fiber = target;
+        }
     }
 
     @Override
     void setCurrentTarget(Object target, Thread currentThread) {
         if (isFiberThread(currentThread))
             ParkableForkJoinTask.setTarget(currentThread, target);
-        else
+        else {
             Fiber.setCurrentStrand((Strand) target);
+            if (currentThread instanceof SpareWorkerThread)
+                ((SpareWorkerThread) currentThread).fiber = target instanceof Fiber ? (Fiber) target : null;
+        }
     }
 
     @Override
@@ -211,6 +336,13 @@ public class FiberForkJoinScheduler extends FiberScheduler {
             return Fiber.getCurrentStrand();
     }
     
+    @Override
+    StackPool getStackPool(Thread currentThread) {
+        if (currentThread instanceof FiberWorkerThread && ((FiberWorkerThread) currentThread).getPool() == fjPool)
+            return ((FiberWorkerThread) currentThread).stackPool;
+        return null;
+    }
+
     void tryOnIdle() {
         if (FiberForkJoinTask.isIdle())
             onIdle();
@@ -220,10 +352,40 @@ public class FiberForkJoinScheduler extends FiberScheduler {
     }
 
     private class FiberWorkerThread extends ExtendedForkJoinWorkerThread {
+        final StackPool stackPool = StackPool.ENABLED ? new StackPool() : null;
+        final FiberTimerShards.Shard timerShard = timerShards != null ? timerShards.newShard() : null;
+        boolean handingOff;
+        FiberForkJoinTask<?> runNext; // the fiber handed off to this worker, Go's runnext
+
         public FiberWorkerThread(ForkJoinPool pool) {
             super(pool);
         }
 
+        boolean handOff(FiberForkJoinTask<?> task) {
+            if (!handingOff)
+                return false;
+            handingOff = false;
+            if (runNext != null)
+                runNext.fork(); // handed off earlier but not yet run; the newest one runs next
+            runNext = task;
+            return true;
+        }
+
+        /**
+         * Runs the fibers handed off to this worker, as long as each hands off to the next, but no more than {@link #MAX_HAND_OFFS}
+         * in a row so that the fibers waiting in the queue aren't starved.
+         */
+        void runHandedOff() {
+            FiberForkJoinTask<?> task;
+            for (int i = 0; (task = runNext) != null; i++) {
+                runNext = null;
+                if (i < MAX_HAND_OFFS)
+                    task.doExec();
+                else
+                    task.fork();
+            }
+        }
+
         @Override
         protected void onStart() {
             super.onStart();
@@ -234,6 +396,47 @@ public class FiberForkJoinScheduler extends FiberScheduler {
         protected void onTermination(Throwable exception) {
             super.onTermination(exception);
             activeThreads.remove(this);
+            if (timerShard != null)
+                timerShards.retire(timerShard);
+        }
+    }
+
+    /**
+     * A thread that runs fibers in place of a blocked worker. Not being one of the pool's workers, it helps the pool by taking tasks from
+     * its queues, and the fibers it runs are resubmitted to the pool when they're unparked.
+     */
+    private final class SpareWorkerThread extends Thread {
+        volatile Fiber fiber; // the fiber this thread is running, for getRunningFibers (spares have no task target to find it by)
+
+        SpareWorkerThread() {
+            super("ForkJoinPool-" + FiberForkJoinScheduler.this.getName() + "-spare-" + spareSequence.incrementAndGet());
+            setDaemon(true);
+            final UncaughtExceptionHandler ueh = fjPool.getUncaughtExceptionHandler();
+            if (ueh != null)
+                setUncaughtExceptionHandler(ueh);
+        }
+
+        @Override
+        public void run() {
+            spareThreads.add(this);
+            try {
+                while (!retire()) {
+                    fjPool.awaitQuiescence(0, TimeUnit.NANOSECONDS); // runs tasks until it finds none
+                    LockSupport.parkNanos(this, SPARE_IDLE_NANOS);
+                }
+            } finally {
+                spareThreads.remove(this);
+            }
+        }
+
+        private boolean retire() {
+            for (;;) {
+                final int n = numSpares.get();
+                if (n <= targetSpares && !shutdown)
+                    return false;
+                if (numSpares.compareAndSet(n, n - 1))
+                    return true;
+            }
         }
     }
 
@@ -260,10 +463,24 @@ public class FiberForkJoinScheduler extends FiberScheduler {
 //            final FibersMonitor monitor = fiber.getMonitor();
 //            if (monitor != null & fiber.getState() != Strand.State.STARTED)
 //                monitor.fiberResumed();
-            if (getPool() == fjPool)
-                fork();
-            else
+            if (getPool() == fjPool) {
+                final Thread currentThread = Thread.currentThread();
+                if (!(currentThread instanceof FiberWorkerThread && ((FiberWorkerThread) currentThread).handOff(this)))
+                    fork();
+            } else {
                 fjPool.submit(this);
+                if (fiber.getScheduler() instanceof FiberForkJoinScheduler)
+                    ((FiberForkJoinScheduler) fiber.getScheduler()).signalSpares();
+            }
+        }
+
+        @Override
+        protected boolean exec() {
+            final boolean done = super.exec();
+            final Thread currentThread = Thread.currentThread();
+            if (currentThread instanceof FiberWorkerThread)
+                ((FiberWorkerThread) currentThread).runHandedOff();
+            return done;
         }
 
         @Override
@@ -317,6 +534,13 @@ public class FiberForkJoinScheduler extends FiberScheduler {
 
         @Override
         public void doPark(boolean yield) {
+            if (yield && fiber.preempted) {
+                // A preempted fiber is pushed to the worker's local queue, which the worker drains before it looks at the pool's submission
+                // queues, so we move a submitted task (say, a fiber started or unparked by a thread) ahead of it.
+                final ForkJoinTask<?> submitted = pollSubmission();
+                if (submitted != null)
+                    submitted.fork();
+            }
             super.doPark(yield);
         }
 
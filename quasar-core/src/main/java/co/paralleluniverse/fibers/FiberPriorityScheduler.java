@@ -0,0 +1,350 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.common.monitoring.MonitorType;
+import co.paralleluniverse.strands.Strand;
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fiber scheduler that honors {@link Fiber#setPriority(int) fiber priorities}.
+ * <p>
+ * Fiber priorities are mapped onto a small number of <i>bands</i>, band 0 holding the highest priorities. Every worker thread has a deque
+ * per band, to which it pushes the fibers that are scheduled on it (e.g., fibers it unparks or that yield on it), and workers that have
+ * run out of work steal from the others' deques. Fibers scheduled by threads outside the scheduler (including the timer thread) go to a
+ * shared queue per band.</p>
+ * <p>
+ * Workers pick the band of the next fiber to run by weighted round-robin: each band is picked {@value #RATIO} times as often as the one
+ * below it, and a band that has nothing to run gives its turn to the highest band that does. So while latency-critical fibers run ahead of
+ * bulk-processing ones, the lowest band still gets at least its weighted share of the workers and is never starved.
+ * Because a running fiber is not interrupted (unless {@link FiberScheduler#setTimeSlice(long, java.util.concurrent.TimeUnit) preemption}
+ * is on), a high-priority fiber may still have to wait for the fibers already running to park or yield.</p>
+ * <p>
+ * {@code Runnable}s {@link #execute(Runnable) executed} directly on the scheduler, rather than fibers, run in the band of
+ * {@link Strand#NORM_PRIORITY normal priority}.</p>
+ * <p>
+ * Fibers scheduled after the scheduler has been {@link #shutdown() shut down} are never run.</p>
+ *
+ * @author pron
+ */
+public class FiberPriorityScheduler extends FiberExecutorScheduler {
+    /**
+     * The number of bands used by the constructors that don't take one.
+     */
+    public static final int DEFAULT_BANDS = 3;
+    /**
+     * The largest number of bands supported.
+     */
+    public static final int MAX_BANDS = 5;
+    /**
+     * The ratio between the weights of adjacent bands.
+     */
+    public static final int RATIO = 4;
+
+    private final int bands;
+    private final int[] bandOfPriority;
+    private final byte[] turns; // the weighted round-robin schedule
+    private final Queue<Runnable>[] submissions;
+    private final Worker[] workers;
+    private final Queue<Worker> idleWorkers = new ConcurrentLinkedQueue<>();
+    private volatile boolean shutdown;
+
+    /**
+     * Creates a new fiber scheduler.
+     *
+     * @param name             the scheuler's name. This name is used in naming the scheduler's threads.
+     * @param parallelism      the number of threads in the pool
+     * @param bands            the number of priority bands, between 1 and {@link #MAX_BANDS}.
+     * @param exceptionHandler an {@link UncaughtExceptionHandler UncaughtExceptionHandler} to be used for exceptions thrown in fibers that aren't caught.
+     * @param monitorType      the {@link MonitorType} type to use for the scheduler.
+     * @param detailedInfo     whether detailed information about the fibers is collected by the fibers monitor.
+     */
+    @SuppressWarnings("unchecked")
+    public FiberPriorityScheduler(String name, int parallelism, int bands, UncaughtExceptionHandler exceptionHandler, MonitorType monitorType, boolean detailedInfo) {
+        super(name, null, monitorType, detailedInfo);
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        if (bands < 1 || bands > MAX_BANDS)
+            throw new IllegalArgumentException("bands must be between 1 and " + MAX_BANDS + ": " + bands);
+        this.bands = bands;
+
+        final int priorities = Strand.MAX_PRIORITY - Strand.MIN_PRIORITY + 1;
+        this.bandOfPriority = new int[Strand.MAX_PRIORITY + 1];
+        for (int p = Strand.MIN_PRIORITY; p <= Strand.MAX_PRIORITY; p++)
+            bandOfPriority[p] = (Strand.MAX_PRIORITY - p) * bands / priorities;
+        this.turns = roundRobin(bands);
+
+        this.submissions = new Queue[bands];
+        for (int b = 0; b < bands; b++)
+            submissions[b] = new ConcurrentLinkedQueue<>();
+
+        this.workers = new Worker[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Worker(i);
+            if (exceptionHandler != null)
+                workers[i].setUncaughtExceptionHandler(exceptionHandler);
+        }
+        for (Worker w : workers)
+            w.start();
+    }
+
+    /**
+     * Creates a new fiber scheduler with {@link #DEFAULT_BANDS} bands, using a default {@link UncaughtExceptionHandler UncaughtExceptionHandler}.
+     *
+     * @param name         the scheuler's name. This name is used in naming the scheduler's threads.
+     * @param parallelism  the number of threads in the pool
+     * @param monitorType  the {@link MonitorType} type to use for the scheduler.
+     * @param detailedInfo whether detailed information about the fibers is collected by the fibers monitor.
+     */
+    public FiberPriorityScheduler(String name, int parallelism, MonitorType monitorType, boolean detailedInfo) {
+        this(name, parallelism, DEFAULT_BANDS, null, monitorType, detailedInfo);
+    }
+
+    /**
+     * Creates a new fiber scheduler with {@link #DEFAULT_BANDS} bands, using a default {@link UncaughtExceptionHandler UncaughtExceptionHandler}
+     * and no monitoring.
+     *
+     * @param name        the scheuler's name. This name is used in naming the scheduler's threads.
+     * @param parallelism the number of threads in the pool
+     */
+    public FiberPriorityScheduler(String name, int parallelism) {
+        this(name, parallelism, DEFAULT_BANDS, null, null, false);
+    }
+
+    /**
+     * Computes a smooth weighted round-robin schedule in which band {@code b} has {@code RATIO^(bands-1-b)} turns, spread as evenly as possible.
+     */
+    private static byte[] roundRobin(int bands) {
+        final int[] weights = new int[bands];
+        int total = 0;
+        for (int b = bands - 1, w = 1; b >= 0; b--, w *= RATIO) {
+            weights[b] = w;
+            total += w;
+        }
+        final byte[] schedule = new byte[total];
+        final int[] current = new int[bands];
+        for (int i = 0; i < total; i++) {
+            int best = 0;
+            for (int b = 0; b < bands; b++) {
+                current[b] += weights[b];
+                if (current[b] > current[best])
+                    best = b;
+            }
+            current[best] -= total;
+            schedule[i] = (byte) best;
+        }
+        return schedule;
+    }
+
+    /**
+     * Returns the number of priority bands.
+     */
+    public int getBands() {
+        return bands;
+    }
+
+    /**
+     * Returns the band fibers of the given priority are scheduled in; 0 is the highest.
+     *
+     * @param priority a priority between {@link Strand#MIN_PRIORITY} and {@link Strand#MAX_PRIORITY}
+     */
+    public int getBand(int priority) {
+        return bandOfPriority[priority];
+    }
+
+    private int bandOf(Runnable task) {
+        if (task instanceof FiberSchedulerTask)
+            return bandOfPriority[((FiberSchedulerTask) task).getFiber().getPriority()];
+        return bandOfPriority[Strand.NORM_PRIORITY];
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        final int band = bandOf(command);
+        final Worker w = currentWorker();
+        if (w != null)
+            w.deques[band].offerLast(command);
+        else
+            submissions[band].offer(command);
+        signalWork();
+    }
+
+    /**
+     * Wakes up an idle worker, if there is one.
+     */
+    private void signalWork() {
+        Worker w;
+        while ((w = idleWorkers.poll()) != null) {
+            if (w.wake())
+                return;
+        }
+    }
+
+    private Worker currentWorker() {
+        final Thread t = Thread.currentThread();
+        return t instanceof Worker && ((Worker) t).scheduler() == this ? (Worker) t : null;
+    }
+
+    @Override
+    public void shutdown() {
+        this.shutdown = true;
+        for (Worker w : workers)
+            LockSupport.unpark(w);
+        super.shutdown();
+    }
+
+    @Override
+    protected boolean isCurrentThreadInScheduler() {
+        return currentWorker() != null;
+    }
+
+    @Override
+    protected int getQueueLength() {
+        int n = 0;
+        for (int b = 0; b < bands; b++) {
+            n += submissions[b].size();
+            for (Worker w : workers)
+                n += w.deques[b].size();
+        }
+        return n;
+    }
+
+    @Override
+    protected Map<Thread, Fiber> getRunningFibers() {
+        final Map<Thread, Fiber> fibers = new HashMap<>(workers.length + 2);
+        for (Worker w : workers) {
+            final Runnable task = w.running; // racy, but that's good enough for monitoring
+            fibers.put(w, task instanceof FiberSchedulerTask ? ((FiberSchedulerTask) task).getFiber() : null);
+        }
+        return fibers;
+    }
+
+    @Override
+    StackPool getStackPool(Thread currentThread) {
+        if (currentThread instanceof Worker && ((Worker) currentThread).scheduler() == this)
+            return ((Worker) currentThread).stackPool;
+        return null;
+    }
+
+    private final class Worker extends Thread {
+        final int index;
+        final ConcurrentLinkedDeque<Runnable>[] deques;
+        final StackPool stackPool = StackPool.ENABLED ? new StackPool() : null;
+        Runnable running;
+        private int turn;
+        private volatile boolean idle;
+
+        @SuppressWarnings("unchecked")
+        Worker(int index) {
+            super("FiberPriorityScheduler-" + FiberPriorityScheduler.this.getName() + "-worker-" + index);
+            setDaemon(true);
+            this.index = index;
+            this.deques = new ConcurrentLinkedDeque[bands];
+            for (int b = 0; b < bands; b++)
+                deques[b] = new ConcurrentLinkedDeque<>();
+        }
+
+        FiberPriorityScheduler scheduler() {
+            return FiberPriorityScheduler.this;
+        }
+
+        @Override
+        public void run() {
+            while (!shutdown) {
+                Runnable task = next();
+                if (task == null) {
+                    // publish our idleness before looking again, so that a task scheduled concurrently either sees us or is seen by us
+                    idle = true;
+                    idleWorkers.offer(this);
+                    task = next();
+                    if (task == null) {
+                        while (idle && !shutdown)
+                            LockSupport.park(this);
+                        continue;
+                    }
+                    if (!wake())
+                        signalWork(); // someone has already used up a wakeup on us; pass it on
+                }
+                runTask(task);
+            }
+        }
+
+        boolean wake() {
+            if (idle && IDLE.compareAndSet(this, true, false)) {
+                LockSupport.unpark(this);
+                return true;
+            }
+            return false;
+        }
+
+        private void runTask(Runnable task) {
+            running = task;
+            try {
+                task.run();
+            } catch (Throwable t) {
+                getUncaughtExceptionHandler().uncaughtException(this, t);
+            } finally {
+                running = null;
+            }
+        }
+
+        /**
+         * Picks the next task: the band whose turn it is, or, if it has nothing to run, the highest band that does.
+         */
+        private Runnable next() {
+            final int t = turn;
+            turn = t + 1 < turns.length ? t + 1 : 0;
+            final boolean submissionsFirst = (t & 1) == 0; // so that neither local nor submitted tasks can hold up the other
+            Runnable task = poll(turns[t], submissionsFirst);
+            for (int b = 0; task == null && b < bands; b++)
+                task = poll(b, submissionsFirst);
+            return task;
+        }
+
+        private Runnable poll(int band, boolean submissionsFirst) {
+            Runnable task;
+            if (submissionsFirst) {
+                if ((task = submissions[band].poll()) != null || (task = deques[band].pollFirst()) != null)
+                    return task;
+            } else {
+                if ((task = deques[band].pollFirst()) != null || (task = submissions[band].poll()) != null)
+                    return task;
+            }
+            for (int i = 1; i < workers.length; i++) {
+                final int victim = index + i < workers.length ? index + i : index + i - workers.length;
+                if ((task = workers[victim].deques[band].pollLast()) != null) // steal from the end the owner isn't taking from
+                    return task;
+            }
+            return null;
+        }
+    }
+
+    private static final VarHandle IDLE;
+
+    static {
+        try {
+            IDLE = MethodHandles.lookup().findVarHandle(Worker.class, "idle", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
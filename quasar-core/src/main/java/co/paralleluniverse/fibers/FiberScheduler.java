@@ -31,8 +31,11 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class FiberScheduler implements FiberFactory, StrandFactory {
     static final FibersMonitor NOOP_FIBERS_MONITOR = new NoopFibersMonitor();
+    private static final long DEFAULT_TIME_SLICE_MICROS = Long.getLong("co.paralleluniverse.fibers.timeSliceMicros", 0);
     private final String name;
     private final FibersMonitor fibersMonitor;
+    private volatile long timeSliceNanos = TimeUnit.MICROSECONDS.toNanos(DEFAULT_TIME_SLICE_MICROS);
+    private volatile int blockedCarriers;
     final ConcurrentMap<SchedulerLocal, SchedulerLocal.Entry<?>> schedLocals = new MapMaker().weakKeys().makeMap();
 
     FiberScheduler(String name, MonitorType monitorType, boolean detailedInfo) {
@@ -66,6 +69,74 @@ public abstract class FiberScheduler implements FiberFactory, StrandFactory {
         return fibersMonitor;
     }
 
+    /**
+     * Sets the time a fiber scheduled by this scheduler may run before it is preempted, i.e. made to yield so that other fibers may run.
+     * Fibers are only preempted at the preemption points inserted by the instrumentation when its preemption mode is on
+     * (the {@code p} agent argument or the {@code co.paralleluniverse.fibers.instrument.preemption} system property), at loop heads and
+     * suspendable calls in suspendable methods; a fiber is never preempted in code that isn't instrumented.
+     * The default is taken from the {@code co.paralleluniverse.fibers.timeSliceMicros} system property, and is 0 if it isn't set.
+     *
+     * @param timeSlice the time slice; 0 turns preemption off
+     * @param unit      {@code timeSlice}'s time unit
+     */
+    public void setTimeSlice(long timeSlice, TimeUnit unit) {
+        if (timeSlice < 0)
+            throw new IllegalArgumentException("timeSlice must be non-negative: " + timeSlice);
+        this.timeSliceNanos = unit.toNanos(timeSlice);
+    }
+
+    /**
+     * Returns the time a fiber scheduled by this scheduler may run before it is preempted.
+     *
+     * @see #setTimeSlice(long, TimeUnit)
+     */
+    public long getTimeSlice(TimeUnit unit) {
+        return unit.convert(timeSliceNanos, TimeUnit.NANOSECONDS);
+    }
+
+    long getTimeSliceNanos() {
+        return timeSliceNanos;
+    }
+
+    /**
+     * Called periodically by the timer with the number of the scheduler's threads that have been blocked inside a fiber for longer than
+     * the blocked-carrier threshold.
+     */
+    void setBlockedCarriers(int blocked) {
+        this.blockedCarriers = blocked;
+    }
+
+    int getNumBlockedCarriers() {
+        return blockedCarriers;
+    }
+
+    int getNumSpareWorkers() {
+        return 0;
+    }
+
+    /**
+     * Whether this scheduler adds threads to make up for blocked ones, in which case the timer looks for blocked threads more frequently.
+     */
+    boolean isCompensating() {
+        return false;
+    }
+
+    /**
+     * Until {@link #endHandOff() endHandOff} is called, the first of this scheduler's fibers to be unparked by the current thread is
+     * kept by the thread to be run next, rather than scheduled behind the work already waiting for it.
+     *
+     * @return {@code false} if this scheduler doesn't support hand-off, or the current thread isn't one of its workers.
+     */
+    boolean startHandOff() {
+        return false;
+    }
+
+    /**
+     * Ends a hand-off started by {@link #startHandOff() startHandOff}.
+     */
+    void endHandOff() {
+    }
+
     @Override
     public <T> Fiber<T> newFiber(SuspendableCallable<T> target) {
         return new Fiber<T>(this, target);
@@ -95,6 +166,14 @@ public abstract class FiberScheduler implements FiberFactory, StrandFactory {
     abstract Object getCurrentTarget(Thread currentThread);
 
     abstract <V> FiberTask<V> newFiberTask(Fiber<V> fiber);
+
+    /**
+     * Returns the {@link StackPool} owned by the given thread, or {@code null} if the thread does not belong to this scheduler
+     * or the scheduler does not pool fiber stacks.
+     */
+    StackPool getStackPool(Thread currentThread) {
+        return null;
+    }
     
     public abstract Executor getExecutor();
 }
@@ -0,0 +1,39 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import java.util.Map;
+
+/**
+ * An MXBean exposing the initial fiber stack sizes learned when adaptive stack sizing is turned on
+ * (with the {@code co.paralleluniverse.fibers.adaptiveStackSize} system property).
+ *
+ * @author pron
+ */
+public interface FiberStackSizesMXBean {
+    /**
+     * The learned stack size (in slots) for each fiber target class.
+     */
+    Map<String, Integer> getLearnedStackSizes();
+
+    /**
+     * The number of terminated fibers whose stack high-water mark has been recorded.
+     */
+    long getSamples();
+
+    /**
+     * Forgets all learned stack sizes.
+     */
+    void reset();
+}
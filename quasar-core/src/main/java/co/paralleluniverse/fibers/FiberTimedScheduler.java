@@ -22,6 +22,7 @@ package co.paralleluniverse.fibers;
 
 import co.paralleluniverse.common.util.SystemProperties;
 import co.paralleluniverse.concurrent.util.SingleConsumerNonblockingProducerDelayQueue;
+import co.paralleluniverse.concurrent.util.TimingWheelDelayQueue;
 import co.paralleluniverse.strands.Strand;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -36,6 +37,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import java.util.concurrent.TimeoutException;
@@ -44,12 +46,18 @@ import java.util.concurrent.locks.ReentrantLock;
 
 public class FiberTimedScheduler {
     private static final boolean USE_LOCKFREE_DELAY_QUEUE = SystemProperties.isEmptyOrTrue("co.paralleluniverse.fibers.useLockFreeDelayQueue");
+    private static final boolean USE_TIMING_WHEEL = SystemProperties.isEmptyOrTrue("co.paralleluniverse.fibers.useTimingWheel");
+    static final long TIMING_WHEEL_TICK_MICROS = Long.getLong("co.paralleluniverse.fibers.timingWheelTickMicros", 1000);
     private static final boolean DETECT_RUNAWAY_FIBERS = SystemProperties.isNotFalse("co.paralleluniverse.fibers.detectRunawayFibers");
 
     /**
      * The duration of a single fiber run that is considered a problem
      */
     private static final long MAX_RUN_DURATION = NANOSECONDS.convert(200, MILLISECONDS);
+    /**
+     * The duration a scheduler thread must be blocked (or waiting) inside a fiber to count as a blocked carrier
+     */
+    private static final long BLOCKED_CARRIER_THRESHOLD = NANOSECONDS.convert(Long.getLong("co.paralleluniverse.fibers.blockedCarrierThresholdMillis", 50), MILLISECONDS);
     /*
      * TODO:
      * We're currently feeding the fj-pool sequentially (from a single thread).
@@ -62,6 +70,7 @@ public class FiberTimedScheduler {
     private static final AtomicInteger nameSuffixSequence = new AtomicInteger();
     private final Thread worker;
     private final BlockingQueue<ScheduledFutureTask> workQueue;
+    private final boolean timingWheel;
     private static final int RUNNING = 0;
     private static final int SHUTDOWN = 1;
     private static final int STOP = 1;
@@ -72,8 +81,33 @@ public class FiberTimedScheduler {
     private final FibersMonitor monitor;
     private Map<Thread, FiberInfo> fibersInfo = new IdentityHashMap<Thread, FiberInfo>();
 
+    /**
+     * The data structure holding a {@link FiberTimedScheduler}'s pending timeouts.
+     */
+    public enum QueueType {
+        /**
+         * A lock-based delay queue. The default.
+         */
+        DELAY_QUEUE,
+        /**
+         * A lock-free delay queue based on a skip-list.
+         * Selected by default if the {@code co.paralleluniverse.fibers.useLockFreeDelayQueue} system property is set.
+         */
+        LOCK_FREE_DELAY_QUEUE,
+        /**
+         * A hierarchical timing wheel, with constant-time scheduling and cancellation. Timeouts may fire up to one tick late, where
+         * the tick is set by the {@code co.paralleluniverse.fibers.timingWheelTickMicros} system property (default: 1000).
+         * Selected by default if the {@code co.paralleluniverse.fibers.useTimingWheel} system property is set.
+         */
+        TIMING_WHEEL;
+
+        static QueueType getDefault() {
+            return USE_TIMING_WHEEL ? TIMING_WHEEL : USE_LOCKFREE_DELAY_QUEUE ? LOCK_FREE_DELAY_QUEUE : DELAY_QUEUE;
+        }
+    }
+
     @SuppressWarnings("CallToThreadStartDuringObjectConstruction")
-    public FiberTimedScheduler(FiberScheduler scheduler, ThreadFactory threadFactory, FibersMonitor monitor) {
+    public FiberTimedScheduler(FiberScheduler scheduler, ThreadFactory threadFactory, FibersMonitor monitor, QueueType queueType) {
         this.scheduler = scheduler;
         this.worker = threadFactory.newThread(new Runnable() {
             @Override
@@ -81,13 +115,27 @@ public class FiberTimedScheduler {
                 work();
             }
         });
-        this.workQueue = USE_LOCKFREE_DELAY_QUEUE ? new SingleConsumerNonblockingProducerDelayQueue<ScheduledFutureTask>() : new co.paralleluniverse.concurrent.util.DelayQueue<ScheduledFutureTask>();
+        switch (queueType) {
+            case TIMING_WHEEL:
+                this.workQueue = new TimingWheelDelayQueue<ScheduledFutureTask>(TIMING_WHEEL_TICK_MICROS, MICROSECONDS);
+                break;
+            case LOCK_FREE_DELAY_QUEUE:
+                this.workQueue = new SingleConsumerNonblockingProducerDelayQueue<ScheduledFutureTask>();
+                break;
+            default:
+                this.workQueue = new co.paralleluniverse.concurrent.util.DelayQueue<ScheduledFutureTask>();
+        }
+        this.timingWheel = queueType == QueueType.TIMING_WHEEL;
 
         this.monitor = monitor;
 
         worker.start();
     }
 
+    public FiberTimedScheduler(FiberScheduler scheduler, ThreadFactory threadFactory, FibersMonitor monitor) {
+        this(scheduler, threadFactory, monitor, QueueType.getDefault());
+    }
+
     public FiberTimedScheduler(FiberScheduler scheduler, FibersMonitor monitor) {
         this(scheduler, new ThreadFactory() {
             @Override
@@ -117,9 +165,12 @@ public class FiberTimedScheduler {
         try {
             int counter = 0;
             long lastRanFindProblemFibers = 0;
+            long lastReportedProblemFibers = 0;
             while (state == RUNNING) {
                 try {
-                    ScheduledFutureTask task = workQueue.poll(MAX_RUN_DURATION >>> 1, NANOSECONDS); // workQueue.take();
+                    final boolean compensating = scheduler.isCompensating();
+                    final long checkInterval = (compensating ? Math.min(MAX_RUN_DURATION, BLOCKED_CARRIER_THRESHOLD) : MAX_RUN_DURATION) >>> 1;
+                    ScheduledFutureTask task = workQueue.poll(checkInterval, NANOSECONDS); // workQueue.take();
 
                     if (task != null && !task.isCancelled()) {
                         long delay = task.delay;
@@ -134,10 +185,14 @@ public class FiberTimedScheduler {
                         run(task);
                     }
 
-                    if (DETECT_RUNAWAY_FIBERS) {
+                    if (DETECT_RUNAWAY_FIBERS || compensating) {
                         final long now = System.nanoTime();
-                        if (now - lastRanFindProblemFibers >= MAX_RUN_DURATION >>> 1) {
-                            reportProblemFibers(findProblemFibers(now, MAX_RUN_DURATION));
+                        if (now - lastRanFindProblemFibers >= checkInterval) {
+                            final Collection<Fiber> problemFibers = findProblemFibers(now, MAX_RUN_DURATION);
+                            if (DETECT_RUNAWAY_FIBERS && now - lastReportedProblemFibers >= MAX_RUN_DURATION >>> 1) {
+                                reportProblemFibers(problemFibers);
+                                lastReportedProblemFibers = now;
+                            }
                             lastRanFindProblemFibers = now;
                         }
                     }
@@ -192,7 +247,7 @@ public class FiberTimedScheduler {
         return System.nanoTime();
     }
 
-    private class ScheduledFutureTask implements Delayed, Future<Void> {
+    private class ScheduledFutureTask extends TimingWheelDelayQueue.Entry implements Future<Void> {
         final Fiber<?> fiber;
         final Object blocker;
         /**
@@ -236,6 +291,8 @@ public class FiberTimedScheduler {
         @Override
         public boolean cancel(boolean mayInterruptIfRunning) {
             this.cancelled = true;
+            if (timingWheel)
+                workQueue.remove(this); // constant time; lets the wheel drop the task without waiting for it to expire
             return true;
         }
 
@@ -320,6 +377,8 @@ public class FiberTimedScheduler {
      * Long.MAX_VALUE.
      */
     private long overflowFree(long delay) {
+        if (timingWheel)
+            return delay; // the wheel does not compare trigger times, and may only be peeked by the worker
         Delayed head = workQueue.peek();
         if (head != null) {
             long headDelay = head.getDelay(NANOSECONDS);
@@ -412,6 +471,7 @@ public class FiberTimedScheduler {
 
         fibersInfo.keySet().retainAll(fibs.keySet());
 
+        int blockedCarriers = 0;
         for (Iterator<Map.Entry<Thread, Fiber>> it = fibs.entrySet().iterator(); it.hasNext();) {
             final Map.Entry<Thread, Fiber> entry = it.next();
             final Thread t = entry.getKey();
@@ -428,12 +488,22 @@ public class FiberTimedScheduler {
                 fibersInfo.put(t, new FiberInfo(f, run, f != null ? now : -1));
             else if (fi.fiber != f | fi.run != run)
                 fi.set(f, run, f != null ? now : -1);
-            else if (f != null & now - fi.time > nanos)
-                pfs.add(f);
+            else if (f != null) {
+                final long duration = now - fi.time;
+                if (duration > nanos)
+                    pfs.add(f);
+                if (duration > BLOCKED_CARRIER_THRESHOLD && isBlocked(t.getState()))
+                    blockedCarriers++;
+            }
         }
+        scheduler.setBlockedCarriers(blockedCarriers);
         return pfs;
     }
 
+    private static boolean isBlocked(Thread.State state) {
+        return state == Thread.State.BLOCKED | state == Thread.State.WAITING | state == Thread.State.TIMED_WAITING;
+    }
+
     private void reportProblemFibers(Collection<Fiber> fs) {
         scheduler.getMonitor().setRunawayFibers(fs);
 
@@ -0,0 +1,253 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.common.util.SystemProperties;
+import co.paralleluniverse.concurrent.util.TimingWheelDelayQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-worker fiber timeouts for {@link FiberForkJoinScheduler}.
+ * <p>
+ * Each worker thread owns a {@link Shard} -- a {@link TimingWheelDelayQueue} -- holding the timeouts of the fibers that parked on
+ * it. The worker expires its own timeouts in between running fibers, at most once per tick, so the fibers are resumed on the
+ * worker's local queue rather than submitted to the pool by the timer thread. A single fallback thread expires the timeouts of
+ * workers that have not polled their shard for a few ticks, because they are idle or running a long fiber.</p>
+ * <p>
+ * Sharding is turned on with the {@code co.paralleluniverse.fibers.shardedTimers} system property.</p>
+ *
+ * @author pron
+ */
+final class FiberTimerShards {
+    static final boolean ENABLED = SystemProperties.isEmptyOrTrue("co.paralleluniverse.fibers.shardedTimers");
+    private static final long TICK_NANOS = MICROSECONDS.toNanos(FiberTimedScheduler.TIMING_WHEEL_TICK_MICROS);
+    private static final long STALE_NANOS = 4 * TICK_NANOS; // a shard not polled for this long is polled by the fallback thread
+    private static final long MAX_FALLBACK_SLEEP_NANOS = NANOSECONDS.convert(100, MILLISECONDS);
+    private static final long MAX_DELAY_NANOS = Long.MAX_VALUE >> 2;
+    //
+    private final FibersMonitor monitor;
+    private final Set<Shard> shards = Collections.newSetFromMap(new ConcurrentHashMap<Shard, Boolean>());
+    private final Shard shared; // for fibers parking off a worker thread; always polled by the fallback
+    private final Thread fallback;
+    private volatile boolean scanning = true;
+    private volatile long fallbackWakeup; // valid only when not scanning
+    private volatile boolean shutdown;
+
+    FiberTimerShards(ThreadFactory threadFactory, FibersMonitor monitor) {
+        this.monitor = monitor;
+        this.shared = newShard();
+        this.fallback = threadFactory.newThread(new Runnable() {
+            @Override
+            public void run() {
+                fallback();
+            }
+        });
+        fallback.start();
+    }
+
+    /**
+     * Creates a new shard for a worker thread.
+     */
+    Shard newShard() {
+        final Shard shard = new Shard();
+        shards.add(shard);
+        return shard;
+    }
+
+    /**
+     * Called when a shard's owner terminates. Its remaining timeouts are left to the fallback thread.
+     */
+    void retire(Shard shard) {
+        shard.retired = true;
+        shard.lastPolled = System.nanoTime() - STALE_NANOS;
+        LockSupport.unpark(fallback);
+    }
+
+    /**
+     * Schedules a fiber timeout in the given shard, or in a shared shard if {@code shard} is {@code null}.
+     */
+    Future<Void> schedule(Shard shard, Fiber<?> fiber, Object blocker, long delay, TimeUnit unit) {
+        if (fiber == null || unit == null)
+            throw new NullPointerException();
+        if (shutdown)
+            throw new RejectedExecutionException("Timer for " + fiber.getScheduler() + " has been shut down");
+        final Timeout t = new Timeout(shard != null ? shard : shared, fiber, blocker, triggerTime(delay, unit));
+        t.shard.queue.offer(t);
+        // An active owner expires the timeout itself, and if it goes idle, the fallback -- which wakes up at least every STALE_NANOS
+        // while an owner is active -- picks it up no later than it would any other stale timeout.
+        final long due = isPolledByFallback(t.shard, System.nanoTime()) ? t.time : t.time + STALE_NANOS;
+        if (scanning || due - fallbackWakeup < 0)
+            LockSupport.unpark(fallback);
+        return t;
+    }
+
+    private boolean isPolledByFallback(Shard shard, long now) {
+        return shard == shared || shard.retired || now - shard.lastPolled >= STALE_NANOS;
+    }
+
+    private static long triggerTime(long delay, TimeUnit unit) {
+        return System.nanoTime() + Math.min(unit.toNanos(delay < 0 ? 0 : delay), MAX_DELAY_NANOS);
+    }
+
+    /**
+     * Resumes the fibers whose timeouts have expired in the given shard. Called by the shard's owner in between running fibers.
+     */
+    void expire(Shard shard) {
+        final long now = System.nanoTime();
+        if (now - shard.lastPolled < TICK_NANOS || !shard.lock.tryLock())
+            return;
+        try {
+            shard.lastPolled = now;
+            expire0(shard, now);
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private void expire0(Shard shard, long now) {
+        for (Timeout t; (t = shard.queue.poll()) != null;) {
+            if (monitor != null)
+                monitor.timedParkLatency(now - t.time);
+            try {
+                t.fiber.unpark(t.blocker);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    int getQueueLength() {
+        int n = 0;
+        for (Shard s : shards)
+            n += s.queue.size();
+        return n;
+    }
+
+    void shutdown() {
+        this.shutdown = true;
+        LockSupport.unpark(fallback);
+    }
+
+    @SuppressWarnings("CallToPrintStackTrace")
+    private void fallback() {
+        try {
+            while (!shutdown) {
+                scanning = true; // any timeout scheduled during the scan will prevent us from sleeping
+                final long now = System.nanoTime();
+                long sleep = MAX_FALLBACK_SLEEP_NANOS;
+                for (Shard s : shards) {
+                    if (!isPolledByFallback(s, now)) {
+                        sleep = Math.min(sleep, STALE_NANOS); // the owner is active; check again in case it goes idle
+                    } else if (s.lock.tryLock()) {
+                        try {
+                            expire0(s, now);
+                            sleep = Math.min(sleep, s.queue.getDelayToNextExpiration(NANOSECONDS));
+                        } finally {
+                            s.lock.unlock();
+                        }
+                        if (s.retired && s.queue.isEmpty())
+                            shards.remove(s);
+                    } else {
+                        sleep = Math.min(sleep, STALE_NANOS);
+                    }
+                }
+                sleep = Math.max(sleep, TICK_NANOS);
+                fallbackWakeup = now + sleep;
+                scanning = false;
+                LockSupport.parkNanos(this, sleep);
+            }
+        } catch (Throwable e) {
+            System.err.println("FiberTimerShards fallback thread terminated!");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A worker's fiber timeouts. Only the thread holding the shard's lock may poll its queue.
+     */
+    static final class Shard {
+        final TimingWheelDelayQueue<Timeout> queue = new TimingWheelDelayQueue<>(TICK_NANOS, NANOSECONDS);
+        final ReentrantLock lock = new ReentrantLock();
+        volatile long lastPolled = System.nanoTime();
+        volatile boolean retired;
+    }
+
+    private static final class Timeout extends TimingWheelDelayQueue.Entry implements Future<Void> {
+        final Shard shard;
+        final Fiber<?> fiber;
+        final Object blocker;
+        final long time;
+
+        Timeout(Shard shard, Fiber<?> fiber, Object blocker, long time) {
+            this.shard = shard;
+            this.fiber = fiber;
+            this.blocker = blocker;
+            this.time = time;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(time, ((Timeout) o).time);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return shard.queue.remove(this);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isDone() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String toString() {
+            return "Timeout(" + blocker + ')';
+        }
+    }
+}
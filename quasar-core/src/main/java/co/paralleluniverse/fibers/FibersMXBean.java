@@ -40,6 +40,19 @@ public interface FibersMXBean {
     int getNumWaitingFibers();
 
     int getTimedQueueLength();
+
+    /**
+     * The number of the scheduler's threads that have been blocked inside a fiber, by blocking code that isn't fiber-aware, for longer than
+     * the threshold set by the {@code co.paralleluniverse.fibers.blockedCarrierThresholdMillis} system property.
+     */
+    int getNumBlockedCarriers();
+
+    /**
+     * The number of spare threads the scheduler has added to make up for blocked threads.
+     *
+     * @see FiberForkJoinScheduler#setMaxSpareWorkers(int)
+     */
+    int getNumSpareWorkers();
     
     /**
      * The fibers (and respective stack traces) that are currently holding their thread for a lengthy duration, either due to blocking
@@ -243,6 +243,16 @@ class JMXFibersMonitor extends StandardEmitterMBean implements FibersMonitor, No
         return scheduler.getTimedQueueLength();
     }
 
+    @Override
+    public int getNumBlockedCarriers() {
+        return scheduler.getNumBlockedCarriers();
+    }
+
+    @Override
+    public int getNumSpareWorkers() {
+        return scheduler.getNumSpareWorkers();
+    }
+
     @Override
     public long getSpuriousWakeups() {
         return spuriousWakeups;
@@ -14,7 +14,6 @@
 package co.paralleluniverse.fibers;
 
 import java.io.Serializable;
-import java.util.Arrays;
 
 /**
  * Internal Class - DO NOT USE! (Public so that instrumented code can access it)
@@ -40,21 +39,51 @@ public final class Stack implements Serializable {
     private static final long serialVersionUID = 12786283751253L;
     private final Fiber fiber;
     private int sp;
+    private transient int maxSP;    // high-water mark of sp; tracked only for adaptive stack sizing
     private transient boolean pushed;
     private long[] dataLong;        // holds primitives on stack as well as each method's entry point and the stack pointer
     private Object[] dataObject;    // holds refs on stack
 
     Stack(Fiber fiber, int stackSize) {
+        this(fiber, stackSize, null);
+    }
+
+    Stack(Fiber fiber, int stackSize, StackPool pool) {
         if (stackSize <= 0)
             throw new IllegalArgumentException("stackSize");
 
         this.fiber = fiber;
-        this.dataLong = new long[stackSize + (FRAME_RECORD_SIZE * INITIAL_METHOD_STACK_DEPTH)];
-        this.dataObject = new Object[stackSize + (FRAME_RECORD_SIZE * INITIAL_METHOD_STACK_DEPTH)];
+        allocate(stackSize + (FRAME_RECORD_SIZE * INITIAL_METHOD_STACK_DEPTH), pool);
 
         resumeStack();
     }
 
+    private void allocate(int size, StackPool pool) {
+        if (pool != null) {
+            size = StackPool.roundUp(size);
+            final long[] ls = pool.pollLongs(size);
+            if (ls != null) {
+                this.dataLong = ls;
+                this.dataObject = pool.pollObjects(size);
+                return;
+            }
+        }
+        this.dataLong = new long[size];
+        this.dataObject = new Object[size];
+    }
+
+    /**
+     * Called when the fiber terminates. Returns this stack's arrays to the given pool.
+     * The stack must not be used again unless {@link #resetStack() reset}.
+     */
+    final void release(StackPool pool) {
+        if (dataLong == null)
+            return;
+        pool.offer(dataLong, dataObject);
+        this.dataLong = null;
+        this.dataObject = null;
+    }
+
     public static Stack getStack() {
         final Fiber currentFiber = Fiber.currentFiber();
         return currentFiber != null ? currentFiber.stack : null;
@@ -73,6 +102,8 @@ public final class Stack implements Serializable {
 
     // for testing/benchmarking only
     void resetStack() {
+        if (dataLong == null)
+            allocate(Fiber.DEFAULT_STACK_SIZE + (FRAME_RECORD_SIZE * INITIAL_METHOD_STACK_DEPTH), null);
         resumeStack();
     }
 
@@ -133,6 +164,8 @@ public final class Stack implements Serializable {
         int nextMethodSP = nextMethodIdx + FRAME_RECORD_SIZE;
         if (nextMethodSP > dataObject.length)
             growStack(nextMethodSP);
+        if (AdaptiveStackSizes.ENABLED && nextMethodSP > maxSP)
+            maxSP = nextMethodSP;
 
         // clear next method's frame record
         dataLong[nextMethodIdx] = 0L;
@@ -143,6 +176,44 @@ public final class Stack implements Serializable {
             fiber.record(2, "Stack", "pushMethod     ", "%s %d %d", Thread.currentThread().getStackTrace()[2], entry, sp /*Arrays.toString(fiber.getStackTrace())*/);
     }
 
+    /**
+     * Called, instead of {@link #pushMethod(int, int) pushMethod}, before a call after which the current method's state is stored
+     * only if the call suspends, by {@link #beginDeferredStore(int) beginDeferredStore}.
+     *
+     * @param entry      the entry point in the current method for resume
+     * @param numSlots   the number of required stack slots for storing the state of the current method
+     * @return the current method's stack pointer, to be passed to {@code beginDeferredStore}
+     */
+    public final int pushMethodDeferred(int entry, int numSlots) {
+        pushMethod(entry, numSlots);
+        return sp;
+    }
+
+    /**
+     * Returns the current method's stack pointer, to be passed to {@link #beginDeferredStore(int) beginDeferredStore}
+     * when a deferred call is made again after resuming.
+     */
+    public final int getSP() {
+        return sp;
+    }
+
+    /**
+     * Called when a {@link #pushMethodDeferred(int, int) deferred call} has suspended, before the calling method's state is stored.
+     * The callees' frames are already on the stack, so the stack pointer is temporarily moved back to the caller's.
+     *
+     * @param methodSP the caller's stack pointer, as returned by {@code pushMethodDeferred}
+     * @return the stack pointer to be restored by {@link #endDeferredStore(int) endDeferredStore}
+     */
+    public final int beginDeferredStore(int methodSP) {
+        final int oldSP = sp;
+        sp = methodSP;
+        return oldSP;
+    }
+
+    public final void endDeferredStore(int oldSP) {
+        sp = oldSP;
+    }
+
     public final void popMethod(int slots) {
         pushed = false;
 
@@ -170,18 +241,55 @@ public final class Stack implements Serializable {
         fiber.onResume();
     }
 
+    /**
+     * Called, when resuming, at a call site that has a preemption point, before the call is made.
+     * If the current method has been preempted before making the call (rather than suspended within it), it is the deepest frame.
+     */
+    public final void postRestoreCall() throws SuspendExecution, InterruptedException {
+        if (getEntry(dataLong[sp + getNumSlots(dataLong[sp - FRAME_RECORD_SIZE])]) == 0) {
+            pushed = true; // the call follows
+            fiber.onResume();
+        }
+    }
+
     public final void preemptionPoint(int type) throws SuspendExecution {
         fiber.preemptionPoint(type);
     }
 
+    /**
+     * Called at a back-branch preemption point; if it returns {@code true}, the current method's state is stored and {@link #preempt() preempt} is called.
+     */
+    public final boolean shouldPreempt(int type) {
+        return fiber.checkPreemption(type);
+    }
+
+    public final void preempt() throws SuspendExecution {
+        fiber.preempt();
+    }
+
+    /**
+     * Returns the smallest initial stack size (as passed to the constructor) with which this stack would not have had to grow so far.
+     * Valid only when adaptive stack sizing is turned on.
+     */
+    final int getRequiredStackSize() {
+        return Math.max(1, maxSP - (FRAME_RECORD_SIZE * INITIAL_METHOD_STACK_DEPTH));
+    }
+
     private void growStack(int required) {
         int newSize = dataObject.length;
         do {
             newSize *= 2;
         } while (newSize < required);
 
-        dataLong = Arrays.copyOf(dataLong, newSize);
-        dataObject = Arrays.copyOf(dataObject, newSize);
+        final StackPool pool = StackPool.ENABLED ? fiber.getStackPool() : null;
+        final long[] oldLong = dataLong;
+        final Object[] oldObject = dataObject;
+        final int oldSize = oldObject.length;
+        allocate(newSize, pool);
+        System.arraycopy(oldLong, 0, dataLong, 0, oldSize);
+        System.arraycopy(oldObject, 0, dataObject, 0, oldSize);
+        if (pool != null)
+            pool.offer(oldLong, oldObject);
     }
 
     void dump() {
@@ -0,0 +1,130 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.common.util.SystemProperties;
+import java.util.Arrays;
+
+/**
+ * A free-list of {@link Stack} data arrays, bucketed by power-of-two size classes.
+ * <p>
+ * A pool is owned by a single scheduler worker thread and is never accessed concurrently, so it requires no synchronization.
+ * Terminated fibers return their arrays to the pool of the worker they terminated on, and new fibers spawned on a worker
+ * take their arrays from that worker's pool.</p>
+ * <p>
+ * Pooling is turned on with the {@code co.paralleluniverse.fibers.stackPool} system property.</p>
+ *
+ * @author pron
+ */
+final class StackPool {
+    static final boolean ENABLED = SystemProperties.isEmptyOrTrue("co.paralleluniverse.fibers.stackPool");
+    private static final int MIN_SIZE_SHIFT = 4;  // 16 slots
+    private static final int MAX_SIZE_SHIFT = 12; // 4096 slots
+    private static final int NUM_SIZE_CLASSES = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+    private static final int MAX_CACHED_PER_CLASS = Integer.getInteger("co.paralleluniverse.fibers.stackPool.maxCached", 64);
+    private final long[][][] longs = new long[NUM_SIZE_CLASSES][][];
+    private final Object[][][] objects = new Object[NUM_SIZE_CLASSES][][];
+    private final int[] counts = new int[NUM_SIZE_CLASSES];
+    private long hits;
+    private long misses;
+
+    /**
+     * Returns the length of the arrays in the size class that can hold {@code size} slots.
+     * Sizes above the largest size class are returned unchanged (and will not be pooled).
+     */
+    static int roundUp(int size) {
+        if (size <= (1 << MIN_SIZE_SHIFT))
+            return 1 << MIN_SIZE_SHIFT;
+        if (size > (1 << MAX_SIZE_SHIFT))
+            return size;
+        return Integer.highestOneBit(size - 1) << 1;
+    }
+
+    private static int sizeClass(int length) {
+        if (Integer.bitCount(length) != 1)
+            return -1;
+        final int shift = Integer.numberOfTrailingZeros(length);
+        if (shift < MIN_SIZE_SHIFT || shift > MAX_SIZE_SHIFT)
+            return -1;
+        return shift - MIN_SIZE_SHIFT;
+    }
+
+    /**
+     * Removes a {@code long} array of exactly the given length from the pool.
+     * Must be followed by a call to {@link #pollObjects(int) pollObjects} with the same length.
+     *
+     * @return a cleared array, or {@code null} if the pool has no array of the given size class.
+     */
+    long[] pollLongs(int length) {
+        final int sc = sizeClass(length);
+        if (sc < 0 || counts[sc] == 0) {
+            misses++;
+            return null;
+        }
+        hits++;
+        final long[][] ls = longs[sc];
+        final long[] a = ls[counts[sc] - 1];
+        ls[counts[sc] - 1] = null;
+        return a;
+    }
+
+    Object[] pollObjects(int length) {
+        final int sc = sizeClass(length);
+        final int n = --counts[sc];
+        final Object[][] os = objects[sc];
+        final Object[] a = os[n];
+        os[n] = null;
+        return a;
+    }
+
+    /**
+     * Returns a pair of stack arrays to the pool. The arrays are cleared before they're pooled.
+     *
+     * @return {@code true} if the arrays have been pooled; {@code false} if they've been left for the GC.
+     */
+    boolean offer(long[] dataLong, Object[] dataObject) {
+        if (dataLong.length != dataObject.length)
+            return false;
+        final int sc = sizeClass(dataLong.length);
+        if (sc < 0)
+            return false;
+        final int n = counts[sc];
+        if (n >= MAX_CACHED_PER_CLASS)
+            return false;
+        if (longs[sc] == null) {
+            longs[sc] = new long[MAX_CACHED_PER_CLASS][];
+            objects[sc] = new Object[MAX_CACHED_PER_CLASS][];
+        }
+
+        Arrays.fill(dataLong, 0L);
+        Arrays.fill(dataObject, null);
+        longs[sc][n] = dataLong;
+        objects[sc][n] = dataObject;
+        counts[sc] = n + 1;
+        return true;
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        return "StackPool{" + "counts: " + Arrays.toString(counts) + " hits: " + hits + " misses: " + misses + '}';
+    }
+}
@@ -78,8 +78,10 @@ import org.objectweb.asm.tree.JumpInsnNode;
 import org.objectweb.asm.tree.LabelNode;
 import org.objectweb.asm.tree.LineNumberNode;
 import org.objectweb.asm.tree.LocalVariableNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
 import org.objectweb.asm.tree.TryCatchBlockNode;
 import org.objectweb.asm.tree.analysis.Analyzer;
 import org.objectweb.asm.tree.analysis.AnalyzerException;
@@ -98,9 +100,9 @@ class InstrumentMethod {
     private static final boolean HANDLE_PROXY_INVOCATIONS = true;
 
     // private final boolean verifyInstrumentation; //
-    // private static final int PREEMPTION_BACKBRANCH = 0;
-    // private static final int PREEMPTION_CALL = 1;
-    private static final int NUM_LOCALS = 3; // = 3 + (verifyInstrumentation ? 1 : 0); // lvarStack, lvarResumed, lvarInvocationReturnValue
+    private static final int PREEMPTION_BACKBRANCH = 0;
+    private static final int PREEMPTION_CALL = 1;
+    private static final int NUM_LOCALS = 4; // = 4 + (verifyInstrumentation ? 1 : 0); // lvarStack, lvarResumed, lvarInvocationReturnValue, lvarDeferredSP
     private static final int ADD_OPERANDS = 6; // 4;
 
     // private static final String INTERRUPTED_EXCEPTION_NAME = Type.getInternalName(InterruptedException.class);
@@ -116,6 +118,7 @@ class InstrumentMethod {
     private final int lvarStack; // ref to Stack
     private final int lvarResumed; // boolean indicating if we've been resumed
     private final int lvarInvocationReturnValue;
+    private final int lvarDeferredSP; // the method's stack pointer at a call whose state store is deferred
     // private final int lvarSuspendableCalled; // true iff we've called another suspendable method (used when VERIFY_INSTRUMENTATION)
 
     private final int firstLocal;
@@ -130,6 +133,9 @@ class InstrumentMethod {
     private int warnedAboutBlocking;
 
     private boolean callsSuspendableSupers;
+    private int numDeferredStores;
+    private boolean preemption; // whether this method gets preemption points
+    private boolean[] loopHeads; // instructions that get a back-branch preemption point; null if preemption is off
 
     private int startSourceLine = -1;
     private int endSourceLine = -1;
@@ -149,6 +155,7 @@ class InstrumentMethod {
             this.lvarStack = mn.maxLocals;
             this.lvarResumed = mn.maxLocals + 1;
             this.lvarInvocationReturnValue = mn.maxLocals + 2;
+            this.lvarDeferredSP = mn.maxLocals + 3;
             // this.lvarSuspendableCalled = (verifyInstrumentation ? mn.maxLocals + 3 : -1);
             this.firstLocal = ((mn.access & Opcodes.ACC_STATIC) == Opcodes.ACC_STATIC) ? 0 : 1;
             this.maxRefSlots = 0;
@@ -251,12 +258,16 @@ class InstrumentMethod {
         final int numIns = mn.instructions.size();
 
         codeBlocks[0] = FrameInfo.FIRST;
+        int currSourceLine = -1;
         for (int i = 0; i < numIns; i++) {
             final Frame f = frames[i];
             if (f != null) { // reachable ?
                 final AbstractInsnNode in = mn.instructions.get(i);
-                if (in.getType() == AbstractInsnNode.METHOD_INSN || in.getType() == AbstractInsnNode.INVOKE_DYNAMIC_INSN) {
+                if (in.getType() == AbstractInsnNode.LINE)
+                    currSourceLine = ((LineNumberNode) in).line;
+                else if (in.getType() == AbstractInsnNode.METHOD_INSN || in.getType() == AbstractInsnNode.INVOKE_DYNAMIC_INSN) {
                     boolean susp = true;
+                    boolean suspendableSuper = false;
                     if (in.getType() == AbstractInsnNode.METHOD_INSN) {
                         final MethodInsnNode min = (MethodInsnNode) in;
                         int opcode = min.getOpcode();
@@ -281,6 +292,7 @@ class InstrumentMethod {
                             if (st == SuspendableType.SUSPENDABLE_SUPER) {
                                 db.log(LogLevel.DEBUG, "Method call at instruction %d to %s#%s%s to suspendable-super (instrumentation for proxy support will be enabled)", i, min.owner, min.name, min.desc);
                                 this.callsSuspendableSupers = true;
+                                suspendableSuper = true;
                             }
                         }
                     } else if (in.getType() == AbstractInsnNode.INVOKE_DYNAMIC_INSN) {
@@ -297,6 +309,11 @@ class InstrumentMethod {
                     if (susp) {
                         FrameInfo fi = addCodeBlock(f, i);
                         splitTryCatch(fi);
+                        if (suspendableSuper && canDeferStore(i, f, currSourceLine)) {
+                            db.log(LogLevel.DEBUG, "Call at instruction %d (line %d) to suspendable-super has not suspended in profile; deferring state store", i, currSourceLine);
+                            fi.deferStore = true;
+                            numDeferredStores++;
+                        }
                     } else if (in.getType() == AbstractInsnNode.METHOD_INSN) {// not invokedynamic
                         //noinspection ConstantConditions
                         final MethodInsnNode min = (MethodInsnNode) in;
@@ -304,11 +321,72 @@ class InstrumentMethod {
                         possiblyWarnAboutBlocking(min);
                     }
                 }
+                if (loopHeads != null && loopHeads[i]
+                        && (numCodeBlocks == 0 || codeBlocks[numCodeBlocks].endInstruction != i)) { // a suspendable call is a preemption point anyway
+                    db.log(LogLevel.DEBUG, "Back-branch preemption point at instruction %d", i);
+                    final FrameInfo fi = addCodeBlock(f, i);
+                    fi.preemption = true;
+                    splitTryCatch(fi);
+                }
             }
         }
         addCodeBlock(null, numIns);
     }
 
+    /**
+     * Marks the first instruction following each label that is the target of a backward jump (i.e. the head of a loop),
+     * where a back-branch preemption point is placed, provided it is reachable and the operand stack there is empty.
+     */
+    private boolean[] findLoopHeads() {
+        final int numIns = mn.instructions.size();
+        final boolean[] heads = new boolean[numIns];
+        for (int i = 0; i < numIns; i++) {
+            final AbstractInsnNode in = mn.instructions.get(i);
+            if (in instanceof JumpInsnNode)
+                markLoopHead(heads, i, ((JumpInsnNode) in).label);
+            else if (in instanceof TableSwitchInsnNode) {
+                markLoopHead(heads, i, ((TableSwitchInsnNode) in).dflt);
+                for (LabelNode l : ((TableSwitchInsnNode) in).labels)
+                    markLoopHead(heads, i, l);
+            } else if (in instanceof LookupSwitchInsnNode) {
+                markLoopHead(heads, i, ((LookupSwitchInsnNode) in).dflt);
+                for (LabelNode l : ((LookupSwitchInsnNode) in).labels)
+                    markLoopHead(heads, i, l);
+            }
+        }
+        return heads;
+    }
+
+    private void markLoopHead(boolean[] heads, int jump, LabelNode target) {
+        int idx = mn.instructions.indexOf(target);
+        if (idx > jump)
+            return;
+        while (mn.instructions.get(idx).getOpcode() < 0) // skip labels, line numbers and frames
+            idx++;
+        if (frames[idx] != null && frames[idx].getStackSize() == 0)
+            heads[idx] = true;
+    }
+
+    private boolean hasMonitors() {
+        if ((mn.access & Opcodes.ACC_SYNCHRONIZED) != 0)
+            return true;
+        for (int i = 0; i < mn.instructions.size(); i++) {
+            if (mn.instructions.get(i).getOpcode() == Opcodes.MONITORENTER)
+                return true;
+        }
+        return false;
+    }
+
+    private boolean hasLoopHeads() {
+        if (loopHeads != null) {
+            for (boolean head : loopHeads) {
+                if (head)
+                    return true;
+            }
+        }
+        return false;
+    }
+
     private void possiblyWarnAboutBlocking(final AbstractInsnNode ain) throws UnableToInstrumentException {
         if (ain instanceof MethodInsnNode) {
             final MethodInsnNode min = (MethodInsnNode) ain;
@@ -325,6 +403,84 @@ class InstrumentMethod {
         }
     }
 
+    /**
+     * Tests whether the state store before the call to a suspendable-super at the given instruction may be deferred until the call
+     * actually suspends (see {@link SuspensionProfile}).
+     * When the call suspends, the operand stack is lost, so all of the call's operands -- and nothing else -- must be on the stack,
+     * pushed by the instructions immediately preceding the call (and not jumped into) with loads that can be repeated when resuming.
+     */
+    private boolean canDeferStore(int bci, Frame f, int sourceLine) {
+        final SuspensionProfile profile = db.getSuspensionProfile();
+        if (profile == null || sourceLine < 0)
+            return false;
+        if (profile.hasSuspended(className, mn.name, sourceLine))
+            return false;
+        if (hasSuspendableTryCatchBlocksAround(bci))
+            return false;
+
+        int first = bci;
+        for (int loads = f.getStackSize(); loads > 0;) {
+            if (--first < 0)
+                return false;
+            final AbstractInsnNode in = mn.instructions.get(first);
+            if (in.getOpcode() >= 0) {
+                if (loopHeads != null && loopHeads[first])
+                    return false; // a preemption point would come between the loads and the call
+                if (!isRepeatableLoad(in))
+                    return false;
+                loads--;
+            } else if (in.getType() == AbstractInsnNode.LABEL && isJumpTarget((LabelNode) in))
+                return false; // another path may push different operands
+        }
+        return frames[first] != null && frames[first].getStackSize() == 0;
+    }
+
+    private boolean isJumpTarget(LabelNode label) {
+        for (int i = 0; i < mn.instructions.size(); i++) {
+            final AbstractInsnNode in = mn.instructions.get(i);
+            if (in instanceof JumpInsnNode && ((JumpInsnNode) in).label == label)
+                return true;
+            if (in instanceof TableSwitchInsnNode
+                && (((TableSwitchInsnNode) in).dflt == label || ((TableSwitchInsnNode) in).labels.contains(label)))
+                return true;
+            if (in instanceof LookupSwitchInsnNode
+                && (((LookupSwitchInsnNode) in).dflt == label || ((LookupSwitchInsnNode) in).labels.contains(label)))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isRepeatableLoad(AbstractInsnNode in) {
+        switch (in.getOpcode()) {
+            case Opcodes.ILOAD:
+            case Opcodes.LLOAD:
+            case Opcodes.FLOAD:
+            case Opcodes.DLOAD:
+            case Opcodes.ALOAD:
+            case Opcodes.ACONST_NULL:
+            case Opcodes.ICONST_M1:
+            case Opcodes.ICONST_0:
+            case Opcodes.ICONST_1:
+            case Opcodes.ICONST_2:
+            case Opcodes.ICONST_3:
+            case Opcodes.ICONST_4:
+            case Opcodes.ICONST_5:
+            case Opcodes.LCONST_0:
+            case Opcodes.LCONST_1:
+            case Opcodes.FCONST_0:
+            case Opcodes.FCONST_1:
+            case Opcodes.FCONST_2:
+            case Opcodes.DCONST_0:
+            case Opcodes.DCONST_1:
+            case Opcodes.BIPUSH:
+            case Opcodes.SIPUSH:
+            case Opcodes.LDC:
+                return true;
+            default:
+                return false; // including labels, which may be jump targets
+        }
+    }
+
     public void accept(MethodVisitor mv, boolean hasAnnotation) {
         db.log(LogLevel.INFO, "Instrumenting method %s:%s#%s%s", sourceName, className, mn.name, mn.desc);
 
@@ -332,6 +488,9 @@ class InstrumentMethod {
             throw new UnableToInstrumentException("special method", className, mn.name, mn.desc);
 
         collectCallsites();
+        preemption = db.isPreemption() && !hasMonitors(); // a preempted fiber mustn't leave its monitors to the next fiber on the thread
+        if (preemption)
+            loopHeads = findLoopHeads();
         final boolean skipInstrumentation = canInstrumentationBeSkipped(suspCallsBcis);
         emitInstrumentedAnn(db, mv, mn, sourceName, className, skipInstrumentation,
                 startSourceLine, endSourceLine, suspCallsSourceLines, suspCallsNames, null);
@@ -364,11 +523,32 @@ class InstrumentMethod {
 
         mv.visitInsn(Opcodes.ACONST_NULL);
         mv.visitVarInsn(Opcodes.ASTORE, lvarInvocationReturnValue);
+        if (numDeferredStores > 0) {
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitVarInsn(Opcodes.ISTORE, lvarDeferredSP);
+        }
 
 //        if (verifyInstrumentation) {
 //            mv.visitInsn(Opcodes.ICONST_0);
 //            mv.visitVarInsn(Opcodes.ISTORE, lvarSuspendableCalled);
 //        }
+        // Calls with a deferred state store catch SuspendExecution to store the state,
+        // and so must take precedence over the method-wide handlers.
+        // deferredStoreLabels[i] holds the labels for the call's start, end, SuspendExecution handler and UndeclaredThrowableException handler
+        final Label[][] deferredStoreLabels = new Label[numCodeBlocks - 1][];
+        for (int i = 1; i < numCodeBlocks; i++) {
+            if (codeBlocks[i].deferStore) {
+                final Label[] ls = new Label[4];
+                for (int k = 0; k < 4; k++)
+                    ls[k] = new Label();
+                deferredStoreLabels[i - 1] = ls;
+                mv.visitTryCatchBlock(ls[0], ls[1], ls[2], SUSPEND_EXECUTION_NAME);
+                mv.visitTryCatchBlock(ls[0], ls[1], ls[2], RUNTIME_SUSPEND_EXECUTION_NAME);
+                if (handleProxyInvocations)
+                    mv.visitTryCatchBlock(ls[0], ls[1], ls[3], UNDECLARED_THROWABLE_NAME);
+            }
+        }
+
         mv.visitTryCatchBlock(lMethodStart, lMethodEnd, lCatchSEE, SUSPEND_EXECUTION_NAME);
         mv.visitTryCatchBlock(lMethodStart, lMethodEnd, lCatchSEE, RUNTIME_SUSPEND_EXECUTION_NAME);
         if (handleProxyInvocations)
@@ -462,6 +642,12 @@ class InstrumentMethod {
         for (int i = 1; i < numCodeBlocks; i++) {
             final FrameInfo fi = codeBlocks[i];
 
+            if (fi.preemption) {
+                emitBackBranchPreemptionPoint(mv, i, fi, lMethodCalls[i - 1]);
+                dumpCodeBlock(mv, i, 0);
+                continue;
+            }
+
             // Emit instrumented call
             final AbstractInsnNode min = mn.instructions.get(fi.endInstruction);
             final String owner = getMethodOwner(min), name = getMethodName(min), desc = getMethodDesc(min);
@@ -496,6 +682,9 @@ class InstrumentMethod {
                 // exception_table's spec here: https://docs.oracle.com/javase/specs/jvms/se7/html/jvms-4.html#jvms-4.7.3
                 mv.visitInsn(Opcodes.NOP);
 
+                dumpCodeBlock(mv, i, 1 /* skip the call */);
+            } else if (fi.deferStore) {
+                emitDeferredStoreCall(mv, i, fi, lMethodCalls[i - 1], deferredStoreLabels[i - 1]);
                 dumpCodeBlock(mv, i, 1 /* skip the call */);
             } else {
                 final Label lbl = new Label();
@@ -507,9 +696,18 @@ class InstrumentMethod {
                 // normal case - call to a suspendable method - resume before the call
                 emitStoreState(mv, i, fi, 0);
                 emitStoreResumed(mv, false); // we have not been resumed
-                // emitPreemptionPoint(mv, PREEMPTION_CALL);
+                if (preemption)
+                    emitPreemptionPoint(mv, PREEMPTION_CALL); // the state is stored, so we may yield before the call
 
                 mv.visitLabel(lMethodCalls[i - 1]);
+                if (preemption) {
+                    final Label afterPostRestore = new Label();
+                    mv.visitVarInsn(Opcodes.ILOAD, lvarResumed);
+                    mv.visitJumpInsn(Opcodes.IFEQ, afterPostRestore);
+                    mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STACK_NAME, "postRestoreCall", "()V", false);
+                    mv.visitLabel(afterPostRestore);
+                }
                 emitRestoreState(mv, i, fi, 0);
 
                 // DUAL
@@ -552,6 +750,11 @@ class InstrumentMethod {
         // Emit catchall's catch section
         mv.visitLabel(lMethodEnd);
 
+        for (int i = 1; i < numCodeBlocks; i++) {
+            if (codeBlocks[i].deferStore)
+                emitDeferredStore(mv, codeBlocks[i], deferredStoreLabels[i - 1], handleProxyInvocations, lCatchSEE, lCatchAll);
+        }
+
         if (handleProxyInvocations) {
             mv.visitLabel(lCatchUTE);
             mv.visitInsn(Opcodes.DUP);
@@ -581,6 +784,11 @@ class InstrumentMethod {
     }
 
     private boolean canInstrumentationBeSkipped(int[] susCallsIndexes) {
+        if (hasLoopHeads()) {
+            db.log(LogLevel.DEBUG, "Method %s#%s%s has loops, which get preemption points", className, mn.name, mn.desc);
+            return false;
+        }
+
         if (susCallsIndexes.length == 0) {
             db.log(LogLevel.INFO, "No callsites to instrument in method %s#%s%s", className, mn.name, mn.desc);
             return true;
@@ -930,6 +1138,100 @@ class InstrumentMethod {
         }
     }
 
+    /**
+     * Emits a call whose state store is deferred until the call suspends. Instead of storing the state before the call, we only
+     * reserve the frame; if the call suspends, the handler emitted by {@link #emitDeferredStore emitDeferredStore} stores it.
+     * On resume, we restore the locals and repeat the loads of the call's operands.
+     */
+    private void emitDeferredStoreCall(MethodVisitor mv, int idx, FrameInfo fi, Label lResume, Label[] ls) {
+        if (idx > Stack.MAX_ENTRY)
+            throw new IllegalArgumentException("Entry index (PC) " + idx + " greater than maximum of " + Stack.MAX_ENTRY + " in " + className + "." + mn.name + mn.desc);
+        if (fi.numSlots > Stack.MAX_SLOTS)
+            throw new IllegalArgumentException("Number of slots required " + fi.numSlots + " greater than maximum of " + Stack.MAX_SLOTS + " in " + className + "." + mn.name + mn.desc);
+
+        final Frame f = frames[fi.endInstruction];
+        final Label lCall = ls[0];
+        final Label lAfterCall = ls[1];
+
+        // DUAL
+        mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+        mv.visitJumpInsn(Opcodes.IFNULL, lCall);
+
+        if (fi.lBefore != null)
+            fi.lBefore.accept(mv);
+
+        mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+        emitConst(mv, idx);
+        emitConst(mv, fi.numSlots);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STACK_NAME, "pushMethodDeferred", "(II)I", false);
+        mv.visitVarInsn(Opcodes.ISTORE, lvarDeferredSP);
+        emitStoreResumed(mv, false); // we have not been resumed
+        mv.visitJumpInsn(Opcodes.GOTO, lCall);
+
+        mv.visitLabel(lResume);
+        emitRestoreState(mv, idx, fi, f.getStackSize()); // restores only the locals
+        mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STACK_NAME, "getSP", "()I", false);
+        mv.visitVarInsn(Opcodes.ISTORE, lvarDeferredSP);
+        // reload the operands
+        int first = fi.endInstruction;
+        for (int loads = f.getStackSize(); loads > 0;) {
+            if (mn.instructions.get(--first).getOpcode() >= 0)
+                loads--;
+        }
+        for (int i = first; i < fi.endInstruction; i++) {
+            final AbstractInsnNode in = mn.instructions.get(i);
+            if (in.getOpcode() >= 0)
+                in.accept(mv);
+        }
+
+        mv.visitLabel(lCall);
+        mn.instructions.get(fi.endInstruction).accept(mv);
+        mv.visitLabel(lAfterCall);
+    }
+
+    /**
+     * Emits the handler that stores the state of a call emitted by {@link #emitDeferredStoreCall emitDeferredStoreCall} when it
+     * suspends. The locals are as they were when the call was made; the operand stack, which held only the call's operands, is not needed.
+     */
+    private void emitDeferredStore(MethodVisitor mv, FrameInfo fi, Label[] ls, boolean handleProxyInvocations, Label lCatchSEE, Label lCatchAll) {
+        final Frame f = frames[fi.endInstruction];
+
+        if (handleProxyInvocations) {
+            mv.visitLabel(ls[3]);
+            mv.visitInsn(Opcodes.DUP);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Throwable", "getCause", "()Ljava/lang/Throwable;", false);
+            mv.visitTypeInsn(Opcodes.INSTANCEOF, SUSPEND_EXECUTION_NAME);
+            mv.visitJumpInsn(Opcodes.IFEQ, lCatchAll);
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Throwable", "getCause", "()Ljava/lang/Throwable;", false);
+        }
+
+        mv.visitLabel(ls[2]);
+        mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+        mv.visitJumpInsn(Opcodes.IFNULL, lCatchSEE); // DUAL
+
+        mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+        mv.visitVarInsn(Opcodes.ILOAD, lvarDeferredSP);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STACK_NAME, "beginDeferredStore", "(I)I", false);
+        mv.visitVarInsn(Opcodes.ISTORE, lvarDeferredSP);
+
+        // store local vars
+        for (int i = firstLocal; i < f.getLocals(); i++) {
+            BasicValue v = (BasicValue) f.getLocal(i);
+            if (!isNullType(v)) {
+                mv.visitVarInsn(v.getType().getOpcode(Opcodes.ILOAD), i);
+                int slotIdx = fi.localSlotIndices[i];
+                assert slotIdx >= 0 && slotIdx < fi.numSlots;
+                emitStoreValue(mv, v, lvarStack, slotIdx, i);
+            }
+        }
+
+        mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+        mv.visitVarInsn(Opcodes.ILOAD, lvarDeferredSP);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STACK_NAME, "endDeferredStore", "(I)V", false);
+        mv.visitJumpInsn(Opcodes.GOTO, lCatchSEE);
+    }
+
     private void emitPopMethod(MethodVisitor mv) {
 //        emitVerifyInstrumentation(mv);
 
@@ -1041,28 +1343,44 @@ class InstrumentMethod {
         mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STACK_NAME, "postRestore", "()V", false);
     }
 
-    /*
     private void emitPreemptionPoint(MethodVisitor mv, int type) {
         mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
-        switch (type) {
-            case 0:
-                mv.visitInsn(Opcodes.ICONST_0);
-                break;
-            case 1:
-                mv.visitInsn(Opcodes.ICONST_1);
-                break;
-            case 2:
-                mv.visitInsn(Opcodes.ICONST_2);
-                break;
-            case 3:
-                mv.visitInsn(Opcodes.ICONST_3);
-                break;
-            default:
-                throw new AssertionError("Unsupported type: " + type);
-        }
+        emitConst(mv, type);
         mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STACK_NAME, "preemptionPoint", "(I)V", false);
     }
+
+    /**
+     * Emits a preemption point at the head of a loop: if the fiber should yield, the state is stored, and the method is resumed
+     * right after the yield, with the restored state.
      */
+    private void emitBackBranchPreemptionPoint(MethodVisitor mv, int idx, FrameInfo fi, Label lResume) {
+        final Label lSkip = new Label();
+
+        // DUAL
+        mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+        mv.visitJumpInsn(Opcodes.IFNULL, lSkip);
+
+        mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+        emitConst(mv, PREEMPTION_BACKBRANCH);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STACK_NAME, "shouldPreempt", "(I)Z", false);
+        mv.visitJumpInsn(Opcodes.IFEQ, lSkip);
+
+        emitStoreState(mv, idx, fi, 0);
+        emitStoreResumed(mv, false); // we have not been resumed
+        mv.visitVarInsn(Opcodes.ALOAD, lvarStack);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, STACK_NAME, "preempt", "()V", false);
+        mv.visitLabel(lResume); // we resume AFTER the yield
+
+        final Label afterPostRestore = new Label();
+        mv.visitVarInsn(Opcodes.ILOAD, lvarResumed);
+        mv.visitJumpInsn(Opcodes.IFEQ, afterPostRestore);
+        emitPostRestore(mv);
+        mv.visitLabel(afterPostRestore);
+
+        emitRestoreState(mv, idx, fi, 0);
+        mv.visitLabel(lSkip);
+    }
+
     private void emitStoreValue(MethodVisitor mv, BasicValue v, int lvarStack, int idx, @SuppressWarnings("UnusedParameters") int lvar) throws InternalError, IndexOutOfBoundsException {
         String desc;
 
@@ -1219,6 +1537,8 @@ class InstrumentMethod {
         final int[] stackSlotIndices;
         BlockLabelNode lBefore;
         BlockLabelNode lAfter;
+        boolean deferStore; // the state is stored only if the call suspends
+        boolean preemption; // a back-branch preemption point rather than a call
 
         FrameInfo(Frame f, int firstLocal, int endInstruction, InsnList insnList, MethodDatabase db) {
             this.endInstruction = endInstruction;
@@ -73,6 +73,7 @@ import org.apache.tools.ant.types.FileSet;
  * <li>debug - default: false<br>Prints internal debugging information.</li>
  * <li>allowmonitors - default: false<br>Allows the use of synchronized statements - this is DANGEROUS !</li>
  * <li>allowblocking - default: false<br>Allows the use known blocking calls like Thread.sleep, Object.wait etc.</li>
+ * <li>preemption - default: false<br>Adds preemption points at loop heads and suspendable calls, where fibers that have used up their scheduler's time slice yield.</li>
  * </ul>
  *
  * @see <a href="http://ant.apache.org/manual/CoreTypes/fileset.html">ANT FileSet</a>
@@ -84,6 +85,7 @@ public class InstrumentationTask extends Task {
     private boolean verbose;
     private boolean allowMonitors;
     private boolean allowBlocking;
+    private boolean preemption;
     private boolean debug;
     private boolean writeClasses = true;
     private final ArrayList<WorkListEntry> workList = new ArrayList<>();
@@ -108,6 +110,10 @@ public class InstrumentationTask extends Task {
         this.allowBlocking = allowBlocking;
     }
 
+    public void setPreemption(boolean preemption) {
+        this.preemption = preemption;
+    }
+
     public void setDebug(boolean debug) {
         this.debug = debug;
     }
@@ -130,6 +136,8 @@ public class InstrumentationTask extends Task {
             instrumentor.setDebug(debug);
             instrumentor.setAllowMonitors(allowMonitors);
             instrumentor.setAllowBlocking(allowBlocking);
+            if (preemption)
+                instrumentor.setPreemption(true);
             instrumentor.setLog(new Log() {
                 @Override
                 public void log(LogLevel level, String msg, Object... args) {
@@ -0,0 +1,425 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers.instrument;
+
+import co.paralleluniverse.fibers.instrument.MethodDatabase.ClassEntry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A content-addressed on-disk cache of instrumented classes, used by the {@link JavaAgent}, that saves instrumenting the same class
+ * on every run.
+ * <p>
+ * A class is looked up by a digest of its original bytes, the instrumentor's configuration, the suspendability configuration visible
+ * to its class loader (as in {@link MethodDatabaseCache}), and the Quasar build. Instrumentation also depends on what the
+ * {@link MethodDatabase} knows of other classes -- the suspendability of called methods and class hierarchies -- so every lookup the
+ * instrumentation makes in the database is recorded with the class, and a cached class is used only if the same lookups give the same
+ * results when it is loaded again. Otherwise, the class is instrumented anew and the cache updated.</p>
+ * <p>
+ * The cache is turned on by setting the {@code co.paralleluniverse.fibers.instrument.classCacheDir} system property to a directory.
+ * Entries are never removed; the directory may be deleted at any time.</p>
+ *
+ * @author pron
+ */
+final class InstrumentedClassCache {
+    private static final String CACHE_DIR = System.getProperty("co.paralleluniverse.fibers.instrument.classCacheDir");
+    private static final int MAGIC = 0x51494343; // "QICC"
+    private static final int FORMAT_VERSION = 1;
+    static final char LOAD = 'L';  // getOrLoadClassEntry
+    static final char GET = 'G';   // getClassEntry
+    static final char SUPER = 'S'; // getDirectSuperClass
+    private static final ThreadLocal<Dependencies> recording = new ThreadLocal<>();
+    private static volatile InstrumentedClassCache instance;
+    static volatile boolean used; // lets database lookups skip recording when there's no cache; also set by MethodDatabaseCache
+    private final File dir;
+    private final String version;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    /**
+     * Returns the cache, or {@code null} if caching is turned off.
+     */
+    static InstrumentedClassCache getInstance() {
+        if (CACHE_DIR == null)
+            return null;
+        InstrumentedClassCache c = instance;
+        if (c == null) {
+            synchronized (InstrumentedClassCache.class) {
+                c = instance;
+                if (c == null)
+                    instance = c = new InstrumentedClassCache(new File(CACHE_DIR));
+            }
+        }
+        return c;
+    }
+
+    InstrumentedClassCache(File dir) {
+        this.dir = dir;
+        this.version = quasarVersion();
+        used = true;
+    }
+
+    /**
+     * Returns the instrumented class from the cache, or instruments it and caches the result.
+     */
+    byte[] instrument(QuasarInstrumentor instrumentor, MethodDatabase db, String className, byte[] original) throws IOException {
+        final Dependencies outer = recording.get(); // class loading during instrumentation may instrument another class
+        recording.set(null);
+        try {
+            return instrument0(instrumentor, db, className, original);
+        } finally {
+            recording.set(outer);
+        }
+    }
+
+    private byte[] instrument0(QuasarInstrumentor instrumentor, MethodDatabase db, String className, byte[] original) throws IOException {
+        final String configKey = db.getConfigKey();
+        final ClassEntry current = db.getClassEntry(className);
+        if (configKey == null || (current != null && current.requiresInstrumentation())) {
+            misses.incrementAndGet();
+            return instrumentor.instrumentClass0(db, className, original, false);
+        }
+
+        final String key = key(instrumentor, configKey, className, original);
+        final File file = new File(new File(dir, key.substring(0, 2)), key.substring(2) + ".qic");
+
+        final Entry cached = read(file, key);
+        if (cached != null) {
+            if (cached.isValid(db)) {
+                hits.incrementAndGet();
+                cached.apply(db, className);
+                instrumentor.log(LogLevel.DEBUG, "Found cached instrumented class %s", className);
+                return cached.result;
+            }
+            stale.incrementAndGet();
+        }
+        misses.incrementAndGet();
+
+        final Dependencies deps = new Dependencies();
+        final byte[] result;
+        recording.set(deps);
+        try {
+            result = instrumentor.instrumentClass0(db, className, original, false);
+        } finally {
+            recording.set(null);
+        }
+        if (deps.unstable)
+            return result; // a dependency was modified while we looked at it
+        final ClassEntry entry = db.getClassEntry(className);
+        try {
+            write(file, key, new Entry(deps.digests, entry, entry != null && entry.isInstrumented(), result));
+        } catch (IOException | RuntimeException e) {
+            instrumentor.log(LogLevel.WARNING, "Could not write instrumented class cache %s: %s", file, e);
+        }
+        return result;
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The number of misses for classes found in the cache whose dependencies have changed.
+     */
+    long getStale() {
+        return stale.get();
+    }
+
+    /**
+     * Records a {@link MethodDatabase} lookup made by instrumentation running on this thread, if any.
+     */
+    static void recordEntry(char kind, String className, ClassEntry entry) {
+        if (!used)
+            return;
+        final Dependencies deps = recording.get();
+        if (deps != null && !deps.digests.containsKey(kind + className)) {
+            try {
+                deps.record(kind + className, digest(entry));
+            } catch (RuntimeException e) { // the entry is being modified by another thread
+                deps.unstable = true;
+            }
+        }
+    }
+
+    /**
+     * Records a super-class lookup made by instrumentation running on this thread, if any.
+     */
+    static void recordSuperClass(String className, String superClass) {
+        if (!used)
+            return;
+        final Dependencies deps = recording.get();
+        if (deps != null)
+            deps.record(SUPER + className, superClass != null ? digest(superClass.getBytes(StandardCharsets.UTF_8)) : 0);
+    }
+
+    /**
+     * Records the database lookups made on this thread in the given dependencies until {@link #endRecording(Dependencies, Dependencies)
+     * endRecording} is called.
+     *
+     * @return the recording in progress on this thread, if any, to be passed to {@code endRecording}
+     */
+    static Dependencies beginRecording(Dependencies deps) {
+        final Dependencies outer = recording.get();
+        recording.set(deps);
+        return outer;
+    }
+
+    /**
+     * Ends a recording begun with {@link #beginRecording(Dependencies) beginRecording}, and adds its lookups to the outer one.
+     */
+    static void endRecording(Dependencies outer, Dependencies deps) {
+        recording.set(outer);
+        if (outer != null) {
+            for (Map.Entry<String, Long> dep : deps.digests.entrySet())
+                outer.record(dep.getKey(), dep.getValue());
+            outer.unstable |= deps.unstable;
+        }
+    }
+
+    /**
+     * Tests whether the recorded lookups give the same results in the given database.
+     */
+    static boolean isValid(MethodDatabase db, Map<String, Long> dependencies) {
+        try {
+            return isValid0(db, dependencies);
+        } catch (RuntimeException e) { // an entry is being modified by another thread
+            return false;
+        }
+    }
+
+    private static boolean isValid0(MethodDatabase db, Map<String, Long> dependencies) {
+        for (Map.Entry<String, Long> dep : dependencies.entrySet()) {
+            final String className = dep.getKey().substring(1);
+            final long digest;
+            switch (dep.getKey().charAt(0)) {
+                case LOAD:
+                    digest = digest(db.getOrLoadClassEntry(className));
+                    break;
+                case GET:
+                    digest = digest(db.getClassEntry(className));
+                    break;
+                case SUPER:
+                    final String superClass = db.getDirectSuperClass(className);
+                    digest = superClass != null ? digest(superClass.getBytes(StandardCharsets.UTF_8)) : 0;
+                    break;
+                default:
+                    return false;
+            }
+            if (digest != dep.getValue())
+                return false;
+        }
+        return true;
+    }
+
+    static final class Dependencies {
+        final Map<String, Long> digests = new LinkedHashMap<>(); // in lookup order, as lookups may load classes into the database
+        boolean unstable;
+
+        void record(String key, long digest) {
+            if (!digests.containsKey(key)) // the first lookup is the one the instrumentation saw
+                digests.put(key, digest);
+        }
+    }
+
+    private static final class Entry {
+        final Map<String, Long> dependencies;
+        final ClassEntry classEntry; // the class's entry in the database after instrumentation
+        final boolean instrumented;
+        final byte[] result;
+
+        Entry(Map<String, Long> dependencies, ClassEntry classEntry, boolean instrumented, byte[] result) {
+            this.dependencies = dependencies;
+            this.classEntry = classEntry;
+            this.instrumented = instrumented;
+            this.result = result;
+        }
+
+        boolean isValid(MethodDatabase db) {
+            return InstrumentedClassCache.isValid(db, dependencies);
+        }
+
+        /**
+         * Leaves the database as instrumenting the class would have.
+         */
+        void apply(MethodDatabase db, String className) {
+            if (classEntry == null)
+                return;
+            final ClassEntry entry = db.getOrCreateClassEntry(className, classEntry.getSuperName());
+            entry.copyFrom(classEntry);
+            entry.setInstrumented(instrumented);
+            entry.setRequiresInstrumentation(false);
+            db.recordSuspendableMethods(className, entry);
+        }
+    }
+
+    private static Entry read(File file, String key) {
+        final byte[] data;
+        try {
+            data = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            return null; // not cached
+        }
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF()))
+                return null;
+            final Map<String, Long> deps = new LinkedHashMap<>();
+            for (int n = in.readInt(); n > 0; n--) {
+                final String dep = in.readUTF();
+                deps.put(dep, in.readLong());
+            }
+            final ClassEntry classEntry = in.readBoolean() ? ClassEntry.read(in) : null;
+            final boolean instrumented = in.readBoolean();
+            final int length = in.readInt();
+            byte[] result = null;
+            if (length >= 0) {
+                result = new byte[length];
+                in.readFully(result);
+            }
+            return new Entry(deps, classEntry, instrumented, result);
+        } catch (IOException e) {
+            return null; // corrupt; will be rewritten
+        }
+    }
+
+    private static void write(File file, String key, Entry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(entry.result != null ? entry.result.length + 1024 : 1024);
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(key);
+        out.writeInt(entry.dependencies.size());
+        for (Map.Entry<String, Long> dep : entry.dependencies.entrySet()) {
+            out.writeUTF(dep.getKey());
+            out.writeLong(dep.getValue());
+        }
+        out.writeBoolean(entry.classEntry != null);
+        if (entry.classEntry != null)
+            entry.classEntry.write(out);
+        out.writeBoolean(entry.instrumented);
+        out.writeInt(entry.result != null ? entry.result.length : -1);
+        if (entry.result != null)
+            out.write(entry.result);
+        out.flush();
+
+        file.getParentFile().mkdirs();
+        final File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+        try {
+            Files.write(tmp.toPath(), bytes.toByteArray());
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private String key(QuasarInstrumentor instrumentor, String configKey, String className, byte[] original) {
+        final MessageDigest md = sha1();
+        md.update((FORMAT_VERSION + "|" + version + "|" + instrumentor.getConfigKey() + "|" + configKey + "|" + className + "|")
+                .getBytes(StandardCharsets.UTF_8));
+        md.update(original);
+        return toHex(md.digest());
+    }
+
+    /**
+     * Identifies the Quasar build, so that classes instrumented by another build are not used.
+     */
+    static String quasarVersion() {
+        final StringBuilder sb = new StringBuilder();
+        final Package p = QuasarInstrumentor.class.getPackage();
+        sb.append(p != null ? p.getImplementationVersion() : null);
+        final CodeSource cs = QuasarInstrumentor.class.getProtectionDomain().getCodeSource();
+        final URL location = cs != null ? cs.getLocation() : null;
+        if (location != null) {
+            sb.append('|').append(location);
+            if ("file".equals(location.getProtocol())) {
+                try {
+                    final File f = new File(location.toURI());
+                    sb.append('|').append(f.length()).append('|').append(f.lastModified());
+                } catch (Exception e) {
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private static long digest(ClassEntry entry) {
+        if (entry == null)
+            return 0;
+        final MessageDigest md = sha1();
+        try {
+            final DataOutputStream out = new DataOutputStream(new OutputStream() {
+                @Override
+                public void write(int b) {
+                    md.update((byte) b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    md.update(b, off, len);
+                }
+            });
+            entry.write(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        return toLong(md.digest());
+    }
+
+    private static long digest(byte[] bytes) {
+        return toLong(sha1().digest(bytes));
+    }
+
+    private static long toLong(byte[] digest) {
+        long x = 0;
+        for (int i = 0; i < 8; i++)
+            x = (x << 8) | (digest[i] & 0xff);
+        return x != 0 ? x : 1; // 0 stands for a missing entry
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return sb.toString();
+    }
+}
@@ -96,6 +96,8 @@ import static co.paralleluniverse.fibers.instrument.QuasarInstrumentor.ASMAPI;
  */
 public class JavaAgent {
     private static volatile boolean ACTIVE;
+    private static volatile boolean PREEMPTION;
+    private static volatile InstrumentedClassCache classCache;
     private static final Set<WeakReference<ClassLoader>> classLoaders = Collections.newSetFromMap(MapUtil.<WeakReference<ClassLoader>, Boolean>newConcurrentHashMap());
 
     public static void premain(String agentArguments, Instrumentation instrumentation) {
@@ -130,12 +132,16 @@ public class JavaAgent {
                     case 'b':
                         instrumentor.setAllowBlocking(true);
                         break;
+
+                    case 'p':
+                        instrumentor.setPreemption(true);
+                        break;
                         
                     case 'x':
                         i++;
                         c = agentArguments.charAt(i);
                         if (c != '(')
-                            throw new IllegalStateException("Usage: vdmcbx(exclusion;...) (verbose, debug, allow monitors, check class, allow blocking)");
+                            throw new IllegalStateException("Usage: vdmcbpx(exclusion;...) (verbose, debug, allow monitors, check class, allow blocking, preemption)");
                         i++;
                         StringBuilder sb = new StringBuilder();
                         while(true) {
@@ -150,11 +156,13 @@ public class JavaAgent {
                         break;
 
                     default:
-                        throw new IllegalStateException("Usage: vdmcbx(exclusion;...) (verbose, debug, allow monitors, check class, allow blocking)");
+                        throw new IllegalStateException("Usage: vdmcbpx(exclusion;...) (verbose, debug, allow monitors, check class, allow blocking, preemption)");
                 }
             }
         }
 
+        PREEMPTION = instrumentor.isPreemption();
+
         instrumentor.setLog(new Log() {
             @Override
             public void log(LogLevel level, String msg, Object... args) {
@@ -168,6 +176,18 @@ public class JavaAgent {
             }
         });
 
+        classCache = InstrumentedClassCache.getInstance();
+        if (classCache != null) {
+            instrumentor.setClassCache(classCache);
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    instrumentor.log(LogLevel.INFO, "Instrumented class cache: %d hits, %d misses (%d stale)",
+                            classCache.getHits(), classCache.getMisses(), classCache.getStale());
+                }
+            }, "quasar-instrumented-class-cache"));
+        }
+
         Retransform.instrumentation = instrumentation;
         Retransform.instrumentor = instrumentor;
         Retransform.classLoaders = classLoaders;
@@ -183,6 +203,32 @@ public class JavaAgent {
         return ACTIVE;
     }
 
+    /**
+     * Whether the agent instruments classes with preemption points, as set by the {@code p} argument or the
+     * {@code co.paralleluniverse.fibers.instrument.preemption} system property.
+     */
+    public static boolean isPreemption() {
+        return PREEMPTION;
+    }
+
+    /**
+     * The number of classes found in the instrumented class cache, or {@code -1} if the cache is turned off.
+     * The cache is turned on with the {@code co.paralleluniverse.fibers.instrument.classCacheDir} system property.
+     */
+    public static long getClassCacheHits() {
+        final InstrumentedClassCache c = classCache;
+        return c != null ? c.getHits() : -1;
+    }
+
+    /**
+     * The number of classes instrumented because they were not found in the instrumented class cache (or were stale), or {@code -1}
+     * if the cache is turned off.
+     */
+    public static long getClassCacheMisses() {
+        final InstrumentedClassCache c = classCache;
+        return c != null ? c.getMisses() : -1;
+    }
+
     private static class Transformer implements ClassFileTransformer {
         private final QuasarInstrumentor instrumentor;
 
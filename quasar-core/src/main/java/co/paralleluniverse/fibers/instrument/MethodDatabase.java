@@ -44,6 +44,8 @@ package co.paralleluniverse.fibers.instrument;
 import co.paralleluniverse.common.reflection.ClassLoaderUtil;
 import static co.paralleluniverse.fibers.instrument.QuasarInstrumentor.ASMAPI;
 import static co.paralleluniverse.fibers.instrument.Classes.isYieldMethod;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -55,8 +57,10 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Opcodes;
@@ -73,17 +77,52 @@ import org.objectweb.asm.Opcodes;
 public class MethodDatabase {
     private final WeakReference<ClassLoader> clRef;
     private final SuspendableClassifier classifier;
-    private final NavigableMap<String, ClassEntry> classes;
-    private final HashMap<String, String> superClasses;
+    private final ConcurrentNavigableMap<String, ClassEntry> classes; // sorted for getInnerClassesEntries
+    private final ConcurrentMap<String, String> superClasses;
     private final QuasarInstrumentor instrumentor;
+    private final MethodDatabaseCache cache;
+    private volatile String cacheConfigKey;
 
     public MethodDatabase(QuasarInstrumentor instrumentor, ClassLoader classloader, SuspendableClassifier classifier) {
+        this(instrumentor, classloader, classifier, MethodDatabaseCache.getInstance());
+    }
+
+    MethodDatabase(QuasarInstrumentor instrumentor, ClassLoader classloader, SuspendableClassifier classifier, MethodDatabaseCache cache) {
         this.instrumentor = instrumentor;
         this.clRef = classloader != null ? new WeakReference<>(classloader) : null;
         this.classifier = classifier;
 
-        classes = new TreeMap<>();
-        superClasses = new HashMap<>();
+        classes = new ConcurrentSkipListMap<>();
+        superClasses = new ConcurrentHashMap<>();
+        this.cache = cache;
+    }
+
+    /**
+     * Returns the key of the suspendability configuration visible to this database's class loader, or {@code null} if it can't be
+     * computed.
+     */
+    String getConfigKey() {
+        ClassLoader cl = null;
+        if (clRef != null) {
+            cl = clRef.get();
+            if (cl == null)
+                return null;
+        }
+        return getCacheConfigKey(cl);
+    }
+
+    private String getCacheConfigKey(ClassLoader cl) {
+        String key = cacheConfigKey;
+        if (key == null) {
+            try {
+                key = MethodDatabaseCache.configKey(cl);
+            } catch (Exception e) {
+                log(LogLevel.WARNING, "Can't cache class data: %s", e);
+                key = "";
+            }
+            cacheConfigKey = key;
+        }
+        return key.isEmpty() ? null : key;
     }
 
     boolean isAllowMonitors() {
@@ -94,6 +133,14 @@ public class MethodDatabase {
         return instrumentor.isAllowBlocking();
     }
 
+    boolean isPreemption() {
+        return instrumentor.isPreemption();
+    }
+
+    SuspensionProfile getSuspensionProfile() {
+        return instrumentor.getSuspensionProfile();
+    }
+
     public SuspendableClassifier getClassifier() {
         return classifier;
     }
@@ -178,9 +225,10 @@ public class MethodDatabase {
     }
 
     public ClassEntry getOrLoadClassEntry(String className) {
-        ClassEntry entry = getClassEntry(className);
+        ClassEntry entry = classes.get(className);
         if (entry == null)
             entry = checkClass(className);
+        InstrumentedClassCache.recordEntry(InstrumentedClassCache.LOAD, className, entry);
         return entry;
     }
 
@@ -232,24 +280,29 @@ public class MethodDatabase {
         return suspendable;
     }
 
-    public synchronized ClassEntry getClassEntry(String className) {
-        return classes.get(className);
+    public ClassEntry getClassEntry(String className) {
+        final ClassEntry entry = classes.get(className);
+        InstrumentedClassCache.recordEntry(InstrumentedClassCache.GET, className, entry);
+        return entry;
     }
 
-    public synchronized ClassEntry getOrCreateClassEntry(String className, String superType) {
-        ClassEntry ce = classes.get(className);
+    public ClassEntry getOrCreateClassEntry(String className, String superType) {
+        ClassEntry ce = getClassEntry(className);
         if (ce == null) {
-            ce = new ClassEntry(superType);
-            classes.put(className, ce);
+            final ClassEntry newEntry = new ClassEntry(superType);
+            ce = classes.putIfAbsent(className, newEntry);
+            if (ce == null)
+                ce = newEntry;
         }
         return ce;
     }
 
     // this method is used by Pulsar
-    public synchronized Map<String, ClassEntry> getInnerClassesEntries(String className) {
-        Map<String, ClassEntry> tailMap = classes.tailMap(className, true);
+    public Map<String, ClassEntry> getInnerClassesEntries(String className) {
+        // all names starting with className + '$' sort before className + ('$' + 1)
+        Map<String, ClassEntry> range = classes.subMap(className, true, className + (char) ('$' + 1), false);
         HashMap<String, ClassEntry> map = new HashMap<>();
-        for (Map.Entry<String, ClassEntry> entry : tailMap.entrySet()) {
+        for (Map.Entry<String, ClassEntry> entry : range.entrySet()) {
             if (entry.getKey().equals(className) || entry.getKey().startsWith(className + '$'))
                 map.put(entry.getKey(), entry.getValue());
         }
@@ -257,10 +310,7 @@ public class MethodDatabase {
     }
 
     void recordSuspendableMethods(String className, ClassEntry entry) {
-        ClassEntry oldEntry;
-        synchronized (this) {
-            oldEntry = classes.put(className, entry);
-        }
+        final ClassEntry oldEntry = classes.put(className, entry);
         if (oldEntry != null && oldEntry != entry) {
             if (!oldEntry.equals(entry)) {
                 log(LogLevel.WARNING, "Duplicate class entries with different data for class: %s", className);
@@ -316,6 +366,20 @@ public class MethodDatabase {
             }
         }
 
+        final String cacheKey = cache != null ? getCacheConfigKey(cl) : null;
+        if (cacheKey != null) {
+            final ClassEntry cached = cache.getClassEntry(this, cacheKey, cl, className);
+            if (cached != null) {
+                log(LogLevel.DEBUG, "Found cached class: %s", className);
+                ClassEntry entry = getClassEntry(className); // the class may have been recorded concurrently
+                if (entry == null) {
+                    recordSuspendableMethods(className, cached);
+                    entry = cached;
+                }
+                return entry;
+            }
+        }
+
         log(LogLevel.INFO, "Reading class: %s", className);
         try (final InputStream is = ClassLoaderUtil.getResourceAsStream(cl, className + ".class")) {
             if (is == null) {
@@ -324,10 +388,21 @@ public class MethodDatabase {
             }
             ClassEntry entry = getClassEntry(className); // getResourceAsStream may have triggered instrumentation
             if (entry == null) {
-                final CheckInstrumentationVisitor civ = checkFileAndClose(is, className);
+                // the classifier may look up the super-class and interfaces, which the cached entry then depends on
+                final InstrumentedClassCache.Dependencies deps = cacheKey != null ? new InstrumentedClassCache.Dependencies() : null;
+                final InstrumentedClassCache.Dependencies outer = cacheKey != null ? InstrumentedClassCache.beginRecording(deps) : null;
+                final CheckInstrumentationVisitor civ;
+                try {
+                    civ = checkFileAndClose(is, className);
+                } finally {
+                    if (cacheKey != null)
+                        InstrumentedClassCache.endRecording(outer, deps);
+                }
                 if (civ != null) {
                     entry = civ.getClassEntry();
                     recordSuspendableMethods(className, entry);
+                    if (cacheKey != null && !deps.unstable)
+                        cache.putClassEntry(cacheKey, cl, className, entry, deps.digests);
                 } else
                     log(LogLevel.INFO, "Class not found: %s", className);
             }
@@ -360,10 +435,19 @@ public class MethodDatabase {
             }
         }
 
+        final String cacheKey = cache != null ? getCacheConfigKey(cl) : null;
+        if (cacheKey != null) {
+            final String cached = cache.getSuperClass(cacheKey, cl, className);
+            if (cached != null)
+                return cached;
+        }
+
         try (final InputStream is = ClassLoaderUtil.getResourceAsStream(cl, className + ".class")) {
             ClassReader r = new ClassReader(is);
             ExtractSuperClass esc = new ExtractSuperClass();
             r.accept(esc, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            if (cacheKey != null && esc.superClass != null)
+                cache.putSuperClass(cacheKey, cl, className, esc.superClass);
             return esc.superClass;
         } catch (IOException ex) {
             error(className, ex);
@@ -389,21 +473,21 @@ public class MethodDatabase {
     }
 
     protected String getDirectSuperClass(String className) {
-        ClassEntry entry = getClassEntry(className);
+        final String superClass = getDirectSuperClass0(className);
+        InstrumentedClassCache.recordSuperClass(className, superClass);
+        return superClass;
+    }
+
+    private String getDirectSuperClass0(String className) {
+        ClassEntry entry = classes.get(className);
         if (entry != null && entry != CLASS_NOT_FOUND)
             return entry.getSuperName();
 
-        String superClass;
-        synchronized (this) {
-            superClass = superClasses.get(className);
-        }
+        String superClass = superClasses.get(className);
         if (superClass == null) {
             superClass = extractSuperClass(className);
             if (superClass != null) {
-                String oldSuperClass;
-                synchronized (this) {
-                    oldSuperClass = superClasses.put(className, superClass);
-                }
+                final String oldSuperClass = superClasses.put(className, superClass);
                 if (oldSuperClass != null) {
                     if (!oldSuperClass.equals(superClass))
                         log(LogLevel.WARNING, "Duplicate super class entry with different value: %s vs %s", oldSuperClass, superClass);
@@ -559,6 +643,69 @@ public class MethodDatabase {
         public void setInstrumented(boolean instrumented) {
             this.instrumented = instrumented;
         }
+
+        /**
+         * Replaces this entry's class data (but not its instrumentation state) with that of the given entry.
+         */
+        void copyFrom(ClassEntry other) {
+            assert java.util.Objects.equals(superName, other.superName);
+            methods.clear();
+            methods.putAll(other.methods);
+            this.sourceName = other.sourceName;
+            this.sourceDebugInfo = other.sourceDebugInfo;
+            this.isInterface = other.isInterface;
+            this.interfaces = other.interfaces;
+        }
+
+        /**
+         * Writes the class data (but not the instrumentation state) for the {@link MethodDatabaseCache}.
+         */
+        void write(DataOutput out) throws IOException {
+            writeNullableUTF(out, superName);
+            out.writeBoolean(isInterface);
+            writeNullableUTF(out, sourceName);
+            writeNullableUTF(out, sourceDebugInfo);
+            out.writeInt(interfaces != null ? interfaces.length : -1);
+            if (interfaces != null) {
+                for (String iface : interfaces)
+                    out.writeUTF(iface);
+            }
+            out.writeInt(methods.size());
+            for (Map.Entry<String, SuspendableType> entry : methods.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeByte(entry.getValue() != null ? entry.getValue().ordinal() : -1);
+            }
+        }
+
+        static ClassEntry read(DataInput in) throws IOException {
+            final ClassEntry entry = new ClassEntry(readNullableUTF(in));
+            entry.isInterface = in.readBoolean();
+            entry.sourceName = readNullableUTF(in);
+            entry.sourceDebugInfo = readNullableUTF(in);
+            final int ninterfaces = in.readInt();
+            if (ninterfaces >= 0) {
+                entry.interfaces = new String[ninterfaces];
+                for (int i = 0; i < ninterfaces; i++)
+                    entry.interfaces[i] = in.readUTF();
+            }
+            final SuspendableType[] types = SuspendableType.values();
+            for (int n = in.readInt(); n > 0; n--) {
+                final String key = in.readUTF();
+                final byte type = in.readByte();
+                entry.methods.put(key, type >= 0 ? types[type] : null);
+            }
+            return entry;
+        }
+
+        private static void writeNullableUTF(DataOutput out, String s) throws IOException {
+            out.writeBoolean(s != null);
+            if (s != null)
+                out.writeUTF(s);
+        }
+
+        private static String readNullableUTF(DataInput in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
     }
 
     public static class ExtractSuperClass extends ClassVisitor {
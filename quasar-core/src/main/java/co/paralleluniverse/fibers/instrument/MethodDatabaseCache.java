@@ -0,0 +1,419 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers.instrument;
+
+import co.paralleluniverse.common.reflection.ClassLoaderUtil;
+import co.paralleluniverse.fibers.instrument.MethodDatabase.ClassEntry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An on-disk cache of the class data collected by {@link MethodDatabase} -- {@link ClassEntry class entries} and super-class names --
+ * which saves reading and parsing class files on subsequent runs.
+ * <p>
+ * The cache keeps one file per class-path element (a jar or a class directory) and suspendability configuration (the
+ * {@code META-INF/suspendables}, {@code META-INF/suspendable-supers} and {@link SuspendableClassifier} service files visible to the
+ * class loader). A jar's cached data is valid as long as the jar's size and modification time are unchanged; a class in a directory
+ * is validated by the size and modification time of its class file. Data for classes loaded from anywhere else is not cached.
+ * A class entry also depends on the entries of its super-classes and interfaces, which may come from other class-path elements, so
+ * the database lookups made while reading the class are recorded with the entry, as in {@link InstrumentedClassCache}, and the entry
+ * is used only if they give the same results.</p>
+ * <p>
+ * The cache is turned on by setting the {@code co.paralleluniverse.fibers.instrument.cacheDir} system property to a directory, and
+ * is written back to disk when the JVM shuts down.</p>
+ *
+ * @author pron
+ */
+final class MethodDatabaseCache {
+    private static final String CACHE_DIR = System.getProperty("co.paralleluniverse.fibers.instrument.cacheDir");
+    private static final int MAGIC = 0x51444243; // "QDBC"
+    private static final int FORMAT_VERSION = 2;
+    private static final byte SUPER_ONLY = 0;
+    private static final byte CLASS_ENTRY = 1;
+    private static final String[] CONFIG_RESOURCES = {
+        SimpleSuspendableClassifier.PREFIX + SimpleSuspendableClassifier.SUSPENDABLES_FILE,
+        SimpleSuspendableClassifier.PREFIX + SimpleSuspendableClassifier.SUSPENDABLE_SUPERS_FILE,
+        "META-INF/services/" + SuspendableClassifier.class.getName()
+    };
+    private static volatile MethodDatabaseCache instance;
+    private final File dir;
+    private final ConcurrentMap<String, Container> containers = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    /**
+     * Returns the cache, or {@code null} if caching is turned off.
+     */
+    static MethodDatabaseCache getInstance() {
+        if (CACHE_DIR == null)
+            return null;
+        MethodDatabaseCache c = instance;
+        if (c == null) {
+            synchronized (MethodDatabaseCache.class) {
+                c = instance;
+                if (c == null) {
+                    c = new MethodDatabaseCache(new File(CACHE_DIR));
+                    final MethodDatabaseCache c1 = c;
+                    Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            c1.flush();
+                        }
+                    }, "quasar-method-database-cache"));
+                    instance = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    MethodDatabaseCache(File dir) {
+        this.dir = dir;
+        InstrumentedClassCache.used = true;
+    }
+
+    /**
+     * Computes the key of the suspendability configuration visible to the given class loader, which also covers the cache's format
+     * and the Quasar version, whose analysis produced the cached data.
+     * Databases with the same configuration key share cached data.
+     */
+    static String configKey(ClassLoader cl) throws IOException {
+        final MessageDigest md = sha1();
+        md.update(Integer.toString(FORMAT_VERSION).getBytes(StandardCharsets.UTF_8));
+        md.update(InstrumentedClassCache.quasarVersion().getBytes(StandardCharsets.UTF_8));
+        final byte[] buf = new byte[8192];
+        for (String resource : CONFIG_RESOURCES) {
+            for (Enumeration<URL> urls = ClassLoaderUtil.getResources(cl, resource); urls.hasMoreElements();) {
+                final URL url = urls.nextElement();
+                md.update(url.toString().getBytes(StandardCharsets.UTF_8));
+                try (InputStream is = url.openStream()) {
+                    for (int n; (n = is.read(buf)) > 0;)
+                        md.update(buf, 0, n);
+                }
+            }
+        }
+        return toHex(md.digest());
+    }
+
+    /**
+     * Returns the cached class entry of the given class, or {@code null} if it is not in the cache or is stale.
+     * Every call returns a new copy of the entry.
+     *
+     * @param db the database the entry is for, in which the entry's dependencies are checked
+     */
+    ClassEntry getClassEntry(MethodDatabase db, String configKey, ClassLoader cl, String className) {
+        final byte[] data = get(configKey, cl, className, CLASS_ENTRY);
+        if (data == null)
+            return null;
+        final ClassEntry entry;
+        final Map<String, Long> dependencies = new LinkedHashMap<>();
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1));
+            readDependencies(in, dependencies);
+            entry = ClassEntry.read(in);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        if (!InstrumentedClassCache.isValid(db, dependencies)) {
+            stale.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry;
+    }
+
+    /**
+     * Returns the cached name of the given class's super class, or {@code null} if it is not in the cache or is stale.
+     */
+    String getSuperClass(String configKey, ClassLoader cl, String className) {
+        final byte[] data = get(configKey, cl, className, SUPER_ONLY);
+        if (data == null)
+            return null;
+        hits.incrementAndGet();
+        try {
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, 1, data.length - 1));
+            if (data[0] == SUPER_ONLY)
+                return in.readUTF();
+            readDependencies(in, new HashMap<String, Long>()); // the super class doesn't depend on other classes
+            return ClassEntry.read(in).getSuperName();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Caches a class entry.
+     *
+     * @param dependencies the database lookups made while reading the class, recorded as in {@link InstrumentedClassCache}
+     */
+    void putClassEntry(String configKey, ClassLoader cl, String className, ClassEntry entry, Map<String, Long> dependencies) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try {
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(CLASS_ENTRY);
+            out.writeInt(dependencies.size());
+            for (Map.Entry<String, Long> dep : dependencies.entrySet()) {
+                out.writeUTF(dep.getKey());
+                out.writeLong(dep.getValue());
+            }
+            entry.write(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        put(configKey, cl, className, bytes.toByteArray());
+    }
+
+    void putSuperClass(String configKey, ClassLoader cl, String className, String superClass) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(SUPER_ONLY);
+            out.writeUTF(superClass);
+            out.flush();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        put(configKey, cl, className, bytes.toByteArray());
+    }
+
+    private static void readDependencies(DataInputStream in, Map<String, Long> dependencies) throws IOException {
+        for (int n = in.readInt(); n > 0; n--) {
+            final String dep = in.readUTF();
+            dependencies.put(dep, in.readLong());
+        }
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The number of misses for class entries found in the cache whose dependencies have changed.
+     */
+    long getStale() {
+        return stale.get();
+    }
+
+    private byte[] get(String configKey, ClassLoader cl, String className, byte minKind) {
+        final Location loc = locate(configKey, cl, className);
+        if (loc == null)
+            return null;
+        final Record r = loc.container.records.get(loc.name);
+        if (r == null || r.stamp != loc.stamp || r.data[0] < minKind) {
+            misses.incrementAndGet();
+            return null;
+        }
+        return r.data;
+    }
+
+    private void put(String configKey, ClassLoader cl, String className, byte[] data) {
+        final Location loc = locate(configKey, cl, className);
+        if (loc == null)
+            return;
+        final Record old = loc.container.records.get(loc.name);
+        if (old != null && old.stamp == loc.stamp && old.data[0] >= data[0])
+            return; // don't replace a class entry with super-class data
+        loc.container.records.put(loc.name, new Record(loc.stamp, data));
+        loc.container.dirty = true;
+    }
+
+    /**
+     * Writes all modified data to disk.
+     */
+    void flush() {
+        for (Container c : containers.values()) {
+            if (c.dirty) {
+                c.dirty = false;
+                try {
+                    c.write();
+                } catch (IOException e) {
+                    System.err.println("[quasar] WARNING: could not write method database cache " + c.file + ": " + e);
+                }
+            }
+        }
+    }
+
+    private Location locate(String configKey, ClassLoader cl, String className) {
+        final String resource = className + ".class";
+        final URL url = ClassLoaderUtil.getResource(cl, resource);
+        if (url == null)
+            return null;
+        try {
+            switch (url.getProtocol()) {
+                case "jar": {
+                    final String path = url.getPath();
+                    final int sep = path.lastIndexOf("!/");
+                    if (sep < 0)
+                        return null;
+                    final String jarUrl = path.substring(0, sep);
+                    final int outer = jarUrl.indexOf("!/"); // nested jars are validated by the outermost one
+                    final File jar = new File(new URL(outer < 0 ? jarUrl : jarUrl.substring(0, outer)).toURI());
+                    final Container c = getContainer(configKey, jarUrl, jar.length(), jar.lastModified());
+                    return new Location(c, className, 0);
+                }
+                case "file": {
+                    final File f = new File(url.toURI());
+                    final String path = url.toString();
+                    if (!path.endsWith(resource))
+                        return null;
+                    final Container c = getContainer(configKey, path.substring(0, path.length() - resource.length()), 0, 0);
+                    return new Location(c, className, f.length() * 31 + f.lastModified());
+                }
+                default:
+                    return null;
+            }
+        } catch (URISyntaxException | IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private Container getContainer(String configKey, String location, long length, long lastModified) {
+        final String key = configKey + '|' + location;
+        final Container c = containers.get(key);
+        if (c != null)
+            return c;
+        return containers.computeIfAbsent(key, k -> { // other threads must not see the container before it's read
+            final Container c1 = new Container(new File(dir, toHex(sha1().digest(k.getBytes(StandardCharsets.UTF_8))) + ".qdb"), k, length, lastModified);
+            c1.read();
+            return c1;
+        });
+    }
+
+    private static final class Location {
+        final Container container;
+        final String name;
+        final long stamp;
+
+        Location(Container container, String name, long stamp) {
+            this.container = container;
+            this.name = name;
+            this.stamp = stamp;
+        }
+    }
+
+    private static final class Record {
+        final long stamp;
+        final byte[] data; // the first byte is the record kind
+
+        Record(long stamp, byte[] data) {
+            this.stamp = stamp;
+            this.data = data;
+        }
+    }
+
+    private static final class Container {
+        final File file;
+        final String key;
+        final long length;
+        final long lastModified;
+        final ConcurrentMap<String, Record> records = new ConcurrentHashMap<>();
+        volatile boolean dirty;
+
+        Container(File file, String key, long length, long lastModified) {
+            this.file = file;
+            this.key = key;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        void read() {
+            if (!file.isFile())
+                return;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+                if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION)
+                    return;
+                if (!key.equals(in.readUTF()) || in.readLong() != length || in.readLong() != lastModified)
+                    return; // the jar has changed
+                for (int n = in.readInt(); n > 0; n--) {
+                    final String name = in.readUTF();
+                    final long stamp = in.readLong();
+                    final byte[] data = new byte[in.readInt()];
+                    in.readFully(data);
+                    records.put(name, new Record(stamp, data));
+                }
+            } catch (IOException e) {
+                records.clear(); // corrupt; will be rewritten
+                dirty = true;
+            }
+        }
+
+        void write() throws IOException {
+            file.getParentFile().mkdirs();
+            final File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(FORMAT_VERSION);
+                    out.writeUTF(key);
+                    out.writeLong(length);
+                    out.writeLong(lastModified);
+                    final Map<String, Record> snapshot = new HashMap<>(records);
+                    out.writeInt(snapshot.size());
+                    for (Map.Entry<String, Record> e : snapshot.entrySet()) {
+                        out.writeUTF(e.getKey());
+                        out.writeLong(e.getValue().stamp);
+                        out.writeInt(e.getValue().data.length);
+                        out.write(e.getValue().data);
+                    }
+                }
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                tmp.delete();
+            }
+        }
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes)
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return sb.toString();
+    }
+}
@@ -24,13 +24,16 @@ import org.objectweb.asm.util.CheckClassAdapter;
 import org.objectweb.asm.util.TraceClassVisitor;
 
 import java.io.*;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.regex.Pattern;
 
 /**
@@ -42,17 +45,21 @@ public final class QuasarInstrumentor {
 
     private final static String EXAMINED_CLASS = System.getProperty("co.paralleluniverse.fibers.writeInstrumentedClasses");
     private static final boolean allowJdkInstrumentation = SystemProperties.isEmptyOrTrue("co.paralleluniverse.fibers.allowJdkInstrumentation");
-    private WeakHashMap<ClassLoader, MethodDatabase> dbForClassloader = new WeakHashMap<>();
-    private MethodDatabase bootstrapDB;
+    private final ConcurrentMap<LoaderKey, MethodDatabase> dbForClassloader = new ConcurrentHashMap<>();
+    private final ReferenceQueue<ClassLoader> collectedLoaders = new ReferenceQueue<>();
+    private volatile MethodDatabase bootstrapDB;
     private boolean check;
     private final boolean aot;
-    private boolean allowMonitors;
-    private boolean allowBlocking;
-    private final Collection<Pattern> exclusions = new ArrayList<>();
-    private Log log;
-    private boolean verbose;
-    private boolean debug;
-    private int logLevelMask;
+    private volatile boolean allowMonitors;
+    private volatile boolean allowBlocking;
+    private volatile boolean preemption = SystemProperties.isEmptyOrTrue("co.paralleluniverse.fibers.instrument.preemption");
+    private final Collection<Pattern> exclusions = new CopyOnWriteArrayList<>();
+    private volatile Log log;
+    private volatile boolean verbose;
+    private volatile boolean debug;
+    private volatile int logLevelMask;
+    private volatile InstrumentedClassCache classCache;
+    private volatile SuspensionProfile suspensionProfile = SuspensionProfile.getDefault();
 
     public QuasarInstrumentor() {
         this(false);
@@ -106,10 +113,16 @@ public final class QuasarInstrumentor {
     byte[] instrumentClass(ClassLoader loader, String className, InputStream is, boolean forceInstrumentation) throws IOException {
         className = className != null ? className.replace('.', '/') : null;
 
-        byte[] cb = toByteArray(is);
+        final byte[] cb = toByteArray(is);
+        final MethodDatabase db = getMethodDatabase(loader);
 
-        MethodDatabase db = getMethodDatabase(loader);
+        final InstrumentedClassCache cache = classCache;
+        if (cache != null && className != null && !forceInstrumentation && EXAMINED_CLASS == null)
+            return cache.instrument(this, db, className, cb);
+        return instrumentClass0(db, className, cb, forceInstrumentation);
+    }
 
+    byte[] instrumentClass0(MethodDatabase db, String className, byte[] cb, boolean forceInstrumentation) throws IOException {
         if (className != null) {
             log(LogLevel.INFO, "TRANSFORM: %s %s", className,
                 (db.getClassEntry(className) != null && db.getClassEntry(className).requiresInstrumentation()) ? "request" : "");
@@ -179,19 +192,77 @@ public final class QuasarInstrumentor {
     }
     
     @SuppressWarnings("WeakerAccess")
-    public synchronized MethodDatabase getMethodDatabase(ClassLoader loader) {
+    public MethodDatabase getMethodDatabase(ClassLoader loader) {
+        // called for every transformed class, possibly by many class-loading threads at once, so lookups don't lock
+        final MethodDatabase db = loader == null ? bootstrapDB : dbForClassloader.get(new LoaderKey(loader, null));
+        return db != null ? db : createMethodDatabase(loader);
+    }
+
+    private synchronized MethodDatabase createMethodDatabase(ClassLoader loader) {
         if (loader == null) {
             if (bootstrapDB == null) {
                 bootstrapDB = new MethodDatabase(this, null, new DefaultSuspendableClassifier(null));
             }
             return bootstrapDB;
         }
-        if (!dbForClassloader.containsKey(loader)) {
-            MethodDatabase newDb = new MethodDatabase(this, loader, new DefaultSuspendableClassifier(loader));
-            dbForClassloader.put(loader, newDb);
-            return newDb;
-        } else
-            return dbForClassloader.get(loader);
+        for (Object k; (k = collectedLoaders.poll()) != null;)
+            dbForClassloader.remove((LoaderKey) k);
+
+        final LoaderKey key = new LoaderKey(loader, collectedLoaders);
+        MethodDatabase db = dbForClassloader.get(key);
+        if (db == null) {
+            db = new MethodDatabase(this, loader, new DefaultSuspendableClassifier(loader));
+            dbForClassloader.put(key, db);
+        }
+        return db;
+    }
+
+    /**
+     * A weak, identity-based class loader key.
+     */
+    private static final class LoaderKey extends WeakReference<ClassLoader> {
+        private final int hash;
+
+        LoaderKey(ClassLoader loader, ReferenceQueue<ClassLoader> queue) {
+            super(loader, queue);
+            this.hash = System.identityHashCode(loader);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this)
+                return true;
+            if (!(obj instanceof LoaderKey))
+                return false;
+            final ClassLoader loader = get();
+            return loader != null && loader == ((LoaderKey) obj).get();
+        }
+    }
+
+    /**
+     * Sets the cache of instrumented classes; {@code null} turns caching off.
+     */
+    QuasarInstrumentor setClassCache(InstrumentedClassCache classCache) {
+        this.classCache = classCache;
+        return this;
+    }
+
+    InstrumentedClassCache getClassCache() {
+        return classCache;
+    }
+
+    /**
+     * Returns a string identifying the configuration options that affect instrumentation.
+     */
+    String getConfigKey() {
+        return "check=" + check + ",aot=" + aot + ",allowMonitors=" + allowMonitors + ",allowBlocking=" + allowBlocking
+                + ",allowJdkInstrumentation=" + allowJdkInstrumentation + ",exclusions=" + exclusions + ",preemption=" + preemption
+                + ",suspensionProfile=" + (suspensionProfile != null ? suspensionProfile.getKey() : null);
     }
 
     public QuasarInstrumentor setCheck(boolean check) {
@@ -200,7 +271,7 @@ public final class QuasarInstrumentor {
     }
 
     @SuppressWarnings("WeakerAccess")
-    public synchronized boolean isAllowMonitors() {
+    public boolean isAllowMonitors() {
         return allowMonitors;
     }
 
@@ -211,7 +282,7 @@ public final class QuasarInstrumentor {
     }
 
     @SuppressWarnings("WeakerAccess")
-    public synchronized boolean isAllowBlocking() {
+    public boolean isAllowBlocking() {
         return allowBlocking;
     }
 
@@ -221,6 +292,32 @@ public final class QuasarInstrumentor {
         return this;
     }
 
+    public boolean isPreemption() {
+        return preemption;
+    }
+
+    /**
+     * Sets whether instrumented methods get preemption points at loop back-branches and suspendable call sites, where a fiber that has
+     * used up its scheduler's {@link co.paralleluniverse.fibers.FiberScheduler#setTimeSlice(long, java.util.concurrent.TimeUnit) time slice} yields.
+     */
+    public synchronized QuasarInstrumentor setPreemption(boolean preemption) {
+        this.preemption = preemption;
+        return this;
+    }
+
+    public SuspensionProfile getSuspensionProfile() {
+        return suspensionProfile;
+    }
+
+    /**
+     * Sets the profile of suspending call sites used to instrument calls to suspendable-supers more cheaply;
+     * {@code null} turns the optimization off.
+     */
+    public synchronized QuasarInstrumentor setSuspensionProfile(SuspensionProfile suspensionProfile) {
+        this.suspensionProfile = suspensionProfile;
+        return this;
+    }
+
     public synchronized QuasarInstrumentor setLog(Log log) {
         this.log = log;
 //        for (MethodDatabase db : dbForClassloader.values()) {
@@ -234,7 +331,7 @@ public final class QuasarInstrumentor {
     }
 
     @SuppressWarnings("WeakerAccess")
-    public synchronized boolean isVerbose() {
+    public boolean isVerbose() {
         return verbose;
     }
 
@@ -244,7 +341,7 @@ public final class QuasarInstrumentor {
         setLogLevelMask();
     }
 
-    public synchronized boolean isDebug() {
+    public boolean isDebug() {
         return debug;
     }
 
@@ -257,7 +354,7 @@ public final class QuasarInstrumentor {
         exclusions.add(packagePattern(packageGlob));
     }
     
-    public synchronized boolean isExcluded(String className) {
+    public boolean isExcluded(String className) {
         if (className != null) {
             className = className.replace('.', '/');
             
@@ -275,11 +372,12 @@ public final class QuasarInstrumentor {
     }
 
     private synchronized void setLogLevelMask() {
-        logLevelMask = (1 << LogLevel.WARNING.ordinal());
+        int mask = (1 << LogLevel.WARNING.ordinal());
         if (verbose || debug)
-            logLevelMask |= (1 << LogLevel.INFO.ordinal());
+            mask |= (1 << LogLevel.INFO.ordinal());
         if (debug)
-            logLevelMask |= (1 << LogLevel.DEBUG.ordinal());
+            mask |= (1 << LogLevel.DEBUG.ordinal());
+        logLevelMask = mask;
     }
 
     public void log(LogLevel level, String msg, Object... args) {
@@ -21,7 +21,13 @@ import static co.paralleluniverse.fibers.instrument.Classes.SUSPENDABLE_DESC;
 import static co.paralleluniverse.fibers.instrument.Classes.DONT_INSTRUMENT_DESC;
 import static co.paralleluniverse.fibers.instrument.Classes.SUSPEND_EXECUTION_NAME;
 import co.paralleluniverse.fibers.instrument.MethodDatabase.SuspendableType;
-import com.google.common.base.Function;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -36,6 +42,7 @@ import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.AbstractCollection;
 import java.util.ArrayDeque;
@@ -51,6 +58,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 import org.apache.tools.ant.AntClassLoader;
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.DirectoryScanner;
@@ -65,10 +81,20 @@ import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 
+/**
+ * An Ant task that finds the methods that must be listed in {@code META-INF/suspendables} and {@code META-INF/suspendable-supers}.
+ * <p>
+ * Class files are read and parsed in parallel by {@link #setThreads(int) several threads}, and their summaries are added to the
+ * method graph, in a deterministic order, by the task's thread. If a {@link #setCacheFile(String) cache file} is set, the summaries
+ * are kept there between builds, and only classes whose bytes have changed since the previous scan are parsed again.</p>
+ */
 public class SuspendablesScanner extends Task {
+    private static final int CACHE_MAGIC = 0x51535343; // QSSC
+    private static final int CACHE_FORMAT_VERSION = 1;
+    private static final int MAX_PENDING_PER_THREAD = 64;
     private final Map<String, MethodNode> methods = new HashMap<>();
     private final Map<String, ClassNode> classes = new HashMap<>();
-    private final Set<MethodNode> knownSuspendablesOrSupers = new HashSet<>();
+    private final Set<MethodNode> knownSuspendablesOrSupers = new LinkedHashSet<>();
     private final boolean ant;
     private URLClassLoader cl;
     private final ArrayList<FileSet> filesets = new ArrayList<>();
@@ -79,6 +105,14 @@ public class SuspendablesScanner extends Task {
     private boolean append = false;
     private String supersFile;
     private String suspendablesFile;
+    private String cacheFile;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService executor;
+    private final Queue<PendingClass> pending = new ArrayDeque<>();
+    private Map<String, ClassSummary> previousSummaries = Collections.emptyMap();
+    private final Map<String, ClassSummary> currentSummaries = new ConcurrentHashMap<>();
+    private final AtomicInteger classesParsed = new AtomicInteger();
+    private final AtomicInteger classesReused = new AtomicInteger();
 
     public SuspendablesScanner() {
         this.ant = getClass().getClassLoader() instanceof AntClassLoader;
@@ -118,6 +152,37 @@ public class SuspendablesScanner extends Task {
         this.append = value;
     }
 
+    /**
+     * A file where the class summaries are kept between runs, so that only classes that have changed are parsed again.
+     * By default, there is no cache and all classes are parsed.
+     */
+    public void setCacheFile(String cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * The number of threads reading class files. Defaults to the number of available processors.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        this.threads = threads;
+    }
+
+    /**
+     * The number of class files parsed by the last run.
+     */
+    int getClassesParsed() {
+        return classesParsed.get();
+    }
+
+    /**
+     * The number of class files whose summary was reused by the last run, from the cache or from an earlier read of the same bytes.
+     */
+    int getClassesReused() {
+        return classesReused.get();
+    }
+
     void setURLs(List<URL> urls) {
         this.urls = unique(urls).toArray(new URL[0]);
         this.cl = new URLClassLoader(this.urls);
@@ -185,37 +250,52 @@ public class SuspendablesScanner extends Task {
             log("Project URLs: " + pus, Project.MSG_INFO);
 
             final long tStart = System.nanoTime();
+            loadCache();
+            this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
 
-            scanExternalSuspendables();
-
-            final long tScanExternal = System.nanoTime();
-            if (auto)
-                log("Scanned external suspendables in " + (tScanExternal - tStart) / 1000000 + " ms", Project.MSG_INFO);
-
-            // scan classes in filesets
-            Function<InputStream, Void> fileVisitor = new Function<InputStream, Void>() {
                 @Override
-                public Void apply(InputStream is1) {
-                    try (InputStream is = is1) {
-                        createGraph(is);
-                        return null;
-                    } catch (IOException e) {
-                        throw new RuntimeException(e);
-                    }
+                public Thread newThread(Runnable r) {
+                    final Thread t = new Thread(r, "suspendables-scanner-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
                 }
-            };
-            if (ant)
-                visitAntProject(fileVisitor);
-            else
-                visitProjectDir(fileVisitor);
-            scanSuspendablesFile(fileVisitor);
-
-            final long tBuildGraph = System.nanoTime();
-            log("Built method graph in " + (tBuildGraph - tScanExternal) / 1000000 + " ms", Project.MSG_INFO);
-
-            walkGraph();
-            final long tWalkGraph = System.nanoTime();
-            log("Walked method graph in " + (tWalkGraph - tBuildGraph) / 1000000 + " ms", Project.MSG_INFO);
+            });
+            try {
+                scanExternalSuspendables();
+                drain(0);
+                final int externalClasses = classesParsed.get() + classesReused.get();
+
+                final long tScanExternal = System.nanoTime();
+                if (auto)
+                    log("Scanned external suspendables in " + (tScanExternal - tStart) / 1000000 + " ms (" + externalClasses + " classes)", Project.MSG_INFO);
+
+                // scan classes in filesets
+                if (ant)
+                    visitAntProject();
+                else
+                    visitProjectDir();
+                scanSuspendablesFile();
+                drain(0);
+                final int projectClasses = classesParsed.get() + classesReused.get() - externalClasses;
+
+                final long tBuildGraph = System.nanoTime();
+                log("Built method graph in " + (tBuildGraph - tScanExternal) / 1000000 + " ms (" + projectClasses + " classes, "
+                        + classes.size() + " class nodes, " + methods.size() + " method nodes)", Project.MSG_INFO);
+
+                walkGraph();
+                final long tWalkGraph = System.nanoTime();
+                log("Walked method graph in " + (tWalkGraph - tBuildGraph) / 1000000 + " ms", Project.MSG_INFO);
+
+                storeCache();
+                log("Scanned " + (classesParsed.get() + classesReused.get()) + " classes in " + (System.nanoTime() - tStart) / 1000000 + " ms"
+                        + " using " + threads + " threads: " + classesParsed.get() + " parsed, " + classesReused.get() + " unchanged"
+                        + (cacheFile != null ? " (cache: " + cacheFile + ")" : ""), Project.MSG_INFO);
+            } finally {
+                executor.shutdownNow();
+                executor = null;
+                pending.clear();
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -227,38 +307,24 @@ public class SuspendablesScanner extends Task {
             public void visit(String resource, URL url, ClassLoader cl) throws IOException {
                 if (resource.startsWith("java/util") || resource.startsWith("java/lang") || resource.startsWith("co/paralleluniverse/asm"))
                     return;
-                if (isClassFile(url.getFile())) {
-                    URLConnection uc = url.openConnection();
-                    uc.setUseCaches(false);
-                    try (InputStream is = uc.getInputStream()) {
-                        if (is == null)
-                            throw new IOException("Resource " + resource + " not found (" + url + ")");
-                        new ClassReader(is)
-                                .accept(new SuspendableClassifier(false, ASMAPI, null), ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE);
-                    } catch (Exception e) {
-                        throw new RuntimeException("Exception thrown during processing (aaa) of " + resource + /*"(classloader: " + Arrays.toString(SuspendablesScanner.this.cl.getURLs()) + ")" +*/ " at " + url, e);
-                    }
-                }
+                if (isClassFile(url.getFile()))
+                    submit(url, false, false, resource + " at " + url);
             }
         });
     }
 
-    private void visitAntProject(Function<InputStream, Void> classFileVisitor) throws IOException {
+    private void visitAntProject() throws IOException {
         for (FileSet fs : filesets) {
             try {
                 final DirectoryScanner ds = fs.getDirectoryScanner(getProject());
                 final String[] includedFiles = ds.getIncludedFiles();
                 for (String filename : includedFiles) {
                     if (isClassFile(filename)) {
-                        try {
-                            File file = new File(fs.getDir(), filename);
-                            if (file.isFile())
-                                classFileVisitor.apply(new FileInputStream(file));
-                            else
-                                log("File not found: " + filename);
-                        } catch (Exception e) {
-                            throw new RuntimeException("Exception while processing " + filename, e);
-                        }
+                        File file = new File(fs.getDir(), filename);
+                        if (file.isFile())
+                            submit(file.toURI().toURL(), true, auto, filename);
+                        else
+                            log("File not found: " + filename);
                     }
                 }
             } catch (BuildException ex) {
@@ -267,17 +333,13 @@ public class SuspendablesScanner extends Task {
         }
     }
 
-    private void visitProjectDir(final Function<InputStream, Void> classFileVisitor) throws IOException {
+    private void visitProjectDir() throws IOException {
         Files.walkFileTree(projectDir, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                try {
-                    if (isClassFile(file.getFileName().toString()))
-                        classFileVisitor.apply(Files.newInputStream(file));
-                    return FileVisitResult.CONTINUE;
-                } catch (Exception e) {
-                    throw new RuntimeException("Exception while processing " + file, e);
-                }
+                if (isClassFile(file.getFileName().toString()))
+                    submit(file.toUri().toURL(), true, auto, file.toString());
+                return FileVisitResult.CONTINUE;
             }
         });
     }
@@ -285,7 +347,7 @@ public class SuspendablesScanner extends Task {
     /**
      * Visits classes whose methods are found in the suspendables file, as if they were part of the project
      */
-    private void scanSuspendablesFile(Function<InputStream, Void> classFileVisitor) {
+    private void scanSuspendablesFile() throws IOException {
         // scan classes in suspendables file
         if (suspendablesFile != null) {
             SimpleSuspendableClassifier tssc = new SimpleSuspendableClassifier(suspendablesFile);
@@ -295,215 +357,424 @@ public class SuspendablesScanner extends Task {
                 cs.add(susMethod.substring(0, susMethod.indexOf('.')));
 
             for (String className : cs) {
-                try {
-                    log("Scanning suspendable class:" + className, Project.MSG_VERBOSE);
-                    classFileVisitor.apply(cl.getResourceAsStream(classToResource(className)));
-                } catch (Exception e) {
-                    throw new RuntimeException("Exception while processing " + className, e);
-                }
+                log("Scanning suspendable class:" + className, Project.MSG_VERBOSE);
+                final URL url = ClassLoaderUtil.getResource(cl, classToResource(className));
+                if (url == null)
+                    throw new RuntimeException("Exception while processing " + className, new IOException("Resource not found"));
+                submit(url, true, auto, className);
             }
         }
     }
 
-    private class SuspendableClassifier extends ClassVisitor {
-        private final boolean inProject;
-        private String className;
-        private boolean suspendableClass;
-
-        public SuspendableClassifier(boolean inProject, int api, ClassVisitor cv) {
-            super(api, cv);
-            this.inProject = inProject;
+    /**
+     * Reads a class file and summarizes it, or reuses the summary computed for the same bytes in this run or in the previous one.
+     * Called concurrently by the scanner's threads.
+     */
+    private ClassSummary summarize(URL url, boolean withCode) throws IOException {
+        final byte[] bytes;
+        final URLConnection uc = url.openConnection();
+        uc.setUseCaches(false);
+        try (InputStream is = uc.getInputStream()) {
+            if (is == null)
+                throw new IOException("Resource not found: " + url);
+            bytes = readFully(is);
         }
-
-        @Override
-        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-            super.visit(version, access, name, signature, superName, interfaces);
-            this.className = name.intern();
-            log("Searching suspendables in " + className, Project.MSG_DEBUG);
+        final long hash = hash(bytes);
+        final String key = url.toString();
+        ClassSummary s = currentSummaries.get(key);
+        if (s == null || s.hash != hash || (withCode && !s.hasCode()))
+            s = previousSummaries.get(key);
+        if (s != null && s.hash == hash && (s.hasCode() || !withCode)) {
+            classesReused.incrementAndGet();
+        } else {
+            s = ClassSummary.parse(bytes, hash, withCode);
+            classesParsed.incrementAndGet();
         }
+        if (cacheFile != null) {
+            final ClassSummary old = currentSummaries.putIfAbsent(key, s);
+            if (old != null && old != s && s.hasCode())
+                currentSummaries.put(key, s);
+        }
+        return s;
+    }
 
-        @Override
-        public AnnotationVisitor visitAnnotation(String adesc, boolean visible) {
-            final AnnotationVisitor av = super.visitAnnotation(adesc, visible);
-            if (adesc.equals(SUSPENDABLE_DESC))
-                suspendableClass = true;
-            return av;
+    /**
+     * Summarizes a class file on one of the scanner's threads. The summary is added to the graph -- in submission order, on the
+     * calling thread -- by {@link #drain(int) drain}.
+     */
+    private void submit(final URL url, final boolean inProject, final boolean withCode, final String what) {
+        final Future<ClassSummary> f = executor.submit(new Callable<ClassSummary>() {
+            @Override
+            public ClassSummary call() throws Exception {
+                return summarize(url, withCode);
+            }
+        });
+        pending.add(new PendingClass(f, inProject, what));
+        drain(MAX_PENDING_PER_THREAD * threads); // don't let summaries pile up
+    }
+
+    /**
+     * Adds the summaries of submitted classes to the graph until no more than {@code max} are pending.
+     */
+    private void drain(int max) {
+        while (pending.size() > max) {
+            final PendingClass p = pending.poll();
+            final ClassSummary s;
+            try {
+                s = p.future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Exception while processing " + p.what, e.getCause());
+            }
+            if (p.inProject)
+                addToGraph(s);
+            else
+                addKnownSuspendables(s, false);
         }
+    }
 
-        @Override
-        public MethodVisitor visitMethod(int access, final String methodname, final String desc, String signature, String[] exceptions) {
-            final MethodVisitor mv = super.visitMethod(access, methodname, desc, signature, exceptions);
+    private void addToGraph(ClassSummary s) {
+        addKnownSuspendables(s, true);
+        addClassNode(s, true);
+        if (auto)
+            addCalls(s, true);
+    }
+
+    private void addKnownSuspendables(ClassSummary s, boolean inProject) {
+        final String className = s.name;
+        log("Searching suspendables in " + className, Project.MSG_DEBUG);
+        for (int i = 0; i < s.methods.length; i++) {
+            final String method = s.methods[i];
+            final int paren = method.indexOf('(');
+            final String methodname = method.substring(0, paren);
+            final String desc = method.substring(paren);
+            final byte flags = s.flags[i];
+            final boolean noImpl = (flags & ClassSummary.NO_IMPL) != 0;
 
             SuspendableType suspendable = SuspendableType.NON_SUSPENDABLE;
-            final boolean noImpl = (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0;
-            if (suspendableClass)
+            if (s.suspendableClass)
                 suspendable = noImpl ? SuspendableType.SUSPENDABLE_SUPER : SuspendableType.SUSPENDABLE;
-            if (suspendable != SuspendableType.SUSPENDABLE && checkExceptions(exceptions))
+            if (suspendable != SuspendableType.SUSPENDABLE && (flags & ClassSummary.THROWS_SUSPEND) != 0)
                 suspendable = noImpl ? SuspendableType.SUSPENDABLE_SUPER : SuspendableType.SUSPENDABLE;
             if (suspendable != SuspendableType.SUSPENDABLE && ssc.isSuperSuspendable(className, methodname, desc))
                 suspendable = max(suspendable, SuspendableType.SUSPENDABLE_SUPER);
             if (suspendable != SuspendableType.SUSPENDABLE && ssc.isSuspendable(className, methodname, desc))
                 suspendable = max(suspendable, SuspendableType.SUSPENDABLE);
 
-            final SuspendableType suspendable1 = suspendable;
-            return new MethodVisitor(api, mv) {
-                private SuspendableType susp = suspendable1 != SuspendableType.NON_SUSPENDABLE ? suspendable1 : null;
-
-                @Override
-                public AnnotationVisitor visitAnnotation(String adesc, boolean visible) {
-                    final AnnotationVisitor av = super.visitAnnotation(desc, visible);
+            SuspendableType susp = suspendable != SuspendableType.NON_SUSPENDABLE ? suspendable : null;
+            if ((flags & ClassSummary.SUSPENDABLE_ANNOTATION) != 0)
+                susp = noImpl ? SuspendableType.SUSPENDABLE_SUPER : SuspendableType.SUSPENDABLE;
+            else if ((flags & ClassSummary.DONT_INSTRUMENT_ANNOTATION) != 0)
+                susp = SuspendableType.NON_SUSPENDABLE;
 
-                    if (SUSPENDABLE_DESC.equals(adesc))
-                        susp = noImpl ? SuspendableType.SUSPENDABLE_SUPER : SuspendableType.SUSPENDABLE;
-                    else if (DONT_INSTRUMENT_DESC.equals(adesc))
-                        susp = SuspendableType.NON_SUSPENDABLE;
+            if (susp != null)
+                markKnownSuspendable(className, method, susp, inProject);
+        }
+    }
 
-                    return av;
-                }
+    private void markKnownSuspendable(String className, String method, SuspendableType sus, boolean inProject) {
+        final MethodNode m = getOrCreateMethodNode(className + '.' + method);
+        m.owner = className;
+        m.inProject |= inProject;
+        m.setSuspendType(max(m.suspendType, sus));
+        m.known = true;
 
-                @Override
-                public void visitEnd() {
-                    super.visitEnd();
+        if (auto || inProject)
+            knownSuspendablesOrSupers.add(m);
 
-                    if (susp != null)
-                        markKnownSuspendable(methodname, desc, susp);
-                }
-            };
-        }
+        log("Known suspendable " + className + '.' + method, Project.MSG_VERBOSE);
+    }
 
-        private void markKnownSuspendable(String methodname, String desc, SuspendableType sus) {
-            final MethodNode method = getOrCreateMethodNode(className + '.' + methodname + desc);
-            method.owner = className;
-            method.inProject |= inProject;
-            method.setSuspendType(max(method.suspendType, sus));
-            method.known = true;
+    private static SuspendableType max(SuspendableType a, SuspendableType b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+        return b.compareTo(a) > 0 ? b : a;
+    }
 
-            if (auto || inProject)
-                knownSuspendablesOrSupers.add(method);
+    private ClassNode addClassNode(ClassSummary s, boolean inProject) {
+        log("Loading and analyzing class " + s.name, Project.MSG_DEBUG);
 
-            log("Known suspendable " + className + '.' + methodname + desc, Project.MSG_VERBOSE);
-        }
+        final ClassNode cn = getOrCreateClassNode(s.name);
+        cn.inProject |= inProject;
+        cn.setSupers(s.superName, s.interfaces);
+        cn.setMethods(Arrays.asList(s.methods));
+        return cn;
+    }
 
-        private boolean checkExceptions(String[] exceptions) {
-            if (exceptions != null) {
-                for (String ex : exceptions) {
-                    if (ex.equals(SUSPEND_EXECUTION_NAME))
-                        return true;
+    private void addCalls(ClassSummary s, boolean inProject) {
+        final String className = s.name;
+        for (int i = 0; i < s.methods.length; i++) {
+            final MethodNode caller = getOrCreateMethodNode(className + '.' + s.methods[i]);
+            caller.inProject |= inProject;
+            for (String call : s.calls[i]) {
+                if (call == ClassSummary.INVOKE_DYNAMIC) {
+                    log("NOTE: InvokeDynamic invocation in " + methodToString(className, s.methods[i]), Project.MSG_WARN);
+                    continue;
+                }
+                final String owner = getClassName(call);
+                final String name = call.substring(owner.length() + 1, call.indexOf('(', owner.length()));
+                if (isReflectInvocation(owner, name))
+                    log("NOTE: Reflective invocation in " + methodToString(className, s.methods[i]), Project.MSG_WARN);
+                else if (isInvocationHandlerInvocation(owner, name))
+                    log("NOTE: Invocation handler invocation in " + methodToString(className, s.methods[i]), Project.MSG_WARN);
+                else if (isMethodHandleInvocation(owner, name))
+                    log("NOTE: Method handle invocation in " + methodToString(className, s.methods[i]), Project.MSG_WARN);
+                else {
+                    final MethodNode callee = getOrCreateMethodNode(call);
+                    log("Adding caller " + caller + " to " + callee, Project.MSG_DEBUG);
+                    callee.addCaller(caller);
                 }
             }
-            return false;
         }
+    }
 
-        private SuspendableType max(SuspendableType a, SuspendableType b) {
-            if (a == null)
-                return b;
-            if (b == null)
-                return a;
-            return b.compareTo(a) > 0 ? b : a;
-        }
+    private static String methodToString(String className, String method) {
+        final String methodname = method.substring(0, method.indexOf('('));
+        final String desc = method.substring(method.indexOf('('));
+        return (className + '.' + methodname + "(" + Arrays.toString(Type.getArgumentTypes(desc)) + ") - " + className + '.' + method);
     }
 
-    private class ClassNodeVisitor extends ClassVisitor {
-        private final boolean inProject;
-        private String className;
-        private final List<String> methods = new ArrayList<>();
-        private ClassNode cn;
+    private static final class PendingClass {
+        final Future<ClassSummary> future;
+        final boolean inProject;
+        final String what;
 
-        public ClassNodeVisitor(boolean inProject, int api, ClassVisitor cv) {
-            super(api, cv);
+        PendingClass(Future<ClassSummary> future, boolean inProject, String what) {
+            this.future = future;
             this.inProject = inProject;
+            this.what = what;
         }
+    }
 
-        @Override
-        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-            super.visit(version, access, name, signature, superName, interfaces);
-
-            this.className = name;
-            log("Loading and analyzing class " + className, Project.MSG_DEBUG);
+    /**
+     * Everything the scanner needs to know about a class file: its supertypes, methods and, optionally, the methods each of them
+     * calls. Summaries don't depend on the scanner's configuration, and are what the incremental cache stores.
+     */
+    private static final class ClassSummary {
+        static final byte NO_IMPL = 1;
+        static final byte THROWS_SUSPEND = 2;
+        static final byte SUSPENDABLE_ANNOTATION = 4;
+        static final byte DONT_INSTRUMENT_ANNOTATION = 8;
+        static final String INVOKE_DYNAMIC = "invokedynamic"; // a pseudo-callee
+        private static final String[] NO_STRINGS = new String[0];
+        //
+        final long hash;
+        final String name;
+        final String superName;
+        final String[] interfaces;
+        final boolean suspendableClass;
+        final String[] methods; // methodname+desc
+        final byte[] flags;
+        final String[][] calls; // owner.methodname+desc for every call made by each method; null if the code has not been read
+
+        ClassSummary(long hash, String name, String superName, String[] interfaces, boolean suspendableClass, String[] methods, byte[] flags, String[][] calls) {
+            this.hash = hash;
+            this.name = name;
+            this.superName = superName;
+            this.interfaces = interfaces;
+            this.suspendableClass = suspendableClass;
+            this.methods = methods;
+            this.flags = flags;
+            this.calls = calls;
+        }
 
-            cn = getOrCreateClassNode(className);
-            cn.inProject |= inProject;
-            cn.setSupers(superName, interfaces);
+        boolean hasCode() {
+            return calls != null;
         }
 
-        @Override
-        public MethodVisitor visitMethod(int access, String methodname, String desc, String signature, String[] exceptions) {
-            final MethodVisitor mv = super.visitMethod(access, methodname, desc, signature, exceptions);
+        static ClassSummary parse(byte[] bytes, long hash, final boolean withCode) {
+            final List<String> methods = new ArrayList<>();
+            final List<Byte> flags = new ArrayList<>();
+            final List<String[]> calls = new ArrayList<>();
+            final String[][] header = new String[3][];
+            final boolean[] suspendableClass = new boolean[1];
 
-            methods.add((methodname + desc).intern());
+            new ClassReader(bytes).accept(new ClassVisitor(ASMAPI) {
+                @Override
+                public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                    header[0] = new String[]{name};
+                    header[1] = new String[]{superName};
+                    header[2] = interfaces != null ? interfaces : NO_STRINGS;
+                }
 
-            return mv;
-        }
+                @Override
+                public AnnotationVisitor visitAnnotation(String adesc, boolean visible) {
+                    if (adesc.equals(SUSPENDABLE_DESC))
+                        suspendableClass[0] = true;
+                    return null;
+                }
 
-        @Override
-        public void visitEnd() {
-            super.visitEnd();
+                @Override
+                public MethodVisitor visitMethod(int access, String methodname, String desc, String signature, String[] exceptions) {
+                    final int index = methods.size();
+                    methods.add(methodname + desc);
+                    byte f = 0;
+                    if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0)
+                        f |= NO_IMPL;
+                    if (exceptions != null && Arrays.asList(exceptions).contains(SUSPEND_EXECUTION_NAME))
+                        f |= THROWS_SUSPEND;
+                    flags.add(f);
+                    calls.add(null);
+
+                    final List<String> cs = new ArrayList<>();
+                    return new MethodVisitor(api) {
+                        @Override
+                        public AnnotationVisitor visitAnnotation(String adesc, boolean visible) {
+                            final byte f = flags.get(index);
+                            final byte clear = (byte) (f & ~(SUSPENDABLE_ANNOTATION | DONT_INSTRUMENT_ANNOTATION));
+                            if (SUSPENDABLE_DESC.equals(adesc))
+                                flags.set(index, (byte) (clear | SUSPENDABLE_ANNOTATION));
+                            else if (DONT_INSTRUMENT_DESC.equals(adesc))
+                                flags.set(index, (byte) (clear | DONT_INSTRUMENT_ANNOTATION));
+                            return null;
+                        }
 
-            cn.setMethods(methods);
-        }
-    }
+                        @Override
+                        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                            cs.add(owner + '.' + name + desc);
+                        }
 
-    private class CallGraphVisitor extends ClassVisitor {
-        private final boolean inProject;
-        private String className;
+                        @Override
+                        public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+                            cs.add(INVOKE_DYNAMIC);
+                        }
 
-        public CallGraphVisitor(boolean inProject, int api, ClassVisitor cv) {
-            super(api, cv);
-            this.inProject = inProject;
-        }
+                        @Override
+                        public void visitEnd() {
+                            if (withCode)
+                                calls.set(index, cs.toArray(new String[cs.size()]));
+                        }
+                    };
+                }
+            }, ClassReader.SKIP_DEBUG | (withCode ? 0 : ClassReader.SKIP_CODE));
 
-        @Override
-        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
-            super.visit(version, access, name, signature, superName, interfaces);
-            this.className = name;
+            final byte[] fs = new byte[flags.size()];
+            for (int i = 0; i < fs.length; i++)
+                fs[i] = flags.get(i);
+            return new ClassSummary(hash, header[0][0], header[1][0], header[2], suspendableClass[0],
+                    methods.toArray(new String[methods.size()]), fs, withCode ? calls.toArray(new String[calls.size()][]) : null);
         }
 
-        @Override
-        public MethodVisitor visitMethod(int access, final String methodname, final String desc, String signature, String[] exceptions) {
-            final MethodVisitor mv = super.visitMethod(access, methodname, desc, signature, exceptions);
+        void write(DataOutput out) throws IOException {
+            out.writeLong(hash);
+            out.writeUTF(name);
+            writeNullableUTF(out, superName);
+            writeStrings(out, interfaces);
+            out.writeBoolean(suspendableClass);
+            writeStrings(out, methods);
+            out.write(flags);
+            out.writeBoolean(calls != null);
+            if (calls != null) {
+                for (String[] cs : calls)
+                    writeStrings(out, cs);
+            }
+        }
 
-            final MethodNode caller = getOrCreateMethodNode(className + '.' + methodname + desc);
-            caller.inProject |= inProject;
-            return new MethodVisitor(api, mv) {
-                @Override
-                public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
-                    super.visitMethodInsn(opcode, owner, name, desc, itf);
-                    if (isReflectInvocation(owner, name))
-                        log("NOTE: Reflective invocation in " + methodToString(), Project.MSG_WARN);
-                    else if (isInvocationHandlerInvocation(owner, name))
-                        log("NOTE: Invocation handler invocation in " + methodToString(), Project.MSG_WARN);
-                    else if (isMethodHandleInvocation(owner, name))
-                        log("NOTE: Method handle invocation in " + methodToString(), Project.MSG_WARN);
-                    else {
-                        final MethodNode callee = getOrCreateMethodNode(owner + '.' + name + desc);
-                        log("Adding caller " + caller + " to " + callee, Project.MSG_DEBUG);
-                        callee.addCaller(caller);
+        static ClassSummary read(DataInput in) throws IOException {
+            final long hash = in.readLong();
+            final String name = in.readUTF();
+            final String superName = readNullableUTF(in);
+            final String[] interfaces = readStrings(in);
+            final boolean suspendableClass = in.readBoolean();
+            final String[] methods = readStrings(in);
+            final byte[] flags = new byte[methods.length];
+            in.readFully(flags);
+            String[][] calls = null;
+            if (in.readBoolean()) {
+                calls = new String[methods.length][];
+                for (int i = 0; i < calls.length; i++) {
+                    calls[i] = readStrings(in);
+                    for (int j = 0; j < calls[i].length; j++) {
+                        if (INVOKE_DYNAMIC.equals(calls[i][j]))
+                            calls[i][j] = INVOKE_DYNAMIC;
                     }
                 }
+            }
+            return new ClassSummary(hash, name, superName, interfaces, suspendableClass, methods, flags, calls);
+        }
 
-                @Override
-                public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
-                    super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+        private static void writeStrings(DataOutput out, String[] ss) throws IOException {
+            out.writeInt(ss.length);
+            for (String s : ss)
+                out.writeUTF(s);
+        }
 
-                    log("NOTE: InvokeDynamic invocation in " + methodToString(), Project.MSG_WARN);
-                }
+        private static String[] readStrings(DataInput in) throws IOException {
+            final String[] ss = new String[in.readInt()];
+            for (int i = 0; i < ss.length; i++)
+                ss[i] = in.readUTF();
+            return ss;
+        }
 
-                private String methodToString() {
-                    return (className + '.' + methodname + "(" + Arrays.toString(Type.getArgumentTypes(desc)) + ") - " + className + '.' + methodname + desc);
-                }
-            };
+        private static void writeNullableUTF(DataOutput out, String s) throws IOException {
+            out.writeBoolean(s != null);
+            if (s != null)
+                out.writeUTF(s);
+        }
+
+        private static String readNullableUTF(DataInput in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
         }
     }
 
-    private void createGraph(InputStream classStream) throws IOException {
-        final ClassReader cr = new ClassReader(classStream);
-        ClassVisitor cv = null;
-        cv = new SuspendableClassifier(true, ASMAPI, cv);
-        cv = new ClassNodeVisitor(true, ASMAPI, cv);
-        if (auto)
-            cv = new CallGraphVisitor(true, ASMAPI, cv);
+    private void loadCache() {
+        previousSummaries = Collections.emptyMap();
+        if (cacheFile == null)
+            return;
+        final File file = new File(cacheFile);
+        if (!file.isFile())
+            return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != CACHE_MAGIC || in.readInt() != CACHE_FORMAT_VERSION)
+                return;
+            final int n = in.readInt();
+            final Map<String, ClassSummary> summaries = new HashMap<>(n * 2);
+            for (int i = 0; i < n; i++) {
+                final String key = in.readUTF();
+                summaries.put(key, ClassSummary.read(in));
+            }
+            previousSummaries = summaries;
+            log("Read " + n + " class summaries from " + cacheFile, Project.MSG_VERBOSE);
+        } catch (IOException e) {
+            log("Could not read scanner cache " + cacheFile + ": " + e, Project.MSG_WARN); // a full scan is always correct
+        }
+    }
 
-        cr.accept(cv, ClassReader.SKIP_DEBUG | (auto ? 0 : ClassReader.SKIP_CODE));
+    private void storeCache() throws IOException {
+        if (cacheFile == null)
+            return;
+        final File file = new File(cacheFile).getAbsoluteFile();
+        if (!file.getParentFile().exists())
+            file.getParentFile().mkdirs();
+        final File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(CACHE_MAGIC);
+            out.writeInt(CACHE_FORMAT_VERSION);
+            out.writeInt(currentSummaries.size());
+            for (Map.Entry<String, ClassSummary> e : currentSummaries.entrySet()) {
+                out.writeUTF(e.getKey());
+                e.getValue().write(out);
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        final byte[] buf = new byte[8192];
+        for (int n; (n = is.read(buf)) > 0;)
+            out.write(buf, 0, n);
+        return out.toByteArray();
+    }
+
+    private static long hash(byte[] bytes) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return ((long) bytes.length << 32) | crc.getValue();
     }
 
     private void walkGraph() {
@@ -666,9 +937,11 @@ public class SuspendablesScanner extends Task {
 
     private ClassNode fill(ClassNode node) {
         if (node.supers == null) {
-            try (InputStream is = ClassLoaderUtil.getResourceAsStream(cl, classToResource(node.name))) {
-                final ClassReader cr = new ClassReader(is);
-                cr.accept(new ClassNodeVisitor(false, ASMAPI, null), ClassReader.SKIP_DEBUG | ClassReader.SKIP_CODE);
+            try {
+                final URL url = ClassLoaderUtil.getResource(cl, classToResource(node.name));
+                if (url == null)
+                    throw new IOException("Resource " + classToResource(node.name) + " not found");
+                addClassNode(summarize(url, false), false);
                 assert node.supers != null;
             } catch (IOException e) {
                 throw new RuntimeException("during processing of " + node.name, e);
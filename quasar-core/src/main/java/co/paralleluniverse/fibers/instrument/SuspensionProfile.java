@@ -0,0 +1,208 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers.instrument;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The call sites at which fibers have been seen to suspend in a training run.
+ * <p>
+ * A call to a method that is suspendable only because it overrides or implements a {@link MethodDatabase.SuspendableType#SUSPENDABLE_SUPER
+ * suspendable-super} -- say, a call through an interface -- must be instrumented, even though most implementations may never
+ * suspend. When instrumenting with a profile, such a call site at which no fiber suspended in the training run is given a cheaper
+ * instrumentation, which stores the caller's frame only if the call does suspend, in the exception handler that sees the
+ * {@link co.paralleluniverse.fibers.SuspendExecution} go by, rather than before every call. Such a call site is therefore
+ * still correct if it suspends after all, only somewhat slower when it does.</p>
+ * <p>
+ * To record a profile, run the program with the {@code co.paralleluniverse.fibers.instrument.recordSuspensionProfile} system property
+ * set to the name of the profile file; the suspending call sites are added to the file when the program exits. To use the
+ * profile, instrument with the {@code co.paralleluniverse.fibers.instrument.suspensionProfile} system property set to the file's name.</p>
+ * <p>
+ * The file lists one call site per line as {@code internal/class/Name.method:line}. Call sites are identified by source line
+ * (and so require classes compiled with line numbers); call sites on the same line as a suspending one are never elided.</p>
+ *
+ * @author pron
+ */
+public final class SuspensionProfile {
+    private static final String PROFILE_FILE = System.getProperty("co.paralleluniverse.fibers.instrument.suspensionProfile");
+    private static final String RECORD_FILE = System.getProperty("co.paralleluniverse.fibers.instrument.recordSuspensionProfile");
+    /**
+     * Whether suspending call sites are being recorded.
+     */
+    public static final boolean RECORDING = RECORD_FILE != null;
+    private static final Set<String> recorded = RECORDING ? Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>()) : null;
+    private static volatile SuspensionProfile instance;
+    private final Set<String> sites;
+    private final String key;
+
+    static {
+        if (RECORDING) {
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writeRecorded(new File(RECORD_FILE));
+                    } catch (IOException e) {
+                        System.err.println("QUASAR WARNING: Could not write suspension profile " + RECORD_FILE + ": " + e);
+                    }
+                }
+            }, "quasar-suspension-profile"));
+        }
+    }
+
+    /**
+     * Returns the profile named by the {@code co.paralleluniverse.fibers.instrument.suspensionProfile} system property, or
+     * {@code null} if none is.
+     */
+    static SuspensionProfile getDefault() {
+        if (PROFILE_FILE == null)
+            return null;
+        SuspensionProfile p = instance;
+        if (p == null) {
+            synchronized (SuspensionProfile.class) {
+                p = instance;
+                if (p == null) {
+                    try {
+                        instance = p = load(new File(PROFILE_FILE));
+                    } catch (IOException e) {
+                        throw new RuntimeException("Could not read suspension profile " + PROFILE_FILE, e);
+                    }
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Reads a profile from a file.
+     */
+    public static SuspensionProfile load(File file) throws IOException {
+        try (InputStream is = new FileInputStream(file)) {
+            return load(is);
+        }
+    }
+
+    static SuspensionProfile load(InputStream is) throws IOException {
+        final Set<String> sites = new TreeSet<>();
+        read(is, sites);
+        return new SuspensionProfile(sites);
+    }
+
+    SuspensionProfile(Set<String> sites) {
+        this.sites = Collections.unmodifiableSet(new TreeSet<>(sites));
+        this.key = digest(this.sites);
+    }
+
+    /**
+     * Tests whether a fiber has suspended at a call site.
+     *
+     * @param className  the internal name of the calling class
+     * @param methodName the name of the calling method
+     * @param line       the call site's source line
+     */
+    public boolean hasSuspended(String className, String methodName, int line) {
+        return sites.contains(site(className, methodName, line));
+    }
+
+    /**
+     * A digest of the profile's contents, so that classes instrumented with different profiles are told apart.
+     */
+    String getKey() {
+        return key;
+    }
+
+    int size() {
+        return sites.size();
+    }
+
+    /**
+     * Records every frame of the given stack trace -- taken when a fiber is about to suspend -- as a suspending call site.
+     * Called by the fiber only if {@link #RECORDING}.
+     */
+    public static void recordSuspension(StackTraceElement[] stackTrace) {
+        for (StackTraceElement ste : stackTrace) {
+            if (ste.getLineNumber() >= 0)
+                recorded.add(site(ste.getClassName().replace('.', '/'), ste.getMethodName(), ste.getLineNumber()));
+        }
+    }
+
+    /**
+     * Writes the recorded call sites, together with those already in the file, so that profiles of several runs accumulate.
+     */
+    static void writeRecorded(File file) throws IOException {
+        final Set<String> sites = new TreeSet<>(recorded);
+        if (file.exists()) {
+            try (InputStream is = new FileInputStream(file)) {
+                read(is, sites);
+            }
+        }
+        final File tmp = new File(file.getPath() + ".tmp");
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(tmp.toPath(), StandardCharsets.UTF_8))) {
+            out.println("# Quasar suspension profile: call sites at which fibers have suspended");
+            for (String site : sites)
+                out.println(site);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void read(InputStream is, Set<String> sites) throws IOException {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final String s = line.trim();
+            if (!s.isEmpty() && s.charAt(0) != '#')
+                sites.add(s);
+        }
+    }
+
+    private static String site(String className, String methodName, int line) {
+        return className + '.' + methodName + ':' + line;
+    }
+
+    private static String digest(Set<String> sites) {
+        try {
+            final MessageDigest md = MessageDigest.getInstance("SHA-1");
+            for (String site : sites) {
+                md.update(site.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) '\n');
+            }
+            final StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest())
+                sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SuspensionProfile{" + sites.size() + " call sites, " + key + '}';
+    }
+}
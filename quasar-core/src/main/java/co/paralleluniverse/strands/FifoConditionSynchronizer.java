@@ -0,0 +1,263 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A condition whose waiters each have a wait node, queued in registration order, so that {@link #signal() signal} wakes exactly one
+ * waiter, thread or fiber, the one that has been waiting longest.
+ * <p>
+ * A waiter that has been signalled but unregisters without having acted on the signal (e.g., because it has timed out, or because it has
+ * been interrupted) passes the signal on to the next waiter, so a signal is never lost. A waiter has acted on a signal once it has gone back
+ * to wait, or if it unregisters with {@link #unregister(Object, boolean) unregister(token, true)}, telling us it's got what it's been
+ * waiting for.
+ * Waiters should pass the token returned by {@link #register()} to {@link #await(Object, int) await}; {@link #await(int)} works, too, but must
+ * look up the current strand's node.</p>
+ * <p>
+ * Wait nodes are kept in a linked list guarded by a short lock, and are reused once their waiter unregisters, so registering doesn't
+ * allocate in the common case. Signalling a condition that has no waiters takes no lock at all.</p>
+ *
+ * @author pron
+ */
+public class FifoConditionSynchronizer extends ConditionSynchronizer implements Condition {
+    private static final int WAITING = 0;
+    private static final int SIGNALLED = 1;
+    private static final int CANCELLED = 2;
+    // only running strands register, so there's little use in keeping more spare nodes than there are processors
+    private static final int SPARES = Math.min(nextPowerOfTwo(Runtime.getRuntime().availableProcessors()), 16);
+
+    private volatile Node head; // written under the lock
+    private Node tail;          // guarded by the lock
+    private int size;           // guarded by the lock
+    private final Node[] spares = new Node[SPARES];
+
+    public FifoConditionSynchronizer(Object owner) {
+        super(owner);
+    }
+
+    @Override
+    public Object register() {
+        final Strand strand = Strand.currentStrand();
+        record("register", "%s register %s", this, strand);
+        final Node node = newNode(strand);
+        synchronized (this) {
+            node.prev = tail;
+            if (tail == null)
+                head = node;
+            else
+                tail.next = node;
+            tail = node;
+            size++;
+        }
+        return node;
+    }
+
+    @Override
+    public void unregister(Object registrationToken) {
+        unregister(registrationToken, false);
+    }
+
+    /**
+     * Unregisters a waiter.
+     *
+     * @param registrationToken the token returned by {@link #register()}
+     * @param satisfied         whether the waiter has got what it's been waiting for, in which case a signal it has been woken by isn't passed
+     *                          on
+     */
+    public void unregister(Object registrationToken, boolean satisfied) {
+        final Node node = registrationToken != null ? (Node) registrationToken : find(Strand.currentStrand());
+        record("unregister", "%s unregister %s", this, Strand.currentStrand());
+        if (node == null)
+            throw new IllegalMonitorStateException();
+        final int state;
+        synchronized (this) {
+            if (node.prev == null)
+                head = node.next;
+            else
+                node.prev.next = node.next;
+            if (node.next == null)
+                tail = node.prev;
+            else
+                node.next.prev = node.prev;
+            size--;
+            state = (int) STATE.getAndSet(node, CANCELLED);
+        }
+        final boolean woken = node.woken;
+        recycle(node);
+        if (state == SIGNALLED || (woken && !satisfied))
+            signal(); // we've been signalled but we're leaving without having used the signal; pass it on
+    }
+
+    public void await(Object token, int iter) throws InterruptedException, SuspendExecution {
+        final Node node = (Node) token;
+        node.woken = false; // the waiter has checked its condition since it was last woken
+        if (!node.consumeSignal()) {
+            super.await(iter);
+            node.woken = node.consumeSignal();
+        } else {
+            node.woken = true;
+            if (Strand.interrupted())
+                throw new InterruptedException();
+        }
+    }
+
+    public void await(Object token, int iter, long timeout, TimeUnit unit) throws InterruptedException, SuspendExecution {
+        awaitNanos(token, iter, unit.toNanos(timeout));
+    }
+
+    public void awaitNanos(Object token, int iter, long timeoutNanos) throws InterruptedException, SuspendExecution {
+        final Node node = (Node) token;
+        node.woken = false;
+        if (!node.consumeSignal()) {
+            super.awaitNanos(iter, timeoutNanos);
+            node.woken = node.consumeSignal();
+        } else {
+            node.woken = true;
+            if (Strand.interrupted())
+                throw new InterruptedException();
+        }
+    }
+
+    @Override
+    public void await(int iter) throws InterruptedException, SuspendExecution {
+        final Node node = find(Strand.currentStrand());
+        if (node != null)
+            await(node, iter);
+        else
+            super.await(iter);
+    }
+
+    @Override
+    public void await(int iter, long timeout, TimeUnit unit) throws InterruptedException, SuspendExecution {
+        awaitNanos(iter, unit.toNanos(timeout));
+    }
+
+    @Override
+    public void awaitNanos(int iter, long timeoutNanos) throws InterruptedException, SuspendExecution {
+        final Node node = find(Strand.currentStrand());
+        if (node != null)
+            awaitNanos(node, iter, timeoutNanos);
+        else
+            super.awaitNanos(iter, timeoutNanos);
+    }
+
+    @Override
+    public void signal() {
+        if (head == null)
+            return;
+        Strand strand = null;
+        synchronized (this) {
+            for (Node node = head; node != null; node = node.next) {
+                if (node.state == WAITING && STATE.compareAndSet(node, WAITING, SIGNALLED)) {
+                    strand = node.strand;
+                    break;
+                }
+            }
+            if (strand == null) {
+                // Everyone has already been signalled. Waiters that wait without our await (like selectors) don't consume signals, so we wake them again.
+                for (Node node = head; node != null; node = node.next) {
+                    if (node.state == SIGNALLED) {
+                        record("signal", "%s signalling %s", this, node.strand);
+                        Strand.unpark(node.strand, owner);
+                    }
+                }
+                return;
+            }
+        }
+        record("signal", "%s signalling %s", this, strand);
+        Strand.unpark(strand, owner);
+    }
+
+    @Override
+    public void signalAll() {
+        if (head == null)
+            return;
+        synchronized (this) {
+            for (Node node = head; node != null; node = node.next) {
+                STATE.compareAndSet(node, WAITING, SIGNALLED);
+                record("signalAll", "%s signalling %s", this, node.strand);
+                Strand.unpark(node.strand, owner);
+            }
+        }
+    }
+
+    private synchronized Node find(Strand strand) {
+        for (Node node = head; node != null; node = node.next) {
+            if (Strand.equals(node.strand, strand))
+                return node;
+        }
+        return null;
+    }
+
+    private Node newNode(Strand strand) {
+        final int slot = slot(strand);
+        Node node = spares[slot] != null ? (Node) SPARE.getAndSet(spares, slot, null) : null;
+        if (node == null)
+            node = new Node();
+        node.strand = strand;
+        node.prev = null;
+        node.next = null;
+        node.state = WAITING;
+        node.woken = false;
+        return node;
+    }
+
+    private void recycle(Node node) {
+        final int slot = slot(node.strand);
+        node.strand = null;
+        node.prev = null;
+        node.next = null;
+        if (spares[slot] == null)
+            SPARE.compareAndSet(spares, slot, null, node);
+    }
+
+    private static int slot(Strand strand) {
+        final int h = System.identityHashCode(strand);
+        return (h ^ (h >>> 16)) & (SPARES - 1);
+    }
+
+    private static int nextPowerOfTwo(int v) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(v - 1));
+    }
+
+    @Override
+    public String toString() {
+        return "FifoConditionSynchronizer{" + "waiters: " + size + '}';
+    }
+
+    private static final class Node {
+        Strand strand;   // written by the owning strand before the node is queued
+        Node prev, next; // guarded by the synchronizer's lock
+        volatile int state;
+        boolean woken;   // owned by the strand; whether it has consumed a signal that it hasn't yet acted on
+
+        boolean consumeSignal() {
+            return state == SIGNALLED && STATE.compareAndSet(this, SIGNALLED, WAITING);
+        }
+    }
+    private static final VarHandle STATE;
+    private static final VarHandle SPARE = MethodHandles.arrayElementVarHandle(Node[].class);
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Node.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
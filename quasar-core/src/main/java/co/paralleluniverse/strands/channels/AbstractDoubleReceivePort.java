@@ -0,0 +1,49 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Timeout;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Implements the boxing {@link ReceivePort} methods of a {@link DoubleReceivePort} in terms of its primitive ones.
+ *
+ * @author pron
+ */
+abstract class AbstractDoubleReceivePort implements DoubleReceivePort {
+    @Override
+    public Double receive() throws SuspendExecution, InterruptedException {
+        try {
+            return receiveDouble();
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Double receive(long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
+        try {
+            return receiveDouble(timeout, unit);
+        } catch (EOFException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public double receiveDouble(Timeout timeout) throws SuspendExecution, InterruptedException, TimeoutException, EOFException {
+        return receiveDouble(timeout.nanosLeft(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Timeout;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Implements the boxing {@link ReceivePort} methods of a {@link IntReceivePort} in terms of its primitive ones.
+ *
+ * @author pron
+ */
+abstract class AbstractIntReceivePort implements IntReceivePort {
+    @Override
+    public Integer receive() throws SuspendExecution, InterruptedException {
+        try {
+            return receiveInt();
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Integer receive(long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
+        try {
+            return receiveInt(timeout, unit);
+        } catch (EOFException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public int receiveInt(Timeout timeout) throws SuspendExecution, InterruptedException, TimeoutException, EOFException {
+        return receiveInt(timeout.nanosLeft(), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.common.util.VisibleForTesting;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.FifoConditionSynchronizer;
+import co.paralleluniverse.strands.Timeout;
+import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A topic whose subscribers all read messages from a single ring buffer, so that sending a message writes it once, no matter how many
+ * subscribers there are. Subscribers are created with {@link #newSubscriber()}, and each reads the messages sent after it was created, in order.
+ * <p>
+ * The topic's overflow policy determines what happens when a subscriber falls a whole ring behind: with {@link OverflowPolicy#DISPLACE DISPLACE},
+ * senders never wait, and a subscriber that has been lapped skips the messages that have been overwritten (these are counted by
+ * {@link Subscriber#getLapped()}); with {@link OverflowPolicy#BLOCK BLOCK}, senders wait for the slowest subscriber.</p>
+ * <p>
+ * Channels {@link #subscribe(SendPort) subscribed} to this topic, rather than created by {@link #newSubscriber()}, are each sent every message,
+ * like the subscribers of a {@link Topic}.</p>
+ *
+ * @author pron
+ */
+public class BroadcastTopic<Message> implements PubSub<Message> {
+    private final Object[] ring;
+    private final int capacity;
+    private final int mask;
+    private final OverflowPolicy overflowPolicy;
+    private final CopyOnWriteArrayList<Subscriber<Message>> subscribers = new CopyOnWriteArrayList<>();
+    private static final int SPINS = Runtime.getRuntime().availableProcessors() > 1 ? 1 << 6 : 0;
+    private final Topic<Message> forwarded = new Topic<>();
+    final FifoConditionSynchronizer sync; // subscribers wait for messages
+    final FifoConditionSynchronizer sendersSync; // senders wait for the slowest subscriber (BLOCK)
+    volatile long p101, p102, p103, p104, p105, p106, p107;
+    private volatile long tail; // next index to be written
+    volatile long p201, p202, p203, p204, p205, p206, p207;
+    volatile long published; // all messages below this index have been written
+    volatile long p301, p302, p303, p304, p305, p306, p307;
+    volatile long minHead; // a lower bound on all subscribers' heads (BLOCK)
+    private volatile boolean sendClosed;
+    private Throwable closeException;
+
+    /**
+     * Creates a new broadcast topic.
+     *
+     * @param bufferSize     the size of the ring (rounded up to a power of 2).
+     * @param overflowPolicy either {@link OverflowPolicy#DISPLACE DISPLACE} or {@link OverflowPolicy#BLOCK BLOCK}.
+     */
+    public BroadcastTopic(int bufferSize, OverflowPolicy overflowPolicy) {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        if (overflowPolicy != OverflowPolicy.DISPLACE && overflowPolicy != OverflowPolicy.BLOCK)
+            throw new IllegalArgumentException("Unsupported overflow policy " + overflowPolicy + "; only DISPLACE and BLOCK are supported");
+        this.capacity = 1 << (32 - Integer.numberOfLeadingZeros(bufferSize - 1));
+        this.mask = capacity - 1;
+        this.ring = new Object[capacity];
+        this.overflowPolicy = overflowPolicy;
+        this.sync = new FifoConditionSynchronizer(this);
+        this.sendersSync = overflowPolicy == OverflowPolicy.BLOCK ? new FifoConditionSynchronizer(this) : null;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Creates a new subscriber, which will receive all messages sent to this topic from now on.
+     * If the topic has been closed, the subscriber is closed.
+     */
+    public Subscriber<Message> newSubscriber() {
+        final Subscriber<Message> s;
+        synchronized (subscribers) {
+            s = new Subscriber<>(this, tail);
+            if (overflowPolicy == OverflowPolicy.BLOCK && s.head < minHead)
+                minHead = s.head;
+            subscribers.add(s);
+        }
+        return s;
+    }
+
+    /**
+     * Subscribe a channel to receive messages sent to this topic. Each message is sent to the channel, as with {@link Topic}, rather than
+     * read from the shared ring.
+     *
+     * @param sub the channel to subscribe
+     */
+    @Override
+    public <T extends SendPort<? super Message>> T subscribe(T sub) {
+        return forwarded.subscribe(sub);
+    }
+
+    @Override
+    public void unsubscribe(SendPort<? super Message> sub) {
+        forwarded.unsubscribe(sub);
+    }
+
+    void unsubscribe(Subscriber<Message> sub) {
+        subscribers.remove(sub);
+        if (sendersSync != null)
+            sendersSync.signalAll();
+    }
+
+    @Override
+    public void send(Message message) throws SuspendExecution, InterruptedException {
+        if (write(message, -1) && !forwarded.getSubscribers().isEmpty())
+            forwarded.send(message);
+    }
+
+    /**
+     * Sends a message to this topic, waiting for the slowest subscriber, if the policy is {@link OverflowPolicy#BLOCK BLOCK}, no longer than
+     * the given timeout.
+     *
+     * @return {@code true} if the message has been sent; {@code false} if the timeout has expired.
+     */
+    @Override
+    public boolean send(Message message, long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
+        if (!write(message, unit != null ? unit.toNanos(Math.max(timeout, 0)) : -1))
+            return sendClosed;
+        return forwarded.getSubscribers().isEmpty() || forwarded.send(message, timeout, unit);
+    }
+
+    @Override
+    public boolean send(Message message, Timeout timeout) throws SuspendExecution, InterruptedException {
+        return send(message, timeout.nanosLeft(), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean trySend(Message message) {
+        try {
+            if (!write(message, 0))
+                return sendClosed;
+        } catch (SuspendExecution | InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        return forwarded.getSubscribers().isEmpty() || forwarded.trySend(message);
+    }
+
+    /**
+     * Writes the message to the ring.
+     *
+     * @param nanos the maximum time to wait for the slowest subscriber, or {@code -1} for no limit.
+     * @return whether the message has been written.
+     */
+    private boolean write(Message message, long nanos) throws SuspendExecution, InterruptedException {
+        if (message == null)
+            throw new IllegalArgumentException("message is null");
+        if (sendClosed)
+            return false;
+
+        final long t = overflowPolicy == OverflowPolicy.BLOCK ? claimBlocking(nanos) : claim();
+        if (t < 0)
+            return false;
+        publish(t, message);
+        return true;
+    }
+
+    private long claim() {
+        return (long) TAIL.getAndAdd(this, 1L);
+    }
+
+    private boolean claim(long t) {
+        return TAIL.compareAndSet(this, t, t + 1);
+    }
+
+    private void publish(long t, Message message) {
+        // Messages are written in index order, so a slot is never overwritten by an older message (with DISPLACE, a sender may claim
+        // index t + capacity before the sender of t has written it).
+        for (int i = 0; published != t; i++) { // wait for concurrent senders of earlier messages
+            if (i < SPINS)
+                Thread.onSpinWait();
+            else
+                Thread.yield();
+        }
+        RING.setRelease(ring, (int) t & mask, message);
+        published = t + 1;
+        sync.signalAll();
+    }
+
+    private long claimBlocking(long nanos) throws SuspendExecution, InterruptedException {
+        final long deadline = nanos > 0 ? System.nanoTime() + nanos : 0L;
+        Object token = null;
+        boolean registered = false;
+        boolean claimed = false;
+        try {
+            for (int i = 0;; i++) {
+                final long t = tail;
+                final long wrap = t - capacity; // the index the message will overwrite
+                if (wrap < minHead || wrap < updateMinHead()) {
+                    if (claimed = claim(t))
+                        return t;
+                } else {
+                    if (sendClosed || nanos == 0)
+                        return -1;
+                    // updateMinHead has just set minHead to the slowest subscriber's head, and found that subscriber still there, so it
+                    // will signal us when it advances (see Subscriber.tryReceive)
+                    if (!registered) {
+                        token = sendersSync.register(); // then check again
+                        registered = true;
+                        i = -1;
+                    } else if (nanos > 0) {
+                        final long left = deadline - System.nanoTime();
+                        if (left <= 0)
+                            return -1;
+                        sendersSync.awaitNanos(token, i, left);
+                    } else
+                        sendersSync.await(token, i);
+                }
+            }
+        } finally {
+            if (registered)
+                sendersSync.unregister(token, claimed);
+        }
+    }
+
+    private long updateMinHead() {
+        // called once for every ring's worth of messages, or when the ring is full
+        synchronized (subscribers) {
+            for (;;) {
+                final long min = slowestHead();
+                minHead = min;
+                // A subscriber writes its head and then reads minHead, so we must read the heads again after writing minHead: either we see
+                // the slowest subscriber advance, or it sees minHead and signals us (see Subscriber.tryReceive).
+                if (slowestHead() == min)
+                    return min;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    long slowestHead() {
+        long min = tail;
+        for (Subscriber<Message> s : subscribers)
+            min = Math.min(min, s.head);
+        return min;
+    }
+
+    @Override
+    public void close() {
+        if (sendClosed)
+            return;
+        sendClosed = true;
+        signalClosed();
+        forwarded.close();
+    }
+
+    @Override
+    public void close(Throwable t) {
+        if (sendClosed)
+            return;
+        closeException = t;
+        sendClosed = true;
+        signalClosed();
+        forwarded.close(t);
+    }
+
+    private void signalClosed() {
+        sync.signalAll();
+        if (sendersSync != null)
+            sendersSync.signalAll();
+    }
+
+    boolean isSendClosed() {
+        return sendClosed;
+    }
+
+    @Override
+    public String toString() {
+        return "BroadcastTopic{" + "capacity: " + capacity + ", overflowPolicy: " + overflowPolicy + ", published: " + published + ", subscribers: " + subscribers.size() + '}';
+    }
+
+    /**
+     * A subscriber of a {@link BroadcastTopic}, which reads the topic's messages from its shared ring.
+     * A subscriber must only be used by a single strand at a time.
+     */
+    public static final class Subscriber<Message> implements ReceivePort<Message> {
+        private final BroadcastTopic<Message> topic;
+        volatile long head; // next index to be read
+        private long lapped;
+        private boolean receiveClosed;
+
+        Subscriber(BroadcastTopic<Message> topic, long head) {
+            this.topic = topic;
+            this.head = head;
+        }
+
+        /**
+         * The number of messages this subscriber has missed because the topic's senders have overwritten them
+         * (only with the {@link OverflowPolicy#DISPLACE DISPLACE} policy).
+         */
+        public long getLapped() {
+            return lapped;
+        }
+
+        /**
+         * The number of messages sent to the topic but not yet received by this subscriber.
+         */
+        public long getLag() {
+            return Math.max(topic.published - head, 0);
+        }
+
+        @Override
+        public Message tryReceive() {
+            for (;;) {
+                if (isClosed())
+                    return closeValue();
+                final long h = head;
+                if (h >= topic.published)
+                    return null;
+                final Message m = (Message) RING.getAcquire(topic.ring, (int) h & topic.mask);
+                if (topic.overflowPolicy == OverflowPolicy.DISPLACE) {
+                    final long oldest = topic.tail - topic.capacity;
+                    if (h < oldest) { // lapped; m may have been overwritten
+                        lapped += oldest - h;
+                        HEAD.setRelease(this, oldest);
+                        continue;
+                    }
+                }
+                if (topic.sendersSync == null)
+                    HEAD.setRelease(this, h + 1);
+                else {
+                    head = h + 1; // a volatile write, ordered before reading minHead, while a waiting sender writes minHead and then reads head again
+                    if (h == topic.minHead) // we may be the slowest subscriber, which senders wait for
+                        topic.sendersSync.signalAll();
+                }
+                return m;
+            }
+        }
+
+        @Override
+        public Message receive() throws SuspendExecution, InterruptedException {
+            return receive(-1, (TimeUnit) null);
+        }
+
+        @Override
+        public Message receive(long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
+            Message m = tryReceive();
+            if (m != null || (unit != null && timeout <= 0))
+                return m;
+
+            final long deadline = unit != null ? System.nanoTime() + unit.toNanos(timeout) : 0L;
+            final Object token = topic.sync.register();
+            try {
+                for (int i = 0; (m = tryReceive()) == null; i++) {
+                    if (isClosed())
+                        return closeValue();
+                    if (unit != null) {
+                        final long left = deadline - System.nanoTime();
+                        if (left <= 0)
+                            return null;
+                        topic.sync.awaitNanos(token, i, left);
+                    } else
+                        topic.sync.await(token, i);
+                }
+            } finally {
+                topic.sync.unregister(token, m != null);
+            }
+            return m;
+        }
+
+        @Override
+        public Message receive(Timeout timeout) throws SuspendExecution, InterruptedException {
+            return receive(timeout.nanosLeft(), TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * Unsubscribes this subscriber from the topic.
+         */
+        @Override
+        public void close() {
+            if (!receiveClosed) {
+                receiveClosed = true;
+                topic.unsubscribe(this);
+            }
+        }
+
+        /**
+         * Tests whether this subscriber has been closed, or whether the topic has been closed and all messages sent to it have been received.
+         */
+        @Override
+        public boolean isClosed() {
+            if (receiveClosed)
+                return true;
+            if (topic.isSendClosed() && head >= topic.published) {
+                close();
+                return true;
+            }
+            return false;
+        }
+
+        private Message closeValue() {
+            if (topic.closeException != null)
+                throw new ProducerException(topic.closeException);
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return "BroadcastTopic.Subscriber{" + "head: " + head + ", lapped: " + lapped + '}';
+        }
+    }
+    ////////////////////////////////////////////////////////////////////////
+    private static final VarHandle TAIL;
+    private static final VarHandle HEAD;
+    private static final VarHandle RING = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    static {
+        try {
+            TAIL = MethodHandles.lookup().findVarHandle(BroadcastTopic.class, "tail", long.class);
+            HEAD = MethodHandles.lookup().findVarHandle(Subscriber.class, "head", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+}
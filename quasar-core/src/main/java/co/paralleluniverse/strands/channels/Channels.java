@@ -42,6 +42,7 @@ import co.paralleluniverse.strands.queues.SingleConsumerArrayFloatQueue;
 import co.paralleluniverse.strands.queues.SingleConsumerArrayIntQueue;
 import co.paralleluniverse.strands.queues.SingleConsumerArrayLongQueue;
 import co.paralleluniverse.strands.queues.SingleConsumerArrayObjectQueue;
+import co.paralleluniverse.strands.queues.SingleConsumerStripedArrayObjectQueue;
 import co.paralleluniverse.strands.queues.SingleConsumerLinkedArrayDoubleQueue;
 import co.paralleluniverse.strands.queues.SingleConsumerLinkedArrayFloatQueue;
 import co.paralleluniverse.strands.queues.SingleConsumerLinkedArrayIntQueue;
@@ -53,6 +54,15 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoublePredicate;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongPredicate;
+import java.util.function.LongUnaryOperator;
 
 /**
  * A utility class for creating and manipulating channels.
@@ -89,6 +99,7 @@ public final class Channels {
     private static final boolean defaultSingleProducer = false;
     private static final boolean defaultSingleConsumer = true;
     private static final FiberFactory defaultFiberFactory = DefaultFiberScheduler.getInstance();
+    private static final boolean stripedQueues = Boolean.getBoolean("co.paralleluniverse.strands.channels.stripedQueues");
 
     /**
      * Creates a new channel with the given properties.
@@ -101,7 +112,16 @@ public final class Channels {
      * <li>An overflow policy of {@link OverflowPolicy#DISPLACE DISPLACE} with multiple consumers.</li>
      * </ul>
      * An unbounded channel ignores its overflow policy as it never overflows.
-     *
+     * <p>
+     * If the {@code co.paralleluniverse.strands.channels.stripedQueues} system property is set to {@code true}, a bounded channel with
+     * multiple producers and a single consumer uses a {@link SingleConsumerStripedArrayObjectQueue}, which never makes the consumer wait
+     * for a producer that's been descheduled in the middle of a send, but only preserves the order of messages sent by the same strand,
+     * and divides the buffer among the producers.</p>
+     * <p>
+     * If the {@code co.paralleluniverse.strands.channels.fifoSenders} system property is set to {@code true}, senders blocked on a full
+     * channel with the {@link OverflowPolicy#BLOCK BLOCK} policy wait in a
+     * {@link co.paralleluniverse.strands.FifoConditionSynchronizer FifoConditionSynchronizer}, so that each freed slot wakes exactly one
+     * of them, the one that has been waiting longest. Receivers of a multi-consumer channel always wait this way.</p>
      *
      * @param <Message>      the type of messages that can be sent to this channel.
      * @param bufferSize     if positive, the number of messages that the channel can hold in an internal buffer;
@@ -130,9 +150,12 @@ public final class Channels {
             if (!singleConsumer)
                 throw new IllegalArgumentException("Channel with DISPLACE policy configuration is not supported for multiple consumers");
             queue = new CircularObjectBuffer<>(bufferSize, singleProducer);
-        } else if (singleConsumer)
-            queue = new SingleConsumerArrayObjectQueue<>(bufferSize);
-        else
+        } else if (singleConsumer) {
+            if (stripedQueues && !singleProducer)
+                queue = new SingleConsumerStripedArrayObjectQueue<>(bufferSize);
+            else
+                queue = new SingleConsumerArrayObjectQueue<>(bufferSize);
+        } else
             queue = new ArrayQueue<>(bufferSize);
 
         return new QueueObjectChannel(queue, policy, singleProducer, singleConsumer);
@@ -560,6 +583,49 @@ public final class Channels {
         fiberTransform(defaultFiberFactory, in, out, transformer);
     }
 
+    /**
+     * Spawns {@code parallelism} fibers that apply a mapping function to the messages received from the {@code in} channel and send
+     * the results to the {@code out} channel. Messages for which the function returns {@code null} are dropped.
+     * <p>
+     * If {@code ordered} is {@code true}, results are sent in the order of the messages they were computed from: a single fiber
+     * receives from {@code in} and hands the messages to the workers, and the results wait in a reorder buffer (bounded to a small
+     * multiple of {@code parallelism}) until all earlier results have been sent. Otherwise, the workers receive from {@code in} directly
+     * and send each result as soon as it's ready, which is faster, but requires that {@code in} support concurrent receivers
+     * (e.g., a channel that is not {@link #newChannel(int, OverflowPolicy, boolean, boolean) single-consumer}).</p>
+     * <p>
+     * When {@code in} is closed and all results have been sent, {@code out} is closed. If the mapping function throws an exception, or
+     * if {@code in} has been {@link SendPort#close(Throwable) closed with an exception}, {@code out} is closed with that exception.</p>
+     *
+     * @param <S>          the message type of the input (source) channel.
+     * @param <T>          the message type of the output (target) channel.
+     * @param fiberFactory will be used to create the fibers
+     * @param in           the input channel
+     * @param out          the output channel
+     * @param parallelism  the number of worker fibers
+     * @param ordered      whether the results must be sent in the order of the input messages
+     * @param f            the mapping function
+     */
+    public static <S, T> void parallelMap(FiberFactory fiberFactory, ReceivePort<S> in, SendPort<T> out, int parallelism, boolean ordered, Function<S, T> f) {
+        ParallelStage.map(fiberFactory, in, out, parallelism, ordered, f);
+    }
+
+    /**
+     * Spawns {@code parallelism} fibers that apply a mapping function to the messages received from the {@code in} channel and send
+     * the results to the {@code out} channel.
+     * See {@link #parallelMap(FiberFactory, ReceivePort, SendPort, int, boolean, Function)}.
+     *
+     * @param <S>         the message type of the input (source) channel.
+     * @param <T>         the message type of the output (target) channel.
+     * @param in          the input channel
+     * @param out         the output channel
+     * @param parallelism the number of worker fibers
+     * @param ordered     whether the results must be sent in the order of the input messages
+     * @param f           the mapping function
+     */
+    public static <S, T> void parallelMap(ReceivePort<S> in, SendPort<T> out, int parallelism, boolean ordered, Function<S, T> f) {
+        parallelMap(defaultFiberFactory, in, out, parallelism, ordered, f);
+    }
+
     /**
      * Returns a {@link ReceivePort} that receives messages from a set of channels. Messages from all given channels are funneled into
      * the returned channel.
@@ -711,6 +777,40 @@ public final class Channels {
         }
     }
 
+    /**
+     * Performs the given action on each message received by the given channel, in {@code parallelism} fibers.
+     * The fibers receive from the channel concurrently, so it must support concurrent receivers, and the action may be performed on
+     * different messages in any order.
+     * This method returns only after all messages have been consumed and the channel has been closed, or after the action has thrown an
+     * exception, which is then rethrown.
+     *
+     * @param <T>          the message type
+     * @param fiberFactory will be used to create the fibers
+     * @param channel      the channel
+     * @param parallelism  the number of worker fibers
+     * @param action       the action
+     * @throws InterruptedException
+     * @throws SuspendExecution
+     */
+    public static <T> void parallelForEach(FiberFactory fiberFactory, ReceivePort<T> channel, int parallelism, SuspendableAction1<T> action) throws SuspendExecution, InterruptedException {
+        ParallelStage.forEach(fiberFactory, channel, parallelism, action);
+    }
+
+    /**
+     * Performs the given action on each message received by the given channel, in {@code parallelism} fibers.
+     * See {@link #parallelForEach(FiberFactory, ReceivePort, int, SuspendableAction1)}.
+     *
+     * @param <T>         the message type
+     * @param channel     the channel
+     * @param parallelism the number of worker fibers
+     * @param action      the action
+     * @throws InterruptedException
+     * @throws SuspendExecution
+     */
+    public static <T> void parallelForEach(ReceivePort<T> channel, int parallelism, SuspendableAction1<T> action) throws SuspendExecution, InterruptedException {
+        parallelForEach(defaultFiberFactory, channel, parallelism, action);
+    }
+
     /**
      * Returns a {@link ReceivePort} that can provide at most {@code count} messages from {@code channel}.
      *
@@ -841,6 +941,171 @@ public final class Channels {
         return new TransformingReceivePort<>(channel);
     }
 
+    /**
+     * Returns a {@link IntReceivePort} that receives values that are transformed by a given mapping function from a given channel.
+     * Unlike {@link #map(ReceivePort, Function) map}, values are never boxed.
+     * <p>
+     * The returned {@code IntReceivePort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.</p>
+     *
+     * @param channel the channel to transform
+     * @param f       the mapping function
+     * @return a {@link IntReceivePort} that returns values that are the result of applying the mapping function to the values received on the given channel.
+     */
+    public static IntReceivePort mapInt(IntReceivePort channel, IntUnaryOperator f) {
+        return new IntMappingReceivePort(channel, f);
+    }
+
+    /**
+     * Returns a {@link IntReceivePort} that filters values that satisfy a predicate from a given channel.
+     * All values (even those not satisfying the predicate) will be consumed from the original channel; those that don't satisfy the predicate will be silently discarded.
+     * Unlike {@link #filter(ReceivePort, Predicate) filter}, values are never boxed.
+     * <p>
+     * The returned {@code IntReceivePort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.</p>
+     *
+     * @param channel The channel to filter
+     * @param pred    the filtering predicate
+     * @return A {@link IntReceivePort} that will receive all those values from the original channel which satisfy the predicate.
+     */
+    public static IntReceivePort filterInt(IntReceivePort channel, IntPredicate pred) {
+        return new IntFilteringReceivePort(channel, pred);
+    }
+
+    /**
+     * Returns a {@link IntReceivePort} that combines each pair of values from two channels into a single value.
+     * Unlike {@link #zip(ReceivePort, ReceivePort, Function2) zip}, values are never boxed.
+     *
+     * @param c1 The first input port
+     * @param c2 The second input port
+     * @param f  The combining function
+     * @return A zipping {@link IntReceivePort}
+     */
+    public static IntReceivePort zipInt(IntReceivePort c1, IntReceivePort c2, IntBinaryOperator f) {
+        return new IntZippingReceivePort(c1, c2, f);
+    }
+
+    /**
+     * Returns a {@link IntReceivePort} that receives values from a set of channels. Values from all given channels are funneled into
+     * the returned channel.
+     * Unlike {@link #group(ReceivePort[]) group}, values are never boxed, and receiving doesn't allocate.
+     *
+     * @param channels the receive ports, which must implement {@link co.paralleluniverse.strands.Synchronization Synchronization},
+     *                 as primitive channels, and the ports returned by this class's primitive operators, do.
+     * @return a {@link IntReceivePort} that receives values from {@code channels}.
+     */
+    public static IntReceivePort groupInt(IntReceivePort... channels) {
+        return new IntReceivePortGroup(channels);
+    }
+
+    /**
+     * Returns a {@link LongReceivePort} that receives values that are transformed by a given mapping function from a given channel.
+     * Unlike {@link #map(ReceivePort, Function) map}, values are never boxed.
+     * <p>
+     * The returned {@code LongReceivePort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.</p>
+     *
+     * @param channel the channel to transform
+     * @param f       the mapping function
+     * @return a {@link LongReceivePort} that returns values that are the result of applying the mapping function to the values received on the given channel.
+     */
+    public static LongReceivePort mapLong(LongReceivePort channel, LongUnaryOperator f) {
+        return new LongMappingReceivePort(channel, f);
+    }
+
+    /**
+     * Returns a {@link LongReceivePort} that filters values that satisfy a predicate from a given channel.
+     * All values (even those not satisfying the predicate) will be consumed from the original channel; those that don't satisfy the predicate will be silently discarded.
+     * Unlike {@link #filter(ReceivePort, Predicate) filter}, values are never boxed.
+     * <p>
+     * The returned {@code LongReceivePort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.</p>
+     *
+     * @param channel The channel to filter
+     * @param pred    the filtering predicate
+     * @return A {@link LongReceivePort} that will receive all those values from the original channel which satisfy the predicate.
+     */
+    public static LongReceivePort filterLong(LongReceivePort channel, LongPredicate pred) {
+        return new LongFilteringReceivePort(channel, pred);
+    }
+
+    /**
+     * Returns a {@link LongReceivePort} that combines each pair of values from two channels into a single value.
+     * Unlike {@link #zip(ReceivePort, ReceivePort, Function2) zip}, values are never boxed.
+     *
+     * @param c1 The first input port
+     * @param c2 The second input port
+     * @param f  The combining function
+     * @return A zipping {@link LongReceivePort}
+     */
+    public static LongReceivePort zipLong(LongReceivePort c1, LongReceivePort c2, LongBinaryOperator f) {
+        return new LongZippingReceivePort(c1, c2, f);
+    }
+
+    /**
+     * Returns a {@link LongReceivePort} that receives values from a set of channels. Values from all given channels are funneled into
+     * the returned channel.
+     * Unlike {@link #group(ReceivePort[]) group}, values are never boxed, and receiving doesn't allocate.
+     *
+     * @param channels the receive ports, which must implement {@link co.paralleluniverse.strands.Synchronization Synchronization},
+     *                 as primitive channels, and the ports returned by this class's primitive operators, do.
+     * @return a {@link LongReceivePort} that receives values from {@code channels}.
+     */
+    public static LongReceivePort groupLong(LongReceivePort... channels) {
+        return new LongReceivePortGroup(channels);
+    }
+
+    /**
+     * Returns a {@link DoubleReceivePort} that receives values that are transformed by a given mapping function from a given channel.
+     * Unlike {@link #map(ReceivePort, Function) map}, values are never boxed.
+     * <p>
+     * The returned {@code DoubleReceivePort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.</p>
+     *
+     * @param channel the channel to transform
+     * @param f       the mapping function
+     * @return a {@link DoubleReceivePort} that returns values that are the result of applying the mapping function to the values received on the given channel.
+     */
+    public static DoubleReceivePort mapDouble(DoubleReceivePort channel, DoubleUnaryOperator f) {
+        return new DoubleMappingReceivePort(channel, f);
+    }
+
+    /**
+     * Returns a {@link DoubleReceivePort} that filters values that satisfy a predicate from a given channel.
+     * All values (even those not satisfying the predicate) will be consumed from the original channel; those that don't satisfy the predicate will be silently discarded.
+     * Unlike {@link #filter(ReceivePort, Predicate) filter}, values are never boxed.
+     * <p>
+     * The returned {@code DoubleReceivePort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.</p>
+     *
+     * @param channel The channel to filter
+     * @param pred    the filtering predicate
+     * @return A {@link DoubleReceivePort} that will receive all those values from the original channel which satisfy the predicate.
+     */
+    public static DoubleReceivePort filterDouble(DoubleReceivePort channel, DoublePredicate pred) {
+        return new DoubleFilteringReceivePort(channel, pred);
+    }
+
+    /**
+     * Returns a {@link DoubleReceivePort} that combines each pair of values from two channels into a single value.
+     * Unlike {@link #zip(ReceivePort, ReceivePort, Function2) zip}, values are never boxed.
+     *
+     * @param c1 The first input port
+     * @param c2 The second input port
+     * @param f  The combining function
+     * @return A zipping {@link DoubleReceivePort}
+     */
+    public static DoubleReceivePort zipDouble(DoubleReceivePort c1, DoubleReceivePort c2, DoubleBinaryOperator f) {
+        return new DoubleZippingReceivePort(c1, c2, f);
+    }
+
+    /**
+     * Returns a {@link DoubleReceivePort} that receives values from a set of channels. Values from all given channels are funneled into
+     * the returned channel.
+     * Unlike {@link #group(ReceivePort[]) group}, values are never boxed, and receiving doesn't allocate.
+     *
+     * @param channels the receive ports, which must implement {@link co.paralleluniverse.strands.Synchronization Synchronization},
+     *                 as primitive channels, and the ports returned by this class's primitive operators, do.
+     * @return a {@link DoubleReceivePort} that receives values from {@code channels}.
+     */
+    public static DoubleReceivePort groupDouble(DoubleReceivePort... channels) {
+        return new DoubleReceivePortGroup(channels);
+    }
+
     /**
      * Returns a {@link SendPort} that filters messages that satisfy a predicate before sending to a given channel.
      * Messages that don't satisfy the predicate will be silently discarded when sent.
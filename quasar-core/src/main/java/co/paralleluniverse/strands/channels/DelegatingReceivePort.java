@@ -16,6 +16,7 @@ package co.paralleluniverse.strands.channels;
 import co.paralleluniverse.common.util.DelegatingEquals;
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.strands.Timeout;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 public class DelegatingReceivePort<T> implements ReceivePort<T>, DelegatingEquals {
@@ -47,6 +48,28 @@ public class DelegatingReceivePort<T> implements ReceivePort<T>, DelegatingEqual
         return target.tryReceive();
     }
 
+    @Override
+    public int receive(Collection<? super T> into, int max) throws SuspendExecution, InterruptedException {
+        if (isPlainDelegate())
+            return target.receive(into, max);
+        return ReceivePort.super.receive(into, max);
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> into, int max) {
+        if (isPlainDelegate())
+            return target.drainTo(into, max);
+        return ReceivePort.super.drainTo(into, max);
+    }
+
+    /**
+     * Whether this port passes messages through unchanged, so batches may be forwarded to the target; a subclass may override
+     * {@link #receive()} or {@link #tryReceive()} without overriding the batch methods.
+     */
+    private boolean isPlainDelegate() {
+        return getClass() == DelegatingReceivePort.class || getClass() == TransformingReceivePort.class;
+    }
+
     @Override
     public void close() {
         target.close();
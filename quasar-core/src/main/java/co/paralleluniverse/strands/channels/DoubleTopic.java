@@ -0,0 +1,208 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Timeout;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link Topic} of {@code double} values that doesn't box them.
+ * <p>
+ * Values are passed to subscribers that are {@link DoubleSendPort}s as primitives, and are only boxed for subscribers that aren't.
+ * Like a {@code Topic} that isn't in fan-out mode, the topic delivers each value to its subscribers one at a time, waiting for each
+ * to accept it. Sending doesn't allocate: the subscribers are kept in an array that is replaced whenever they change.</p>
+ *
+ * @author pron
+ */
+public class DoubleTopic implements DoubleSendPort, PubSub<Double> {
+    private static final SendPort<?>[] NO_SUBSCRIBERS = new SendPort<?>[0];
+
+    private volatile SendPort<?>[] subscribers = NO_SUBSCRIBERS;
+    private volatile boolean sendClosed;
+    private Throwable closeException;
+
+    /**
+     * Returns the ports currently subscribed to this topic.
+     */
+    @SuppressWarnings("unchecked")
+    public SendPort<? super Double>[] getSubscribers() {
+        return (SendPort<? super Double>[]) subscribers.clone();
+    }
+
+    @Override
+    public <T extends SendPort<? super Double>> T subscribe(T sub) {
+        if (closeChannelIfClosed(sub))
+            return sub;
+        synchronized (this) {
+            final SendPort<?>[] subs = subscribers;
+            for (SendPort<?> s : subs) {
+                if (s.equals(sub))
+                    return sub;
+            }
+            final SendPort<?>[] newSubs = Arrays.copyOf(subs, subs.length + 1);
+            newSubs[subs.length] = sub;
+            subscribers = newSubs;
+        }
+        if (closeChannelIfClosed(sub))
+            unsubscribe(sub);
+        return sub;
+    }
+
+    @Override
+    public synchronized void unsubscribe(SendPort<? super Double> sub) {
+        final SendPort<?>[] subs = subscribers;
+        for (int i = 0; i < subs.length; i++) {
+            if (subs[i].equals(sub)) {
+                final SendPort<?>[] newSubs = new SendPort<?>[subs.length - 1];
+                System.arraycopy(subs, 0, newSubs, 0, i);
+                System.arraycopy(subs, i + 1, newSubs, i, subs.length - i - 1);
+                subscribers = newSubs;
+                return;
+            }
+        }
+    }
+
+    public synchronized void unsubscribeAll() {
+        subscribers = NO_SUBSCRIBERS;
+    }
+
+    private boolean closeChannelIfClosed(SendPort<?> port) {
+        if (sendClosed) {
+            if (closeException != null)
+                port.close(closeException);
+            else
+                port.close();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void send(double message) throws SuspendExecution, InterruptedException {
+        if (sendClosed)
+            return;
+        for (SendPort<?> s : subscribers) {
+            if (s instanceof DoubleSendPort)
+                ((DoubleSendPort) s).send(message);
+            else
+                ((SendPort<? super Double>) s).send(message);
+        }
+    }
+
+    /**
+     * Sends a value to all subscribers, waiting for each no longer than what's left of the given timeout.
+     *
+     * @return {@code true} if all subscribers have received the value; {@code false} if some have timed out.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean send(double message, long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
+        if (sendClosed)
+            return true;
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean all = true;
+        for (SendPort<?> s : subscribers) {
+            final long left = deadline - System.nanoTime();
+            try {
+                if (s instanceof DoubleSendPort)
+                    all &= ((DoubleSendPort) s).send(message, left, TimeUnit.NANOSECONDS);
+                else
+                    all &= ((SendPort<? super Double>) s).send(message, left, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                all = false;
+            }
+        }
+        return all;
+    }
+
+    /**
+     * Sends a value to all subscribers, waiting for each no longer than what's left of the given timeout.
+     *
+     * @return {@code true} if all subscribers have received the value; {@code false} if some have timed out.
+     */
+    @Override
+    public boolean send(double message, Timeout timeout) throws SuspendExecution, InterruptedException {
+        return send(message, timeout.nanosLeft(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sends a value to all subscribers that can immediately accept it. This method never blocks.
+     *
+     * @return {@code true} if all subscribers have received the value; {@code false} if some have missed it.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean trySend(double message) {
+        if (sendClosed)
+            return true;
+        boolean all = true;
+        for (SendPort<?> s : subscribers) {
+            if (s instanceof DoubleSendPort)
+                all &= ((DoubleSendPort) s).trySend(message);
+            else
+                all &= ((SendPort<? super Double>) s).trySend(message);
+        }
+        return all;
+    }
+
+    @Override
+    public void send(Double message) throws SuspendExecution, InterruptedException {
+        send(message.doubleValue());
+    }
+
+    @Override
+    public boolean send(Double message, long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
+        return send(message.doubleValue(), timeout, unit);
+    }
+
+    @Override
+    public boolean send(Double message, Timeout timeout) throws SuspendExecution, InterruptedException {
+        return send(message.doubleValue(), timeout);
+    }
+
+    @Override
+    public boolean trySend(Double message) {
+        return trySend(message.doubleValue());
+    }
+
+    @Override
+    public void close() {
+        if (sendClosed)
+            return;
+        sendClosed = true;
+        for (SendPort<?> s : subscribers)
+            s.close();
+        unsubscribeAll();
+    }
+
+    @Override
+    public void close(Throwable t) {
+        if (sendClosed)
+            return;
+        closeException = t;
+        sendClosed = true;
+        for (SendPort<?> s : subscribers)
+            s.close(t);
+        unsubscribeAll();
+    }
+
+    @Override
+    public String toString() {
+        return "DoubleTopic{" + "subscribers: " + subscribers.length + '}';
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A run of consecutive stateless stages -- maps and filters -- applied to the messages of a port in a single transformation, rather than
+ * by a chain of wrapping ports each adding its own (instrumented) receive frame.
+ * Batch receives ({@link #receive(Collection, int)} and {@link #drainTo(Collection, int) drainTo}) drain a batch from the source in one
+ * call and run the stages over it in a tight loop.
+ * <p>
+ * Extending the run with {@link #map(Function) map} or {@link #filter(Predicate) filter} returns a new port over the same source;
+ * this port is left untouched.</p>
+ *
+ * @author pron
+ */
+class FusedReceivePort<S, T> extends ReceivePortTransformer<S, T> implements ReceivePort<T> {
+    private static final int MAX_BATCH = 1024;
+
+    private final Object[] stages;     // a Function or a Predicate
+    private final boolean[] filters;   // whether the corresponding stage is a Predicate
+
+    private FusedReceivePort(ReceivePort<S> target, Object[] stages, boolean[] filters) {
+        super(target);
+        this.stages = stages;
+        this.filters = filters;
+    }
+
+    static <S, T> FusedReceivePort<S, T> map(ReceivePort<S> target, Function<S, T> f) {
+        return new FusedReceivePort<>(target, new Object[]{f}, new boolean[]{false});
+    }
+
+    static <M> FusedReceivePort<M, M> filter(ReceivePort<M> target, Predicate<M> pred) {
+        return new FusedReceivePort<>(target, new Object[]{pred}, new boolean[]{true});
+    }
+
+    <U> FusedReceivePort<S, U> map(Function<T, U> f) {
+        return append(f, false);
+    }
+
+    FusedReceivePort<S, T> filter(Predicate<T> pred) {
+        return append(pred, true);
+    }
+
+    private <U> FusedReceivePort<S, U> append(Object stage, boolean filter) {
+        final Object[] ss = Arrays.copyOf(stages, stages.length + 1);
+        final boolean[] fs = Arrays.copyOf(filters, filters.length + 1);
+        ss[stages.length] = stage;
+        fs[filters.length] = filter;
+        return new FusedReceivePort<>(target, ss, fs);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected T transform(S m) {
+        Object x = m;
+        for (int i = 0; i < stages.length; i++) {
+            if (filters[i]) {
+                if (!((Predicate<Object>) stages[i]).apply(x))
+                    return null;
+            } else if ((x = ((Function<Object, Object>) stages[i]).apply(x)) == null)
+                return null;
+        }
+        return (T) x;
+    }
+
+    @Override
+    public int receive(Collection<? super T> into, int max) throws SuspendExecution, InterruptedException {
+        if (max <= 0)
+            throw new IllegalArgumentException("max must be positive: " + max);
+        final ArrayList<S> batch = new ArrayList<>(Math.min(max, MAX_BATCH));
+        for (;;) {
+            if (target.receive(batch, Math.min(max, MAX_BATCH)) == 0)
+                return 0; // closed
+            final int n = transformAll(batch, into);
+            if (n > 0)
+                return n + drainTo(batch, into, max - n);
+            batch.clear(); // all filtered out
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super T> into, int max) {
+        return drainTo(new ArrayList<>(Math.min(max, MAX_BATCH)), into, max);
+    }
+
+    private int drainTo(ArrayList<S> batch, Collection<? super T> into, int max) {
+        int n = 0;
+        while (n < max) {
+            batch.clear();
+            if (target.drainTo(batch, Math.min(max - n, MAX_BATCH)) == 0)
+                break;
+            n += transformAll(batch, into);
+        }
+        return n;
+    }
+
+    private int transformAll(ArrayList<S> batch, Collection<? super T> into) {
+        int n = 0;
+        for (int i = 0, size = batch.size(); i < size; i++) {
+            final T m = transform(batch.get(i));
+            if (m != null) {
+                into.add(m);
+                n++;
+            }
+        }
+        return n;
+    }
+}
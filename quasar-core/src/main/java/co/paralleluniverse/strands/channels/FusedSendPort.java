@@ -0,0 +1,77 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import com.google.common.base.Function;
+import com.google.common.base.Predicate;
+
+/**
+ * A run of consecutive stateless stages -- maps and filters -- applied to messages before they're sent to a port, in a single
+ * transformation, rather than by a chain of wrapping ports.
+ * <p>
+ * Stages added with {@link #map(Function) map} or {@link #filter(Predicate) filter} run <i>before</i> the existing ones, just as they would
+ * if they wrapped this port; the returned port sends to the same target, and this port is left untouched.</p>
+ *
+ * @author pron
+ */
+class FusedSendPort<S, T> extends SendPortTransformer<S, T> implements SendPort<S> {
+    private final Object[] stages;     // a Function or a Predicate, in the order they're applied
+    private final boolean[] filters;   // whether the corresponding stage is a Predicate
+
+    private FusedSendPort(SendPort<T> target, Object[] stages, boolean[] filters) {
+        super(target);
+        this.stages = stages;
+        this.filters = filters;
+    }
+
+    static <S, T> FusedSendPort<S, T> map(SendPort<T> target, Function<S, T> f) {
+        return new FusedSendPort<>(target, new Object[]{f}, new boolean[]{false});
+    }
+
+    static <M> FusedSendPort<M, M> filter(SendPort<M> target, Predicate<M> pred) {
+        return new FusedSendPort<>(target, new Object[]{pred}, new boolean[]{true});
+    }
+
+    <R> FusedSendPort<R, T> map(Function<R, S> f) {
+        return prepend(f, false);
+    }
+
+    FusedSendPort<S, T> filter(Predicate<S> pred) {
+        return prepend(pred, true);
+    }
+
+    private <R> FusedSendPort<R, T> prepend(Object stage, boolean filter) {
+        final Object[] ss = new Object[stages.length + 1];
+        final boolean[] fs = new boolean[filters.length + 1];
+        ss[0] = stage;
+        fs[0] = filter;
+        System.arraycopy(stages, 0, ss, 1, stages.length);
+        System.arraycopy(filters, 0, fs, 1, filters.length);
+        return new FusedSendPort<>(target, ss, fs);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected T transform(S m) {
+        Object x = m;
+        for (int i = 0; i < stages.length; i++) {
+            if (filters[i]) {
+                if (!((Predicate<Object>) stages[i]).apply(x))
+                    return null;
+            } else if ((x = ((Function<Object, Object>) stages[i]).apply(x)) == null)
+                return null;
+        }
+        return (T) x;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Synchronization;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A {@link IntReceivePort} that maps the values received from another, without boxing them.
+ *
+ * @author pron
+ */
+class IntMappingReceivePort extends AbstractIntReceivePort implements Synchronization {
+    private final IntReceivePort target;
+    private final IntUnaryOperator f;
+
+    IntMappingReceivePort(IntReceivePort target, IntUnaryOperator f) {
+        if (target == null)
+            throw new IllegalArgumentException("target can't be null");
+        this.target = target;
+        this.f = f;
+    }
+
+    @Override
+    public int receiveInt() throws SuspendExecution, InterruptedException, EOFException {
+        return f.applyAsInt(target.receiveInt());
+    }
+
+    @Override
+    public int receiveInt(long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException, TimeoutException, EOFException {
+        return f.applyAsInt(target.receiveInt(timeout, unit));
+    }
+
+    @Override
+    public boolean hasMessage() {
+        return target.hasMessage();
+    }
+
+    @Override
+    public Object register() {
+        return ((Synchronization) target).register();
+    }
+
+    @Override
+    public void unregister(Object registrationToken) {
+        ((Synchronization) target).unregister(registrationToken);
+    }
+
+    @Override
+    public void close() {
+        target.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return target.isClosed();
+    }
+
+    @Override
+    public int hashCode() {
+        return target.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return Channels.delegatingEquals(target, obj);
+    }
+
+    @Override
+    public String toString() {
+        return Channels.delegatingToString(this, target);
+    }
+}
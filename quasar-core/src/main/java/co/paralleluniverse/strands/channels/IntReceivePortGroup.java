@@ -0,0 +1,138 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.Synchronization;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link IntReceivePort} that receives values from whichever of a fixed set of ports has one, without boxing them.
+ * <p>
+ * Unlike {@link ReceivePortGroup}, which receives through a {@link Selector}, this group looks for a port that has a value and receives
+ * from it directly; when none has, it registers with all of them and parks until one is signalled. The ports, which must implement
+ * {@link Synchronization} (as all of Quasar's primitive ports do), are scanned round-robin, so a busy port doesn't starve the others.
+ * Like all primitive ports, the group can only be used by a single receiver strand.</p>
+ *
+ * @author pron
+ */
+class IntReceivePortGroup extends AbstractIntReceivePort implements Synchronization {
+    private final IntReceivePort[] ports;
+    private final Object[] tokens;
+    private int next; // the port scanned first
+
+    IntReceivePortGroup(IntReceivePort... ports) {
+        this.ports = ports.clone();
+        for (IntReceivePort port : this.ports) {
+            if (!(port instanceof Synchronization))
+                throw new IllegalArgumentException("Port " + port + " does not implement " + Synchronization.class.getName());
+        }
+        this.tokens = new Object[ports.length];
+    }
+
+    @Override
+    public int receiveInt() throws SuspendExecution, InterruptedException, EOFException {
+        try {
+            return receiveInt(-1, null);
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public int receiveInt(long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException, TimeoutException, EOFException {
+        IntReceivePort port = ready();
+        if (port == null) {
+            long left = unit != null ? unit.toNanos(timeout) : 0L;
+            final long deadline = System.nanoTime() + left;
+            register();
+            try {
+                while ((port = ready()) == null) {
+                    if (isClosed())
+                        throw EOFException.instance;
+                    if (unit == null)
+                        Strand.park(this);
+                    else {
+                        if (left <= 0)
+                            throw new TimeoutException();
+                        Strand.parkNanos(this, left);
+                        left = deadline - System.nanoTime();
+                    }
+                }
+            } finally {
+                unregister(null);
+            }
+        }
+        return port.receiveInt();
+    }
+
+    private IntReceivePort ready() {
+        final int n = ports.length;
+        for (int i = 0; i < n; i++) {
+            final int j = (next + i) % n;
+            if (ports[j].hasMessage()) {
+                next = j + 1 < n ? j + 1 : 0;
+                return ports[j];
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean hasMessage() {
+        for (IntReceivePort port : ports) {
+            if (port.hasMessage())
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Object register() {
+        for (int i = 0; i < ports.length; i++)
+            tokens[i] = ((Synchronization) ports[i]).register();
+        return null;
+    }
+
+    @Override
+    public void unregister(Object registrationToken) {
+        for (int i = 0; i < ports.length; i++) {
+            ((Synchronization) ports[i]).unregister(tokens[i]);
+            tokens[i] = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (IntReceivePort port : ports)
+            port.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        for (IntReceivePort port : ports) {
+            if (!port.isClosed())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "IntReceivePortGroup" + Arrays.toString(ports);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Synchronization;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongPredicate;
+
+/**
+ * A {@link LongReceivePort} that discards the values received from another that don't satisfy a predicate, without boxing them.
+ * Like all primitive ports, it can only be used by a single receiver strand.
+ *
+ * @author pron
+ */
+class LongFilteringReceivePort extends AbstractLongReceivePort implements Synchronization {
+    private final LongReceivePort target;
+    private final LongPredicate p;
+    private boolean hasPending; // hasMessage has found a value that satisfies the predicate
+    private long pending;
+
+    LongFilteringReceivePort(LongReceivePort target, LongPredicate p) {
+        if (target == null)
+            throw new IllegalArgumentException("target can't be null");
+        this.target = target;
+        this.p = p;
+    }
+
+    @Override
+    public long receiveLong() throws SuspendExecution, InterruptedException, EOFException {
+        if (hasPending) {
+            hasPending = false;
+            return pending;
+        }
+        for (;;) {
+            final long m = target.receiveLong();
+            if (p.test(m))
+                return m;
+        }
+    }
+
+    @Override
+    public long receiveLong(long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException, TimeoutException, EOFException {
+        if (unit == null)
+            return receiveLong();
+        if (hasPending) {
+            hasPending = false;
+            return pending;
+        }
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (;;) {
+            final long m = target.receiveLong(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (p.test(m))
+                return m;
+        }
+    }
+
+    @Override
+    public boolean hasMessage() {
+        while (!hasPending && target.hasMessage()) {
+            try {
+                final long m = target.receiveLong(0, TimeUnit.NANOSECONDS);
+                if (p.test(m)) {
+                    pending = m;
+                    hasPending = true;
+                }
+            } catch (TimeoutException | EOFException e) {
+                break;
+            } catch (SuspendExecution | InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+        return hasPending;
+    }
+
+    @Override
+    public Object register() {
+        return ((Synchronization) target).register();
+    }
+
+    @Override
+    public void unregister(Object registrationToken) {
+        ((Synchronization) target).unregister(registrationToken);
+    }
+
+    @Override
+    public void close() {
+        target.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !hasPending && target.isClosed();
+    }
+
+    @Override
+    public int hashCode() {
+        return target.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return Channels.delegatingEquals(target, obj);
+    }
+
+    @Override
+    public String toString() {
+        return Channels.delegatingToString(this, target);
+    }
+}
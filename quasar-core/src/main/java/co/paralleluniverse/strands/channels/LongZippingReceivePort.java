@@ -0,0 +1,104 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Synchronization;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * A {@link LongReceivePort} that combines each pair of values received from two others into a single value, without boxing them.
+ * Like all primitive ports, it can only be used by a single receiver strand.
+ *
+ * @author pron
+ */
+class LongZippingReceivePort extends AbstractLongReceivePort implements Synchronization {
+    private final LongReceivePort c1;
+    private final LongReceivePort c2;
+    private final LongBinaryOperator f;
+    private boolean has1; // m1 has been received, but c2 has timed out
+    private long m1;
+    private Object token1;
+    private Object token2;
+
+    LongZippingReceivePort(LongReceivePort c1, LongReceivePort c2, LongBinaryOperator f) {
+        if (c1 == null || c2 == null)
+            throw new IllegalArgumentException("ports can't be null");
+        this.c1 = c1;
+        this.c2 = c2;
+        this.f = f;
+    }
+
+    @Override
+    public long receiveLong() throws SuspendExecution, InterruptedException, EOFException {
+        if (!has1) {
+            m1 = c1.receiveLong();
+            has1 = true;
+        }
+        final long m2 = c2.receiveLong();
+        has1 = false;
+        return f.applyAsLong(m1, m2);
+    }
+
+    @Override
+    public long receiveLong(long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException, TimeoutException, EOFException {
+        if (unit == null)
+            return receiveLong();
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!has1) {
+            m1 = c1.receiveLong(timeout, unit);
+            has1 = true;
+        }
+        final long m2 = c2.receiveLong(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        has1 = false;
+        return f.applyAsLong(m1, m2);
+    }
+
+    @Override
+    public boolean hasMessage() {
+        return (has1 || c1.hasMessage()) && c2.hasMessage();
+    }
+
+    @Override
+    public Object register() {
+        token1 = ((Synchronization) c1).register();
+        token2 = ((Synchronization) c2).register();
+        return null;
+    }
+
+    @Override
+    public void unregister(Object registrationToken) {
+        ((Synchronization) c1).unregister(token1);
+        ((Synchronization) c2).unregister(token2);
+        token1 = token2 = null;
+    }
+
+    @Override
+    public void close() {
+        c1.close();
+        c2.close();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return (!has1 && c1.isClosed()) || c2.isClosed();
+    }
+
+    @Override
+    public String toString() {
+        return "LongZippingReceivePort{" + c1 + ", " + c2 + '}';
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberFactory;
+import co.paralleluniverse.fibers.RuntimeExecutionException;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.SuspendableAction1;
+import co.paralleluniverse.strands.SuspendableCallable;
+import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
+import co.paralleluniverse.strands.dataflow.Val;
+import com.google.common.base.Function;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Channel stages processed by several worker fibers.
+ * <p>
+ * Unordered stages have their workers receive from the input port directly, competing for messages, so the port must support
+ * concurrent receivers. An ordered stage has a single dispatcher fiber receive the messages and hand each to the workers along with a
+ * result slot, which it also queues, in order, in a bounded reorder buffer; an emitter fiber then sends the results on as their slots
+ * are filled. The reorder buffer holds {@link #REORDER_FACTOR} slots per worker, so the dispatcher blocks when the oldest pending result
+ * is that far behind.</p>
+ * <p>
+ * When one of a stage's fibers fails, the others are interrupted, as they may be blocked receiving from an input that stays open.</p>
+ *
+ * @author pron
+ */
+final class ParallelStage {
+    private static final int REORDER_FACTOR = 2;
+
+    static <S, T> void map(FiberFactory fiberFactory, ReceivePort<S> in, SendPort<T> out, int parallelism, boolean ordered, Function<S, T> f) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        if (ordered)
+            new OrderedMap<>(in, out, parallelism, f).start(fiberFactory);
+        else
+            new UnorderedMap<>(in, out, parallelism, f).start(fiberFactory);
+    }
+
+    static <T> void forEach(FiberFactory fiberFactory, final ReceivePort<T> in, int parallelism, final SuspendableAction1<T> action) throws SuspendExecution, InterruptedException {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        final Stop stop = new Stop();
+        final Fiber<?>[] workers = new Fiber<?>[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = fiberFactory.newFiber(new SuspendableCallable<Void>() {
+                @Override
+                public Void run() throws SuspendExecution, InterruptedException {
+                    try {
+                        for (T m; !stop.stopped && (m = in.receive()) != null;)
+                            action.call(m);
+                    } catch (Throwable t) {
+                        stop.fail(t); // rethrown by forEach
+                    }
+                    return null;
+                }
+            });
+        }
+        stop.start(workers);
+
+        try {
+            for (Fiber<?> worker : workers)
+                worker.join();
+        } catch (ExecutionException e) {
+            throw new AssertionError(e);
+        } catch (InterruptedException e) {
+            stop.fail(e);
+            throw e;
+        }
+        final Throwable failure = stop.getFailure();
+        if (failure instanceof InterruptedException)
+            throw (InterruptedException) failure;
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        if (failure != null)
+            throw new RuntimeException(failure);
+    }
+
+    /**
+     * Stops a stage's fibers once one of them fails.
+     */
+    private static final class Stop {
+        volatile boolean stopped;
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private Fiber<?>[] fibers;
+
+        /**
+         * Starts the stage's fibers. They're all known before any of them can fail.
+         */
+        void start(Fiber<?>... fibers) {
+            this.fibers = fibers;
+            for (Fiber<?> f : fibers)
+                f.start();
+        }
+
+        /**
+         * Stops the stage, and interrupts all of its fibers but the current one.
+         *
+         * @return {@code true} if this is the stage's first failure; {@code false} if the stage has already been stopped (and {@code t} may
+         *         well be the result of stopping it).
+         */
+        boolean fail(Throwable t) {
+            if (!failure.compareAndSet(null, t))
+                return false;
+            stopped = true;
+            final Fiber<?> current = Fiber.currentFiber();
+            for (Fiber<?> f : fibers) {
+                if (f != current)
+                    f.interrupt();
+            }
+            return true;
+        }
+
+        Throwable getFailure() {
+            return failure.get();
+        }
+    }
+
+    private static final class UnorderedMap<S, T> {
+        private final ReceivePort<S> in;
+        private final SendPort<T> out;
+        private final int parallelism;
+        private final Function<S, T> f;
+        private final AtomicInteger running;
+        private final Stop stop = new Stop();
+
+        UnorderedMap(ReceivePort<S> in, SendPort<T> out, int parallelism, Function<S, T> f) {
+            this.in = in;
+            this.out = out;
+            this.parallelism = parallelism;
+            this.f = f;
+            this.running = new AtomicInteger(parallelism);
+        }
+
+        void start(FiberFactory fiberFactory) {
+            final Fiber<?>[] workers = new Fiber<?>[parallelism];
+            for (int i = 0; i < parallelism; i++) {
+                workers[i] = fiberFactory.newFiber(new SuspendableCallable<Void>() {
+                    @Override
+                    public Void run() throws SuspendExecution, InterruptedException {
+                        work();
+                        return null;
+                    }
+                });
+            }
+            stop.start(workers);
+        }
+
+        void work() throws SuspendExecution, InterruptedException {
+            try {
+                for (S m; !stop.stopped && (m = in.receive()) != null;) {
+                    final T t = f.apply(m);
+                    if (t != null)
+                        out.send(t);
+                }
+                if (running.decrementAndGet() == 0 && !stop.stopped)
+                    out.close();
+            } catch (ProducerException e) {
+                fail(e.getCause());
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        private void fail(Throwable t) {
+            if (stop.fail(t))
+                out.close(t);
+        }
+    }
+
+    private static final class OrderedMap<S, T> {
+        private final ReceivePort<S> in;
+        private final SendPort<T> out;
+        private final int parallelism;
+        private final Function<S, T> f;
+        private final Channel<Slot<S, T>> work;
+        private final Channel<Slot<S, T>> pending; // the reorder buffer
+        private final Stop stop = new Stop();
+
+        OrderedMap(ReceivePort<S> in, SendPort<T> out, int parallelism, Function<S, T> f) {
+            this.in = in;
+            this.out = out;
+            this.parallelism = parallelism;
+            this.f = f;
+            this.work = Channels.newChannel(parallelism, OverflowPolicy.BLOCK, true, false);
+            this.pending = Channels.newChannel(REORDER_FACTOR * parallelism, OverflowPolicy.BLOCK, true, true);
+        }
+
+        void start(FiberFactory fiberFactory) {
+            final Fiber<?>[] fibers = new Fiber<?>[parallelism + 2];
+            fibers[0] = fiberFactory.newFiber(new SuspendableCallable<Void>() {
+                @Override
+                public Void run() throws SuspendExecution, InterruptedException {
+                    dispatch();
+                    return null;
+                }
+            });
+            for (int i = 1; i <= parallelism; i++) {
+                fibers[i] = fiberFactory.newFiber(new SuspendableCallable<Void>() {
+                    @Override
+                    public Void run() throws SuspendExecution, InterruptedException {
+                        work();
+                        return null;
+                    }
+                });
+            }
+            fibers[parallelism + 1] = fiberFactory.newFiber(new SuspendableCallable<Void>() {
+                @Override
+                public Void run() throws SuspendExecution, InterruptedException {
+                    emit();
+                    return null;
+                }
+            });
+            stop.start(fibers);
+        }
+
+        void dispatch() throws SuspendExecution, InterruptedException {
+            try {
+                for (S m; !stop.stopped && (m = in.receive()) != null;) {
+                    final Slot<S, T> slot = new Slot<>(m);
+                    pending.send(slot); // blocks while the reorder buffer is full
+                    work.send(slot);
+                }
+                pending.close();
+            } catch (ProducerException e) {
+                pending.close(e.getCause());
+            } catch (Throwable t) {
+                pending.close(t);
+            } finally {
+                work.close();
+            }
+        }
+
+        void work() throws SuspendExecution, InterruptedException {
+            try {
+                for (Slot<S, T> slot; (slot = work.receive()) != null;) {
+                    final S m = slot.message;
+                    slot.message = null;
+                    try {
+                        slot.set(f.apply(m));
+                    } catch (Throwable t) {
+                        slot.setException(t);
+                    }
+                }
+            } catch (InterruptedException e) {
+                if (!stop.stopped)
+                    throw e;
+            }
+        }
+
+        void emit() throws SuspendExecution, InterruptedException {
+            try {
+                for (Slot<S, T> slot; (slot = pending.receive()) != null;) {
+                    final T t = slot.get();
+                    if (t != null)
+                        out.send(t);
+                }
+                out.close();
+            } catch (ProducerException | RuntimeExecutionException e) {
+                fail(e.getCause());
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+        private void fail(Throwable t) {
+            if (!stop.fail(t)) // interrupts the dispatcher and the workers
+                return;
+            out.close(t);
+            pending.close();
+            work.close();
+        }
+    }
+
+    private static final class Slot<S, T> extends Val<T> {
+        S message;
+
+        Slot(S message) {
+            this.message = message;
+        }
+    }
+
+    private ParallelStage() {
+    }
+}
@@ -18,9 +18,11 @@ import co.paralleluniverse.common.monitoring.FlightRecorderMessage;
 import co.paralleluniverse.common.util.Debug;
 import co.paralleluniverse.common.util.DelegatingEquals;
 import co.paralleluniverse.common.util.Objects;
+import co.paralleluniverse.fibers.Fiber;
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.remote.RemoteChannelProxyFactoryService;
 import co.paralleluniverse.strands.Condition;
+import co.paralleluniverse.strands.FifoConditionSynchronizer;
 import co.paralleluniverse.strands.OwnedSynchronizer;
 import co.paralleluniverse.strands.SimpleConditionSynchronizer;
 import co.paralleluniverse.strands.Strand;
@@ -30,6 +32,7 @@ import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
 import co.paralleluniverse.strands.queues.BasicQueue;
 import co.paralleluniverse.strands.queues.CircularBuffer;
 import co.paralleluniverse.strands.queues.QueueCapacityExceededException;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -39,6 +42,9 @@ import java.util.concurrent.TimeoutException;
  */
 public abstract class QueueChannel<Message> implements StandardChannel<Message>, Selectable<Message>, Synchronization, java.io.Serializable {
     private static final int MAX_SEND_RETRIES = 10;
+    private static final Object RECEIVE_REGISTRATION = new Object();
+    private static final boolean fifoSenders = Boolean.getBoolean("co.paralleluniverse.strands.channels.fifoSenders");
+    private static final boolean defaultHandOff = Boolean.getBoolean("co.paralleluniverse.strands.channels.handOff");
 
     final BasicQueue<Message> queue;
     private final boolean singleProducer;
@@ -49,6 +55,8 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
     private Throwable closeException;
     private volatile boolean sendClosed;
     private boolean receiveClosed;
+    private boolean handOff = defaultHandOff;
+    private transient Runnable receiversSignal;
 
     protected QueueChannel(BasicQueue<Message> queue, OverflowPolicy overflowPolicy, boolean singleConsumer) {
         this(queue, overflowPolicy, false, singleConsumer);
@@ -56,13 +64,20 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
 
     protected QueueChannel(BasicQueue<Message> queue, OverflowPolicy overflowPolicy, boolean singleProducer, boolean singleConsumer) {
         this.queue = queue;
-        if (!singleConsumer || queue instanceof CircularBuffer)
+        if (queue instanceof CircularBuffer) // ticker consumers all wait on the channel
             this.sync = new SimpleConditionSynchronizer(this);
+        else if (!singleConsumer) // each message wakes a single receiver
+            this.sync = new FifoConditionSynchronizer(this);
         else
             this.sync = new OwnedSynchronizer(this);
 
         this.overflowPolicy = overflowPolicy;
-        this.sendersSync = overflowPolicy == OverflowPolicy.BLOCK ? new SimpleConditionSynchronizer(this) : null;
+        if (overflowPolicy != OverflowPolicy.BLOCK)
+            this.sendersSync = null;
+        else if (fifoSenders) // each freed slot wakes a single sender
+            this.sendersSync = new FifoConditionSynchronizer(this);
+        else
+            this.sendersSync = new SimpleConditionSynchronizer(this);
         this.singleProducer = singleProducer;
         this.singleConsumer = singleConsumer;
     }
@@ -93,6 +108,27 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
         return overflowPolicy;
     }
 
+    /**
+     * Sets whether a fiber sending a message to this channel hands off the receiving fiber it wakes to its own thread.
+     * <p>
+     * In hand-off mode, a receiver woken by a sending fiber runs on the sender's thread as soon as the sender parks (say, to receive a
+     * reply) or yields, rather than behind all fibers already waiting to run, possibly on another thread
+     * (see {@link Fiber#handOff(Runnable) Fiber.handOff}). This suits an exchange of messages between fibers that each do little work
+     * per message, like request-reply, and is only done by a {@link co.paralleluniverse.fibers.FiberForkJoinScheduler}.</p>
+     * <p>
+     * The default is taken from the {@code co.paralleluniverse.strands.channels.handOff} system property, and is {@code false} if it
+     * isn't set. This should be set before the channel is used.</p>
+     *
+     * @param value whether the channel is in hand-off mode
+     */
+    public void setHandOff(boolean value) {
+        this.handOff = value;
+    }
+
+    public boolean isHandOff() {
+        return handOff;
+    }
+
     protected Condition sync() {
         verifySync();
         return sync;
@@ -100,7 +136,24 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
 
     protected void signalReceivers() {
         record("signalReceivers", "");
-        sync.signalAll();
+        if (handOff)
+            Fiber.handOff(receiversSignal());
+        else
+            signalReceivers0();
+    }
+
+    private void signalReceivers0() {
+        if (sync instanceof FifoConditionSynchronizer)
+            sync.signal();
+        else
+            sync.signalAll();
+    }
+
+    private Runnable receiversSignal() {
+        Runnable signal = receiversSignal;
+        if (signal == null)
+            receiversSignal = signal = this::signalReceivers0; // races are benign
+        return signal;
     }
 
     protected void signalAndWait() throws SuspendExecution, InterruptedException {
@@ -118,6 +171,16 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
         }
     }
 
+    void signalSenders(int freed) {
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            record("signalSenders", "");
+            if (freed == 1)
+                sendersSync.signal();
+            else
+                sendersSync.signalAll();
+        }
+    }
+
     @Override
     public Object register(SelectAction<Message> action) {
         if (((SelectActionImpl) action).isData()) {
@@ -131,7 +194,8 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
     @Override
     public Object register() {
         // for queues, a simple registration is always a receive
-        return sync.register();
+        final Object token = sync.register();
+        return token != null ? token : RECEIVE_REGISTRATION;
     }
 
     @Override
@@ -163,6 +227,10 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
     public void unregister(Object token) {
         if (token == null)
             return;
+        if (!(token instanceof SelectActionImpl)) { // returned by register()
+            sync.unregister(token != RECEIVE_REGISTRATION ? token : null);
+            return;
+        }
         SelectActionImpl<Message> action = (SelectActionImpl<Message>) token;
         if (action.isData()) {
             if (sendersSync != null)
@@ -212,8 +280,8 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
             throw new IllegalArgumentException("message is null");
         if (isSendClosed())
             return true;
-        if (overflowPolicy == OverflowPolicy.BLOCK)
-            sendersSync.register();
+        final Object token = overflowPolicy == OverflowPolicy.BLOCK ? sendersSync.register() : null;
+        boolean enqueued = false;
         try {
             int i = 0;
 
@@ -226,7 +294,7 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
                     return true;
                 }
                 record("send0", "%s channel queue is full. policy: %s", this, overflowPolicy);
-                if (!onQueueFull(i++, timed, nanos))
+                if (!onQueueFull(token, i++, timed, nanos))
                     return true;
 
                 if (timed) {
@@ -235,11 +303,12 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
                         throw new TimeoutException();
                 }
             }
+            enqueued = true;
         } catch (TimeoutException e) {
             return false;
         } finally {
             if (overflowPolicy == OverflowPolicy.BLOCK)
-                sendersSync.unregister(null);
+                unregister(sendersSync, token, enqueued);
         }
         if (sync)
             signalAndWait();
@@ -248,7 +317,7 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
         return true;
     }
 
-    private boolean onQueueFull(int iter, boolean timed, long nanos) throws SuspendExecution, InterruptedException, TimeoutException {
+    private boolean onQueueFull(Object token, int iter, boolean timed, long nanos) throws SuspendExecution, InterruptedException, TimeoutException {
         switch (overflowPolicy) {
             case DROP:
                 return false;
@@ -256,9 +325,9 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
                 throw new QueueCapacityExceededException();
             case BLOCK:
                 if (timed)
-                    sendersSync.await(iter, nanos, TimeUnit.NANOSECONDS);
+                    await(sendersSync, token, iter, nanos, TimeUnit.NANOSECONDS);
                 else
-                    sendersSync.await(iter);
+                    await(sendersSync, token, iter);
                 return true;
             case BACKOFF:
                 if (iter > MAX_SEND_RETRIES)
@@ -273,11 +342,32 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
         }
     }
 
+    private static void unregister(Condition c, Object token, boolean satisfied) {
+        if (c instanceof FifoConditionSynchronizer)
+            ((FifoConditionSynchronizer) c).unregister(token, satisfied);
+        else
+            c.unregister(token);
+    }
+
+    private static void await(Condition c, Object token, int iter) throws SuspendExecution, InterruptedException {
+        if (c instanceof FifoConditionSynchronizer)
+            ((FifoConditionSynchronizer) c).await(token, iter);
+        else
+            c.await(iter);
+    }
+
+    private static void await(Condition c, Object token, int iter, long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
+        if (c instanceof FifoConditionSynchronizer)
+            ((FifoConditionSynchronizer) c).await(token, iter, timeout, unit);
+        else
+            c.await(iter, timeout, unit);
+    }
+
     @Override
     public void close() {
         if (!sendClosed) {
             sendClosed = true;
-            signalReceivers();
+            sync.signalAll();
             if (sendersSync != null)
                 sendersSync.signalAll();
         }
@@ -354,7 +444,7 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
         if (receiveClosed)
             return closeValue();
 
-        Message m;
+        Message m = null;
         boolean closed;
         final Object token = sync.register();
         try {
@@ -369,10 +459,10 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
                     return closeValue();
                 }
 
-                sync.await(i);
+                await(sync, token, i);
             }
         } finally {
-            sync.unregister(token);
+            unregister(sync, token, m != null);
         }
 
         assert m != null;
@@ -392,7 +482,7 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
         long left = unit.toNanos(timeout);
         final long deadline = System.nanoTime() + left;
 
-        Message m;
+        Message m = null;
         boolean closed;
         final Object token = sync.register();
         try {
@@ -405,14 +495,14 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
                     return closeValue();
                 }
 
-                sync.await(i, left, TimeUnit.NANOSECONDS);
+                await(sync, token, i, left, TimeUnit.NANOSECONDS);
 
                 left = deadline - System.nanoTime();
                 if (left <= 0)
                     return null;
             }
         } finally {
-            sync.unregister(token);
+            unregister(sync, token, m != null);
         }
 
         if (m != null)
@@ -425,6 +515,57 @@ public abstract class QueueChannel<Message> implements StandardChannel<Message>,
         return receive(timeout.nanosLeft(), TimeUnit.NANOSECONDS);
     }
 
+    @Override
+    public int drainTo(Collection<? super Message> into, int max) {
+        if (receiveClosed) {
+            closeValue();
+            return 0;
+        }
+        boolean closed = isSendClosed();
+        final int n = max > 0 ? queue.drainTo(into, max) : 0;
+        if (n > 0)
+            signalSenders(n);
+        else if (closed && queue.isEmpty()) {
+            setReceiveClosed();
+            closeValue();
+        }
+        return n;
+    }
+
+    @Override
+    public int receive(Collection<? super Message> into, int max) throws SuspendExecution, InterruptedException {
+        if (max <= 0)
+            throw new IllegalArgumentException("max must be positive: " + max);
+        if (receiveClosed) {
+            closeValue();
+            return 0;
+        }
+
+        int n = 0;
+        boolean closed;
+        final Object token = sync.register();
+        try {
+            for (int i = 0;; i++) {
+                closed = isSendClosed(); // must be read BEFORE queue.drainTo()
+                if ((n = queue.drainTo(into, max)) > 0)
+                    break;
+
+                if (closed) {
+                    setReceiveClosed();
+                    closeValue();
+                    return 0;
+                }
+
+                await(sync, token, i);
+            }
+        } finally {
+            unregister(sync, token, n > 0);
+        }
+
+        signalSenders(n);
+        return n;
+    }
+
     public Message receiveFromThread() throws InterruptedException {
         try {
             return receive();
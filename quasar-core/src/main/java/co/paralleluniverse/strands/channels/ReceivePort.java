@@ -15,6 +15,7 @@ package co.paralleluniverse.strands.channels;
 
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.strands.Timeout;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -72,6 +73,41 @@ public interface ReceivePort<Message> extends Port<Message>, PortAutoCloseable {
         }
     }
 
+    /**
+     * Retrieves up to {@code max} messages from the channel, possibly blocking until at least one becomes available,
+     * and adds them to the given collection.
+     * Receiving a batch saves some of the per-message overhead of {@link #receive()}.
+     *
+     * @param into the collection to which the messages are added.
+     * @param max  the maximum number of messages to retrieve; must be positive.
+     * @return the number of messages added to {@code into}, which is {@code 0} only if the channel has been closed and no more messages await (see {@link #isClosed()}).
+     * @throws InterruptedException
+     * @throws SuspendExecution
+     */
+    default int receive(Collection<? super Message> into, int max) throws SuspendExecution, InterruptedException {
+        if (max <= 0)
+            throw new IllegalArgumentException("max must be positive: " + max);
+        final Message m = receive();
+        if (m == null)
+            return 0;
+        into.add(m);
+        return 1 + drainTo(into, max - 1);
+    }
+
+    /**
+     * Retrieves up to {@code max} of the messages available in the channel, and adds them to the given collection. This method never blocks.
+     *
+     * @param into the collection to which the messages are added.
+     * @param max  the maximum number of messages to retrieve.
+     * @return the number of messages added to {@code into}.
+     */
+    default int drainTo(Collection<? super Message> into, int max) {
+        int n = 0;
+        for (Message m; n < max && (m = tryReceive()) != null; n++)
+            into.add(m);
+        return n;
+    }
+
     public static class EOFException extends Exception {
         public static EOFException instance = new EOFException();
 
@@ -19,6 +19,7 @@ import co.paralleluniverse.strands.Strand;
 import co.paralleluniverse.strands.Stranded;
 import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
 import co.paralleluniverse.strands.queues.SingleConsumerQueue;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -144,6 +145,45 @@ public class SingleConsumerQueueChannel<Message> extends QueueChannel<Message> i
         }
     }
 
+    @Override
+    public int drainTo(Collection<? super Message> into, int max) {
+        if (isClosed() || max <= 0)
+            return 0;
+        final int n = queue().drainTo(into, max);
+        if (n > 0)
+            signalSenders(n);
+        return n;
+    }
+
+    @Override
+    public int receive(Collection<? super Message> into, int max) throws SuspendExecution, InterruptedException {
+        if (max <= 0)
+            throw new IllegalArgumentException("max must be positive: " + max);
+        if (isClosed())
+            return 0;
+        try {
+            maybeSetCurrentStrandAsOwner();
+            int n;
+            Object token = sync.register();
+            try {
+                for (int i = 0; (n = queue().drainTo(into, max)) == 0; i++) {
+                    if (isSendClosed()) {
+                        setReceiveClosed();
+                        checkClosed();
+                    }
+                    sync.await(i);
+                }
+            } finally {
+                sync.unregister(token);
+            }
+
+            signalSenders(n);
+            return n;
+        } catch (EOFException e) {
+            return 0;
+        }
+    }
+
     protected SingleConsumerQueue<Message> queue() {
         return (SingleConsumerQueue<Message>) queue;
     }
@@ -17,6 +17,7 @@ import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.strands.Condition;
 import co.paralleluniverse.strands.SimpleConditionSynchronizer;
 import co.paralleluniverse.strands.Timeout;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import co.paralleluniverse.concurrent.util.EnhancedAtomicLong;
@@ -67,6 +68,26 @@ class TakeReceivePort<M> extends TransformingReceivePort<M> {
         return timedReceive(timeout, unit);
     }
 
+    // batches must go through the lease, too, one message at a time
+    @Override
+    public int receive(Collection<? super M> into, int max) throws SuspendExecution, InterruptedException {
+        if (max <= 0)
+            throw new IllegalArgumentException("max must be positive: " + max);
+        final M m = receive();
+        if (m == null)
+            return 0;
+        into.add(m);
+        return 1 + drainTo(into, max - 1);
+    }
+
+    @Override
+    public int drainTo(Collection<? super M> into, int max) {
+        int n = 0;
+        for (M m; n < max && (m = tryReceive()) != null; n++)
+            into.add(m);
+        return n;
+    }
+
     private M timedReceive(final long timeout, final TimeUnit unit) throws SuspendExecution, InterruptedException {
         // Register in order to receive wakeup signals when waiting in the monitor
         final Object ticket = monitor.register();
@@ -13,25 +13,123 @@
  */
 package co.paralleluniverse.strands.channels;
 
+import co.paralleluniverse.common.monitoring.Counter;
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.strands.Timeout;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
  * A channel that forwards all messages to subscriber channels.
+ * <p>
+ * What the topic does when a subscriber can't immediately accept a message is determined by the subscriber's {@link SubscriberPolicy policy}.
+ * By default, the topic waits for the subscriber, and delivers messages to subscribers one at a time, so a subscriber that's full delays
+ * the others. A topic created in <i>fan-out</i> mode first offers a message to all subscribers without blocking, and only then waits for those
+ * that were full.</p>
+ * <p>
+ * A {@link Subscription subscription} keeps delivery counters if the topic is in fan-out mode or is <i>monitored</i>, or if the subscription
+ * has a policy other than {@link SubscriberPolicy#BLOCK BLOCK} or a timeout.</p>
  *
  * @author pron
  */
 public class Topic<Message> implements PubSub<Message> {
+    /**
+     * What a topic does with a message when a subscriber can't immediately accept it.
+     */
+    public enum SubscriberPolicy {
+        /**
+         * Wait for the subscriber to accept the message, but, if the subscriber has a timeout, no longer than that, after which the message
+         * is dropped for that subscriber.
+         */
+        BLOCK,
+        /**
+         * Drop the message for that subscriber.
+         */
+        DROP,
+        /**
+         * Drop the message, and unsubscribe and close the subscriber.
+         */
+        DISCONNECT
+    }
+
+    private final CopyOnWriteArrayList<Subscription<Message>> subscriptions;
     private final Collection<SendPort<? super Message>> subscribers;
+    private final boolean fanOut;
+    private final boolean monitored;
 
     protected volatile boolean sendClosed;
-    private Throwable closeException;
+    private volatile Throwable closeException;
 
+    /**
+     * Creates a new topic that delivers messages to subscribers one at a time.
+     */
     public Topic() {
-        this.subscribers = new CopyOnWriteArraySet<>();
+        this(false);
+    }
+
+    /**
+     * Creates a new topic.
+     *
+     * @param fanOut whether messages are first offered to all subscribers without blocking, and only then are the subscribers that were full
+     *               waited for; otherwise messages are delivered to subscribers one at a time.
+     */
+    public Topic(boolean fanOut) {
+        this(fanOut, false);
+    }
+
+    /**
+     * Creates a new topic.
+     *
+     * @param fanOut    whether messages are first offered to all subscribers without blocking, and only then are the subscribers that were
+     *                  full waited for; otherwise messages are delivered to subscribers one at a time.
+     * @param monitored whether all subscriptions keep delivery counters
+     */
+    public Topic(boolean fanOut, boolean monitored) {
+        this.fanOut = fanOut;
+        this.monitored = monitored;
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        this.subscribers = new AbstractCollection<SendPort<? super Message>>() {
+            @Override
+            public Iterator<SendPort<? super Message>> iterator() {
+                final Iterator<Subscription<Message>> it = subscriptions.iterator();
+                return new Iterator<SendPort<? super Message>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public SendPort<? super Message> next() {
+                        return it.next().port;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return subscriptions.size();
+            }
+        };
+    }
+
+    /**
+     * Whether messages are first offered to all subscribers without blocking.
+     */
+    public boolean isFanOut() {
+        return fanOut;
+    }
+
+    /**
+     * Whether all subscriptions keep delivery counters.
+     */
+    public boolean isMonitored() {
+        return monitored;
     }
 
     /**
@@ -42,11 +140,65 @@ public class Topic<Message> implements PubSub<Message> {
         return subscribers;
     }
 
+    /**
+     * Returns the subscriptions to this topic.
+     */
+    public List<Subscription<Message>> getSubscriptions() {
+        return Collections.unmodifiableList(subscriptions);
+    }
+
+    /**
+     * Returns the subscription of the given channel, or {@code null} if it is not subscribed to this topic.
+     */
+    public Subscription<Message> getSubscription(SendPort<? super Message> sub) {
+        for (Subscription<Message> s : subscriptions) {
+            if (s.port.equals(sub))
+                return s;
+        }
+        return null;
+    }
+
+    /**
+     * Subscribe a channel to receive messages sent to this topic, with the {@link SubscriberPolicy#BLOCK BLOCK} policy and no timeout.
+     *
+     * @param sub the channel to subscribe
+     */
     @Override
     public <T extends SendPort<? super Message>> T subscribe(T sub) {
+        return subscribe(sub, SubscriberPolicy.BLOCK, -1, null);
+    }
+
+    /**
+     * Subscribe a channel to receive messages sent to this topic. If the channel is already subscribed, its policy is replaced.
+     *
+     * @param sub    the channel to subscribe
+     * @param policy what to do with a message the channel can't immediately accept
+     */
+    public <T extends SendPort<? super Message>> T subscribe(T sub, SubscriberPolicy policy) {
+        return subscribe(sub, policy, -1, null);
+    }
+
+    /**
+     * Subscribe a channel to receive messages sent to this topic. If the channel is already subscribed, its policy is replaced.
+     *
+     * @param sub     the channel to subscribe
+     * @param policy  what to do with a message the channel can't immediately accept
+     * @param timeout with the {@link SubscriberPolicy#BLOCK BLOCK} policy, the maximum duration to wait for the channel to accept a message,
+     *                counted from the start of the {@code send}; ignored with the other policies.
+     * @param unit    the time unit of the timeout, or {@code null} for no timeout.
+     */
+    public <T extends SendPort<? super Message>> T subscribe(T sub, SubscriberPolicy policy, long timeout, TimeUnit unit) {
+        if (policy == null)
+            throw new IllegalArgumentException("policy is null");
         if (closeChannelIfClosed(sub))
             return sub;
-        subscribers.add(sub);
+        final long timeoutNanos = unit != null ? unit.toNanos(Math.max(timeout, 0)) : -1;
+        final boolean counted = monitored || fanOut || policy != SubscriberPolicy.BLOCK || timeoutNanos >= 0;
+        final Subscription<Message> s = new Subscription<Message>(sub, policy, timeoutNanos, counted);
+        synchronized (subscriptions) {
+            unsubscribe(sub);
+            subscriptions.add(s);
+        }
         if (closeChannelIfClosed(sub))
             unsubscribe(sub);
         return sub;
@@ -65,34 +217,118 @@ public class Topic<Message> implements PubSub<Message> {
 
     @Override
     public void unsubscribe(SendPort<? super Message> sub) {
-        subscribers.remove(sub);
+        subscriptions.removeIf(s -> s.port.equals(sub));
     }
 
     public void unsubscribeAll() {
-        subscribers.clear();
+        subscriptions.clear();
     }
 
     @Override
     public void send(Message message) throws SuspendExecution, InterruptedException {
-        if (sendClosed)
-            return;
-        for (SendPort<? super Message> sub : subscribers)
-            sub.send(message);
+        send0(message, -1);
     }
 
+    /**
+     * Sends a message to all subscribers, waiting for subscribers with the {@link SubscriberPolicy#BLOCK BLOCK} policy no longer than the
+     * given timeout (or the subscriber's own timeout, if shorter).
+     *
+     * @return {@code true} if all subscribers have received the message; {@code false} if it has been dropped for some.
+     */
     @Override
     public boolean send(Message message, long timeout, TimeUnit unit) throws SuspendExecution, InterruptedException {
-        throw new UnsupportedOperationException();
+        return send0(message, unit != null ? unit.toNanos(Math.max(timeout, 0)) : -1);
     }
 
+    /**
+     * Sends a message to all subscribers, waiting for subscribers with the {@link SubscriberPolicy#BLOCK BLOCK} policy no longer than the
+     * given timeout (or the subscriber's own timeout, if shorter).
+     *
+     * @return {@code true} if all subscribers have received the message; {@code false} if it has been dropped for some.
+     */
     @Override
     public boolean send(Message message, Timeout timeout) throws SuspendExecution, InterruptedException {
-        throw new UnsupportedOperationException();
+        return send0(message, Math.max(timeout.nanosLeft(), 0));
     }
 
+    /**
+     * Sends a message to all subscribers that can immediately accept it. This method never blocks; subscribers with the
+     * {@link SubscriberPolicy#BLOCK BLOCK} policy that can't accept the message miss it.
+     *
+     * @return {@code true} if all subscribers have received the message; {@code false} if it has been dropped for some.
+     */
     @Override
     public boolean trySend(Message message) {
-        throw new UnsupportedOperationException();
+        if (sendClosed)
+            return true;
+        boolean all = true;
+        for (Subscription<Message> s : subscriptions) {
+            if (s.port.trySend(message))
+                s.delivered();
+            else {
+                onFull(s);
+                all = false;
+            }
+        }
+        return all;
+    }
+
+    private boolean send0(Message message, long nanos) throws SuspendExecution, InterruptedException {
+        if (sendClosed)
+            return true;
+        final long start = System.nanoTime(); // subscriber timeouts count from here
+        boolean all = true;
+        List<Subscription<Message>> full = null;
+        for (Subscription<Message> s : subscriptions) {
+            if (!fanOut && s.policy == SubscriberPolicy.BLOCK)
+                all &= block(s, message, start, nanos);
+            else if (s.port.trySend(message))
+                s.delivered();
+            else if (s.policy == SubscriberPolicy.BLOCK) {
+                if (full == null)
+                    full = new ArrayList<>();
+                full.add(s);
+            } else {
+                onFull(s);
+                all = false;
+            }
+        }
+        if (full != null) {
+            for (Subscription<Message> s : full)
+                all &= block(s, message, start, nanos);
+        }
+        return all;
+    }
+
+    private boolean block(Subscription<Message> s, Message message, long start, long nanos) throws SuspendExecution, InterruptedException {
+        long wait = s.timeoutNanos;
+        if (nanos >= 0 && (wait < 0 || nanos < wait))
+            wait = nanos;
+
+        final long now = fanOut || wait >= 0 ? System.nanoTime() : 0L;
+        final boolean sent;
+        if (wait < 0) {
+            s.port.send(message);
+            sent = true;
+        } else {
+            final long left = wait - (now - start);
+            sent = left > 0 ? s.port.send(message, left, TimeUnit.NANOSECONDS) : s.port.trySend(message);
+        }
+        if (fanOut) // the subscriber has been found full
+            s.blocked(System.nanoTime() - now);
+        if (sent)
+            s.delivered();
+        else
+            s.dropped();
+        return sent;
+    }
+
+    private void onFull(Subscription<Message> s) {
+        s.dropped();
+        if (s.policy == SubscriberPolicy.DISCONNECT) {
+            unsubscribe(s.port);
+            s.port.close();
+        }
     }
 
     @Override
@@ -101,8 +337,8 @@ public class Topic<Message> implements PubSub<Message> {
             return;
 
         sendClosed = true;
-        for (SendPort<?> sub : subscribers)
-            sub.close();
+        for (Subscription<Message> s : subscriptions)
+            s.port.close();
         unsubscribeAll();
     }
 
@@ -112,8 +348,108 @@ public class Topic<Message> implements PubSub<Message> {
             return;
         closeException = t;
         sendClosed = true;
-        for (SendPort<?> sub : subscribers)
-            sub.close(t);
+        for (Subscription<Message> s : subscriptions)
+            s.port.close(t);
         unsubscribeAll();
     }
+
+    /**
+     * A channel's subscription to a topic, and its delivery counters, if it keeps them.
+     */
+    public static final class Subscription<Message> {
+        final SendPort<? super Message> port;
+        final SubscriberPolicy policy;
+        final long timeoutNanos;
+        private final Counters counters; // null if not counted
+
+        Subscription(SendPort<? super Message> port, SubscriberPolicy policy, long timeoutNanos, boolean counted) {
+            this.port = port;
+            this.policy = policy;
+            this.timeoutNanos = timeoutNanos;
+            this.counters = counted ? new Counters() : null;
+        }
+
+        void delivered() {
+            if (counters != null)
+                counters.delivered.inc();
+        }
+
+        void dropped() {
+            if (counters != null)
+                counters.dropped.inc();
+        }
+
+        void blocked(long nanos) {
+            if (counters != null) {
+                counters.blocked.inc();
+                counters.blockedNanos.add(nanos);
+            }
+        }
+
+        public SendPort<? super Message> getSubscriber() {
+            return port;
+        }
+
+        public SubscriberPolicy getPolicy() {
+            return policy;
+        }
+
+        /**
+         * Whether this subscription keeps delivery counters.
+         */
+        public boolean isCounted() {
+            return counters != null;
+        }
+
+        /**
+         * The number of messages delivered to the subscriber, or {@code -1} if not {@link #isCounted() counted}.
+         */
+        public long getDelivered() {
+            return counters != null ? counters.delivered.get() : -1;
+        }
+
+        /**
+         * The number of messages dropped for the subscriber, because of its {@link SubscriberPolicy policy} or a timeout, or {@code -1} if
+         * not {@link #isCounted() counted}.
+         */
+        public long getDropped() {
+            return counters != null ? counters.dropped.get() : -1;
+        }
+
+        /**
+         * In fan-out mode, the number of messages for which the topic has waited for the subscriber, or {@code -1} if not
+         * {@link #isCounted() counted}.
+         */
+        public long getBlocked() {
+            return counters != null ? counters.blocked.get() : -1;
+        }
+
+        /**
+         * In fan-out mode, the total time, in nanoseconds, the topic has waited for the subscriber, or {@code -1} if not
+         * {@link #isCounted() counted}.
+         */
+        public long getBlockedNanos() {
+            return counters != null ? counters.blockedNanos.get() : -1;
+        }
+
+        /**
+         * The number of messages delivered to the subscriber but not yet received from it, or {@code -1} if unknown.
+         */
+        public int getLag() {
+            return port instanceof QueueChannel ? ((QueueChannel<?>) port).getQueueLength() : -1;
+        }
+
+        @Override
+        public String toString() {
+            return "Subscription{" + "subscriber: " + port + ", policy: " + policy
+                    + (counters != null ? ", delivered: " + getDelivered() + ", dropped: " + getDropped() : "") + '}';
+        }
+
+        private static final class Counters {
+            final Counter delivered = new Counter();
+            final Counter dropped = new Counter();
+            final Counter blocked = new Counter();
+            final Counter blockedNanos = new Counter();
+        }
+    }
 }
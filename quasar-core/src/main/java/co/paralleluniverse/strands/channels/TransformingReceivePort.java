@@ -37,24 +37,45 @@ public class TransformingReceivePort<T> extends DelegatingReceivePort<T> {
      * All messages (even those not satisfying the predicate) will be consumed from the original channel; those that don't satisfy the predicate will be silently discarded.
      * <p>
      * The returned {@code TransformingReceivePort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.</p>
+     * <p>
+     * Consecutive {@code filter} and {@link #map(Function) map} stages are fused into a single transformation of the original channel's messages,
+     * which is also applied to whole batches by {@link #receive(java.util.Collection, int) receive(into, max)} and {@link #drainTo(java.util.Collection, int) drainTo}.</p>
      *
      * @param pred the filtering predicate
      * @return A {@link TransformingReceivePort} that will receive all those messages from the original channel which satisfy the predicate (i.e. the predicate returns {@code true}).
      */
     public TransformingReceivePort<T> filter(Predicate<T> pred) {
-        return Channels.transform(Channels.filter(this, pred));
+        if (!fusable())
+            return Channels.transform(FusedReceivePort.filter(this, pred));
+        if (target instanceof FusedReceivePort)
+            return Channels.transform(((FusedReceivePort<?, T>) target).filter(pred));
+        return Channels.transform(FusedReceivePort.filter(target, pred));
     }
 
     /**
      * Returns a {@link TransformingReceivePort} that receives messages that are transformed by a given mapping function from this channel.
      * <p>
      * The returned {@code TransformingReceivePort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.
+     * <p>
+     * Consecutive {@code map} and {@link #filter(Predicate) filter} stages are fused into a single transformation of the original channel's messages.</p>
      *
      * @param f the mapping function
      * @return a {@link TransformingReceivePort} that returns messages that are the result of applying the mapping function to the messages received on the given channel.
      */
     public <U> TransformingReceivePort<U> map(Function<T, U> f) {
-        return Channels.transform(Channels.map(this, f));
+        if (!fusable())
+            return Channels.transform(FusedReceivePort.map(this, f));
+        if (target instanceof FusedReceivePort)
+            return Channels.transform(((FusedReceivePort<?, T>) target).map(f));
+        return Channels.transform(FusedReceivePort.map(target, f));
+    }
+
+    /**
+     * Whether a stage may be fused with the target's, bypassing this port. Subclasses (like the port returned by {@link #take(long) take})
+     * override the receive methods, so a stage must wrap them.
+     */
+    private boolean fusable() {
+        return getClass() == TransformingReceivePort.class;
     }
 
      /**
@@ -148,6 +169,41 @@ public class TransformingReceivePort<T> extends DelegatingReceivePort<T> {
         return Channels.transform(out);
     }
 
+    /**
+     * Spawns {@code parallelism} fibers that apply a mapping function to the messages received from this channel and send the results
+     * to the {@code out} channel.
+     * See {@link Channels#parallelMap(FiberFactory, ReceivePort, SendPort, int, boolean, Function) Channels.parallelMap}.
+     *
+     * @param parallelism the number of worker fibers
+     * @param ordered     whether the results must be sent in the order of the input messages
+     * @param f           the mapping function
+     * @param out         the output channel
+     *
+     * @return A {@link TransformingReceivePort} wrapping the {@code out} channel.
+     */
+    public <U> TransformingReceivePort<U> parallelMap(int parallelism, boolean ordered, Function<T, U> f, Channel<U> out) {
+        Channels.parallelMap(this, out, parallelism, ordered, f);
+        return Channels.transform(out);
+    }
+
+    /**
+     * Spawns {@code parallelism} fibers that apply a mapping function to the messages received from this channel and send the results
+     * to the {@code out} channel.
+     * See {@link Channels#parallelMap(FiberFactory, ReceivePort, SendPort, int, boolean, Function) Channels.parallelMap}.
+     *
+     * @param fiberFactory will be used to create the fibers
+     * @param parallelism  the number of worker fibers
+     * @param ordered      whether the results must be sent in the order of the input messages
+     * @param f            the mapping function
+     * @param out          the output channel
+     *
+     * @return A {@link TransformingReceivePort} wrapping the {@code out} channel.
+     */
+    public <U> TransformingReceivePort<U> parallelMap(FiberFactory fiberFactory, int parallelism, boolean ordered, Function<T, U> f, Channel<U> out) {
+        Channels.parallelMap(fiberFactory, this, out, parallelism, ordered, f);
+        return Channels.transform(out);
+    }
+
     /**
      * Performs the given action on each message received by this channel.
      * This method returns only after all messages have been consumed and the channel has been closed.
@@ -157,4 +213,15 @@ public class TransformingReceivePort<T> extends DelegatingReceivePort<T> {
     public void forEach(SuspendableAction1<T> action) throws SuspendExecution, InterruptedException {
         Channels.forEach(this, action);
     }
+
+    /**
+     * Performs the given action on each message received by this channel, in {@code parallelism} fibers.
+     * See {@link Channels#parallelForEach(FiberFactory, ReceivePort, int, SuspendableAction1) Channels.parallelForEach}.
+     *
+     * @param parallelism the number of worker fibers
+     * @param action      the action
+     */
+    public void parallelForEach(int parallelism, SuspendableAction1<T> action) throws SuspendExecution, InterruptedException {
+        Channels.parallelForEach(this, parallelism, action);
+    }
 }
@@ -35,24 +35,44 @@ public class TransformingSendPort<T> extends DelegatingSendPort<T> {
      * Messages that don't satisfy the predicate will be silently discarded when sent.
      * <p>
      * The returned {@code SendPort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.</p>
+     * <p>
+     * Consecutive {@code filter} and {@link #map(Function) map} stages are fused into a single transformation.</p>
      *
      * @param pred    the filtering predicate
      * @return A {@link TransformingSendPort} that will send only those messages which satisfy the predicate (i.e. the predicate returns {@code true}) to the given channel.
      */
     public TransformingSendPort<T> filter(Predicate<T> pred) {
-        return Channels.transformSend(Channels.filterSend(this, pred));
+        if (!fusable())
+            return Channels.transformSend(FusedSendPort.filter(this, pred));
+        if (target instanceof FusedSendPort)
+            return Channels.transformSend(((FusedSendPort<T, ?>) target).filter(pred));
+        return Channels.transformSend(FusedSendPort.filter(target, pred));
     }
 
     /**
      * Returns a {@link TransformingSendPort} that transforms messages by applying a given mapping function before sending this channel.
      * <p>
      * The returned {@code TransformingSendPort} has the same {@link Object#hashCode() hashCode} as {@code channel} and is {@link Object#equals(Object) equal} to it.</p>
+     * <p>
+     * Consecutive {@code map} and {@link #filter(Predicate) filter} stages are fused into a single transformation.</p>
      *
      * @param f       the mapping function
      * @return a {@link TransformingSendPort} that passes messages to the given channel after transforming them by applying the mapping function.
      */
     public <S> TransformingSendPort<S> map(Function<S, T> f) {
-        return Channels.transformSend(Channels.mapSend(this, f));
+        if (!fusable())
+            return Channels.transformSend(FusedSendPort.map(this, f));
+        if (target instanceof FusedSendPort)
+            return Channels.transformSend(((FusedSendPort<T, ?>) target).map(f));
+        return Channels.transformSend(FusedSendPort.map(target, f));
+    }
+
+    /**
+     * Whether a stage may be fused with the target's, bypassing this port. A subclass may override the send methods, so a stage must wrap
+     * them.
+     */
+    private boolean fusable() {
+        return getClass() == TransformingSendPort.class;
     }
 
     /**
@@ -19,6 +19,8 @@ import co.paralleluniverse.fibers.FiberScheduler;
 import co.paralleluniverse.fibers.RuntimeExecutionException;
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
+import co.paralleluniverse.strands.ConditionSynchronizer;
+import co.paralleluniverse.strands.FifoConditionSynchronizer;
 import co.paralleluniverse.strands.SimpleConditionSynchronizer;
 import co.paralleluniverse.strands.SuspendableCallable;
 import co.paralleluniverse.strands.SuspendableRunnable;
@@ -31,6 +33,9 @@ import java.util.concurrent.TimeoutException;
 /**
  * A dataflow constant.
  * Represents a delayed value that can be set at most once, and when read, blocks until a value has been set.
+ * <p>
+ * If the {@code co.paralleluniverse.strands.dataflow.fifoWaiters} system property is set to {@code true}, readers wait in a
+ * {@link FifoConditionSynchronizer}, which doesn't allocate when a reader starts waiting.</p>
  *
  * @author pron
  */
@@ -38,7 +43,8 @@ public class Val<V> implements Future<V> {
     private V value;
     private Throwable t;
     private SuspendableCallable<V> f;
-    private volatile SimpleConditionSynchronizer sync = new SimpleConditionSynchronizer(this);
+    private static final boolean fifoWaiters = Boolean.getBoolean("co.paralleluniverse.strands.dataflow.fifoWaiters");
+    private volatile ConditionSynchronizer sync = fifoWaiters ? new FifoConditionSynchronizer(this) : new SimpleConditionSynchronizer(this);
 
     /**
      * Creates a {@code Val} whose value will be the one returned by the given {@link SuspendableCallable}, which will be spawned
@@ -104,7 +110,7 @@ public class Val<V> implements Future<V> {
     }
 
     private void set0(V value) {
-        final SimpleConditionSynchronizer s = sync;
+        final ConditionSynchronizer s = sync;
         if (s == null)
             throw new IllegalStateException("Value has already been set (and can only be set once)");
         this.value = value;
@@ -114,7 +120,7 @@ public class Val<V> implements Future<V> {
     }
 
     private void setException0(Throwable t) {
-        final SimpleConditionSynchronizer s = sync;
+        final ConditionSynchronizer s = sync;
         if (s == null)
             throw new IllegalStateException("Value has already been set (and can only be set once)");
         this.t = t;
@@ -128,7 +134,22 @@ public class Val<V> implements Future<V> {
         return sync == null;
     }
 
+    /**
+     * Returns the synchronizer readers wait on, or {@code null} if the value has been set.
+     *
+     * @throws UnsupportedOperationException if readers wait in a {@link FifoConditionSynchronizer}
+     */
     protected SimpleConditionSynchronizer getSync() {
+        final ConditionSynchronizer s = sync;
+        if (s != null && !(s instanceof SimpleConditionSynchronizer))
+            throw new UnsupportedOperationException("Readers wait in a " + s.getClass().getSimpleName());
+        return (SimpleConditionSynchronizer) s;
+    }
+
+    /**
+     * Returns the synchronizer readers wait on, whatever its kind, or {@code null} if the value has been set.
+     */
+    ConditionSynchronizer getSynchronizer() {
         return sync;
     }
 
@@ -146,14 +167,14 @@ public class Val<V> implements Future<V> {
     @Suspendable
     public V get() throws InterruptedException {
         try {
-            final SimpleConditionSynchronizer s = sync;
+            final ConditionSynchronizer s = sync;
             if (s != null) {
                 Object token = s.register();
                 try {
                     for (int i = 0; sync != null; i++)
-                        s.await(i);
+                        await(s, token, i);
                 } finally {
-                    s.unregister(token);
+                    unregister(s, token);
                 }
             }
             if (t != null)
@@ -177,7 +198,7 @@ public class Val<V> implements Future<V> {
     @Suspendable
     public V get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
         try {
-            final SimpleConditionSynchronizer s = sync;
+            final ConditionSynchronizer s = sync;
             if (s != null) {
                 Object token = s.register();
                 try {
@@ -185,7 +206,7 @@ public class Val<V> implements Future<V> {
                     long left = unit.toNanos(timeout);
                     final long deadline = start + left;
                     for (int i = 0; sync != null; i++) {
-                        s.awaitNanos(i, left);
+                        awaitNanos(s, token, i, left);
                         if (sync == null)
                             break;
                         left = deadline - System.nanoTime();
@@ -193,7 +214,7 @@ public class Val<V> implements Future<V> {
                             throw new TimeoutException();
                     }
                 } finally {
-                    s.unregister(token);
+                    unregister(s, token);
                 }
             }
             if (t != null)
@@ -204,6 +225,27 @@ public class Val<V> implements Future<V> {
         }
     }
 
+    private static void await(ConditionSynchronizer s, Object token, int iter) throws InterruptedException, SuspendExecution {
+        if (s instanceof FifoConditionSynchronizer)
+            ((FifoConditionSynchronizer) s).await(token, iter);
+        else
+            s.await(iter);
+    }
+
+    private void unregister(ConditionSynchronizer s, Object token) {
+        if (s instanceof FifoConditionSynchronizer)
+            ((FifoConditionSynchronizer) s).unregister(token, sync == null);
+        else
+            s.unregister(token);
+    }
+
+    private static void awaitNanos(ConditionSynchronizer s, Object token, int iter, long nanos) throws InterruptedException, SuspendExecution {
+        if (s instanceof FifoConditionSynchronizer)
+            ((FifoConditionSynchronizer) s).awaitNanos(token, iter, nanos);
+        else
+            s.awaitNanos(iter, nanos);
+    }
+
     @Suspendable
     public V get(Timeout timeout) throws InterruptedException, TimeoutException {
         return get(timeout.nanosLeft(), TimeUnit.NANOSECONDS);
@@ -92,7 +92,7 @@ public class ValChannel<V> implements ReceivePort<V>, Selectable<V> {
         SelectActionImpl<V> action = (SelectActionImpl<V>)action1;
         if (action.isData())
             throw new UnsupportedOperationException("Send is not supported by DelayedValChanel");
-        Condition sync = dv.getSync();
+        Condition sync = dv.getSynchronizer();
         if (sync == null) {
             if (!action.lease())
                 return null;
@@ -120,7 +120,7 @@ public class ValChannel<V> implements ReceivePort<V>, Selectable<V> {
     public void unregister(Object token) {
         if (token == null)
             return;
-        Condition sync = dv.getSync();
+        Condition sync = dv.getSynchronizer();
         if (sync != null)
             sync.unregister(null);
     }
@@ -17,6 +17,11 @@ import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 
 /**
+ * A bounded multi-producer, multi-consumer queue.
+ * <p>
+ * Each slot has a sequence number telling whether it is ready to be written or read in the current lap around the array, so
+ * a consumer never reads a slot whose element has already been taken by another consumer, nor one that a producer has claimed but not
+ * yet written; in the latter case {@code poll} returns {@code null} rather than wait for the producer.</p>
  *
  * @author pron
  */
@@ -28,17 +33,17 @@ public class ArrayQueue<E> implements BasicQueue<E> {
     volatile long p101, p102, p103, p104, p105, p106, p107;
     volatile long tail; // next element to be written
     volatile long p201, p202, p203, p204, p205, p206, p207;
-    private long cachedHead;
-    volatile long p301, p302, p303, p304, p305, p306, p307;
-    private long cachedTail;
-    volatile Object p401, p402, p403, p404, p405, p406, p407;
     private final Object[] array;
+    private final long[] sequence; // slot i may be written at index sequence[i], and read at index sequence[i] - 1
 
     public ArrayQueue(int capacity) {
         // size is a power of 2
         this.capacity = nextPowerOfTwo(capacity);
         this.mask = this.capacity - 1;
         this.array = new Object[this.capacity];
+        this.sequence = new long[this.capacity];
+        for (int i = 0; i < this.capacity; i++)
+            sequence[i] = i;
     }
 
     private static int nextPowerOfTwo(int v) {
@@ -55,54 +60,47 @@ public class ArrayQueue<E> implements BasicQueue<E> {
     public boolean enq(E item) {
         if (item == null)
             throw new IllegalArgumentException("null values not allowed");
-        final long i = preEnq();
-        if (i < 0)
-            return false;
-        set((int) i & mask, item);
-        return true;
-    }
-
-    private long preEnq() {
-        long t, w;
-        do {
-            t = tail;
-            w = t - capacity; // "wrap point"
-
-            if (cachedHead <= w) {
-                cachedHead = head; // only time a producer reads head. for this, head needs to be volatile. can we do better?
-                if (cachedHead <= w)
-                    return -1;
-            }
-        } while (!compareAndSetTail(t, t + 1));
-        return t;
+        for (;;) {
+            final long t = tail;
+            final int i = (int) t & mask;
+            final long seq = getSequence(i);
+            if (seq == t) {
+                if (compareAndSetTail(t, t + 1)) {
+                    orderedSet(i, item);
+                    setSequence(i, t + 1);
+                    return true;
+                }
+            } else if (seq < t)
+                return false; // the slot still holds the element from the previous lap
+        }
     }
 
     @Override
     public E poll() {
-        long h;
-        E v;
-        do {
-            h = head;
-            if (h >= cachedTail) {
-                cachedTail = tail;
-                if (h >= cachedTail)
-                    return null;
-            }
-
-            v = get((int) h & mask); // volatile read
-        } while (v == null || !compareAndSetHead(h, h + 1));
-        cas((int) h & mask, v, null);
-        return v;
+        for (;;) {
+            final long h = head;
+            final int i = (int) h & mask;
+            final long seq = getSequence(i);
+            if (seq == h + 1) {
+                if (compareAndSetHead(h, h + 1)) {
+                    final E v = get(i);
+                    orderedSet(i, null);
+                    setSequence(i, h + capacity);
+                    return v;
+                }
+            } else if (seq < h + 1)
+                return null; // empty, or the element hasn't been written yet
+        }
     }
 
     @Override
     public int size() {
-        return (int) (tail - head);
+        return (int) Math.max(tail - head, 0);
     }
 
     @Override
     public boolean isEmpty() {
-        return tail == head;
+        return tail <= head;
     }
 
     int next(int i) {
@@ -115,6 +113,7 @@ public class ArrayQueue<E> implements BasicQueue<E> {
     ////////////////////////////////////////////////////////////////////////
     
     private static final VarHandle ARRAY = MethodHandles.arrayElementVarHandle(Object[].class);
+    private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
     
     private static final VarHandle HEAD;
     private static final VarHandle TAIL;
@@ -128,9 +127,6 @@ public class ArrayQueue<E> implements BasicQueue<E> {
         }
     }
     
-    /**
-     * CAS tail field. Used only by preEnq.
-     */
     private boolean compareAndSetTail(long expect, long update) {
         return TAIL.compareAndSet(this, expect, update);
     }
@@ -139,24 +135,20 @@ public class ArrayQueue<E> implements BasicQueue<E> {
         return HEAD.compareAndSet(this, expect, update);
     }
 
-    private void orderedSetHead(long value) {
-        HEAD.setOpaque(this, value); // UNSAFE.putOrderedLong(this, headOffset, value);
-    }
-
-    private void set(int i, E value) {
-        ARRAY.setVolatile(array, i, value);
-    }
-
     private void orderedSet(int i, E value) {
         ARRAY.setOpaque(array, i, value);
     }
 
     private E get(int i) {
-        return (E) ARRAY.getVolatile(array, i);
+        return (E) ARRAY.getOpaque(array, i); // ordered by the sequence's acquire
+    }
+
+    private long getSequence(int i) {
+        return (long) SEQUENCE.getAcquire(sequence, i);
     }
 
-    private boolean cas(int i, E expected, E update) {
-        return ARRAY.compareAndSet(array, i, expected, update);
+    private void setSequence(int i, long value) {
+        SEQUENCE.setRelease(sequence, i, value);
     }
     
 //    static final Unsafe UNSAFE = UtilUnsafe.getUnsafe();
@@ -13,6 +13,8 @@
  */
 package co.paralleluniverse.strands.queues;
 
+import java.util.Collection;
+
 /**
  *
  * @author pron
@@ -23,6 +25,20 @@ public interface BasicQueue<E> {
     boolean enq(E element);
 
     E poll();
+
+    /**
+     * Removes up to {@code max} elements, in order, and adds them to the given collection.
+     *
+     * @param c   the collection to add the elements to
+     * @param max the maximum number of elements to remove
+     * @return the number of elements removed
+     */
+    default int drainTo(Collection<? super E> c, int max) {
+        int n = 0;
+        for (E e; n < max && (e = poll()) != null; n++)
+            c.add(e);
+        return n;
+    }
     
     int size();
     
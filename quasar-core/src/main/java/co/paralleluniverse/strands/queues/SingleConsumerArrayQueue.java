@@ -18,6 +18,7 @@ import com.google.common.collect.Lists;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -111,6 +112,26 @@ abstract class SingleConsumerArrayQueue<E> extends SingleConsumerQueue<E> {
         return v;
     }
 
+    @Override
+    public int drainTo(Collection<? super E> c, int max) {
+        // like repeated polls, but head is written once
+        long h = head;
+        int n = 0;
+        try {
+            for (; n < max; n++) {
+                final int i = (int) h & mask;
+                if (!hasNext(h, i))
+                    break;
+                c.add(value(i)); // if add throws, the element stays in the queue
+                clearValue(i);
+                h++;
+            }
+        } finally {
+            orderedSetHead(h);
+        }
+        return n;
+    }
+
     @Override
     public E peek() {
         final int i = pk();
@@ -18,6 +18,7 @@ import com.google.common.collect.Lists;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.VarHandle;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.NoSuchElementException;
 
@@ -108,6 +109,41 @@ abstract class SingleConsumerLinkedArrayQueue<E> extends SingleConsumerQueue<E>
         return val;
     }
 
+    @Override
+    public int drainTo(Collection<? super E> c, int max) {
+        // like repeated polls, but head is written once
+        final int blockSize = blockSize();
+        Node n = head;
+        int i = headIndex;
+        int count = 0;
+        try {
+            while (count < max) {
+                if (i >= blockSize) {
+                    Node next = n.next;
+                    if (next == null)
+                        break;
+                    clearNext(n);
+                    clearPrev(next);
+
+                    n = next;
+                    i = 0;
+                } else if (hasValue(n, i)) {
+                    if (!isDeleted(n, i)) {
+                        c.add(value(n, i)); // if add throws, the element stays in the queue
+                        markDeleted(n, i);
+                        count++;
+                    }
+                    i++;
+                } else
+                    break;
+            }
+        } finally {
+            orderedSetHead(n);
+            headIndex = i;
+        }
+        return count;
+    }
+
     @Override
     public boolean isEmpty() {
         return peek() == null;
@@ -85,6 +85,16 @@ public abstract class SingleConsumerQueue<E> extends AbstractCollection<E> imple
         return enq(e);
     }
 
+    @Override
+    public int drainTo(Collection<? super E> c, int max) {
+        int n = 0;
+        for (E e; n < max && (e = peek()) != null; n++) {
+            c.add(e); // if add throws, the element stays in the queue
+            poll();
+        }
+        return n;
+    }
+
     @Override
     public E remove() {
         final E val = poll();
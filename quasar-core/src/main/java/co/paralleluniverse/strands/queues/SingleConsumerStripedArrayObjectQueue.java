@@ -0,0 +1,215 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.queues;
+
+import co.paralleluniverse.strands.Strand;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A bounded multi-producer, single-consumer queue made of several array lanes, each producer strand always enqueueing into the same lane.
+ * <p>
+ * In a {@link SingleConsumerArrayObjectQueue}, a producer that has claimed a slot but hasn't yet written it (say, because its thread has been
+ * descheduled) hides all elements enqueued after it from the consumer. Here, such a producer only holds back the elements in its own lane,
+ * and the consumer moves on to the other lanes, so it never waits for a producer. Elements enqueued by the same strand are dequeued in order,
+ * but there is no order among elements enqueued by different strands.</p>
+ * <p>
+ * The capacity is divided among the lanes, so the queue may reject an element when the producer's lane is full even though the others
+ * aren't.</p>
+ *
+ * @author pron
+ */
+public class SingleConsumerStripedArrayObjectQueue<E> extends SingleConsumerQueue<E> {
+    private static final int DEFAULT_LANES = 2 * Runtime.getRuntime().availableProcessors();
+    private final SingleConsumerArrayObjectQueue<E>[] lanes;
+    private final int laneMask;
+    private int next; // the lane the consumer looks at first
+
+    /**
+     * Creates a queue with twice as many lanes as there are processors.
+     *
+     * @param size the capacity of the queue (rounded up to a power of 2).
+     */
+    public SingleConsumerStripedArrayObjectQueue(int size) {
+        this(size, DEFAULT_LANES);
+    }
+
+    /**
+     * Creates a queue.
+     *
+     * @param size   the capacity of the queue (rounded up to a power of 2).
+     * @param nLanes the number of lanes (rounded up to a power of 2, and no more than the capacity).
+     */
+    @SuppressWarnings("unchecked")
+    public SingleConsumerStripedArrayObjectQueue(int size, int nLanes) {
+        if (size <= 0)
+            throw new IllegalArgumentException("size must be positive: " + size);
+        if (nLanes <= 0)
+            throw new IllegalArgumentException("nLanes must be positive: " + nLanes);
+        final int capacity = nextPowerOfTwo(size);
+        final int n = Math.min(nextPowerOfTwo(nLanes), capacity);
+        this.lanes = new SingleConsumerArrayObjectQueue[n];
+        for (int i = 0; i < n; i++)
+            lanes[i] = new SingleConsumerArrayObjectQueue<>(capacity / n);
+        this.laneMask = n - 1;
+    }
+
+    private static int nextPowerOfTwo(int v) {
+        return 1 << (32 - Integer.numberOfLeadingZeros(v - 1));
+    }
+
+    public int getLanes() {
+        return lanes.length;
+    }
+
+    @Override
+    public int capacity() {
+        return lanes[0].capacity() * lanes.length;
+    }
+
+    @Override
+    public boolean enq(E item) {
+        return currentLane().enq(item);
+    }
+
+    /**
+     * The lane the current strand enqueues into.
+     */
+    SingleConsumerArrayObjectQueue<E> currentLane() {
+        final int h = System.identityHashCode(Strand.currentStrand());
+        return lanes[(h ^ (h >>> 16)) & laneMask];
+    }
+
+    @Override
+    public E poll() {
+        for (int i = 0; i <= laneMask; i++) {
+            final int l = (next + i) & laneMask;
+            final E e = lanes[l].poll();
+            if (e != null) {
+                next = l + 1; // round-robin, so that no producer starves the others
+                return e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public E peek() {
+        for (int i = 0; i <= laneMask; i++) {
+            final int l = (next + i) & laneMask;
+            final E e = lanes[l].peek();
+            if (e != null) {
+                next = l; // so that poll returns the same element
+                return e;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int max) {
+        int n = 0;
+        for (int i = 0; i <= laneMask && n < max; i++)
+            n += lanes[(next + i) & laneMask].drainTo(c, max - n);
+        next++; // start from the following lane next time
+        return n;
+    }
+
+    @Override
+    public boolean hasNext() {
+        for (SingleConsumerArrayObjectQueue<E> lane : lanes) {
+            if (lane.hasNext())
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (SingleConsumerArrayObjectQueue<E> lane : lanes)
+            size += lane.size();
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (SingleConsumerArrayObjectQueue<E> lane : lanes) {
+            if (!lane.isEmpty())
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public List<E> snapshot() {
+        final List<E> list = new ArrayList<>();
+        for (int i = 0; i <= laneMask; i++)
+            list.addAll(lanes[(next + i) & laneMask].snapshot());
+        return list;
+    }
+
+    @Override
+    public QueueIterator<E> iterator() {
+        return new StripedQueueIterator();
+    }
+
+    private class StripedQueueIterator implements QueueIterator<E> {
+        private final int first = next;
+        private int i;
+        private QueueIterator<E> it = lanes[first & laneMask].iterator(); // hasNext may move it to a following lane
+        private QueueIterator<E> current; // the lane iterator that has returned the current element
+
+        @Override
+        public boolean hasNext() {
+            while (!it.hasNext()) {
+                if (i == laneMask)
+                    return false;
+                i++;
+                it = lanes[(first + i) & laneMask].iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public E next() {
+            hasNext();
+            current = it;
+            return it.next();
+        }
+
+        @Override
+        public E value() {
+            return current.value();
+        }
+
+        @Override
+        public void deq() {
+            current.deq();
+        }
+
+        @Override
+        public void remove() {
+            current.remove();
+        }
+
+        @Override
+        public void reset() {
+            i = 0;
+            it = lanes[first & laneMask].iterator();
+            current = null;
+        }
+    }
+}
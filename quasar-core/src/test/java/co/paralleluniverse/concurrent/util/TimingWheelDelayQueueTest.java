@@ -0,0 +1,198 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.concurrent.util;
+
+import co.paralleluniverse.common.test.TestUtil;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+/**
+ *
+ * @author pron
+ */
+public class TimingWheelDelayQueueTest {
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    TimingWheelDelayQueue<Timer> q;
+
+    @Before
+    public void setUp() {
+        q = new TimingWheelDelayQueue<>(1, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testTimedPoll() throws Exception {
+        q.offer(new Timer(2, 100));
+        q.offer(new Timer(1, 50));
+        q.offer(new Timer(3, 150));
+
+        Timer t;
+
+        t = q.poll(30, TimeUnit.MILLISECONDS);
+        assertThat(t, is(nullValue()));
+
+        t = q.poll(40, TimeUnit.MILLISECONDS);
+        assertThat(t.value, is(1));
+
+        t = q.poll(20, TimeUnit.MILLISECONDS);
+        assertThat(t, is(nullValue()));
+
+        t = q.poll(50, TimeUnit.MILLISECONDS);
+        assertThat(t.value, is(2));
+
+        t = q.poll(100, TimeUnit.MILLISECONDS);
+        assertThat(t.value, is(3));
+    }
+
+    @Test
+    public void testTakeNeverEarly() throws Exception {
+        // spans all slots of the first level and into the second
+        final int[] delays = {0, 2, 5, 62, 64, 66, 100, 130, 250};
+        for (int i = delays.length - 1; i >= 0; i--)
+            q.offer(new Timer(i, delays[i]));
+        assertThat(q.size(), is(delays.length));
+
+        for (int i = 0; i < delays.length; i++) {
+            final Timer t = q.take();
+            assertThat(t.value, is(i));
+            assertTrue("early: " + t.getDelay(TimeUnit.NANOSECONDS), t.getDelay(TimeUnit.NANOSECONDS) <= 0);
+        }
+        assertThat(q.size(), is(0));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final Timer t1 = new Timer(1, 50);
+        final Timer t2 = new Timer(2, 60);
+        final Timer t3 = new Timer(3, TimeUnit.DAYS.toMillis(365 * 1000));
+        q.offer(t1);
+        q.offer(t2);
+        q.offer(t3);
+
+        assertTrue(q.remove(t1));
+        assertFalse(q.remove(t1));
+        assertTrue(q.remove(t3));
+        assertThat(q.size(), is(1));
+
+        assertThat(q.take(), is(sameInstance(t2)));
+        assertFalse(q.remove(t2));
+        assertThat(q.poll(100, TimeUnit.MILLISECONDS), is(nullValue()));
+    }
+
+    @Test
+    public void testTimedPollWithSurpriseInsertions() throws Exception {
+        Timer t;
+
+        t = q.poll(30, TimeUnit.MILLISECONDS);
+        assertThat(t, is(nullValue()));
+
+        q.offer(new Timer(2, 200));
+
+        t = q.poll(30, TimeUnit.MILLISECONDS);
+        assertThat(t, is(nullValue()));
+
+        q.offer(new Timer(1, 20));
+
+        t = q.poll(50, TimeUnit.MILLISECONDS);
+        assertThat(t.value, is(1));
+
+        t = q.poll(200, TimeUnit.MILLISECONDS);
+        assertThat(t.value, is(2));
+    }
+
+    @Test
+    public void testSurpriseInsertionWakesTake() throws Exception {
+        q.offer(new Timer(2, 10000));
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    q.offer(new Timer(1, 10));
+                } catch (InterruptedException e) {
+                }
+            }
+        }).start();
+
+        final long start = System.nanoTime();
+        final Timer t = q.take();
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertThat(t.value, is(1));
+        assertTrue("elapsed: " + elapsedMillis, elapsedMillis < 1000);
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        final Timer t1 = new Timer(1, 0);
+        final Timer t2 = new Timer(2, 100);
+        final Timer t3 = new Timer(3, TimeUnit.HOURS.toMillis(1));
+        final Timer t4 = new Timer(4, TimeUnit.DAYS.toMillis(365 * 1000));
+        q.addAll(Arrays.asList(t1, t2, t3, t4));
+        Thread.sleep(5);
+        q.peek(); // t1 is moved to the expired list
+
+        assertThat(new HashSet<>(Arrays.asList(q.toArray())), equalTo(new HashSet<Object>(Arrays.asList(t1, t2, t3, t4))));
+        assertTrue(q.contains(t3));
+
+        assertTrue(q.removeAll(Arrays.asList(t1, t3)));
+        assertFalse(q.contains(t1));
+        assertFalse(q.contains(t3));
+        assertThat(q.size(), is(2));
+
+        q.clear();
+        assertThat(q.size(), is(0));
+        assertFalse(q.iterator().hasNext());
+        assertThat(q.poll(150, TimeUnit.MILLISECONDS), is(nullValue()));
+    }
+
+    @Test
+    public void testConsumerSleepsUntilDistantTimer() throws Exception {
+        q.offer(new Timer(1, TimeUnit.HOURS.toMillis(1)));
+        final long delay = q.getDelayToNextExpiration(TimeUnit.MILLISECONDS);
+        assertTrue("delay: " + delay, delay > TimeUnit.MINUTES.toMillis(50));
+        assertTrue("delay: " + delay, delay <= TimeUnit.HOURS.toMillis(1));
+
+        q.offer(new Timer(2, 100));
+        assertTrue(q.getDelayToNextExpiration(TimeUnit.MILLISECONDS) <= 100);
+    }
+
+    static class Timer extends TimingWheelDelayQueue.Entry {
+        final int value;
+        final long time;
+
+        Timer(int value, long millis) {
+            this.value = value;
+            this.time = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(time, ((Timer) o).time);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.strands.SuspendableCallable;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author pron
+ */
+public class AdaptiveStackSizesTest {
+    private final AdaptiveStackSizes sizes = new AdaptiveStackSizes();
+
+    @Test
+    public void testNothingLearned() {
+        assertThat(sizes.getStackSize(Fiber.class, null), is(-1));
+    }
+
+    @Test
+    public void testShallowFibersGetMinimumSize() {
+        sizes.record(Fiber.class, null, 1);
+        assertThat(sizes.getStackSize(Fiber.class, null), is(AdaptiveStackSizes.MIN_STACK_SIZE));
+        sizes.record(Fiber.class, null, 0);
+        assertThat(sizes.getSamples(), is(1L));
+    }
+
+    @Test
+    public void testSizeGrowsImmediately() {
+        sizes.record(Fiber.class, null, 20);
+        sizes.record(Fiber.class, null, 100);
+        assertThat(sizes.getStackSize(Fiber.class, null), is(100));
+        sizes.record(Fiber.class, null, 50);
+        assertThat(sizes.getStackSize(Fiber.class, null), is(100));
+    }
+
+    @Test
+    public void testSizeShrinksToWindowMaximum() {
+        sizes.record(Fiber.class, null, 100);
+        for (int i = 1; i < 256; i++)
+            sizes.record(Fiber.class, null, 20);
+        assertThat(sizes.getStackSize(Fiber.class, null), is(100)); // the deep fiber is in the first window
+
+        for (int i = 0; i < 255; i++)
+            sizes.record(Fiber.class, null, i % 2 == 0 ? 20 : 40);
+        assertThat(sizes.getStackSize(Fiber.class, null), is(100));
+        sizes.record(Fiber.class, null, 20);
+        assertThat(sizes.getStackSize(Fiber.class, null), is(40));
+    }
+
+    @Test
+    public void testSizesArePerTargetClass() {
+        final Target a = new Target();
+        sizes.record(Fiber.class, a, 200);
+        sizes.record(Fiber.class, null, 30);
+        assertThat(sizes.getStackSize(Fiber.class, a), is(200));
+        assertThat(sizes.getStackSize(Fiber.class, null), is(30));
+        assertThat(sizes.getLearnedStackSizes().get(Target.class.getName()), is(200));
+
+        sizes.reset();
+        assertThat(sizes.getStackSize(Fiber.class, a), is(-1));
+    }
+
+    private static class Target implements SuspendableCallable<Void> {
+        @Override
+        public Void run() throws SuspendExecution, InterruptedException {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.common.test.TestUtil;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+/**
+ *
+ * @author pron
+ */
+public class FiberCompensationTest {
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    private final FiberForkJoinScheduler scheduler = new FiberForkJoinScheduler("test", 2, null, false);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testSpareWorkersRunFibersWhileWorkersAreBlocked() throws Exception {
+        scheduler.setMaxSpareWorkers(4);
+        final Fiber<?>[] blockers = new Fiber<?>[2];
+        for (int i = 0; i < blockers.length; i++)
+            blockers[i] = block().start();
+        Thread.sleep(20); // both workers are now blocked
+
+        new Fiber<Void>(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+            }
+        }).start().join(5, TimeUnit.SECONDS);
+        assertThat(scheduler.getNumBlockedCarriers(), is(2));
+        assertThat(scheduler.getNumSpareWorkers(), is(2));
+
+        release.countDown();
+        for (Fiber<?> f : blockers)
+            f.join(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && scheduler.getNumSpareWorkers() > 0; i++)
+            Thread.sleep(50);
+        assertThat(scheduler.getNumSpareWorkers(), is(0));
+    }
+
+    @Test
+    public void testSpareWorkersAreCapped() throws Exception {
+        scheduler.setMaxSpareWorkers(1);
+        block().start();
+        block().start();
+        block().start(); // taken by the spare
+        Thread.sleep(500);
+
+        assertThat(scheduler.getNumSpareWorkers(), is(1));
+    }
+
+    @Test
+    public void testBlockedSpareWorkersAreCompensated() throws Exception {
+        scheduler.setMaxSpareWorkers(4);
+        final Fiber<?>[] blockers = new Fiber<?>[3];
+        for (int i = 0; i < blockers.length; i++)
+            blockers[i] = block().start(); // the third one runs on a spare, and blocks it
+        for (int i = 0; i < 100 && scheduler.getNumBlockedCarriers() < 3; i++)
+            Thread.sleep(50);
+
+        assertThat(scheduler.getNumBlockedCarriers(), is(3));
+        assertThat(scheduler.getNumSpareWorkers(), is(3));
+        final Collection<Fiber> running = scheduler.getRunningFibers().values();
+        for (Fiber<?> f : blockers)
+            assertTrue(running.contains(f));
+    }
+
+    private Fiber<Void> block() {
+        return new Fiber<Void>(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                release.await(); // blocks the thread
+            }
+        });
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.common.test.TestUtil;
+import co.paralleluniverse.fibers.instrument.JavaAgent;
+import co.paralleluniverse.strands.SuspendableCallable;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+/**
+ * Requires the agent's preemption mode, and so runs in the {@code testPreemption} task.
+ *
+ * @author pron
+ */
+public class FiberPreemptionTest {
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    private FiberScheduler scheduler;
+    private volatile boolean stop;
+
+    @BeforeClass
+    public static void checkPreemption() {
+        assumeTrue(JavaAgent.isPreemption());
+    }
+
+    @Before
+    public void setUp() {
+        scheduler = new FiberForkJoinScheduler("test", 1, null, false);
+        scheduler.setTimeSlice(1, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() {
+        stop = true;
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testCpuBoundFiberYields() throws Exception {
+        final Fiber<Long> hog = new Fiber<>(scheduler, new SuspendableCallable<Long>() {
+            @Override
+            public Long run() throws SuspendExecution, InterruptedException {
+                long i = 0;
+                while (!stop)
+                    i++;
+                return i;
+            }
+        }).start();
+        Thread.sleep(50); // the hog now has the only worker
+
+        new Fiber<Void>(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                stop = true;
+            }
+        }).start().join(5, TimeUnit.SECONDS);
+        assertThat(hog.get(5, TimeUnit.SECONDS) > 0, is(true));
+    }
+
+    @Test
+    public void testPreemptedFiberKeepsItsState() throws Exception {
+        final int n = 100_000_000;
+        final long[] times = new long[2];
+        final Fiber<Double> f1 = new Fiber<>(scheduler, new SuspendableCallable<Double>() {
+            @Override
+            public Double run() throws SuspendExecution, InterruptedException {
+                final double res = crunch(n);
+                times[0] = System.nanoTime();
+                return res;
+            }
+        });
+        final Fiber<Double> f2 = new Fiber<>(scheduler, new SuspendableCallable<Double>() {
+            @Override
+            public Double run() throws SuspendExecution, InterruptedException {
+                times[1] = System.nanoTime();
+                return crunch(n / 2);
+            }
+        });
+        f1.start();
+        f2.start();
+
+        assertThat(f1.get(), is(crunch(n)));
+        assertThat(f2.get(), is(crunch(n / 2)));
+        assertThat(times[1] < times[0], is(true)); // f2 has started before f1 was done
+    }
+
+    @Test
+    public void testNoPreemptionWithoutTimeSlice() throws Exception {
+        scheduler.setTimeSlice(0, TimeUnit.MILLISECONDS);
+        final long[] times = new long[2];
+        final Fiber<Double> f1 = new Fiber<>(scheduler, new SuspendableCallable<Double>() {
+            @Override
+            public Double run() throws SuspendExecution, InterruptedException {
+                final double res = crunch(20_000_000);
+                times[0] = System.nanoTime();
+                return res;
+            }
+        }).start();
+        final Fiber<Void> f2 = new Fiber<Void>(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                times[1] = System.nanoTime();
+            }
+        }).start();
+
+        f1.join();
+        f2.join();
+        assertThat(times[1] > times[0], is(true));
+    }
+
+    private static double crunch(int n) throws SuspendExecution {
+        long a = 1;
+        double b = 0.5;
+        String s = "";
+        int j = 0;
+        for (int i = 0; i < n; i++) {
+            a = a * 31 + i;
+            b += (a & 0xff) / 256.0;
+            if ((i & 0xfffff) == 0)
+                s = Long.toString(a);
+            j ^= i;
+        }
+        return a + b + s.length() + j;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.common.test.TestUtil;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.SuspendableCallable;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.hamcrest.CoreMatchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+/**
+ *
+ * @author pron
+ */
+public class FiberPrioritySchedulerTest {
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    private final FiberPriorityScheduler scheduler = new FiberPriorityScheduler("test", 1);
+    private volatile boolean stop;
+
+    @After
+    public void tearDown() {
+        stop = true;
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testBands() throws Exception {
+        assertThat(scheduler.getBand(Strand.MAX_PRIORITY), is(0));
+        assertThat(scheduler.getBand(Strand.NORM_PRIORITY), is(1));
+        assertThat(scheduler.getBand(Strand.MIN_PRIORITY), is(2));
+    }
+
+    @Test
+    public void testHighPriorityRunsAhead() throws Exception {
+        final AtomicInteger lowRuns = new AtomicInteger();
+        for (int i = 0; i < 100; i++)
+            spin(Strand.MIN_PRIORITY, lowRuns);
+        Thread.sleep(50); // the low-priority fibers now fill the only worker's queue
+
+        final int[] before = new int[1];
+        final Fiber<Integer> fiber = new Fiber<>(scheduler, new SuspendableCallable<Integer>() {
+            @Override
+            public Integer run() throws SuspendExecution, InterruptedException {
+                return lowRuns.get() - before[0];
+            }
+        });
+        fiber.setPriority(Strand.MAX_PRIORITY);
+        before[0] = lowRuns.get();
+        // had the fiber waited its turn in FIFO order, all 100 low-priority fibers would have run before it
+        assertThat(fiber.start().get(5, TimeUnit.SECONDS) < 50, is(true));
+    }
+
+    @Test
+    public void testLowPriorityIsNotStarved() throws Exception {
+        final AtomicInteger highRuns = new AtomicInteger();
+        for (int i = 0; i < 100; i++)
+            spin(Strand.MAX_PRIORITY, highRuns);
+        Thread.sleep(50);
+
+        new Fiber<Void>(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                for (int i = 0; i < 10; i++)
+                    Fiber.yield();
+            }
+        }).setPriority(Strand.MIN_PRIORITY).start().join(5, TimeUnit.SECONDS);
+        assertThat(highRuns.get() > 0, is(true));
+    }
+
+    private void spin(int priority, final AtomicInteger runs) {
+        new Fiber<Void>(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                while (!stop) {
+                    runs.incrementAndGet();
+                    Fiber.yield();
+                }
+            }
+        }).setPriority(priority).start();
+    }
+}
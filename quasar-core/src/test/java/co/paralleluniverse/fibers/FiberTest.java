@@ -83,6 +83,7 @@ public class FiberTest implements Serializable {
     public static Collection<Object[]> data() {
         return Arrays.asList(new Object[][]{
             {new FiberForkJoinScheduler("test", 4, null, false)},
+            {new FiberPriorityScheduler("test", 4)},
             {new FiberExecutorScheduler("test", Executors.newFixedThreadPool(1, new ThreadFactoryBuilder().setNameFormat("fiber-scheduler-%d").setDaemon(true).build()))},});
     }
 
@@ -288,7 +289,38 @@ public class FiberTest implements Serializable {
         assertThat(tl1.get(), is("foo"));
         assertThat(tl2.get(), is("bar"));
     }
-    
+
+    @Test
+    public void testThreadLocalsFirstUsedAfterPark() throws Exception {
+        final ThreadLocal<String> tl = new ThreadLocal<>();
+
+        Fiber fiber1 = new Fiber(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                Fiber.sleep(10);
+                assertThat(tl.get(), is(nullValue()));
+                tl.set("koko");
+                Fiber.sleep(10);
+                assertThat(tl.get(), is("koko"));
+            }
+        });
+        fiber1.start();
+        fiber1.join();
+
+        Fiber fiber2 = new Fiber(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                assertThat(tl.get(), is(nullValue()));
+                Fiber.sleep(10);
+                assertThat(tl.get(), is(nullValue()));
+            }
+        });
+        fiber2.start();
+        fiber2.join();
+
+        assertThat(tl.get(), is(nullValue()));
+    }
+
     @Test
     public void testNoLocals() throws Exception { // shitty test
         final ThreadLocal<String> tl1 = new ThreadLocal<>();
@@ -0,0 +1,127 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import co.paralleluniverse.common.test.TestUtil;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+/**
+ *
+ * @author pron
+ */
+public class FiberTimerShardsTest {
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    private FiberScheduler scheduler;
+    private FiberTimerShards shards;
+    private volatile Thread expirer;
+
+    @Before
+    public void setUp() {
+        scheduler = new FiberForkJoinScheduler("test", 2, null, false);
+        shards = new FiberTimerShards(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "fallback");
+                t.setDaemon(true);
+                return t;
+            }
+        }, new NoopFibersMonitor() {
+            @Override
+            public void timedParkLatency(long ns) {
+                expirer = Thread.currentThread();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        shards.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testExpiredByOwner() throws Exception {
+        final Fiber<Void> fiber = parkedFiber();
+        final FiberTimerShards.Shard shard = shards.newShard();
+        final long start = System.nanoTime();
+        shards.schedule(shard, fiber, null, 20, TimeUnit.MILLISECONDS);
+
+        while (fiber.getState() == Strand.State.WAITING && expirer == null) {
+            shards.expire(shard);
+            Thread.yield();
+        }
+        fiber.join(5, TimeUnit.SECONDS);
+        assertThat(expirer, is(Thread.currentThread()));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testExpiredByFallbackWhenOwnerIsIdle() throws Exception {
+        final Fiber<Void> fiber = parkedFiber();
+        final FiberTimerShards.Shard shard = shards.newShard();
+        final long start = System.nanoTime();
+        shards.schedule(shard, fiber, null, 20, TimeUnit.MILLISECONDS);
+
+        fiber.join(5, TimeUnit.SECONDS); // the owner never polls its shard
+        assertThat(expirer.getName(), is("fallback"));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final Fiber<Void> fiber = parkedFiber();
+        final FiberTimerShards.Shard shard = shards.newShard();
+        final Future<Void> timeout = shards.schedule(shard, fiber, null, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel(false));
+        assertFalse(timeout.cancel(false));
+        assertThat(shards.getQueueLength(), is(0));
+
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        while (System.nanoTime() < deadline) {
+            shards.expire(shard);
+            Thread.sleep(1);
+        }
+        assertThat(fiber.getState(), is(Strand.State.WAITING));
+        assertThat(expirer, is(nullValue()));
+
+        fiber.unpark();
+        fiber.join(5, TimeUnit.SECONDS);
+    }
+
+    private Fiber<Void> parkedFiber() throws Exception {
+        final Fiber<Void> fiber = new Fiber<Void>(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                Fiber.park();
+            }
+        }).start();
+        while (fiber.getState() != Strand.State.WAITING)
+            Thread.sleep(1);
+        return fiber;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author pron
+ */
+public class StackPoolTest {
+    @Test
+    public void testRoundUp() {
+        assertThat(StackPool.roundUp(1), is(16));
+        assertThat(StackPool.roundUp(16), is(16));
+        assertThat(StackPool.roundUp(17), is(32));
+        assertThat(StackPool.roundUp(48), is(64));
+        assertThat(StackPool.roundUp(4096), is(4096));
+        assertThat(StackPool.roundUp(5000), is(5000));
+    }
+
+    @Test
+    public void testReuseClearsArrays() {
+        final StackPool pool = new StackPool();
+        final long[] ls = new long[64];
+        final Object[] os = new Object[64];
+        ls[3] = 17L;
+        os[5] = "foo";
+
+        assertTrue(pool.offer(ls, os));
+
+        final long[] ls2 = pool.pollLongs(64);
+        final Object[] os2 = pool.pollObjects(64);
+        assertThat(ls2, is(sameInstance(ls)));
+        assertThat(os2, is(sameInstance(os)));
+        assertThat(ls2[3], is(0L));
+        assertThat(os2[5], is(nullValue()));
+
+        assertThat(pool.pollLongs(64), is(nullValue()));
+        assertThat(pool.getHits(), is(1L));
+        assertThat(pool.getMisses(), is(1L));
+    }
+
+    @Test
+    public void testRejectUnpoolableSizes() {
+        final StackPool pool = new StackPool();
+        assertFalse(pool.offer(new long[48], new Object[48]));
+        assertFalse(pool.offer(new long[8192], new Object[8192]));
+        assertFalse(pool.offer(new long[64], new Object[32]));
+        assertThat(pool.pollLongs(48), is(nullValue()));
+    }
+
+    @Test
+    public void testReleaseReturnsArrays() {
+        final StackPool pool = new StackPool();
+        pool.offer(new long[64], new Object[64]);
+
+        final Stack s = new Stack(null, 32, pool);
+        assertThat(pool.getHits(), is(1L));
+        s.release(pool);
+        assertThat(pool.pollLongs(64), is(notNullValue()));
+        pool.pollObjects(64);
+    }
+}
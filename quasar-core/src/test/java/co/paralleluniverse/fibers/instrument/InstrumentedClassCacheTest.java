@@ -0,0 +1,114 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers.instrument;
+
+import co.paralleluniverse.fibers.Suspendable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author pron
+ */
+public class InstrumentedClassCacheTest {
+    private File dir;
+    private InstrumentedClassCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("quasar-class-cache").toFile();
+        cache = new InstrumentedClassCache(dir);
+    }
+
+    @After
+    public void tearDown() {
+        delete(dir);
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        final byte[] first = instrument(new QuasarInstrumentor(), Fixture.class);
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(0L));
+
+        final QuasarInstrumentor instrumentor = new QuasarInstrumentor(); // as in a new JVM
+        final byte[] second = instrument(instrumentor, Fixture.class);
+        assertThat(cache.getHits(), is(1L));
+        assertArrayEquals(first, second);
+
+        // the database knows what instrumentation would have told it
+        final MethodDatabase.ClassEntry entry = instrumentor.getMethodDatabase(getClass().getClassLoader())
+                .getClassEntry(Fixture.class.getName().replace('.', '/'));
+        assertThat(entry, is(notNullValue()));
+        assertThat(entry.check("foo", "()V"), is(MethodDatabase.SuspendableType.SUSPENDABLE));
+    }
+
+    @Test
+    public void testConfigurationChangeMisses() throws Exception {
+        instrument(new QuasarInstrumentor(), Fixture.class);
+        instrument(new QuasarInstrumentor().setAllowMonitors(true), Fixture.class);
+        assertThat(cache.getMisses(), is(2L));
+        assertThat(cache.getHits(), is(0L));
+    }
+
+    @Test
+    public void testChangedDependencyMisses() throws Exception {
+        instrument(new QuasarInstrumentor(), Fixture.class);
+
+        // a database in which Fixture's callee is known to be non-suspendable
+        final QuasarInstrumentor instrumentor = new QuasarInstrumentor();
+        final MethodDatabase db = instrumentor.getMethodDatabase(getClass().getClassLoader());
+        db.getOrLoadClassEntry(Callee.class.getName().replace('.', '/')).set("bar", "()V", MethodDatabase.SuspendableType.NON_SUSPENDABLE);
+        instrument(instrumentor, Fixture.class);
+        assertThat(cache.getHits(), is(0L));
+        assertThat(cache.getStale(), is(1L));
+    }
+
+    private byte[] instrument(QuasarInstrumentor instrumentor, Class<?> clazz) throws IOException {
+        instrumentor.setClassCache(cache);
+        final String name = clazz.getName();
+        try (InputStream is = clazz.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            return instrumentor.instrumentClass(clazz.getClassLoader(), name, is);
+        }
+    }
+
+    private static void delete(File f) {
+        final File[] fs = f.listFiles();
+        if (fs != null) {
+            for (File c : fs)
+                delete(c);
+        }
+        f.delete();
+    }
+
+    static class Fixture {
+        @Suspendable
+        void foo() {
+            new Callee().bar();
+        }
+    }
+
+    static class Callee {
+        @Suspendable
+        void bar() {
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers.instrument;
+
+import co.paralleluniverse.fibers.instrument.MethodDatabase.ClassEntry;
+import co.paralleluniverse.fibers.instrument.MethodDatabase.SuspendableType;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ *
+ * @author pron
+ */
+public class MethodDatabaseCacheTest {
+    private static final String NAME = MethodDatabaseCacheTest.class.getName().replace('.', '/');
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("quasar-db-cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : dir.listFiles())
+            f.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testClassEntryRoundTrip() throws Exception {
+        final ClassEntry entry = new ClassEntry("java/lang/Object");
+        entry.setIsInterface(true);
+        entry.setSourceName("Foo.java");
+        entry.setInterfaces(new String[]{"java/lang/Runnable", "java/io/Serializable"});
+        entry.set("foo", "()V", SuspendableType.SUSPENDABLE);
+        entry.set("bar", "(I)J", SuspendableType.NON_SUSPENDABLE);
+        entry.set("baz", "()V", SuspendableType.SUSPENDABLE_SUPER);
+        entry.set("qux", "()V", null);
+
+        final ClassEntry copy = roundTrip(entry);
+        assertThat(copy, equalTo(entry));
+        assertThat(copy.getSuperName(), is("java/lang/Object"));
+        assertThat(copy.isInterface(), is(true));
+        assertThat(copy.getSourceName(), is("Foo.java"));
+        assertThat(copy.getSourceDebugInfo(), is(nullValue()));
+        assertThat(Arrays.asList(copy.getInterfaces()), equalTo(Arrays.asList(entry.getInterfaces())));
+        assertThat(copy.check("foo", "()V"), is(SuspendableType.SUSPENDABLE));
+        assertThat(copy.check("bar", "(I)J"), is(SuspendableType.NON_SUSPENDABLE));
+        assertThat(copy.check("baz", "()V"), is(SuspendableType.SUSPENDABLE_SUPER));
+        assertThat(copy.check("qux", "()V"), is(nullValue()));
+    }
+
+    @Test
+    public void testClassEntryRoundTripWithoutSuperOrInterfaces() throws Exception {
+        final ClassEntry entry = new ClassEntry(null);
+        entry.setSourceDebugInfo("SMAP");
+
+        final ClassEntry copy = roundTrip(entry);
+        assertThat(copy.getSuperName(), is(nullValue()));
+        assertThat(copy.getInterfaces(), is(nullValue()));
+        assertThat(copy.getSourceDebugInfo(), is("SMAP"));
+        assertThat(copy.isInterface(), is(false));
+    }
+
+    @Test
+    public void testFlushAndReload() throws Exception {
+        final ClassLoader cl = getClass().getClassLoader();
+        final String key = MethodDatabaseCache.configKey(cl);
+        final ClassEntry entry = new ClassEntry("java/lang/Object");
+        entry.set("testFlushAndReload", "()V", SuspendableType.NON_SUSPENDABLE);
+
+        final MethodDatabaseCache cache = new MethodDatabaseCache(dir);
+        cache.putClassEntry(key, cl, NAME, entry, Collections.<String, Long>emptyMap());
+        cache.flush();
+
+        final MethodDatabaseCache cache2 = new MethodDatabaseCache(dir); // as in a new JVM
+        final ClassEntry copy = cache2.getClassEntry(db(cl, cache2), key, cl, NAME);
+        assertThat(copy, equalTo(entry)); // the test class is in a class directory, whose classes are cached
+        assertThat(cache2.getSuperClass(key, cl, NAME), is("java/lang/Object"));
+        assertThat(cache2.getHits(), is(2L));
+
+        assertThat(cache2.getClassEntry(db(cl, cache2), key + "x", cl, NAME), is(nullValue())); // another configuration
+    }
+
+    @Test
+    public void testClassEntryIsStaleWhenDependencyChanges() throws Exception {
+        final ClassLoader cl = getClass().getClassLoader();
+        final String key = MethodDatabaseCache.configKey(cl);
+        final ClassEntry entry = new ClassEntry("java/lang/Object");
+        final MethodDatabaseCache cache = new MethodDatabaseCache(dir);
+        final MethodDatabase db = db(cl, cache);
+
+        final InstrumentedClassCache.Dependencies deps = new InstrumentedClassCache.Dependencies();
+        final InstrumentedClassCache.Dependencies outer = InstrumentedClassCache.beginRecording(deps);
+        try {
+            db.getClassEntry("foo/Super"); // as the classifier would look up a super class in another jar
+        } finally {
+            InstrumentedClassCache.endRecording(outer, deps);
+        }
+        cache.putClassEntry(key, cl, NAME, entry, deps.digests);
+        assertThat(cache.getClassEntry(db, key, cl, NAME), equalTo(entry));
+
+        db.getOrCreateClassEntry("foo/Super", "java/lang/Object");
+        assertThat(cache.getClassEntry(db, key, cl, NAME), is(nullValue()));
+        assertThat(cache.getStale(), is(1L));
+    }
+
+    @Test
+    public void testConfigKeyIsStable() throws Exception {
+        final ClassLoader cl = getClass().getClassLoader();
+        assertThat(MethodDatabaseCache.configKey(cl), equalTo(MethodDatabaseCache.configKey(cl)));
+    }
+
+    private static MethodDatabase db(ClassLoader cl, MethodDatabaseCache cache) {
+        return new MethodDatabase(new QuasarInstrumentor(), cl, new DefaultSuspendableClassifier(cl), cache);
+    }
+
+    private static ClassEntry roundTrip(ClassEntry entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        entry.write(out);
+        out.flush();
+        return ClassEntry.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
@@ -17,6 +17,7 @@ import co.paralleluniverse.fibers.Fiber;
 import co.paralleluniverse.fibers.SuspendExecution;
 import co.paralleluniverse.fibers.Suspendable;
 import java.net.URL;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
@@ -32,11 +33,12 @@ public class SuspendablesScannerTest {
     private static SuspendablesScanner scanner;
     private static final Set<String> suspendables = new HashSet<>();
     private static final Set<String> suspendableSupers = new HashSet<>();
+    private static Path project;
+    private static URL core;
 
     @BeforeClass
     public static void buildGraph() throws Exception {
         // find test classes directory
-        final Path project;
         {
             final String resource = SuspendablesScannerTest.class.getName().replace('.', '/') + ".class";
             final URL url = SuspendablesScannerTest.class.getClassLoader().getResource(resource);
@@ -48,14 +50,13 @@ public class SuspendablesScannerTest {
         System.out.println("Test classes: " + project);
         
         // find quasar core directory
-        final Path core;
         {
             final String resource = Fiber.class.getName().replace('.', '/') + ".class";
             final URL url = Fiber.class.getClassLoader().getResource(resource);
             final Path p1 = Paths.get(resource);
             final Path p2 = Paths.get(url.toURI()).toAbsolutePath();
             final Path p = p2.getRoot().resolve(p2.subpath(0, p2.getNameCount() - p1.getNameCount()));
-            core = p;
+            core = p.toUri().toURL();
         }
         System.out.println("Core classes: " + core);
 
@@ -64,7 +65,7 @@ public class SuspendablesScannerTest {
 //                Paths.get(AutoSuspendablesScannerTest.class.getClassLoader()
 //                        .getResource(AutoSuspendablesScannerTest.class.getName().replace('.', '/') + ".class").toURI()));
         
-        scanner.setURLs(Collections.singletonList(core.toUri().toURL()));
+        scanner.setURLs(Collections.singletonList(core));
         scanner.setAuto(true);
         scanner.run();
         scanner.putSuspendablesAndSupers(suspendables, suspendableSupers);
@@ -122,6 +123,38 @@ public class SuspendablesScannerTest {
         assertTrue(!suspendableSupers.contains(A2.class.getName() + ".baz(I)Ljava/lang/Object;"));
     }
 
+    @Test
+    public void incrementalScanTest() throws Exception {
+        final Path cache = Files.createTempFile("suspendables-scanner", ".cache");
+        Files.delete(cache);
+        try {
+            int classes = 0;
+            for (int i = 0; i < 2; i++) { // the first scan fills the cache, and the second uses it
+                final SuspendablesScanner s = new SuspendablesScanner(project);
+                s.setURLs(Collections.singletonList(core));
+                s.setAuto(true);
+                s.setCacheFile(cache.toString());
+                s.run();
+
+                final Set<String> sus = new HashSet<>();
+                final Set<String> supers = new HashSet<>();
+                s.putSuspendablesAndSupers(sus, supers);
+                assertEquals(suspendables, sus);
+                assertEquals(suspendableSupers, supers);
+
+                if (i == 0) {
+                    assertTrue(s.getClassesParsed() > 0);
+                    classes = s.getClassesParsed() + s.getClassesReused();
+                } else {
+                    assertEquals(0, s.getClassesParsed());
+                    assertEquals(classes, s.getClassesReused());
+                }
+            }
+        } finally {
+            Files.deleteIfExists(cache);
+        }
+    }
+
     static interface IA {
         // super suspendable
         void foo(int t);
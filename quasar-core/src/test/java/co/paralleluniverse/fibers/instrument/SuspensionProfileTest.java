@@ -0,0 +1,207 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.fibers.instrument;
+
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.fibers.Suspendable;
+import co.paralleluniverse.strands.SuspendableCallable;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ *
+ * @author pron
+ */
+public class SuspensionProfileTest {
+    private static final String FIXTURE = DeferredFixture.class.getName();
+
+    @Test
+    public void testParse() throws Exception {
+        final SuspensionProfile profile = SuspensionProfile.load(new ByteArrayInputStream(
+                ("# comment\n"
+                 + "a/b/C.foo:12\n"
+                 + "\n"
+                 + "  a/b/C.bar:7  \n").getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(profile.size(), is(2));
+        assertThat(profile.hasSuspended("a/b/C", "foo", 12), is(true));
+        assertThat(profile.hasSuspended("a/b/C", "bar", 7), is(true));
+        assertThat(profile.hasSuspended("a/b/C", "foo", 13), is(false));
+        assertThat(profile.hasSuspended("a/b/D", "foo", 12), is(false));
+    }
+
+    @Test
+    public void testDeferredStoreWhenCallSuspends() throws Exception {
+        final SuspensionProfile empty = new SuspensionProfile(Collections.<String>emptySet());
+        final byte[] deferred = instrument(new QuasarInstrumentor().setSuspensionProfile(empty));
+        final byte[] regular = instrument(new QuasarInstrumentor().setSuspensionProfile(null));
+        assertThat(contains(deferred, "pushMethodDeferred"), is(true));
+        assertThat(contains(regular, "pushMethodDeferred"), is(false));
+
+        // the call was never seen to suspend, but it does
+        assertThat(run(deferred, new Yielding()), is(3 * sum(100)));
+        assertThat(run(deferred, new Plain()), is(3 * sum(100)));
+        assertThat(run(regular, new Yielding()), is(3 * sum(100)));
+    }
+
+    @Test
+    public void testNoDeferredStoreWhenProfiledSuspending() throws Exception {
+        final int line = callSiteLine();
+        final SuspensionProfile profile = new SuspensionProfile(Collections.singleton(FIXTURE.replace('.', '/') + ".loop:" + line));
+        assertThat(contains(instrument(new QuasarInstrumentor().setSuspensionProfile(profile)), "pushMethodDeferred"), is(false));
+    }
+
+    private static byte[] instrument(QuasarInstrumentor instrumentor) throws IOException {
+        final ClassLoader cl = SuspensionProfileTest.class.getClassLoader();
+        // calls through Op are suspendable only because its method is a suspendable-super
+        instrumentor.getMethodDatabase(cl).getOrLoadClassEntry(Op.class.getName().replace('.', '/'))
+                .set("apply", "(J)J", MethodDatabase.SuspendableType.SUSPENDABLE_SUPER);
+        try (InputStream is = cl.getResourceAsStream(FIXTURE.replace('.', '/') + ".class")) {
+            return instrumentor.instrumentClass(cl, FIXTURE, is, true);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long run(byte[] fixture, Op op) throws Exception {
+        final Class<?> clazz = new FixtureLoader(fixture).loadClass(FIXTURE);
+        final SuspendableCallable<Long> callable = (SuspendableCallable<Long>) clazz.getConstructor(Op.class).newInstance(op);
+        return new Fiber<>(callable).start().get();
+    }
+
+    // the source line of the call to Op.apply in DeferredFixture.loop
+    private static int callSiteLine() throws IOException {
+        final int[] line = new int[]{-1};
+        try (InputStream is = SuspensionProfileTest.class.getClassLoader().getResourceAsStream(FIXTURE.replace('.', '/') + ".class")) {
+            new ClassReader(is).accept(new ClassVisitor(QuasarInstrumentor.ASMAPI) {
+                @Override
+                public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+                    if (!name.equals("loop"))
+                        return null;
+                    return new MethodVisitor(QuasarInstrumentor.ASMAPI) {
+                        private int current;
+
+                        @Override
+                        public void visitLineNumber(int l, Label start) {
+                            current = l;
+                        }
+
+                        @Override
+                        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+                            if (name.equals("apply"))
+                                line[0] = current;
+                        }
+                    };
+                }
+            }, 0);
+        }
+        assertThat(line[0], is(not(-1)));
+        return line[0];
+    }
+
+    private static long sum(long n) {
+        return n * (n - 1) / 2;
+    }
+
+    private static boolean contains(byte[] bytes, String s) {
+        return new String(bytes, StandardCharsets.ISO_8859_1).contains(s);
+    }
+
+    private static class FixtureLoader extends ClassLoader {
+        private final byte[] bytes;
+
+        FixtureLoader(byte[] bytes) {
+            super(SuspensionProfileTest.class.getClassLoader());
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.equals(FIXTURE))
+                return super.loadClass(name, resolve);
+            Class<?> c = findLoadedClass(name);
+            if (c == null)
+                c = defineClass(name, bytes, 0, bytes.length);
+            return c;
+        }
+    }
+
+    public interface Op {
+        long apply(long x);
+    }
+
+    static class Plain implements Op {
+        @Override
+        public long apply(long x) {
+            return x;
+        }
+    }
+
+    static class Yielding implements Op {
+        @Override
+        @Suspendable
+        public long apply(long x) {
+            try {
+                if (x % 10 == 3)
+                    Fiber.yield();
+            } catch (SuspendExecution e) {
+                throw new AssertionError(e);
+            }
+            return x;
+        }
+    }
+
+    public static class DeferredFixture implements SuspendableCallable<Long> {
+        private final Op op;
+
+        public DeferredFixture(Op op) {
+            this.op = op;
+        }
+
+        @Override
+        public Long run() throws SuspendExecution, InterruptedException {
+            long s = 0;
+            for (int k = 0; k < 3; k++) {
+                long r = loop(op, 100, "tag");
+                s += r;
+            }
+            return s;
+        }
+
+        @Suspendable
+        static long loop(Op op, long n, String tag) {
+            long sum = 0;
+            double d = 0.5;
+            Object o = tag;
+            for (long i = 0; i < n; i++) {
+                long r = op.apply(i);
+                sum += r;
+                d += 1;
+            }
+            if (d != n + 0.5 || o != tag)
+                throw new AssertionError("locals not restored");
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands;
+
+import co.paralleluniverse.common.test.TestUtil;
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.SuspendExecution;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ *
+ * @author pron
+ */
+public class FifoConditionSynchronizerTest {
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    @Test
+    public void testSignalWakesOneWaiter() throws Exception {
+        final FifoConditionSynchronizer cond = new FifoConditionSynchronizer(null);
+        final AtomicInteger permits = new AtomicInteger();
+        final AtomicInteger done = new AtomicInteger();
+
+        final Strand[] waiters = new Strand[4];
+        for (int i = 0; i < waiters.length; i++) {
+            final SuspendableRunnable r = new SuspendableRunnable() {
+                @Override
+                public void run() throws SuspendExecution, InterruptedException {
+                    final Object token = cond.register();
+                    try {
+                        for (int j = 0; !tryAcquire(permits); j++)
+                            cond.await(token, j);
+                    } finally {
+                        cond.unregister(token);
+                    }
+                    done.incrementAndGet();
+                }
+            };
+            waiters[i] = i % 2 == 0 ? Strand.of(new Thread(Strand.toRunnable(r))) : new Fiber<Void>(r);
+            waiters[i].start();
+        }
+        Thread.sleep(100);
+
+        for (int i = 1; i <= waiters.length; i++) {
+            permits.incrementAndGet();
+            cond.signal();
+            Thread.sleep(100);
+            assertThat(done.get(), is(i));
+        }
+        for (Strand s : waiters)
+            s.join();
+    }
+
+    @Test
+    public void testSignalIsPassedOnWhenSignalledWaiterLeaves() throws Exception {
+        final FifoConditionSynchronizer cond = new FifoConditionSynchronizer(null);
+        final Object token = cond.register(); // the main thread waits longest
+        final Fiber<Void> fiber = new Fiber<Void>(new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                final Object t = cond.register();
+                try {
+                    cond.await(t, 0, 10, TimeUnit.SECONDS);
+                } finally {
+                    cond.unregister(t);
+                }
+            }
+        }).start();
+        Thread.sleep(100);
+
+        cond.signal();
+        cond.unregister(token); // we leave without consuming the signal
+        fiber.join(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testConsumedSignalIsPassedOnWhenWaiterLeavesWithoutUsingIt() throws Exception {
+        final FifoConditionSynchronizer cond = new FifoConditionSynchronizer(null);
+        final AtomicInteger permits = new AtomicInteger();
+        final Object token = cond.register(); // the main thread waits longest
+        final Fiber<Void> fiber = new Fiber<Void>(new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                final Object t = cond.register();
+                try {
+                    for (int j = 0; !tryAcquire(permits); j++)
+                        cond.await(t, j);
+                } finally {
+                    cond.unregister(t, true);
+                }
+            }
+        }).start();
+        Thread.sleep(100);
+
+        permits.incrementAndGet();
+        cond.signal();
+        cond.awaitNanos(token, 0, 1); // consumes the signal, as if it came just as we timed out
+        cond.unregister(token);       // we leave without acting on it
+        fiber.join(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSatisfiedWaiterDoesNotPassOnSignal() throws Exception {
+        final FifoConditionSynchronizer cond = new FifoConditionSynchronizer(null);
+        final Object token = cond.register(); // the main thread waits longest
+        final Fiber<Long> fiber = new Fiber<Long>(new SuspendableCallable<Long>() {
+            @Override
+            public Long run() throws SuspendExecution, InterruptedException {
+                final Object t = cond.register();
+                final long start = System.nanoTime();
+                try {
+                    cond.awaitNanos(t, 0, TimeUnit.MILLISECONDS.toNanos(200));
+                } finally {
+                    cond.unregister(t);
+                }
+                return System.nanoTime() - start;
+            }
+        }).start();
+        Thread.sleep(50);
+
+        cond.signal();
+        cond.await(token, 0); // returns at once, consuming the signal
+        cond.unregister(token, true);
+        assertThat(fiber.get() >= TimeUnit.MILLISECONDS.toNanos(190), is(true)); // the fiber's wait has timed out
+    }
+
+    @Test
+    public void testRegistrationReusesNode() throws Exception {
+        final FifoConditionSynchronizer cond = new FifoConditionSynchronizer(null);
+        final Object token1 = cond.register();
+        cond.unregister(token1);
+        final Object token2 = cond.register();
+        cond.unregister(token2);
+        assertThat(token2, sameInstance(token1));
+    }
+
+    private static boolean tryAcquire(AtomicInteger permits) {
+        for (;;) {
+            final int p = permits.get();
+            if (p == 0)
+                return false;
+            if (permits.compareAndSet(p, p - 1))
+                return true;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.common.test.TestUtil;
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import org.junit.rules.TestRule;
+
+/**
+ *
+ * @author pron
+ */
+public class BroadcastTopicTest {
+    @Rule
+    public TestName name = new TestName();
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    static final int bufferSize = 8;
+    private FiberScheduler scheduler;
+
+    public BroadcastTopicTest() {
+        scheduler = new FiberForkJoinScheduler("test", 4, null, false);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testLappedSubscriberSkipsOverwrittenMessages() throws Exception {
+        final BroadcastTopic<Integer> topic = new BroadcastTopic<>(bufferSize, OverflowPolicy.DISPLACE);
+        final BroadcastTopic.Subscriber<Integer> sub = topic.newSubscriber();
+
+        for (int i = 0; i < 20; i++)
+            assertThat(topic.trySend(i), is(true));
+
+        assertThat(sub.tryReceive(), is(12));
+        assertThat(sub.getLapped(), is(12L));
+        for (int i = 13; i < 20; i++)
+            assertThat(sub.tryReceive(), is(i));
+        assertThat(sub.tryReceive(), is(nullValue()));
+        assertThat(sub.getLag(), is(0L));
+    }
+
+    @Test
+    public void testBlockWaitsForSlowestSubscriber() throws Exception {
+        final BroadcastTopic<Integer> topic = new BroadcastTopic<>(bufferSize, OverflowPolicy.BLOCK);
+        final BroadcastTopic.Subscriber<Integer> fast = topic.newSubscriber();
+        final BroadcastTopic.Subscriber<Integer> slow = topic.newSubscriber();
+
+        for (int i = 0; i < bufferSize; i++)
+            assertThat(topic.trySend(i), is(true));
+        for (int i = 0; i < bufferSize; i++)
+            assertThat(fast.tryReceive(), is(i));
+
+        assertThat(topic.trySend(bufferSize), is(false));
+        assertThat(topic.send(bufferSize, 10, TimeUnit.MILLISECONDS), is(false));
+
+        assertThat(slow.tryReceive(), is(0));
+        assertThat(topic.trySend(bufferSize), is(true));
+        assertThat(fast.tryReceive(), is(bufferSize));
+        for (int i = 1; i <= bufferSize; i++)
+            assertThat(slow.tryReceive(), is(i));
+        assertThat(slow.getLapped(), is(0L));
+
+        slow.close();
+        for (int i = 0; i < bufferSize; i++)
+            assertThat(topic.trySend(i), is(true));
+    }
+
+    @Test
+    public void testMinHeadKeepsUpWithSubscriberThatAdvancesWhileSenderReadsHeads() throws Exception {
+        final BroadcastTopic.Subscriber<Integer>[] slowest = new BroadcastTopic.Subscriber[1];
+        final BroadcastTopic<Integer> topic = new BroadcastTopic<Integer>(2, OverflowPolicy.BLOCK) {
+            private boolean advanced;
+
+            @Override
+            long slowestHead() {
+                final long min = super.slowestHead();
+                if (!advanced) {
+                    advanced = true;
+                    // the slowest subscriber advances after the sender has read its head, and before the sender writes minHead, so it
+                    // doesn't see its old head in minHead and doesn't signal
+                    assertThat(slowest[0].tryReceive(), is(1));
+                }
+                return min;
+            }
+        };
+        slowest[0] = topic.newSubscriber();
+        assertThat(topic.trySend(0), is(true));
+        assertThat(topic.trySend(1), is(true));
+        assertThat(slowest[0].tryReceive(), is(0)); // minHead is now behind
+
+        assertThat(topic.trySend(2), is(true)); // the ring is full as far as minHead tells, so the sender reads the heads
+        assertThat(topic.minHead, is(slowest[0].head)); // otherwise, a sender waiting on minHead would not be signalled
+    }
+
+    @Test
+    public void testSubscribersReceiveAllMessagesInOrder() throws Exception {
+        final BroadcastTopic<Integer> topic = new BroadcastTopic<>(bufferSize, OverflowPolicy.BLOCK);
+        final int nMessages = 1000;
+
+        final Fiber f1 = new Fiber(scheduler, receiveAll(topic.newSubscriber(), nMessages)).start();
+        final Fiber f2 = new Fiber(scheduler, receiveAll(topic.newSubscriber(), nMessages)).start();
+        final Thread t1 = new Thread(Strand.toRunnable(receiveAll(topic.newSubscriber(), nMessages)));
+        t1.start();
+
+        for (int i = 0; i < nMessages; i++)
+            topic.send(i);
+        topic.close();
+
+        f1.join();
+        f2.join();
+        t1.join();
+    }
+
+    private static SuspendableRunnable receiveAll(final BroadcastTopic.Subscriber<Integer> sub, final int nMessages) {
+        return new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                int expected = 0;
+                Integer m;
+                while ((m = sub.receive()) != null)
+                    assertThat(m, is(expected++));
+                assertThat(expected, is(nMessages));
+                assertThat(sub.isClosed(), is(true));
+            }
+        };
+    }
+
+    @Test
+    public void testDisplaceWithConcurrentSenders() throws Exception {
+        final BroadcastTopic<Long> topic = new BroadcastTopic<>(2, OverflowPolicy.DISPLACE);
+        final BroadcastTopic.Subscriber<Long> reader = topic.newSubscriber();
+        final BroadcastTopic.Subscriber<Long> idle = topic.newSubscriber();
+        final int nSenders = 8;
+        final int nMessages = 20000;
+
+        final Fiber r = new Fiber(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                final long[] last = newLast(nSenders);
+                long received = 0;
+                Long m;
+                while ((m = reader.receive()) != null) {
+                    checkOrder(last, m);
+                    received++;
+                }
+                assertThat(received + reader.getLapped(), is((long) nSenders * nMessages));
+            }
+        }).start();
+
+        final Strand[] senders = new Strand[nSenders];
+        for (int i = 0; i < nSenders; i++)
+            senders[i] = send(topic, i, nMessages, i % 2 == 0);
+        for (Strand s : senders)
+            s.join();
+        topic.close();
+        r.join();
+
+        // idle has been lapped, and reads the last messages left in the ring
+        final long[] last = newLast(nSenders);
+        long received = 0;
+        Long m;
+        while ((m = idle.receive()) != null) {
+            checkOrder(last, m);
+            received++;
+        }
+        assertThat(received, is((long) topic.capacity()));
+        assertThat(received + idle.getLapped(), is((long) nSenders * nMessages));
+    }
+
+    @Test
+    public void testBlockWithConcurrentSenders() throws Exception {
+        final BroadcastTopic<Long> topic = new BroadcastTopic<>(2, OverflowPolicy.BLOCK);
+        final int nSenders = 8;
+        final int nMessages = 5000;
+
+        final Fiber[] readers = new Fiber[2];
+        for (int i = 0; i < readers.length; i++) {
+            final BroadcastTopic.Subscriber<Long> sub = topic.newSubscriber();
+            readers[i] = new Fiber(scheduler, new SuspendableRunnable() {
+                @Override
+                public void run() throws SuspendExecution, InterruptedException {
+                    final long[] last = newLast(nSenders);
+                    long received = 0;
+                    Long m;
+                    while ((m = sub.receive()) != null) {
+                        checkOrder(last, m);
+                        received++;
+                    }
+                    assertThat(received, is((long) nSenders * nMessages));
+                }
+            }).start();
+        }
+
+        final Strand[] senders = new Strand[nSenders];
+        for (int i = 0; i < nSenders; i++)
+            senders[i] = send(topic, i, nMessages, i % 2 == 0);
+        for (Strand s : senders)
+            s.join();
+        topic.close();
+        for (Fiber f : readers)
+            f.join();
+    }
+
+    private Strand send(final BroadcastTopic<Long> topic, final int sender, final int nMessages, boolean fiber) {
+        final SuspendableRunnable r = new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                for (int i = 0; i < nMessages; i++)
+                    topic.send(((long) sender << 32) | i);
+            }
+        };
+        if (fiber)
+            return new Fiber(scheduler, r).start();
+        final Thread t = new Thread(Strand.toRunnable(r));
+        t.start();
+        return Strand.of(t);
+    }
+
+    private static long[] newLast(int nSenders) {
+        final long[] last = new long[nSenders];
+        Arrays.fill(last, -1);
+        return last;
+    }
+
+    private static void checkOrder(long[] last, long m) {
+        // each sender's messages must be received in order, and none twice
+        final int sender = (int) (m >>> 32);
+        final long seq = m & 0xffffffffL;
+        assertTrue("sender " + sender + ": " + seq + " after " + last[sender], seq > last[sender]);
+        last[sender] = seq;
+    }
+
+    @Test
+    public void testSubscribeForwards() throws Exception {
+        final BroadcastTopic<Integer> topic = new BroadcastTopic<>(bufferSize, OverflowPolicy.DISPLACE);
+        final Channel<Integer> ch = topic.subscribe(Channels.<Integer>newChannel(-1));
+        final BroadcastTopic.Subscriber<Integer> sub = topic.newSubscriber();
+
+        topic.send(1);
+        topic.send(2);
+        topic.close();
+
+        assertThat(ch.receive(), is(1));
+        assertThat(ch.receive(), is(2));
+        assertThat(ch.receive(), is(nullValue()));
+        assertThat(sub.receive(), is(1));
+        assertThat(sub.receive(), is(2));
+        assertThat(sub.receive(), is(nullValue()));
+        assertThat(topic.newSubscriber().isClosed(), is(true));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import co.paralleluniverse.common.test.TestUtil;
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.SuspendableCallable;
+import co.paralleluniverse.strands.SuspendableRunnable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+/**
+ *
+ * @author pron
+ */
+public class ChannelHandOffTest {
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    private FiberScheduler scheduler;
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testReceiverRunsRightAfterSender() throws Exception {
+        scheduler = new FiberForkJoinScheduler("test", 1, null, false);
+        assertThat(runOrder(true), equalTo(Arrays.asList("sender", "receiver", "bystander")));
+    }
+
+    @Test
+    public void testReceiverIsQueuedWithoutHandOff() throws Exception {
+        scheduler = new FiberForkJoinScheduler("test", 1, null, false);
+        assertThat(runOrder(false), equalTo(Arrays.asList("sender", "bystander", "receiver")));
+    }
+
+    /**
+     * A fiber sends a message to a waiting receiver right after starting a bystander fiber, which waits for the scheduler's only worker.
+     */
+    private List<String> runOrder(boolean handOff) throws Exception {
+        final QueueChannel<Integer> ch = (QueueChannel<Integer>) Channels.<Integer>newChannel(10);
+        ch.setHandOff(handOff);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+
+        final Fiber<Void> receiver = new Fiber<Void>(scheduler, new SuspendableRunnable() {
+            @Override
+            public void run() throws SuspendExecution, InterruptedException {
+                ch.receive();
+                order.add("receiver");
+            }
+        }).start();
+        while (receiver.getState() != Strand.State.WAITING)
+            Thread.sleep(1);
+
+        final Fiber<Fiber<Void>> sender = new Fiber<Fiber<Void>>(scheduler, new SuspendableCallable<Fiber<Void>>() {
+            @Override
+            public Fiber<Void> run() throws SuspendExecution, InterruptedException {
+                final Fiber<Void> bystander = new Fiber<Void>(scheduler, new SuspendableRunnable() {
+                    @Override
+                    public void run() throws SuspendExecution, InterruptedException {
+                        order.add("bystander");
+                    }
+                }).start();
+                ch.send(1);
+                order.add("sender");
+                return bystander;
+            }
+        }).start();
+
+        sender.get().join();
+        receiver.join();
+        return order;
+    }
+
+    @Test
+    public void testPingPong() throws Exception {
+        scheduler = new FiberForkJoinScheduler("test", 4, null, false);
+        final LongChannel ping = Channels.newLongChannel(1);
+        final LongChannel pong = Channels.newLongChannel(1);
+        ((QueueChannel<Long>) ping).setHandOff(true);
+        ((QueueChannel<Long>) pong).setHandOff(true);
+
+        final Fiber<Long> ponger = new Fiber<Long>(scheduler, new SuspendableCallable<Long>() {
+            @Override
+            public Long run() throws SuspendExecution, InterruptedException {
+                long sum = 0;
+                for (Long x; (x = ping.receive()) != null; sum += x)
+                    pong.send(x + 1);
+                return sum;
+            }
+        }).start();
+        final Fiber<Long> pinger = new Fiber<Long>(scheduler, new SuspendableCallable<Long>() {
+            @Override
+            public Long run() throws SuspendExecution, InterruptedException {
+                long sum = 0;
+                for (long i = 0; i < 10_000; i++) {
+                    ping.send(i);
+                    sum += pong.receive();
+                }
+                return sum;
+            }
+        }).start();
+
+        final long n = 10_000;
+        assertThat(pinger.get(), is(n * (n + 1) / 2));
+        ping.close();
+        assertThat(ponger.get(), is(n * (n - 1) / 2));
+    }
+}
@@ -28,6 +28,7 @@ import com.google.common.collect.ImmutableSet;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import static org.hamcrest.CoreMatchers.*;
 import org.junit.After;
@@ -475,6 +476,80 @@ public class ChannelTest {
         assertThat(fib.get(), is(10));
     }
 
+    @Test
+    public void testMultipleReceivers() throws Exception {
+        assumeThat(singleConsumer, is(false));
+        assumeThat(policy, is(OverflowPolicy.BLOCK));
+        final Channel<Integer> ch = newChannel();
+        final int nMessages = 1000;
+        final AtomicIntegerArray received = new AtomicIntegerArray(nMessages);
+
+        final SuspendableCallable<Integer> receive = new SuspendableCallable<Integer>() {
+            @Override
+            public Integer run() throws SuspendExecution, InterruptedException {
+                int n = 0;
+                Integer m;
+                // receivers that time out leave the channel while it may have signalled them
+                while ((m = ch.receive(1, TimeUnit.MILLISECONDS)) != null || !ch.isClosed()) {
+                    if (m != null) {
+                        received.incrementAndGet(m);
+                        n++;
+                    }
+                }
+                return n;
+            }
+        };
+
+        final Fiber<Integer>[] receivers = new Fiber[8];
+        for (int i = 0; i < receivers.length; i++)
+            receivers[i] = new Fiber<>(scheduler, receive).start();
+
+        for (int i = 0; i < nMessages; i++)
+            ch.send(i);
+        ch.close();
+
+        int n = 0;
+        for (Fiber<Integer> f : receivers)
+            n += f.get();
+        assertThat(n, is(nMessages));
+        for (int i = 0; i < nMessages; i++)
+            assertThat(received.get(i), is(1));
+    }
+
+    @Test
+    public void testTimedOutReceiverPassesOnSignal() throws Exception {
+        assumeThat(singleConsumer, is(false));
+        assumeThat(policy, is(OverflowPolicy.BLOCK));
+        assumeThat(mailboxSize, not(0));
+
+        for (int round = 0; round < 200; round++) {
+            final Channel<Integer> ch = newChannel();
+            final Fiber<Integer> timed = new Fiber<>(scheduler, new SuspendableCallable<Integer>() {
+                @Override
+                public Integer run() throws SuspendExecution, InterruptedException {
+                    return ch.receive(1, TimeUnit.MILLISECONDS);
+                }
+            }).start();
+            final Fiber<Integer> untimed = new Fiber<>(scheduler, new SuspendableCallable<Integer>() {
+                @Override
+                public Integer run() throws SuspendExecution, InterruptedException {
+                    return ch.receive();
+                }
+            }).start();
+
+            // the timed receiver waits longest, so it's the one signalled; try to send just as its wait times out
+            Thread.sleep(1, (round % 20) * 25_000);
+            ch.send(round);
+
+            if (timed.get() == null)
+                assertThat(untimed.get(5, TimeUnit.SECONDS), is(round));
+            else {
+                ch.close();
+                assertThat(untimed.get(5, TimeUnit.SECONDS), is(nullValue()));
+            }
+        }
+    }
+
     @Test
     public void testChannelClose() throws Exception {
         final Channel<Integer> ch = newChannel();
@@ -806,6 +881,76 @@ public class ChannelTest {
         f3.join();
     }
 
+    @Test
+    public void testTopicFanOut() throws Exception {
+        assumeTrue(mailboxSize == 1);
+        assumeTrue(OverflowPolicy.BLOCK.equals(policy));
+
+        final Channel<String> blocking = newChannel();
+        final Channel<String> dropping = newChannel();
+        final Channel<String> disconnecting = newChannel();
+        final Channel<String> unbounded = Channels.newChannel(-1);
+
+        final Topic<String> topic = new Topic<>(true);
+        topic.subscribe(blocking, Topic.SubscriberPolicy.BLOCK, 100, TimeUnit.MILLISECONDS);
+        topic.subscribe(dropping, Topic.SubscriberPolicy.DROP);
+        topic.subscribe(disconnecting, Topic.SubscriberPolicy.DISCONNECT);
+        topic.subscribe(unbounded);
+
+        assertTrue(topic.trySend("a"));
+        assertFalse(topic.trySend("b"));
+        assertFalse(topic.send("c", 1, TimeUnit.SECONDS));
+
+        assertThat(unbounded.tryReceive(), equalTo("a"));
+        assertThat(unbounded.tryReceive(), equalTo("b"));
+        assertThat(unbounded.tryReceive(), equalTo("c"));
+        assertThat(blocking.tryReceive(), equalTo("a"));
+        assertThat(blocking.tryReceive(), is(nullValue()));
+        assertThat(dropping.tryReceive(), equalTo("a"));
+        assertThat(disconnecting.receive(), equalTo("a"));
+        assertThat(disconnecting.receive(), is(nullValue()));
+        assertTrue(disconnecting.isClosed());
+
+        assertThat(topic.getSubscription(disconnecting), is(nullValue()));
+        assertThat(topic.getSubscriptions().size(), is(3));
+        assertThat(topic.getSubscription(unbounded).getDelivered(), is(3L));
+        assertThat(topic.getSubscription(blocking).getDelivered(), is(1L));
+        assertThat(topic.getSubscription(blocking).getDropped(), is(2L));
+        assertThat(topic.getSubscription(blocking).getBlocked(), is(1L));
+        assertThat(topic.getSubscription(dropping).getDropped(), is(2L));
+    }
+
+    @Test
+    public void testTopicCounters() throws Exception {
+        assumeTrue(mailboxSize == 1);
+        assumeTrue(OverflowPolicy.BLOCK.equals(policy));
+
+        final Channel<String> plain = Channels.newChannel(-1);
+        final Channel<String> dropping = newChannel();
+
+        final Topic<String> topic = new Topic<>();
+        topic.subscribe(plain);
+        topic.subscribe(dropping, Topic.SubscriberPolicy.DROP);
+        topic.send("a");
+        topic.send("b");
+
+        assertFalse(topic.getSubscription(plain).isCounted());
+        assertThat(topic.getSubscription(plain).getDelivered(), is(-1L));
+        assertTrue(topic.getSubscription(dropping).isCounted());
+        assertThat(topic.getSubscription(dropping).getDelivered(), is(1L));
+        assertThat(topic.getSubscription(dropping).getDropped(), is(1L));
+
+        final Channel<String> monitoredPlain = Channels.newChannel(-1);
+        final Topic<String> monitored = new Topic<>(false, true);
+        monitored.subscribe(monitoredPlain);
+        monitored.send("a");
+        monitored.send("b");
+
+        assertTrue(monitored.getSubscription(monitoredPlain).isCounted());
+        assertThat(monitored.getSubscription(monitoredPlain).getDelivered(), is(2L));
+        assertThat(monitored.getSubscription(monitoredPlain).getDropped(), is(0L));
+    }
+
     @Test
     public void testChannelGroupReceive() throws Exception {
         final Channel<String> channel1 = newChannel();
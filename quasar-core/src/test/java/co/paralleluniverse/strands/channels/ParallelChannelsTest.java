@@ -0,0 +1,241 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import static co.paralleluniverse.common.test.Matchers.*;
+import co.paralleluniverse.common.test.TestUtil;
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.Strand;
+import co.paralleluniverse.strands.SuspendableAction1;
+import co.paralleluniverse.strands.SuspendableCallable;
+import co.paralleluniverse.strands.channels.Channels.OverflowPolicy;
+import com.google.common.base.Function;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import static org.hamcrest.CoreMatchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ *
+ * @author pron
+ */
+@RunWith(Parameterized.class)
+public class ParallelChannelsTest {
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    final int parallelism;
+    final boolean ordered;
+    final FiberScheduler scheduler;
+
+    public ParallelChannelsTest(int parallelism, boolean ordered) {
+        this.scheduler = new FiberForkJoinScheduler("test", 4, null, false);
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<Object[]> data() {
+        return Arrays.asList(new Object[][]{
+            {1, true},
+            {1, false},
+            {4, true},
+            {4, false},
+            {16, true},
+            {16, false},
+            {64, true},
+            {64, false},});
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testParallelMap() throws Exception {
+        final Channel<Integer> in = Channels.newChannel(16, OverflowPolicy.BLOCK, true, false);
+        final Channel<Integer> out = Channels.newChannel(16);
+        Channels.parallelMap(scheduler, in, out, parallelism, ordered, new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer x) {
+                return x % 7 == 0 ? null : x * 2; // null drops the message
+            }
+        });
+
+        final List<Integer> expected = new ArrayList<>();
+        final Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 1000; i++)
+                        in.send(i);
+                    in.close();
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < 1000; i++) {
+            if (i % 7 != 0)
+                expected.add(i * 2);
+        }
+
+        final List<Integer> received = new ArrayList<>();
+        for (Integer m; (m = out.receive()) != null;)
+            received.add(m);
+        producer.join();
+
+        if (!ordered)
+            Collections.sort(received);
+        assertThat(received, equalTo(expected));
+        assertTrue(out.isClosed());
+    }
+
+    @Test
+    public void testParallelMapClosesOutputWithException() throws Exception {
+        final Channel<Integer> in = Channels.newChannel(1000, OverflowPolicy.BLOCK, true, false);
+        final Channel<Integer> out = Channels.newChannel(-1);
+        Channels.parallelMap(scheduler, in, out, parallelism, ordered, new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer x) {
+                if (x == 50)
+                    throw new IllegalStateException("bad message");
+                return x;
+            }
+        });
+        for (int i = 0; i < 100; i++)
+            in.send(i);
+        in.close();
+
+        int n = 0;
+        try {
+            while (out.receive() != null)
+                n++;
+            fail();
+        } catch (ProducerException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+        if (ordered)
+            assertThat(n, is(50)); // everything before the failure
+        else
+            assertThat(n, lessThan(100));
+    }
+
+    @Test
+    public void testParallelMapStopsWorkersWhenInputStaysOpen() throws Exception {
+        final Channel<Integer> in = Channels.newChannel(1000, OverflowPolicy.BLOCK, true, false);
+        final Channel<Integer> out = Channels.newChannel(-1);
+        Channels.parallelMap(scheduler, in, out, parallelism, ordered, new Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer x) {
+                if (x == 50)
+                    throw new IllegalStateException("bad message");
+                return x;
+            }
+        });
+        // in is never closed
+        for (int i = 0; i < 50; i++)
+            in.send(i);
+        Strand.sleep(100); // let all the workers block on the empty input
+        in.send(50);
+
+        try {
+            while (out.receive(5, TimeUnit.SECONDS) != null)
+                ;
+            fail();
+        } catch (ProducerException e) {
+            assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+        }
+
+        Strand.sleep(100);
+        for (int i = 0; i < 10; i++)
+            in.send(1000 + i);
+        Strand.sleep(100);
+
+        int n = 0;
+        while (in.tryReceive() != null)
+            n++;
+        assertThat(n, is(10)); // no one's left receiving from in
+    }
+
+    @Test
+    public void testParallelForEachFailsWhenInputStaysOpen() throws Exception {
+        final Channel<Integer> in = Channels.newChannel(1000, OverflowPolicy.BLOCK, true, false);
+        final Fiber<Throwable> fiber = new Fiber<Throwable>(scheduler, new SuspendableCallable<Throwable>() {
+            @Override
+            public Throwable run() throws SuspendExecution, InterruptedException {
+                try {
+                    Channels.parallelForEach(scheduler, in, parallelism, new SuspendableAction1<Integer>() {
+                        @Override
+                        public void call(Integer x) throws SuspendExecution, InterruptedException {
+                            if (x == 50)
+                                throw new IllegalStateException("bad message");
+                        }
+                    });
+                    return null;
+                } catch (IllegalStateException e) {
+                    return e;
+                }
+            }
+        }).start();
+        // in is never closed
+        for (int i = 0; i < 50; i++)
+            in.send(i);
+        Strand.sleep(100); // let all the workers block on the empty input
+        in.send(50);
+
+        assertThat(fiber.get(5, TimeUnit.SECONDS), instanceOf(IllegalStateException.class));
+    }
+
+    @Test
+    public void testParallelForEachOverlapsBlockingActions() throws Exception {
+        final int rounds = 4;
+        final long sleep = 50;
+        final Channel<Integer> in = Channels.newChannel(1000, OverflowPolicy.BLOCK, true, false);
+        for (int i = 0; i < rounds * parallelism; i++)
+            in.send(i);
+        in.close();
+
+        final AtomicLong sum = new AtomicLong();
+        final long start = System.nanoTime();
+        Channels.parallelForEach(scheduler, in, parallelism, new SuspendableAction1<Integer>() {
+            @Override
+            public void call(Integer x) throws SuspendExecution, InterruptedException {
+                Strand.sleep(sleep);
+                sum.addAndGet(x);
+            }
+        });
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        final long n = rounds * parallelism;
+        assertThat(sum.get(), is(n * (n - 1) / 2));
+        assertThat(elapsed, lessThan(2 * rounds * sleep + 300)); // done sequentially, it would take parallelism * rounds * sleep
+    }
+}
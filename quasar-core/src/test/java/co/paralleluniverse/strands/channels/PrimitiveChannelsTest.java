@@ -0,0 +1,173 @@
+/*
+ * Quasar: lightweight threads and actors for the JVM.
+ * Copyright (c) 2013-2018, Parallel Universe Software Co. All rights reserved.
+ *
+ * This program and the accompanying materials are dual-licensed under
+ * either the terms of the Eclipse Public License v1.0 as published by
+ * the Eclipse Foundation
+ *
+ *   or (per the licensee's choosing)
+ *
+ * under the terms of the GNU Lesser General Public License version 3.0
+ * as published by the Free Software Foundation.
+ */
+package co.paralleluniverse.strands.channels;
+
+import static co.paralleluniverse.common.test.Matchers.*;
+import co.paralleluniverse.common.test.TestUtil;
+import co.paralleluniverse.fibers.Fiber;
+import co.paralleluniverse.fibers.FiberForkJoinScheduler;
+import co.paralleluniverse.fibers.FiberScheduler;
+import co.paralleluniverse.fibers.SuspendExecution;
+import co.paralleluniverse.strands.SuspendableCallable;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import static org.hamcrest.CoreMatchers.*;
+import org.junit.After;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+
+/**
+ *
+ * @author pron
+ */
+public class PrimitiveChannelsTest {
+    @Rule
+    public TestRule watchman = TestUtil.WATCHMAN;
+
+    final FiberScheduler scheduler = new FiberForkJoinScheduler("test", 4, null, false);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void testMapAndFilterLong() throws Exception {
+        final LongChannel ch = Channels.newLongChannel(1000);
+        final LongReceivePort port = Channels.filterLong(Channels.mapLong(ch, x -> x * 3), x -> x % 2 == 0);
+
+        for (long i = 0; i < 1000; i++)
+            ch.send(i);
+        ch.close();
+
+        assertThat(port.hasMessage(), is(true));
+        for (long i = 0; i < 1000; i += 2)
+            assertThat(port.receiveLong(), is(i * 3));
+        assertThat(port.receive(), is(nullValue()));
+        assertThat(port.isClosed(), is(true));
+    }
+
+    @Test
+    public void testZipInt() throws Exception {
+        final IntChannel ch1 = Channels.newIntChannel(10);
+        final IntChannel ch2 = Channels.newIntChannel(10);
+        final IntReceivePort port = Channels.zipInt(ch1, ch2, (a, b) -> a * 10 + b);
+
+        ch1.send(1);
+        ch1.send(2);
+        ch2.send(3);
+        assertThat(port.receiveInt(), is(13));
+        try {
+            port.receiveInt(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException e) {
+        }
+        ch2.send(4);
+        assertThat(port.receiveInt(), is(24));
+    }
+
+    @Test
+    public void testGroupDouble() throws Exception {
+        final DoubleChannel[] chs = new DoubleChannel[3];
+        for (int i = 0; i < chs.length; i++)
+            chs[i] = Channels.newDoubleChannel(4);
+        final DoubleReceivePort group = Channels.groupDouble(chs);
+
+        final Fiber<Double> fiber = new Fiber<>(scheduler, new SuspendableCallable<Double>() {
+            @Override
+            public Double run() throws SuspendExecution, InterruptedException {
+                double sum = 0;
+                try {
+                    for (;;)
+                        sum += group.receiveDouble();
+                } catch (ReceivePort.EOFException e) {
+                    return sum;
+                }
+            }
+        }).start();
+
+        double sum = 0;
+        for (int i = 0; i < 300; i++) {
+            chs[i % 3].send(i);
+            sum += i;
+            if (i % 50 == 0)
+                Thread.sleep(5); // let the group block
+        }
+        for (DoubleChannel ch : chs)
+            ch.close();
+
+        assertThat(fiber.get(), is(sum));
+    }
+
+    @Test
+    public void testLongTopic() throws Exception {
+        final LongTopic topic = new LongTopic();
+        final LongChannel ch1 = topic.subscribe(Channels.newLongChannel(10));
+        final LongChannel ch2 = topic.subscribe(Channels.newLongChannel(10));
+        final Channel<Long> boxed = topic.subscribe(Channels.<Long>newChannel(10));
+
+        topic.send(1000L);
+        topic.send(Long.valueOf(2000L));
+        topic.close();
+
+        for (LongReceivePort ch : new LongReceivePort[]{ch1, ch2}) {
+            assertThat(ch.receiveLong(), is(1000L));
+            assertThat(ch.receiveLong(), is(2000L));
+            assertThat(ch.receive(), is(nullValue()));
+        }
+        assertThat(boxed.receive(), is(1000L));
+        assertThat(boxed.receive(), is(2000L));
+        assertThat(boxed.receive(), is(nullValue()));
+        assertThat(topic.getSubscribers().length, is(0));
+    }
+
+    @Test
+    public void testNoAllocationPerElement() throws Exception {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(mx.isThreadAllocatedMemorySupported() && mx.isThreadAllocatedMemoryEnabled());
+
+        final LongTopic topic = new LongTopic();
+        final LongChannel ch1 = topic.subscribe(Channels.newLongChannel(64));
+        final LongChannel ch2 = topic.subscribe(Channels.newLongChannel(64));
+        final LongReceivePort port = Channels.groupLong(
+                Channels.mapLong(ch1, x -> x + 1),
+                Channels.filterLong(ch2, x -> x > 0));
+
+        final int n = 100_000;
+        final long tid = Thread.currentThread().getId();
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) { // until the JIT is done with the pipeline
+            final long before = mx.getThreadAllocatedBytes(tid);
+            pump(topic, port, n);
+            allocated = Math.min(allocated, mx.getThreadAllocatedBytes(tid) - before);
+        }
+
+        assertThat(allocated, lessThan((long) n)); // boxing would take at least 16 bytes per element
+    }
+
+    private static void pump(LongTopic topic, LongReceivePort port, int n) throws Exception {
+        for (int i = 0; i < n; i += 32) {
+            for (int j = 0; j < 32; j++)
+                topic.send(1000L + i + j);
+            for (int j = 0; j < 64; j++)
+                port.receiveLong();
+        }
+    }
+}
@@ -1363,4 +1363,180 @@ public class TransformingChannelTest {
         List<Integer> list = fib.get();
         assertThat(list, equalTo(Arrays.asList(new Integer[]{1, 2, 3, 4, 5})));
     }
+
+    @Test
+    public void testFusedPipelineBatchThreadToFiber() throws Exception {
+        final Channel<Integer> ch = newChannel();
+        final TransformingReceivePort<String> pipeline = Channels.transform((ReceivePort<Integer>) ch)
+                .map(new Function<Integer, Integer>() {
+                    @Override
+                    public Integer apply(Integer input) {
+                        return input + 1;
+                    }
+                })
+                .filter(new Predicate<Integer>() {
+                    @Override
+                    public boolean apply(Integer input) {
+                        return input % 2 == 0;
+                    }
+                })
+                .map(new Function<Integer, Integer>() {
+                    @Override
+                    public Integer apply(Integer input) {
+                        return input * 10;
+                    }
+                })
+                .filter(new Predicate<Integer>() {
+                    @Override
+                    public boolean apply(Integer input) {
+                        return input != 60;
+                    }
+                })
+                .map(new Function<Integer, String>() {
+                    @Override
+                    public String apply(Integer input) {
+                        return input.toString();
+                    }
+                });
+
+        // all five stages are applied by one port over the channel
+        assertThat(((FusedReceivePort<?, ?>) pipeline.target).target, sameInstance((Object) ch));
+        assertTrue(pipeline.equals(ch));
+
+        Fiber<List<String>> fib = new Fiber<List<String>>("fiber", scheduler, new SuspendableCallable<List<String>>() {
+            @Override
+            public List<String> run() throws SuspendExecution, InterruptedException {
+                final List<String> list = new ArrayList<>();
+                while (pipeline.receive(list, 3) > 0)
+                    ;
+                return list;
+            }
+        }).start();
+
+        Strand.sleep(50);
+        for (int i = 1; i <= 5; i++)
+            ch.send(i);
+        Strand.sleep(50);
+        for (int i = 6; i <= 10; i++)
+            ch.send(i);
+        ch.close();
+
+        assertThat(fib.get(), equalTo(Arrays.asList("20", "40", "80", "100")));
+    }
+
+    @Test
+    public void testMapAfterTakeKeepsTakeLimit() throws Exception {
+        final Channel<Integer> ch = Channels.newChannel(-1);
+        final TransformingReceivePort<Integer> pipeline = Channels.transform((ReceivePort<Integer>) ch)
+                .take(3)
+                .map(new Function<Integer, Integer>() {
+                    @Override
+                    public Integer apply(Integer input) {
+                        return input * 10;
+                    }
+                })
+                .filter(new Predicate<Integer>() {
+                    @Override
+                    public boolean apply(Integer input) {
+                        return input != 20;
+                    }
+                });
+
+        for (int i = 1; i <= 5; i++)
+            ch.send(i);
+
+        Fiber<List<Integer>> fib = new Fiber<List<Integer>>("fiber", scheduler, new SuspendableCallable<List<Integer>>() {
+            @Override
+            public List<Integer> run() throws SuspendExecution, InterruptedException {
+                final List<Integer> list = new ArrayList<>();
+                for (Integer m; (m = pipeline.receive()) != null;)
+                    list.add(m);
+                return list;
+            }
+        }).start();
+
+        assertThat(fib.get(), equalTo(Arrays.asList(10, 30)));
+        assertThat(ch.receive(), is(4));
+    }
+
+    @Test
+    public void testBatchReceiveOfDelegatingSubclassUsesItsReceive() throws Exception {
+        final Channel<Integer> ch = Channels.newChannel(-1);
+        final ReceivePort<Integer> port = new DelegatingReceivePort<Integer>(ch) {
+            @Override
+            public Integer receive() throws SuspendExecution, InterruptedException {
+                final Integer m = super.receive();
+                return m != null ? m * 10 : null;
+            }
+
+            @Override
+            public Integer tryReceive() {
+                final Integer m = super.tryReceive();
+                return m != null ? m * 10 : null;
+            }
+        };
+
+        for (int i = 1; i <= 5; i++)
+            ch.send(i);
+
+        Fiber<List<Integer>> fib = new Fiber<List<Integer>>("fiber", scheduler, new SuspendableCallable<List<Integer>>() {
+            @Override
+            public List<Integer> run() throws SuspendExecution, InterruptedException {
+                final List<Integer> list = new ArrayList<>();
+                port.receive(list, 2);
+                port.drainTo(list, 2);
+                return list;
+            }
+        }).start();
+
+        assertThat(fib.get(), equalTo(Arrays.asList(10, 20, 30, 40)));
+        assertThat(ch.receive(), is(5));
+    }
+
+    @Test
+    public void testSendFusedPipelineThreadToFiber() throws Exception {
+        final Channel<Integer> ch = newChannel();
+        final TransformingSendPort<String> pipeline = Channels.transformSend((SendPort<Integer>) ch)
+                .filter(new Predicate<Integer>() {
+                    @Override
+                    public boolean apply(Integer input) {
+                        return input % 2 == 0;
+                    }
+                })
+                .map(new Function<Integer, Integer>() {
+                    @Override
+                    public Integer apply(Integer input) {
+                        return input + 10;
+                    }
+                })
+                .map(new Function<String, Integer>() {
+                    @Override
+                    public Integer apply(String input) {
+                        return Integer.parseInt(input);
+                    }
+                });
+
+        assertThat(((FusedSendPort<?, ?>) pipeline.target).target, sameInstance((Object) ch));
+        assertTrue(pipeline.equals(ch));
+
+        Fiber<List<Integer>> fib = new Fiber<List<Integer>>("fiber", scheduler, new SuspendableCallable<List<Integer>>() {
+            @Override
+            public List<Integer> run() throws SuspendExecution, InterruptedException {
+                final List<Integer> list = new ArrayList<>();
+                for (Integer m; (m = ch.receive()) != null;)
+                    list.add(m);
+                return list;
+            }
+        }).start();
+
+        Strand.sleep(50);
+        for (int i = 1; i <= 5; i++)
+            pipeline.send(Integer.toString(i));
+        Strand.sleep(50);
+        for (int i = 6; i <= 10; i++)
+            pipeline.send(Integer.toString(i));
+        pipeline.close();
+
+        assertThat(fib.get(), equalTo(Arrays.asList(12, 14, 16, 18, 20)));
+    }
 }
@@ -21,8 +21,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicReference;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
@@ -31,7 +33,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
 
 /**
- * Simple, single-threaded tests
+ * Simple tests, mostly single-threaded
  *
  * @author pron
  */
@@ -59,6 +61,9 @@ public class SingleConsumerQueueTest {
             case 3:
                 this.queue = new SingleConsumerLinkedArrayObjectQueue<String>();
                 break;
+            case 4:
+                this.queue = new SingleConsumerStripedArrayObjectQueue<String>(64, 4); // a single strand uses a single lane of 16
+                break;
             default:
                 throw new AssertionError();
         }
@@ -66,7 +71,7 @@ public class SingleConsumerQueueTest {
 
     @Parameterized.Parameters
     public static Collection<Object[]> data() {
-        return Arrays.asList(new Object[][]{{1}, {2}, {3}});
+        return Arrays.asList(new Object[][]{{1}, {2}, {3}, {4}});
     }
 
     @Test
@@ -118,6 +123,128 @@ public class SingleConsumerQueueTest {
         testEmptyQueue();
     }
 
+    @Test
+    public void testDrainTo() {
+        int j = 1;
+        int k = 1;
+        final List<String> drained = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            queue.offer("x" + (j++));
+            queue.offer("x" + (j++));
+            queue.offer("x" + (j++));
+            drained.clear();
+            assertThat(queue.drainTo(drained, 2), is(2));
+            assertThat(drained, is(equalTo(list("x" + (k++), "x" + (k++)))));
+        }
+        assertThat(queue.size(), is(8));
+
+        for (Iterator<String> it = queue.iterator(); it.hasNext();) {
+            if (it.next().equals("x20"))
+                it.remove();
+        }
+
+        drained.clear();
+        assertThat(queue.drainTo(drained, 100), is(7));
+        assertThat(drained, is(equalTo(list("x17", "x18", "x19", "x21", "x22", "x23", "x24"))));
+        assertThat(queue.drainTo(drained, 100), is(0));
+        testEmptyQueue();
+    }
+
+    @Test
+    public void testDrainToWhenAddThrows() {
+        for (int i = 1; i <= 5; i++)
+            queue.offer("x" + i);
+
+        final List<String> drained = new ArrayList<String>() {
+            @Override
+            public boolean add(String e) {
+                if (e.equals("x3"))
+                    throw new IllegalStateException();
+                return super.add(e);
+            }
+        };
+        try {
+            queue.drainTo(drained, 100);
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        assertThat(drained, is(equalTo(list("x1", "x2"))));
+        assertThat(queue.size(), is(3));
+        assertThat(list(queue), is(equalTo(list("x3", "x4", "x5"))));
+        assertThat(queue.poll(), equalTo("x3"));
+    }
+
+    @Test
+    public void testConcurrentProducers() throws Exception {
+        final int nProducers = 8;
+        final int nElements = 10000;
+
+        final Thread[] producers = new Thread[nProducers];
+        for (int p = 0; p < nProducers; p++) {
+            final int producer = p;
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < nElements; i++) {
+                        while (!queue.offer(producer + ":" + i))
+                            Thread.yield(); // full
+                    }
+                }
+            });
+            producers[p].start();
+        }
+
+        // each producer's elements are dequeued in order
+        final int[] next = new int[nProducers];
+        for (int n = 0; n < nProducers * nElements;) {
+            final String s = queue.poll();
+            if (s == null) {
+                Thread.yield();
+                continue;
+            }
+            final int producer = Integer.parseInt(s.substring(0, s.indexOf(':')));
+            assertThat(s, equalTo(producer + ":" + next[producer]));
+            next[producer]++;
+            n++;
+        }
+        for (Thread t : producers)
+            t.join();
+        testEmptyQueue();
+    }
+
+    @Test
+    public void testStalledLaneDoesNotBlockOtherLanes() throws Exception {
+        assumeTrue(queue instanceof SingleConsumerStripedArrayObjectQueue);
+        final SingleConsumerStripedArrayObjectQueue<String> striped = (SingleConsumerStripedArrayObjectQueue<String>) queue;
+
+        // this thread claims a slot in its lane but doesn't write it, like a producer descheduled in the middle of enq
+        final SingleConsumerArrayObjectQueue<String> stalled = striped.currentLane();
+        assertThat(stalled.preEnq(), is(not(-1L)));
+
+        // find a producer whose lane is a different one
+        final AtomicReference<String> enqueued = new AtomicReference<>();
+        for (int i = 0; enqueued.get() == null; i++) {
+            final String name = "p" + i;
+            final Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    if (striped.currentLane() != stalled) {
+                        striped.offer(name + ":1");
+                        striped.offer(name + ":2");
+                        enqueued.set(name);
+                    }
+                }
+            });
+            t.start();
+            t.join();
+        }
+
+        final String name = enqueued.get();
+        assertThat(queue.poll(), equalTo(name + ":1"));
+        assertThat(queue.poll(), equalTo(name + ":2"));
+        assertThat(queue.poll(), is(nullValue()));
+    }
+
     @Test
     public void testIteratorRemove() {
         int j = 1;